@@ -15,6 +15,8 @@ import com.trollworks.gcs.app.GCSImages;
 import com.trollworks.gcs.character.GURPSCharacter;
 import com.trollworks.gcs.common.DataFile;
 import com.trollworks.gcs.common.HasSourceReference;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.common.LoadState;
 import com.trollworks.gcs.modifier.Modifier;
 import com.trollworks.gcs.preferences.SheetPreferences;
@@ -78,6 +80,10 @@ public class Advantage extends ListRow implements HasSourceReference, Switchable
     private static final String        ATTR_ROUND_COST_DOWN       = "round_down"; //$NON-NLS-1$
     private static final String        ATTR_ALLOW_HALF_LEVELS     = "allow_half_levels"; //$NON-NLS-1$
     private static final String        ATTR_HALF_LEVEL            = "half_level"; //$NON-NLS-1$
+    private static final String        KEY_ADVANTAGE_TYPE         = "advantage_type"; //$NON-NLS-1$
+    private static final String        KEY_CONTAINER_TYPE         = "container_type"; //$NON-NLS-1$
+    private static final String        KEY_CR_ADJUSTMENT          = "cr_adj"; //$NON-NLS-1$
+    private static final String        KEY_MODIFIERS              = "modifiers"; //$NON-NLS-1$
     /** The prefix used in front of all IDs for the advantages. */
     public static final String         PREFIX                     = GURPSCharacter.CHARACTER_PREFIX + "advantage."; //$NON-NLS-1$
     /** The field ID for type changes. */
@@ -211,6 +217,19 @@ public class Advantage extends ListRow implements HasSourceReference, Switchable
         load(reader, state);
     }
 
+    /**
+     * @param dataFile The data file to associate it with.
+     * @param type     The type of a row being loaded from JSON.
+     * @return A new, empty advantage to load the row into, or <code>null</code> if the type isn't
+     *         that of an advantage.
+     */
+    public static Advantage create(DataFile dataFile, String type) {
+        if (TAG_ADVANTAGE.equals(type) || TAG_ADVANTAGE_CONTAINER.equals(type)) {
+            return new Advantage(dataFile, TAG_ADVANTAGE_CONTAINER.equals(type));
+        }
+        return null;
+    }
+
     @Override
     public boolean isEquivalentTo(Object obj) {
         if (obj == this) {
@@ -279,7 +298,7 @@ public class Advantage extends ListRow implements HasSourceReference, Switchable
             mCRAdj = Enums.extract(reader.getAttribute(SelfControlRoll.ATTR_ADJUSTMENT), SelfControlRollAdjustments.values(), SelfControlRollAdjustments.NONE);
             mCR    = SelfControlRoll.get(reader.readText());
         } else if (TAG_REFERENCE.equals(name)) {
-            mReference = reader.readText().replace("\n", " "); //$NON-NLS-1$ //$NON-NLS-2$
+            mReference = state.intern(reader.readText().replace("\n", " ")); //$NON-NLS-1$ //$NON-NLS-2$
         } else if (!state.mForUndo && (TAG_ADVANTAGE.equals(name) || TAG_ADVANTAGE_CONTAINER.equals(name))) {
             addChild(new Advantage(mDataFile, reader, state));
         } else if (Modifier.TAG_MODIFIER.equals(name)) {
@@ -311,6 +330,57 @@ public class Advantage extends ListRow implements HasSourceReference, Switchable
         }
     }
 
+    @Override
+    protected void loadSubElement(JsonReader in, String name, LoadState state) throws IOException {
+        if (ATTR_ROUND_COST_DOWN.equals(name)) {
+            mRoundCostDown = in.nextBoolean();
+        } else if (ATTR_ALLOW_HALF_LEVELS.equals(name)) {
+            mAllowHalfLevels = in.nextBoolean();
+        } else if (ATTR_DISABLED.equals(name)) {
+            mDisabled = in.nextBoolean();
+        } else if (TAG_NAME.equals(name)) {
+            mName = in.nextString();
+        } else if (TAG_CR.equals(name)) {
+            mCR = SelfControlRoll.get(in.nextString());
+        } else if (KEY_CR_ADJUSTMENT.equals(name)) {
+            mCRAdj = Enums.extract(in.nextString(), SelfControlRollAdjustments.values(), SelfControlRollAdjustments.NONE);
+        } else if (TAG_REFERENCE.equals(name)) {
+            mReference = state.intern(in.nextString());
+        } else if (KEY_MODIFIERS.equals(name)) {
+            loadRows(in, state, type -> Modifier.create(getDataFile(), type), mModifiers::add);
+        } else if (canHaveChildren()) {
+            if (KEY_CONTAINER_TYPE.equals(name)) {
+                mContainerType = Enums.extract(in.nextString(), AdvantageContainerType.values(), AdvantageContainerType.GROUP);
+            } else {
+                super.loadSubElement(in, name, state);
+            }
+        } else if (KEY_ADVANTAGE_TYPE.equals(name)) {
+            mType = getTypeFromText(in.nextString());
+        } else if (TAG_LEVELS.equals(name)) {
+            mLevels = in.nextInt();
+        } else if (ATTR_HALF_LEVEL.equals(name)) {
+            mHalfLevel = in.nextBoolean();
+        } else if (TAG_BASE_POINTS.equals(name)) {
+            mPoints = in.nextInt();
+        } else if (TAG_POINTS_PER_LEVEL.equals(name)) {
+            mPointsPerLevel = in.nextInt();
+        } else if (WeaponStats.KEY_WEAPONS.equals(name)) {
+            WeaponStats.load(in, this, mWeapons);
+        } else {
+            super.loadSubElement(in, name, state);
+        }
+    }
+
+    @Override
+    protected ListRow createChild(String type) {
+        return create(mDataFile, type);
+    }
+
+    @Override
+    protected boolean isDeferrable(String name) {
+        return !canHaveChildren() && (MeleeWeaponStats.TAG_ROOT.equals(name) || RangedWeaponStats.TAG_ROOT.equals(name)) || super.isDeferrable(name);
+    }
+
     @Override
     protected void finishedLoading(LoadState state) {
         if (mOldPointsString != null) {
@@ -404,6 +474,32 @@ public class Advantage extends ListRow implements HasSourceReference, Switchable
         out.simpleTagNotEmpty(TAG_REFERENCE, mReference);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        out.name(ATTR_ROUND_COST_DOWN).value(mRoundCostDown);
+        out.name(ATTR_ALLOW_HALF_LEVELS).value(mAllowHalfLevels);
+        out.name(ATTR_DISABLED).value(mDisabled);
+        out.name(TAG_NAME).value(mName);
+        if (canHaveChildren()) {
+            out.name(KEY_CONTAINER_TYPE).value(Enums.toId(mContainerType));
+        } else {
+            out.name(KEY_ADVANTAGE_TYPE).value(getTypeAsText());
+            out.name(TAG_LEVELS).value(mLevels);
+            out.name(ATTR_HALF_LEVEL).value(mHalfLevel);
+            out.name(TAG_BASE_POINTS).value(mPoints);
+            out.name(TAG_POINTS_PER_LEVEL).value(mPointsPerLevel);
+            WeaponStats.save(out, mWeapons);
+        }
+        out.name(TAG_CR).value(mCR.getCR());
+        out.name(KEY_CR_ADJUSTMENT).value(Enums.toId(mCRAdj));
+        out.name(KEY_MODIFIERS).startArray();
+        for (Modifier modifier : mModifiers) {
+            modifier.save(out);
+        }
+        out.endArray();
+        out.name(TAG_REFERENCE).value(mReference);
+    }
+
     /** @return The container type. */
     public AdvantageContainerType getContainerType() {
         return mContainerType;
@@ -545,6 +641,23 @@ public class Advantage extends ListRow implements HasSourceReference, Switchable
         return false;
     }
 
+    /** @return The levels and the half level together, as a count of half levels. */
+    public int getHalfLevels() {
+        return mLevels * 2 + (mHalfLevel ? 1 : 0);
+    }
+
+    /**
+     * Sets the levels and the half level together.
+     *
+     * @param halfLevels The levels and the half level, as returned by {@link #getHalfLevels()}.
+     * @return Whether it was modified.
+     */
+    public boolean setHalfLevels(int halfLevels) {
+        boolean modified = setHalfLevel(Math.floorMod(halfLevels, 2) == 1);
+        modified |= setLevels(Math.floorDiv(halfLevels, 2));
+        return modified;
+    }
+
     /**
      * @param factor The number of levels or half levels to set.
      * @return Whether it was modified.
@@ -556,13 +669,7 @@ public class Advantage extends ListRow implements HasSourceReference, Switchable
         if (!mAllowHalfLevels) {
             return setLevels(Math.max(mLevels + factor, 0));
         }
-        int halfLevels = mLevels * 2 + (mHalfLevel ? 1 : 0) + factor;
-        if (halfLevels < 0) {
-            halfLevels = 0;
-        }
-        boolean modified = setHalfLevel((halfLevels & 1) == 1);
-        modified |= setLevels(halfLevels / 2);
-        return modified;
+        return setHalfLevels(Math.max(getHalfLevels() + factor, 0));
     }
 
     /** @return The total points, taking levels into account. */
@@ -956,14 +1063,21 @@ public class Advantage extends ListRow implements HasSourceReference, Switchable
 
     /** @return The weapon list. */
     public List<WeaponStats> getWeapons() {
+        inflate();
         return Collections.unmodifiableList(mWeapons);
     }
 
+    @Override
+    public void writeCalculated(JsonWriter out) throws IOException {
+        out.name("adjusted_points").value(getAdjustedPoints()); //$NON-NLS-1$
+    }
+
     /**
      * @param weapons The weapons to set.
      * @return Whether it was modified.
      */
     public boolean setWeapons(List<WeaponStats> weapons) {
+        inflate();
         if (!mWeapons.equals(weapons)) {
             mWeapons = new ArrayList<>(weapons);
             for (WeaponStats weapon : mWeapons) {
@@ -21,15 +21,19 @@ import com.trollworks.toolkit.ui.widget.outline.OutlineModel;
 import com.trollworks.toolkit.utility.FileType;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /** A list of Advantages. */
 public class AdvantageList extends ListFile {
     /** The current version. */
-    public static final int    CURRENT_VERSION = 1;
+    public static final int          CURRENT_VERSION = 1;
     /** The XML tag for {@link AdvantageList}s. */
-    public static final String TAG_ROOT        = "advantage_list"; //$NON-NLS-1$
+    public static final String       TAG_ROOT        = "advantage_list"; //$NON-NLS-1$
     /** The extension for {@link AdvantageList}s. */
-    public static final String EXTENSION       = "adq"; //$NON-NLS-1$
+    public static final String       EXTENSION       = "adq"; //$NON-NLS-1$
+    private static final Set<String> ROW_TAGS        = new HashSet<>(Arrays.asList(Advantage.TAG_ADVANTAGE, Advantage.TAG_ADVANTAGE_CONTAINER));
 
     @Override
     public int getXMLTagVersion() {
@@ -51,6 +55,11 @@ public class AdvantageList extends ListFile {
         return GCSImages.getAdvantagesDocumentIcons();
     }
 
+    @Override
+    protected Set<String> getRowTags() {
+        return ROW_TAGS;
+    }
+
     @Override
     protected void loadList(XMLReader reader, LoadState state) throws IOException {
         OutlineModel model  = getModel();
@@ -67,4 +76,9 @@ public class AdvantageList extends ListFile {
             }
         } while (reader.withinMarker(marker));
     }
+
+    @Override
+    protected Advantage createRow(String type) {
+        return Advantage.create(this, type);
+    }
 }
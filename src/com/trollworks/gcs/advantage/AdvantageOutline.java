@@ -140,8 +140,8 @@ public class AdvantageOutline extends ListOutline implements Incrementable {
         ArrayList<RowUndo> undos = new ArrayList<RowUndo>();
         for (Advantage advantage : new FilteredIterator<Advantage>(getModel().getSelectionAsList(), Advantage.class)) {
             if (!advantage.canHaveChildren() && advantage.isLeveled()) {
-                RowUndo undo = new RowUndo(advantage);
-
+                // The levels and half level change together, so they are undone together
+                RowUndo undo = new RowUndo(advantage, Advantage::getHalfLevels, Advantage::setHalfLevels);
                 advantage.adjustLevel(1);
                 if (undo.finish()) {
                     undos.add(undo);
@@ -161,8 +161,7 @@ public class AdvantageOutline extends ListOutline implements Incrementable {
         for (Advantage advantage : new FilteredIterator<Advantage>(getModel().getSelectionAsList(), Advantage.class)) {
             if (!advantage.canHaveChildren() && advantage.isLeveled()) {
                 if (advantage.isLeveled()) {
-                    RowUndo undo = new RowUndo(advantage);
-
+                    RowUndo undo = new RowUndo(advantage, Advantage::getHalfLevels, Advantage::setHalfLevels);
                     advantage.adjustLevel(-1);
                     if (undo.finish()) {
                         undos.add(undo);
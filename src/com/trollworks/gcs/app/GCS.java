@@ -12,10 +12,12 @@
 package com.trollworks.gcs.app;
 
 import com.trollworks.gcs.advantage.AdvantageList;
+import com.trollworks.gcs.character.CharacterEngine;
 import com.trollworks.gcs.character.CharacterSheet;
 import com.trollworks.gcs.character.GURPSCharacter;
-import com.trollworks.gcs.character.PrerequisitesThread;
+import com.trollworks.gcs.character.SheetExporter;
 import com.trollworks.gcs.character.TextTemplate;
+import com.trollworks.gcs.common.DataFile;
 import com.trollworks.gcs.equipment.EquipmentList;
 import com.trollworks.gcs.library.LibraryFile;
 import com.trollworks.gcs.notes.NoteList;
@@ -24,6 +26,7 @@ import com.trollworks.gcs.skill.SkillList;
 import com.trollworks.gcs.spell.SpellList;
 import com.trollworks.gcs.template.Template;
 import com.trollworks.toolkit.annotation.Localize;
+import com.trollworks.toolkit.io.Log;
 import com.trollworks.toolkit.ui.App;
 import com.trollworks.toolkit.ui.Fonts;
 import com.trollworks.toolkit.ui.GraphicsUtilities;
@@ -35,6 +38,7 @@ import com.trollworks.toolkit.utility.FileType;
 import com.trollworks.toolkit.utility.LaunchProxy;
 import com.trollworks.toolkit.utility.Localization;
 import com.trollworks.toolkit.utility.PathUtils;
+import com.trollworks.toolkit.utility.Platform;
 import com.trollworks.toolkit.utility.Preferences;
 import com.trollworks.toolkit.utility.Timing;
 import com.trollworks.toolkit.utility.cmdline.CmdLine;
@@ -42,12 +46,27 @@ import com.trollworks.toolkit.utility.cmdline.CmdLineOption;
 import com.trollworks.toolkit.utility.text.Numbers;
 import com.trollworks.toolkit.utility.units.LengthUnits;
 
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import javax.swing.ToolTipManager;
 
@@ -106,6 +125,8 @@ public class GCS {
     @Localize(locale = "ru", value = "ФАЙЛ")
     @Localize(locale = "es", value = "Archivo")
     private static String TEXT_TEMPLATE_ARG;
+    @Localize("Create JSON versions of sheets specified on the command line, including the values calculated from them.")
+    private static String JSON_OPTION_DESCRIPTION;
     @Localize("Create PNG versions of sheets specified on the command line.")
     @Localize(locale = "de",
               value = "Erstelle PNG-Dateien von den auf der Kommandozeile angegebenen Charakterblättern.")
@@ -153,6 +174,8 @@ public class GCS {
     @Localize(locale = "ru", value = "  Создание PNG... ")
     @Localize(locale = "es", value = "  Generando archivo PNG... ")
     private static String CREATING_PNG;
+    @Localize("  Creating JSON... ")
+    private static String CREATING_JSON;
     @Localize("  ** ERROR ENCOUNTERED **")
     @Localize(locale = "de", value = "  ** FEHLER AUFGETRETEN **")
     @Localize(locale = "ru", value = "  ** ОБНАРУЖЕНА ОШИБКА **")
@@ -180,6 +203,18 @@ public class GCS {
     private static String INVALID_PAPER_MARGINS;
     @Localize("    Used text template file \"{0}\".")
     private static String TEMPLATE_USED;
+    @Localize("When generating PDF, PNG, JSON or text from the command line, load, calculate and export up to COUNT sheets at a time in parallel, print a timing and failure summary for each file when done, and exit with a non-zero status if any file failed. A COUNT of 0 uses one per processor.")
+    private static String BATCH_OPTION_DESCRIPTION;
+    @Localize("COUNT")
+    private static String BATCH_ARG;
+    @Localize("\nSummary:")
+    private static String SUMMARY;
+    @Localize("  {0}: loaded in {1}, exported in {2}")
+    private static String SUMMARY_SUCCESS;
+    @Localize("  {0}: FAILED ({1})")
+    private static String SUMMARY_FAILURE;
+    @Localize("{0} of {1} files failed.")
+    private static String FAILURE_COUNT;
 
     static {
         System.setProperty("locale.file", ".gcs_language"); //$NON-NLS-1$ //$NON-NLS-2$
@@ -190,8 +225,10 @@ public class GCS {
     private static final CmdLineOption TEXT_OPTION          = new CmdLineOption(TEXT_OPTION_DESCRIPTION, null, "text");                                //$NON-NLS-1$
     private static final CmdLineOption TEXT_TEMPLATE_OPTION = new CmdLineOption(TEXT_TEMPLATE_OPTION_DESCRIPTION, TEXT_TEMPLATE_ARG, "text_template"); //$NON-NLS-1$
     private static final CmdLineOption PNG_OPTION           = new CmdLineOption(PNG_OPTION_DESCRIPTION, null, FileType.PNG_EXTENSION);
+    private static final CmdLineOption JSON_OPTION          = new CmdLineOption(JSON_OPTION_DESCRIPTION, null, DataFile.JSON_EXTENSION);
     private static final CmdLineOption SIZE_OPTION          = new CmdLineOption(SIZE_OPTION_DESCRIPTION, "SIZE", "paper");                             //$NON-NLS-1$ //$NON-NLS-2$
     private static final CmdLineOption MARGIN_OPTION        = new CmdLineOption(MARGIN_OPTION_DESCRIPTION, "MARGINS", "margins");                      //$NON-NLS-1$ //$NON-NLS-2$
+    private static final CmdLineOption BATCH_OPTION         = new CmdLineOption(BATCH_OPTION_DESCRIPTION, BATCH_ARG, "batch");                         //$NON-NLS-1$
 
     /**
      * The main entry point for the character sheet.
@@ -202,20 +239,21 @@ public class GCS {
         App.setup(GCS.class);
         Dice.setAssumedSideCount(6);
         CmdLine cmdLine = new CmdLine();
-        cmdLine.addOptions(TEXT_OPTION, TEXT_TEMPLATE_OPTION, PDF_OPTION, PNG_OPTION, SIZE_OPTION, MARGIN_OPTION);
+        cmdLine.addOptions(TEXT_OPTION, TEXT_TEMPLATE_OPTION, PDF_OPTION, PNG_OPTION, JSON_OPTION, SIZE_OPTION, MARGIN_OPTION, BATCH_OPTION);
         cmdLine.processArguments(args);
-        if (cmdLine.isOptionUsed(TEXT_OPTION) || cmdLine.isOptionUsed(PDF_OPTION) || cmdLine.isOptionUsed(PNG_OPTION)) {
+        if (cmdLine.isOptionUsed(TEXT_OPTION) || cmdLine.isOptionUsed(PDF_OPTION) || cmdLine.isOptionUsed(PNG_OPTION) || cmdLine.isOptionUsed(JSON_OPTION)) {
             System.setProperty("java.awt.headless", Boolean.TRUE.toString()); //$NON-NLS-1$
             initialize();
             Timing timing = new Timing();
             System.out.println(BundleInfo.getDefault().getAppBanner());
             System.out.println();
-            if (convert(cmdLine) < 1) {
+            Conversion conversion = convert(cmdLine);
+            if (conversion.mCount < 1 && conversion.mFailures.isEmpty()) {
                 System.out.println(NO_FILES_TO_PROCESS);
                 System.exit(1);
             }
             System.out.println(MessageFormat.format(FINISHED, timing));
-            System.exit(0);
+            System.exit(cmdLine.isOptionUsed(BATCH_OPTION) && !conversion.mFailures.isEmpty() ? 1 : 0);
         } else {
             LaunchProxy.configure(cmdLine.getArgumentsAsFiles());
             if (GraphicsUtilities.areGraphicsSafeToUse()) {
@@ -228,7 +266,8 @@ public class GCS {
         }
     }
 
-    private static void initialize() {
+    /** Sets up the preferences, fonts and file types. Also used by the development tools. */
+    static void initialize() {
         GraphicsUtilities.configureStandardUI();
         Preferences.setPreferenceFile("gcs.pref"); //$NON-NLS-1$
         GCSFonts.register();
@@ -254,6 +293,23 @@ public class GCS {
         return path.resolve("Library"); //$NON-NLS-1$
     }
 
+    /**
+     * @return The path to the per-user directory for files GCS can make again from the library,
+     *         which may be deleted at any time.
+     */
+    public static Path getCachePath() {
+        Path home = Paths.get(System.getProperty("user.home")); //$NON-NLS-1$
+        if (Platform.isMacintosh()) {
+            return home.resolve("Library/Caches/GCS"); //$NON-NLS-1$
+        }
+        if (Platform.isWindows()) {
+            String local = System.getenv("LOCALAPPDATA"); //$NON-NLS-1$
+            return (local != null ? Paths.get(local) : home.resolve("AppData/Local")).resolve("GCS/Cache"); //$NON-NLS-1$ //$NON-NLS-2$
+        }
+        String cache = System.getenv("XDG_CACHE_HOME"); //$NON-NLS-1$
+        return (cache != null && !cache.isEmpty() ? Paths.get(cache) : home.resolve(".cache")).resolve("gcs"); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+
     /**
      * Registers the file types the app can open.
      *
@@ -276,101 +332,106 @@ public class GCS {
         FileType.registerPng(null, null, false, false);
     }
 
-    private static int convert(CmdLine cmdLine) {
-        boolean text  = cmdLine.isOptionUsed(GCS.TEXT_OPTION);
-        boolean pdf   = cmdLine.isOptionUsed(GCS.PDF_OPTION);
-        boolean png   = cmdLine.isOptionUsed(GCS.PNG_OPTION);
-        int     count = 0;
+    private static Conversion convert(CmdLine cmdLine) {
+        Conversion conversion = new Conversion();
+        conversion.mText = cmdLine.isOptionUsed(GCS.TEXT_OPTION);
+        conversion.mPDF  = cmdLine.isOptionUsed(GCS.PDF_OPTION);
+        conversion.mPNG  = cmdLine.isOptionUsed(GCS.PNG_OPTION);
+        conversion.mJSON = cmdLine.isOptionUsed(GCS.JSON_OPTION);
 
-        if (text || pdf || png) {
-            double[] paperSize          = getPaperSize(cmdLine);
-            double[] margins            = getMargins(cmdLine);
-            Timing   timing             = new Timing();
-            String   textTemplateOption = cmdLine.getOptionArgument(GCS.TEXT_TEMPLATE_OPTION);
-            File     textTemplate       = null;
+        if (conversion.mText || conversion.mPDF || conversion.mPNG || conversion.mJSON) {
+            String          textTemplateOption = cmdLine.getOptionArgument(GCS.TEXT_TEMPLATE_OPTION);
+            ArrayList<File> files              = new ArrayList<>();
 
+            conversion.mPaperSize = getPaperSize(cmdLine);
+            conversion.mMargins   = getMargins(cmdLine);
             if (textTemplateOption != null) {
-                textTemplate = new File(textTemplateOption);
+                conversion.mTextTemplate = new File(textTemplateOption);
             }
-            GraphicsUtilities.setHeadlessPrintMode(true);
             for (File file : cmdLine.getArgumentsAsFiles()) {
                 if (GURPSCharacter.EXTENSION.equals(PathUtils.getExtension(file.getName())) && file.canRead()) {
+                    files.add(file);
+                }
+            }
+            GraphicsUtilities.setHeadlessPrintMode(true);
+            if (cmdLine.isOptionUsed(GCS.BATCH_OPTION)) {
+                convertInBatch(conversion, files, getWorkerCount(cmdLine));
+            } else {
+                Timing timing = new Timing();
+                for (File file : files) {
                     System.out.print(MessageFormat.format(LOADING, file));
                     System.out.flush();
                     timing.reset();
+                    conversion.export(file, timing);
+                }
+            }
+            GraphicsUtilities.setHeadlessPrintMode(false);
+        }
+        return conversion;
+    }
+
+    /**
+     * Converts the characters on a pool of worker threads. Each worker loads its character,
+     * calculates it, including its prerequisites, lays out a detached sheet for it and exports it
+     * through a {@link SheetExporter}, independently of the others. The results are reported in the
+     * order the files were given.
+     */
+    private static void convertInBatch(Conversion conversion, List<File> files, int workers) {
+        SheetExporter           exporter = new SheetExporter(conversion.getFormats(), workers, conversion.mTextTemplate);
+        ExecutorService         pool     = Executors.newFixedThreadPool(workers);
+        List<Future<Converted>> futures  = new ArrayList<>();
+        HashMap<File, String[]> times    = new HashMap<>();
+        try {
+            for (File file : files) {
+                futures.add(pool.submit(() -> conversion.convert(file, exporter)));
+            }
+            for (int i = 0; i < files.size(); i++) {
+                File file = files.get(i);
+                System.out.print(MessageFormat.format(LOADING, file));
+                System.out.flush();
+                try {
+                    Converted converted;
                     try {
-                        GURPSCharacter      character = new GURPSCharacter(file);
-                        CharacterSheet      sheet     = new CharacterSheet(character);
-                        PrerequisitesThread prereqs   = new PrerequisitesThread(sheet);
-                        PrintManager        settings  = character.getPageSettings();
-                        File                output;
-                        boolean             success;
-
-                        sheet.addNotify(); // Required to allow layout to work
-                        sheet.rebuild();
-                        prereqs.start();
-                        PrerequisitesThread.waitForProcessingToFinish(character);
-
-                        if (paperSize != null && settings != null) {
-                            settings.setPageSize(paperSize, LengthUnits.IN);
-                        }
-                        if (margins != null && settings != null) {
-                            settings.setPageMargins(margins, LengthUnits.IN);
-                        }
-                        sheet.rebuild();
-                        sheet.setSize(sheet.getPreferredSize());
-
-                        System.out.println(timing);
-                        if (text) {
-                            System.out.print(CREATING_TEXT);
-                            System.out.flush();
-                            textTemplate = TextTemplate.resolveTextTemplate(textTemplate);
-                            output       = new File(file.getParentFile(), PathUtils.enforceExtension(PathUtils.getLeafName(file.getName(), false), PathUtils.getExtension(textTemplate.getName())));
-                            timing.reset();
-                            success = new TextTemplate(sheet).export(output, textTemplate);
-                            System.out.println(timing);
-                            System.out.println(MessageFormat.format(TEMPLATE_USED, PathUtils.getFullPath(textTemplate)));
-                            if (success) {
-                                System.out.println(MessageFormat.format(CREATED, output));
-                                count++;
-                            }
-                        }
-                        if (pdf) {
-                            System.out.print(CREATING_PDF);
-                            System.out.flush();
-                            output = new File(file.getParentFile(), PathUtils.enforceExtension(PathUtils.getLeafName(file.getName(), false), FileType.PDF_EXTENSION));
-                            timing.reset();
-                            success = sheet.saveAsPDF(output);
-                            System.out.println(timing);
-                            if (success) {
-                                System.out.println(MessageFormat.format(CREATED, output));
-                                count++;
-                            }
-                        }
-                        if (png) {
-                            ArrayList<File> result = new ArrayList<>();
-
-                            System.out.print(CREATING_PNG);
-                            System.out.flush();
-                            output = new File(file.getParentFile(), PathUtils.enforceExtension(PathUtils.getLeafName(file.getName(), false), FileType.PNG_EXTENSION));
-                            timing.reset();
-                            success = sheet.saveAsPNG(output, result);
-                            System.out.println(timing);
-                            for (File one : result) {
-                                System.out.println(MessageFormat.format(CREATED, one));
-                                count++;
-                            }
-                        }
-                        sheet.dispose();
-                    } catch (Exception exception) {
-                        exception.printStackTrace();
-                        System.out.println(PROCESSING_FAILED);
+                        converted = futures.get(i).get();
+                    } catch (ExecutionException exception) {
+                        Throwable cause = exception.getCause();
+                        throw cause instanceof Exception ? (Exception) cause : exception;
+                    }
+                    System.out.println(converted.mLoadTime);
+                    for (File one : converted.mFiles) {
+                        System.out.println(MessageFormat.format(CREATED, one));
+                        conversion.mCount++;
                     }
+                    times.put(file, new String[] { converted.mLoadTime, converted.mExportTime });
+                } catch (Exception exception) {
+                    exception.printStackTrace(System.err);
+                    System.out.println(PROCESSING_FAILED);
+                    conversion.mFailures.put(file, exception);
                 }
             }
-            GraphicsUtilities.setHeadlessPrintMode(false);
+        } finally {
+            pool.shutdownNow();
         }
-        return count;
+        System.out.println(SUMMARY);
+        for (File file : files) {
+            Exception failure = conversion.mFailures.get(file);
+            if (failure != null) {
+                System.out.println(MessageFormat.format(SUMMARY_FAILURE, file, failure));
+            } else {
+                String[] time = times.get(file);
+                if (time != null) {
+                    System.out.println(MessageFormat.format(SUMMARY_SUCCESS, file, time[0], time[1]));
+                }
+            }
+        }
+        if (!conversion.mFailures.isEmpty()) {
+            System.out.println(MessageFormat.format(FAILURE_COUNT, Integer.valueOf(conversion.mFailures.size()), Integer.valueOf(files.size())));
+        }
+    }
+
+    private static int getWorkerCount(CmdLine cmdLine) {
+        int count = Numbers.extractInteger(cmdLine.getOptionArgument(GCS.BATCH_OPTION), 0, false);
+        return count > 0 ? count : Runtime.getRuntime().availableProcessors();
     }
 
     private static double[] getPaperSize(CmdLine cmdLine) {
@@ -428,4 +489,179 @@ public class GCS {
         }
         return null;
     }
+
+    /** The outcome of converting one character in a batch run. */
+    private static class Converted {
+        String     mLoadTime;
+        String     mExportTime;
+        List<File> mFiles;
+    }
+
+    /** The settings for, and outcome of, a command-line conversion. */
+    private static class Conversion {
+        boolean                        mText;
+        boolean                        mPDF;
+        boolean                        mPNG;
+        boolean                        mJSON;
+        double[]                       mPaperSize;
+        double[]                       mMargins;
+        File                           mTextTemplate;
+        int                            mCount;
+        LinkedHashMap<File, Exception> mFailures = new LinkedHashMap<>();
+
+        /** @return The formats to export in. */
+        Set<SheetExporter.Format> getFormats() {
+            EnumSet<SheetExporter.Format> formats = EnumSet.noneOf(SheetExporter.Format.class);
+            if (mText) {
+                formats.add(SheetExporter.Format.TEXT);
+            }
+            if (mPDF) {
+                formats.add(SheetExporter.Format.PDF);
+            }
+            if (mPNG) {
+                formats.add(SheetExporter.Format.PNG);
+            }
+            if (mJSON) {
+                formats.add(SheetExporter.Format.JSON);
+            }
+            return formats;
+        }
+
+        /**
+         * Loads a character, lays out a sheet for it and exports it in each of the requested
+         * formats, one after the other on the calling thread.
+         *
+         * @param file   The file to load the character from.
+         * @param timing The timing that was started when loading began.
+         */
+        void export(File file, Timing timing) {
+            try {
+                GURPSCharacter  character = new GURPSCharacter(file);
+                CharacterEngine engine    = new CharacterEngine(character);
+                CharacterSheet  sheet     = new CharacterSheet(engine, true);
+                PrintManager    settings  = character.getPageSettings();
+                File            output;
+                boolean         success;
+
+                sheet.addNotify(); // Required to allow layout to work
+                sheet.rebuild();
+                engine.calculate();
+
+                if (mPaperSize != null && settings != null) {
+                    settings.setPageSize(mPaperSize, LengthUnits.IN);
+                }
+                if (mMargins != null && settings != null) {
+                    settings.setPageMargins(mMargins, LengthUnits.IN);
+                }
+                sheet.rebuild();
+                sheet.setSize(sheet.getPreferredSize());
+
+                System.out.println(timing);
+                if (mText) {
+                    System.out.print(CREATING_TEXT);
+                    System.out.flush();
+                    mTextTemplate = TextTemplate.resolveTextTemplate(mTextTemplate);
+                    output        = new File(file.getParentFile(), PathUtils.enforceExtension(PathUtils.getLeafName(file.getName(), false), PathUtils.getExtension(mTextTemplate.getName())));
+                    timing.reset();
+                    success = new TextTemplate(sheet).export(output, mTextTemplate);
+                    System.out.println(timing);
+                    System.out.println(MessageFormat.format(TEMPLATE_USED, PathUtils.getFullPath(mTextTemplate)));
+                    if (success) {
+                        System.out.println(MessageFormat.format(CREATED, output));
+                        mCount++;
+                    }
+                }
+                if (mPDF) {
+                    System.out.print(CREATING_PDF);
+                    System.out.flush();
+                    output = new File(file.getParentFile(), PathUtils.enforceExtension(PathUtils.getLeafName(file.getName(), false), FileType.PDF_EXTENSION));
+                    timing.reset();
+                    success = sheet.saveAsPDF(output);
+                    System.out.println(timing);
+                    if (success) {
+                        System.out.println(MessageFormat.format(CREATED, output));
+                        mCount++;
+                    }
+                }
+                if (mPNG) {
+                    ArrayList<File> result = new ArrayList<>();
+
+                    System.out.print(CREATING_PNG);
+                    System.out.flush();
+                    output = new File(file.getParentFile(), PathUtils.enforceExtension(PathUtils.getLeafName(file.getName(), false), FileType.PNG_EXTENSION));
+                    timing.reset();
+                    success = sheet.saveAsPNG(output, result);
+                    System.out.println(timing);
+                    for (File one : result) {
+                        System.out.println(MessageFormat.format(CREATED, one));
+                        mCount++;
+                    }
+                }
+                if (mJSON) {
+                    System.out.print(CREATING_JSON);
+                    System.out.flush();
+                    output = new File(file.getParentFile(), PathUtils.enforceExtension(PathUtils.getLeafName(file.getName(), false), DataFile.JSON_EXTENSION));
+                    timing.reset();
+                    try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(output), StandardCharsets.UTF_8))) {
+                        character.saveJSON(out);
+                        success = true;
+                    } catch (IOException exception) {
+                        Log.error(exception);
+                        success = false;
+                    }
+                    System.out.println(timing);
+                    if (success) {
+                        System.out.println(MessageFormat.format(CREATED, output));
+                        mCount++;
+                    }
+                }
+                sheet.dispose();
+                engine.dispose();
+            } catch (Exception exception) {
+                exception.printStackTrace();
+                System.out.println(PROCESSING_FAILED);
+            }
+        }
+
+        /**
+         * Loads, calculates and exports a character for a batch run. Safe to call from several
+         * threads at once.
+         *
+         * @param file     The file to load the character from.
+         * @param exporter The {@link SheetExporter} to export with.
+         * @return The outcome.
+         */
+        Converted convert(File file, SheetExporter exporter) throws Exception {
+            Converted       converted = new Converted();
+            Timing          timing    = new Timing();
+            GURPSCharacter  character = new GURPSCharacter(file);
+            CharacterEngine engine    = new CharacterEngine(character);
+            try {
+                engine.calculate();
+                converted.mLoadTime = timing.toString();
+                timing.reset();
+                applyPageSettings(character);
+                CharacterSheet sheet = SheetExporter.createDetachedSheet(engine);
+                try {
+                    converted.mFiles = exporter.export(sheet, file.getParentFile(), PathUtils.getLeafName(file.getName(), false));
+                } finally {
+                    sheet.dispose();
+                }
+                converted.mExportTime = timing.toString();
+            } finally {
+                engine.dispose();
+            }
+            return converted;
+        }
+
+        private void applyPageSettings(GURPSCharacter character) {
+            PrintManager settings = character.getPageSettings();
+            if (mPaperSize != null && settings != null) {
+                settings.setPageSize(mPaperSize, LengthUnits.IN);
+            }
+            if (mMargins != null && settings != null) {
+                settings.setPageMargins(mMargins, LengthUnits.IN);
+            }
+        }
+    }
 }
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.app;
+
+import com.trollworks.gcs.advantage.AdvantageList;
+import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.equipment.EquipmentList;
+import com.trollworks.gcs.library.LibraryFile;
+import com.trollworks.gcs.notes.NoteList;
+import com.trollworks.gcs.skill.SkillList;
+import com.trollworks.gcs.spell.SpellList;
+import com.trollworks.gcs.template.Template;
+import com.trollworks.toolkit.ui.App;
+import com.trollworks.toolkit.utility.PathUtils;
+import com.trollworks.toolkit.utility.text.Numbers;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Development tool that loads every data file found in a set of files and directories through
+ * {@link DataFile#load(File)}, reporting the best time of several passes and how much memory the
+ * loaded files hold on to. Not part of the application itself.
+ * <p>
+ * Arguments: the number of timed passes, followed by the files and directories to load. The
+ * library is loaded if no files or directories are given.
+ */
+public class LoadBenchmark {
+    @SuppressWarnings("nls")
+    public static void main(String[] args) {
+        System.setProperty("java.awt.headless", Boolean.TRUE.toString());
+        App.setup(GCS.class);
+        GCS.initialize();
+        int        passes = args.length > 0 ? Math.max(Numbers.extractInteger(args[0], 1, false), 1) : 1;
+        List<File> files  = new ArrayList<>();
+        List<File> roots  = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            roots.add(new File(args[i]));
+        }
+        if (roots.isEmpty()) {
+            roots.add(GCS.getLibraryRootPath().toFile());
+        }
+        try {
+            for (File root : roots) {
+                try (Stream<Path> stream = Files.walk(root.toPath())) {
+                    stream.filter(path -> Files.isRegularFile(path) && createDataFile(path.toFile()) != null).forEach(path -> files.add(path.toFile()));
+                }
+            }
+            // A warm-up pass weeds out the files that can't be loaded at all
+            long bytes = 0;
+            for (File file : new ArrayList<>(files)) {
+                try {
+                    createDataFile(file).load(file);
+                    bytes += file.length();
+                } catch (Exception exception) {
+                    System.out.println("Skipped \"" + file + "\": " + exception.getMessage());
+                    files.remove(file);
+                }
+            }
+            long           best   = Long.MAX_VALUE;
+            List<DataFile> loaded = new ArrayList<>();
+            long           before = usedMemory();
+            for (int i = 0; i < passes; i++) {
+                loaded.clear();
+                long start = System.nanoTime();
+                for (File file : files) {
+                    DataFile dataFile = createDataFile(file);
+                    dataFile.load(file);
+                    loaded.add(dataFile);
+                }
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            long   retained = usedMemory() - before;
+            double millis   = best / 1000000.0;
+            System.out.println(String.format("Loaded %d files (%d bytes), best of %d passes: %.1f ms, %.2f MB/s", Integer.valueOf(loaded.size()), Long.valueOf(bytes), Integer.valueOf(passes), Double.valueOf(millis), Double.valueOf(bytes / (1024.0 * 1024.0) / (millis / 1000.0))));
+            System.out.println(String.format("Memory held by the loaded files: %.1f MB", Double.valueOf(retained / (1024.0 * 1024.0))));
+        } catch (Exception exception) {
+            exception.printStackTrace(System.err);
+            System.exit(1);
+        }
+        System.exit(0);
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static DataFile createDataFile(File file) {
+        switch (PathUtils.getExtension(file.getName())) {
+        case AdvantageList.EXTENSION:
+            return new AdvantageList();
+        case EquipmentList.EXTENSION:
+            return new EquipmentList();
+        case SkillList.EXTENSION:
+            return new SkillList();
+        case SpellList.EXTENSION:
+            return new SpellList();
+        case NoteList.EXTENSION:
+            return new NoteList();
+        case LibraryFile.EXTENSION:
+            return new LibraryFile();
+        case Template.EXTENSION:
+            return new Template();
+        case GURPSCharacter.EXTENSION:
+            return new GURPSCharacter();
+        default:
+            return null;
+        }
+    }
+}
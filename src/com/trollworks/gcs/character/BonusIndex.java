@@ -0,0 +1,240 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import com.trollworks.gcs.criteria.StringCriteria;
+import com.trollworks.gcs.feature.Bonus;
+import com.trollworks.gcs.feature.BonusToolTip;
+import com.trollworks.gcs.feature.CostReduction;
+import com.trollworks.gcs.feature.Feature;
+import com.trollworks.gcs.feature.SkillBonus;
+import com.trollworks.gcs.feature.SpellBonus;
+import com.trollworks.gcs.feature.WeaponBonus;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * A compiled, read-only form of a character's feature map. Built once each time the feature map
+ * changes, it holds the pre-summed unconditional bonuses for each feature ID and buckets the bonuses
+ * that are qualified by name so that only the plausible candidates need to be matched.
+ */
+class BonusIndex {
+    /** An index with no bonuses in it. */
+    static final BonusIndex        EMPTY = new BonusIndex(Collections.emptyMap());
+    private HashMap<String, Entry> mEntries;
+
+    /**
+     * @param id A feature ID or qualifier, in any case.
+     * @return The lowercase form of the ID.
+     */
+    static String key(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+
+    /** @param map The feature map to compile. */
+    BonusIndex(Map<String, ArrayList<Feature>> map) {
+        mEntries = new HashMap<>(map.size() * 2);
+        for (Map.Entry<String, ArrayList<Feature>> one : map.entrySet()) {
+            mEntries.put(key(one.getKey()), new Entry(one.getValue()));
+        }
+    }
+
+    /**
+     * @param id The cost reduction ID to search for.
+     * @return The cost reduction, as a percentage.
+     */
+    int getCostReduction(String id) {
+        Entry entry = mEntries.get(key(id));
+        return entry != null ? entry.mCostReduction : 0;
+    }
+
+    /**
+     * @param id      The feature ID to search for.
+     * @param toolTip The tooltip to add the contributing bonuses to. May be <code>null</code>.
+     * @return The bonus.
+     */
+    int getIntegerBonus(String id, BonusToolTip toolTip) {
+        Entry entry = mEntries.get(key(id));
+        if (entry == null) {
+            return 0;
+        }
+        if (toolTip != null) {
+            toolTip.addAll(entry.mBonuses);
+        }
+        return entry.mIntegerTotal;
+    }
+
+    /**
+     * @param id The feature ID to search for.
+     * @return The bonus.
+     */
+    double getDoubleBonus(String id) {
+        Entry entry = mEntries.get(key(id));
+        return entry != null ? entry.mDoubleTotal : 0;
+    }
+
+    /**
+     * @param id                      The feature ID to search for.
+     * @param nameQualifier           The name qualifier.
+     * @param specializationQualifier The specialization qualifier.
+     * @param categoryQualifier       The categories qualifier.
+     * @param toolTip                 The tooltip to add the contributing bonuses to. May be
+     *                                <code>null</code>.
+     * @return The bonus.
+     */
+    int getSkillComparedIntegerBonus(String id, String nameQualifier, String specializationQualifier, Set<String> categoryQualifier, BonusToolTip toolTip) {
+        Entry entry = mEntries.get(key(id));
+        if (entry == null || entry.mSkillBonuses == null) {
+            return 0;
+        }
+        int total = 0;
+        for (List<SkillBonus> list : entry.mSkillBonuses.getCandidates(nameQualifier)) {
+            for (SkillBonus bonus : list) {
+                if (bonus.getNameCriteria().matches(nameQualifier) && bonus.getSpecializationCriteria().matches(specializationQualifier) && bonus.matchesCategories(categoryQualifier)) {
+                    total += bonus.getAmount().getIntegerAdjustedAmount();
+                    if (toolTip != null) {
+                        toolTip.add(bonus);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param id        The feature ID to search for.
+     * @param qualifier The qualifier.
+     * @param toolTip   The tooltip to add the contributing bonuses to. May be <code>null</code>.
+     * @return The bonus.
+     */
+    int getSpellComparedIntegerBonus(String id, String qualifier, BonusToolTip toolTip) {
+        Entry entry = mEntries.get(key(id));
+        if (entry == null || entry.mSpellBonuses == null) {
+            return 0;
+        }
+        int total = 0;
+        for (List<SpellBonus> list : entry.mSpellBonuses.getCandidates(qualifier)) {
+            for (SpellBonus bonus : list) {
+                if (bonus.getNameCriteria().matches(qualifier)) {
+                    total += bonus.getAmount().getIntegerAdjustedAmount();
+                    if (toolTip != null) {
+                        toolTip.add(bonus);
+                    }
+                }
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @param id                      The feature ID to search for.
+     * @param nameQualifier           The name qualifier.
+     * @param specializationQualifier The specialization qualifier.
+     * @param relativeLevel           The best relative skill level for the qualifiers.
+     * @param bonuses                 The list to add the matching bonuses to.
+     */
+    void collectWeaponBonuses(String id, String nameQualifier, String specializationQualifier, int relativeLevel, List<WeaponBonus> bonuses) {
+        Entry entry = mEntries.get(key(id));
+        if (entry != null && entry.mWeaponBonuses != null) {
+            for (List<WeaponBonus> list : entry.mWeaponBonuses.getCandidates(nameQualifier)) {
+                for (WeaponBonus bonus : list) {
+                    if (bonus.getNameCriteria().matches(nameQualifier) && bonus.getSpecializationCriteria().matches(specializationQualifier) && bonus.getLevelCriteria().matches(relativeLevel)) {
+                        bonuses.add(bonus);
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        int                      mIntegerTotal;
+        double                   mDoubleTotal;
+        int                      mCostReduction;
+        ArrayList<Bonus>         mBonuses;
+        NameBuckets<SkillBonus>  mSkillBonuses;
+        NameBuckets<SpellBonus>  mSpellBonuses;
+        NameBuckets<WeaponBonus> mWeaponBonuses;
+
+        Entry(List<Feature> features) {
+            mBonuses = new ArrayList<>();
+            for (Feature feature : features) {
+                if (feature instanceof CostReduction) {
+                    mCostReduction += ((CostReduction) feature).getPercentage();
+                } else if (feature instanceof WeaponBonus) {
+                    WeaponBonus bonus = (WeaponBonus) feature;
+                    if (mWeaponBonuses == null) {
+                        mWeaponBonuses = new NameBuckets<>();
+                    }
+                    mWeaponBonuses.add(bonus.getNameCriteria(), bonus);
+                } else if (feature instanceof Bonus) {
+                    Bonus bonus = (Bonus) feature;
+                    mIntegerTotal += bonus.getAmount().getIntegerAdjustedAmount();
+                    mDoubleTotal  += bonus.getAmount().getAdjustedAmount();
+                    mBonuses.add(bonus);
+                    if (bonus instanceof SkillBonus) {
+                        if (mSkillBonuses == null) {
+                            mSkillBonuses = new NameBuckets<>();
+                        }
+                        mSkillBonuses.add(((SkillBonus) bonus).getNameCriteria(), (SkillBonus) bonus);
+                    } else if (bonus instanceof SpellBonus) {
+                        if (mSpellBonuses == null) {
+                            mSpellBonuses = new NameBuckets<>();
+                        }
+                        mSpellBonuses.add(((SpellBonus) bonus).getNameCriteria(), (SpellBonus) bonus);
+                    }
+                }
+            }
+            if (mCostReduction > 80) {
+                mCostReduction = 80;
+            }
+            mBonuses.trimToSize();
+        }
+    }
+
+    /**
+     * Bonuses whose name criteria is an exact match are bucketed by their qualifier, so that only
+     * the bucket for the name being looked up and the bonuses with any other kind of name criteria
+     * need to be examined.
+     */
+    private static class NameBuckets<T extends Bonus> {
+        private HashMap<String, List<T>> mExact = new HashMap<>();
+        private List<T>                  mOther = new ArrayList<>();
+
+        void add(StringCriteria criteria, T bonus) {
+            if (criteria.isTypeIs()) {
+                mExact.computeIfAbsent(key(criteria.getQualifier()), k -> new ArrayList<>()).add(bonus);
+            } else {
+                mOther.add(bonus);
+            }
+        }
+
+        List<List<T>> getCandidates(String name) {
+            List<T> exact = mExact.isEmpty() || name == null ? null : mExact.get(key(name));
+            if (exact == null) {
+                return Collections.singletonList(mOther);
+            }
+            if (mOther.isEmpty()) {
+                return Collections.singletonList(exact);
+            }
+            List<List<T>> candidates = new ArrayList<>(2);
+            candidates.add(exact);
+            candidates.add(mOther);
+            return candidates;
+        }
+    }
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import com.trollworks.gcs.advantage.Advantage;
+import com.trollworks.gcs.equipment.Equipment;
+import com.trollworks.gcs.skill.SkillDefault;
+import com.trollworks.gcs.skill.SkillDefaultType;
+import com.trollworks.gcs.weapon.MeleeWeaponStats;
+import com.trollworks.gcs.weapon.WeaponStats;
+import com.trollworks.gcs.widgets.outline.ListRow;
+import com.trollworks.toolkit.annotation.Localize;
+import com.trollworks.toolkit.utility.Localization;
+import com.trollworks.toolkit.utility.undo.StdUndoManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Calculates everything about a {@link GURPSCharacter} that doesn't depend upon how it is
+ * displayed: its feature map, the state of each row's prerequisites, its point totals and the
+ * weapons it has available. Nothing here requires a {@link CharacterSheet} or any other user
+ * interface, so characters can be processed this way in bulk; a {@link CharacterSheet} is simply
+ * one more consumer of the results.
+ * <p>
+ * A character has at most one engine at a time, which owns all of the background processing done
+ * for it. Whoever creates the engine is responsible for disposing of it.
+ */
+public class CharacterEngine {
+    @Localize("Natural")
+    @Localize(locale = "de", value = "Angeboren")
+    @Localize(locale = "ru", value = "Природное")
+    @Localize(locale = "es", value = "Natural")
+    private static String NATURAL;
+    @Localize("Punch")
+    @Localize(locale = "de", value = "Schlag")
+    @Localize(locale = "ru", value = "Удар")
+    @Localize(locale = "es", value = "Puñetazo")
+    private static String PUNCH;
+    @Localize("Kick")
+    @Localize(locale = "de", value = "Tritt")
+    @Localize(locale = "ru", value = "Пинок")
+    @Localize(locale = "es", value = "Patada")
+    private static String KICK;
+    @Localize("Kick w/Boots")
+    @Localize(locale = "de", value = "Tritt mit Schuh")
+    @Localize(locale = "ru", value = "Пинок (ботинком)")
+    @Localize(locale = "es", value = "Patada con botas")
+    private static String BOOTS;
+
+    static {
+        Localization.initialize();
+    }
+
+    private static final String                                   BOXING_SKILL_NAME   = "Boxing"; //$NON-NLS-1$
+    private static final String                                   KARATE_SKILL_NAME   = "Karate"; //$NON-NLS-1$
+    private static final String                                   BRAWLING_SKILL_NAME = "Brawling"; //$NON-NLS-1$
+    private static final HashMap<GURPSCharacter, CharacterEngine> ENGINES             = new HashMap<>();
+    private GURPSCharacter                                        mCharacter;
+    private PrerequisitesUpdater                                  mPrereqs;
+
+    /**
+     * @param character The character to look up.
+     * @return The engine for the character, or <code>null</code> if it doesn't have one.
+     */
+    public static CharacterEngine getEngine(GURPSCharacter character) {
+        synchronized (ENGINES) {
+            return ENGINES.get(character);
+        }
+    }
+
+    /**
+     * Creates a new {@link CharacterEngine} for processing a character without displaying it for
+     * editing. Results are applied by the thread that calls {@link #calculate()} or
+     * {@link #waitForProcessingToFinish()}, which should be the only thread using the character.
+     *
+     * @param character The character to work on.
+     */
+    public CharacterEngine(GURPSCharacter character) {
+        this(character, false);
+    }
+
+    /**
+     * Creates a new {@link CharacterEngine}. Once {@link #calculate()} has been called, the
+     * character will continue to be kept up to date as it changes, until {@link #dispose()} is
+     * called.
+     *
+     * @param character   The character to work on.
+     * @param interactive Whether the character is being displayed for editing. If so, results are
+     *                    applied on the event dispatch thread and the reasons prerequisites are not
+     *                    satisfied are kept for display.
+     * @throws IllegalStateException if the character already has an engine.
+     */
+    public CharacterEngine(GURPSCharacter character, boolean interactive) {
+        synchronized (ENGINES) {
+            if (ENGINES.containsKey(character)) {
+                throw new IllegalStateException("Character already has an engine"); //$NON-NLS-1$
+            }
+            ENGINES.put(character, this);
+        }
+        mCharacter = character;
+        mPrereqs   = new PrerequisitesUpdater(character, interactive);
+    }
+
+    /** @return The character being worked on. */
+    public GURPSCharacter getCharacter() {
+        return mCharacter;
+    }
+
+    /**
+     * Brings the character's feature map, the prerequisite state of its rows and the values that
+     * depend on them up to date, returning once that has been done.
+     */
+    public void calculate() {
+        mPrereqs.start();
+        mPrereqs.waitForProcessingToFinish();
+    }
+
+    /** Returns only when all pending updates have been applied to the character. */
+    public void waitForProcessingToFinish() {
+        mPrereqs.waitForProcessingToFinish();
+    }
+
+    /**
+     * Requests a full update, for use after changes that aren't announced by notifications, such as
+     * replacing a row's features or prerequisites.
+     */
+    public void markForUpdate() {
+        mPrereqs.markForUpdate();
+    }
+
+    /**
+     * @param listener Called whenever the satisfied state of any row changes, on the thread results
+     *                 are applied on. May be <code>null</code>.
+     */
+    public void setStateListener(Runnable listener) {
+        mPrereqs.setStateListener(listener);
+    }
+
+    /** @return The notification target that must remain attached to the character. */
+    PrerequisitesUpdater getPrerequisitesUpdater() {
+        return mPrereqs;
+    }
+
+    /** Stops keeping the character up to date. */
+    public void dispose() {
+        mPrereqs.dispose();
+        synchronized (ENGINES) {
+            if (ENGINES.get(mCharacter) == this) {
+                ENGINES.remove(mCharacter);
+            }
+        }
+    }
+
+    /**
+     * @param weaponClass The type of weapon to return.
+     * @return The weapons of the specified type that are available to the character, as of its
+     *         most recent {@link CharacterSnapshot}, including the built-in natural attacks the
+     *         character has been set to include.
+     */
+    public List<WeaponStats> getWeapons(Class<? extends WeaponStats> weaponClass) {
+        HashMap<HashedWeapon, WeaponStats> weaponMap = new HashMap<>();
+        CharacterSnapshot                  snapshot  = mCharacter.getSnapshot();
+
+        addBuiltInWeapons(mCharacter, weaponClass, weaponMap);
+
+        CharacterSnapshot.RowTree<Advantage> advantages = snapshot.getAdvantages();
+        for (Advantage advantage : advantages.getAllRows()) {
+            CharacterSnapshot.RowState state = advantages.getState(advantage);
+            if (state.isEnabled()) {
+                addWeapons(state.getWeapons(), weaponClass, weaponMap);
+            }
+        }
+
+        CharacterSnapshot.RowTree<Equipment> equipment = snapshot.getEquipment();
+        for (Equipment one : equipment.getAllRows()) {
+            CharacterSnapshot.RowState state = equipment.getState(one);
+            if (state.getQuantity() > 0 && state.isEquipped()) {
+                addWeapons(state.getWeapons(), weaponClass, weaponMap);
+            }
+        }
+
+        addWeapons(snapshot.getSpells(), weaponClass, weaponMap);
+        addWeapons(snapshot.getSkills(), weaponClass, weaponMap);
+
+        return new ArrayList<>(weaponMap.values());
+    }
+
+    private static void addWeapons(CharacterSnapshot.RowTree<?> tree, Class<? extends WeaponStats> weaponClass, HashMap<HashedWeapon, WeaponStats> map) {
+        for (ListRow row : tree.getAllRows()) {
+            addWeapons(tree.getState(row).getWeapons(), weaponClass, map);
+        }
+    }
+
+    private static void addWeapons(List<WeaponStats> weapons, Class<? extends WeaponStats> weaponClass, HashMap<HashedWeapon, WeaponStats> map) {
+        for (WeaponStats weapon : weapons) {
+            if (weaponClass.isInstance(weapon)) {
+                map.put(new HashedWeapon(weapon), weapon);
+            }
+        }
+    }
+
+    private static void addBuiltInWeapons(GURPSCharacter character, Class<? extends WeaponStats> weaponClass, HashMap<HashedWeapon, WeaponStats> map) {
+        if (weaponClass == MeleeWeaponStats.class) {
+            boolean                 savedModified = character.isModified();
+            ArrayList<SkillDefault> defaults      = new ArrayList<>();
+            Advantage               phantom;
+            MeleeWeaponStats        weapon;
+
+            StdUndoManager          mgr           = character.getUndoManager();
+            character.setUndoManager(new StdUndoManager());
+
+            phantom = new Advantage(character, false);
+            phantom.setName(NATURAL);
+
+            if (character.includePunch()) {
+                defaults.add(new SkillDefault(SkillDefaultType.DX, null, null, 0));
+                defaults.add(new SkillDefault(SkillDefaultType.Skill, BOXING_SKILL_NAME, null, 0));
+                defaults.add(new SkillDefault(SkillDefaultType.Skill, BRAWLING_SKILL_NAME, null, 0));
+                defaults.add(new SkillDefault(SkillDefaultType.Skill, KARATE_SKILL_NAME, null, 0));
+                weapon = new MeleeWeaponStats(phantom);
+                weapon.setUsage(PUNCH);
+                weapon.setDefaults(defaults);
+                weapon.setDamage("thr-1 cr"); //$NON-NLS-1$
+                weapon.setReach("C"); //$NON-NLS-1$
+                weapon.setParry("0"); //$NON-NLS-1$
+                map.put(new HashedWeapon(weapon), weapon);
+                defaults.clear();
+            }
+
+            defaults.add(new SkillDefault(SkillDefaultType.DX, null, null, -2));
+            defaults.add(new SkillDefault(SkillDefaultType.Skill, BRAWLING_SKILL_NAME, null, -2));
+            defaults.add(new SkillDefault(SkillDefaultType.Skill, KARATE_SKILL_NAME, null, -2));
+
+            if (character.includeKick()) {
+                weapon = new MeleeWeaponStats(phantom);
+                weapon.setUsage(KICK);
+                weapon.setDefaults(defaults);
+                weapon.setDamage("thr cr"); //$NON-NLS-1$
+                weapon.setReach("C,1"); //$NON-NLS-1$
+                weapon.setParry("No"); //$NON-NLS-1$
+                map.put(new HashedWeapon(weapon), weapon);
+            }
+
+            if (character.includeKickBoots()) {
+                weapon = new MeleeWeaponStats(phantom);
+                weapon.setUsage(BOOTS);
+                weapon.setDefaults(defaults);
+                weapon.setDamage("thr+1 cr"); //$NON-NLS-1$
+                weapon.setReach("C,1"); //$NON-NLS-1$
+                weapon.setParry("No"); //$NON-NLS-1$
+                map.put(new HashedWeapon(weapon), weapon);
+            }
+
+            character.setUndoManager(mgr);
+            character.setModified(savedModified);
+        }
+    }
+}
@@ -19,6 +19,7 @@ import com.trollworks.gcs.advantage.Advantage;
 import com.trollworks.gcs.advantage.AdvantageOutline;
 import com.trollworks.gcs.app.GCSApp;
 import com.trollworks.gcs.app.GCSFonts;
+import com.trollworks.gcs.common.BackgroundScheduler;
 import com.trollworks.gcs.equipment.Equipment;
 import com.trollworks.gcs.equipment.EquipmentColumn;
 import com.trollworks.gcs.equipment.EquipmentOutline;
@@ -30,8 +31,6 @@ import com.trollworks.gcs.page.PageOwner;
 import com.trollworks.gcs.preferences.OutputPreferences;
 import com.trollworks.gcs.preferences.SheetPreferences;
 import com.trollworks.gcs.skill.Skill;
-import com.trollworks.gcs.skill.SkillDefault;
-import com.trollworks.gcs.skill.SkillDefaultType;
 import com.trollworks.gcs.skill.SkillOutline;
 import com.trollworks.gcs.spell.Spell;
 import com.trollworks.gcs.spell.SpellOutline;
@@ -73,7 +72,6 @@ import com.trollworks.toolkit.utility.PrintProxy;
 import com.trollworks.toolkit.utility.notification.BatchNotifierTarget;
 import com.trollworks.toolkit.utility.notification.NotifierTarget;
 import com.trollworks.toolkit.utility.text.Numbers;
-import com.trollworks.toolkit.utility.undo.StdUndoManager;
 
 import java.awt.Color;
 import java.awt.Component;
@@ -103,10 +101,10 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.text.MessageFormat;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
 
 import javax.swing.JPanel;
 import javax.swing.RepaintManager;
@@ -163,26 +161,6 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
     @Localize(locale = "ru", value = "{0} (продолжается)")
     @Localize(locale = "es", value = "{0} (continua)")
     private static String CONTINUED;
-    @Localize("Natural")
-    @Localize(locale = "de", value = "Angeboren")
-    @Localize(locale = "ru", value = "Природное")
-    @Localize(locale = "es", value = "Natural")
-    private static String NATURAL;
-    @Localize("Punch")
-    @Localize(locale = "de", value = "Schlag")
-    @Localize(locale = "ru", value = "Удар")
-    @Localize(locale = "es", value = "Puñetazo")
-    private static String PUNCH;
-    @Localize("Kick")
-    @Localize(locale = "de", value = "Tritt")
-    @Localize(locale = "ru", value = "Пинок")
-    @Localize(locale = "es", value = "Patada")
-    private static String KICK;
-    @Localize("Kick w/Boots")
-    @Localize(locale = "de", value = "Tritt mit Schuh")
-    @Localize(locale = "ru", value = "Пинок (ботинком)")
-    @Localize(locale = "es", value = "Patada con botas")
-    private static String BOOTS;
     @Localize("Notes")
     @Localize(locale = "de", value = "Notizen")
     @Localize(locale = "ru", value = "Заметка")
@@ -193,9 +171,9 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
         Localization.initialize();
     }
 
-    private static final String   BOXING_SKILL_NAME   = "Boxing"; //$NON-NLS-1$
-    private static final String   KARATE_SKILL_NAME   = "Karate"; //$NON-NLS-1$
-    private static final String   BRAWLING_SKILL_NAME = "Brawling"; //$NON-NLS-1$
+    /** Shared by every PDF export, so the fonts it maps are only looked up once per run. */
+    private static final DefaultFontMapper FONT_MAPPER = new DefaultFontMapper();
+
     private static final int      GAP                 = 2;
     private static final String   MELEE_KEY           = "melee"; //$NON-NLS-1$
     private static final String   RANGED_KEY          = "ranged"; //$NON-NLS-1$
@@ -207,6 +185,7 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
     private static final String[] ALL_KEYS            = { MELEE_KEY, RANGED_KEY, ADVANTAGES_KEY, SKILLS_KEY, SPELLS_KEY, EQUIPMENT_KEY, NOTES_KEY };
     private Scale                 mScale;
     private GURPSCharacter        mCharacter;
+    private CharacterEngine       mEngine;
     private int                   mLastPage;
     private boolean               mBatchMode;
     private AdvantageOutline      mAdvantageOutline;
@@ -224,31 +203,52 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
     private boolean               mIsPrinting;
     private boolean               mSyncWeapons;
     private boolean               mDisposed;
+    private boolean               mDetached;
 
     /**
      * Creates a new character sheet display. {@link #rebuild()} must be called prior to the first
-     * display of this panel.
+     * display of this panel. The sheet doesn't take ownership of the engine; whoever created the
+     * engine must dispose of it once the sheet has been disposed.
+     *
+     * @param engine The engine for the character to display the data for.
+     */
+    public CharacterSheet(CharacterEngine engine) {
+        this(engine, false);
+    }
+
+    /**
+     * Creates a new character sheet display. A detached sheet is never shown. It belongs to the
+     * thread that created it, which is the only one to lay it out and paint it, so it never hands
+     * work to the event dispatch thread and doesn't follow preference changes. A rebuild it needs
+     * is done the next time its pages are painted.
      *
-     * @param character The character to display the data for.
+     * @param engine   The engine for the character to display the data for.
+     * @param detached Whether the sheet is detached.
      */
-    public CharacterSheet(GURPSCharacter character) {
+    public CharacterSheet(CharacterEngine engine, boolean detached) {
         super();
         setLayout(new CharacterSheetLayout(this));
         setOpaque(false);
         mScale       = SheetPreferences.getInitialUIScale().getScale();
-        mCharacter   = character;
+        mEngine      = engine;
+        mCharacter   = engine.getCharacter();
         mLastPage    = -1;
         mRootsToSync = new HashSet<>();
-        if (!GraphicsUtilities.inHeadlessPrintMode()) {
-            setDropTarget(new DropTarget(this, this));
+        mDetached    = detached;
+        if (!detached) {
+            if (!GraphicsUtilities.inHeadlessPrintMode()) {
+                setDropTarget(new DropTarget(this, this));
+            }
+            Preferences.getInstance().getNotifier().add(this, SheetPreferences.OPTIONAL_DICE_RULES_PREF_KEY, Fonts.FONT_NOTIFICATION_KEY, SheetPreferences.WEIGHT_UNITS_PREF_KEY, SheetPreferences.GURPS_METRIC_RULES_PREF_KEY, SheetPreferences.OPTIONAL_STRENGTH_RULES_PREF_KEY, SheetPreferences.OPTIONAL_REDUCED_SWING_PREF_KEY, OutputPreferences.BLOCK_LAYOUT_PREF_KEY);
         }
-        Preferences.getInstance().getNotifier().add(this, SheetPreferences.OPTIONAL_DICE_RULES_PREF_KEY, Fonts.FONT_NOTIFICATION_KEY, SheetPreferences.WEIGHT_UNITS_PREF_KEY, SheetPreferences.GURPS_METRIC_RULES_PREF_KEY, SheetPreferences.OPTIONAL_STRENGTH_RULES_PREF_KEY, SheetPreferences.OPTIONAL_REDUCED_SWING_PREF_KEY, OutputPreferences.BLOCK_LAYOUT_PREF_KEY);
+        engine.setStateListener(this::repaint);
     }
 
     /** Call when the sheet is no longer in use. */
     public void dispose() {
+        mEngine.setStateListener(null);
         Preferences.getInstance().getNotifier().remove(this);
-        mCharacter.resetNotifier();
+        mCharacter.resetNotifier(mEngine.getPrerequisitesUpdater());
         mDisposed = true;
     }
 
@@ -315,7 +315,7 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
         // Clear out the old pages
         removeAll();
         List<NotifierTarget> targets = new ArrayList<>();
-        targets.add(PrerequisitesThread.getThread(mCharacter));
+        targets.add(mEngine.getPrerequisitesUpdater());
         SheetDockable sheetDockable = UIUtilities.getAncestorOfType(this, SheetDockable.class);
         if (sheetDockable != null) {
             targets.add(sheetDockable);
@@ -650,104 +650,11 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
         }
     }
 
-    private void addBuiltInWeapons(Class<? extends WeaponStats> weaponClass, HashMap<HashedWeapon, WeaponDisplayRow> map) {
-        if (weaponClass == MeleeWeaponStats.class) {
-            boolean                 savedModified = mCharacter.isModified();
-            ArrayList<SkillDefault> defaults      = new ArrayList<>();
-            Advantage               phantom;
-            MeleeWeaponStats        weapon;
-
-            StdUndoManager          mgr           = mCharacter.getUndoManager();
-            mCharacter.setUndoManager(new StdUndoManager());
-
-            phantom = new Advantage(mCharacter, false);
-            phantom.setName(NATURAL);
-
-            if (mCharacter.includePunch()) {
-                defaults.add(new SkillDefault(SkillDefaultType.DX, null, null, 0));
-                defaults.add(new SkillDefault(SkillDefaultType.Skill, BOXING_SKILL_NAME, null, 0));
-                defaults.add(new SkillDefault(SkillDefaultType.Skill, BRAWLING_SKILL_NAME, null, 0));
-                defaults.add(new SkillDefault(SkillDefaultType.Skill, KARATE_SKILL_NAME, null, 0));
-                weapon = new MeleeWeaponStats(phantom);
-                weapon.setUsage(PUNCH);
-                weapon.setDefaults(defaults);
-                weapon.setDamage("thr-1 cr"); //$NON-NLS-1$
-                weapon.setReach("C"); //$NON-NLS-1$
-                weapon.setParry("0"); //$NON-NLS-1$
-                map.put(new HashedWeapon(weapon), new WeaponDisplayRow(weapon));
-                defaults.clear();
-            }
-
-            defaults.add(new SkillDefault(SkillDefaultType.DX, null, null, -2));
-            defaults.add(new SkillDefault(SkillDefaultType.Skill, BRAWLING_SKILL_NAME, null, -2));
-            defaults.add(new SkillDefault(SkillDefaultType.Skill, KARATE_SKILL_NAME, null, -2));
-
-            if (mCharacter.includeKick()) {
-                weapon = new MeleeWeaponStats(phantom);
-                weapon.setUsage(KICK);
-                weapon.setDefaults(defaults);
-                weapon.setDamage("thr cr"); //$NON-NLS-1$
-                weapon.setReach("C,1"); //$NON-NLS-1$
-                weapon.setParry("No"); //$NON-NLS-1$
-                map.put(new HashedWeapon(weapon), new WeaponDisplayRow(weapon));
-            }
-
-            if (mCharacter.includeKickBoots()) {
-                weapon = new MeleeWeaponStats(phantom);
-                weapon.setUsage(BOOTS);
-                weapon.setDefaults(defaults);
-                weapon.setDamage("thr+1 cr"); //$NON-NLS-1$
-                weapon.setReach("C,1"); //$NON-NLS-1$
-                weapon.setParry("No"); //$NON-NLS-1$
-                map.put(new HashedWeapon(weapon), new WeaponDisplayRow(weapon));
-            }
-
-            mCharacter.setUndoManager(mgr);
-            mCharacter.setModified(savedModified);
-        }
-    }
-
     private ArrayList<WeaponDisplayRow> collectWeapons(Class<? extends WeaponStats> weaponClass) {
-        HashMap<HashedWeapon, WeaponDisplayRow> weaponMap = new HashMap<>();
-        ArrayList<WeaponDisplayRow>             weaponList;
-
-        addBuiltInWeapons(weaponClass, weaponMap);
-
-        for (Advantage advantage : mCharacter.getAdvantagesIterator(false)) {
-            for (WeaponStats weapon : advantage.getWeapons()) {
-                if (weaponClass.isInstance(weapon)) {
-                    weaponMap.put(new HashedWeapon(weapon), new WeaponDisplayRow(weapon));
-                }
-            }
-        }
-
-        for (Equipment equipment : mCharacter.getEquipmentIterator()) {
-            if (equipment.getQuantity() > 0 && equipment.isEquipped()) {
-                for (WeaponStats weapon : equipment.getWeapons()) {
-                    if (weaponClass.isInstance(weapon)) {
-                        weaponMap.put(new HashedWeapon(weapon), new WeaponDisplayRow(weapon));
-                    }
-                }
-            }
-        }
-
-        for (Spell spell : mCharacter.getSpellsIterator()) {
-            for (WeaponStats weapon : spell.getWeapons()) {
-                if (weaponClass.isInstance(weapon)) {
-                    weaponMap.put(new HashedWeapon(weapon), new WeaponDisplayRow(weapon));
-                }
-            }
-        }
-
-        for (Skill skill : mCharacter.getSkillsIterator()) {
-            for (WeaponStats weapon : skill.getWeapons()) {
-                if (weaponClass.isInstance(weapon)) {
-                    weaponMap.put(new HashedWeapon(weapon), new WeaponDisplayRow(weapon));
-                }
-            }
+        ArrayList<WeaponDisplayRow> weaponList = new ArrayList<>();
+        for (WeaponStats weapon : mEngine.getWeapons(weaponClass)) {
+            weaponList.add(new WeaponDisplayRow(weapon));
         }
-
-        weaponList = new ArrayList<>(weaponMap.values());
         return weaponList;
     }
 
@@ -844,7 +751,10 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
 
     @Override
     public void handleNotification(Object producer, String type, Object data) {
-        if (SheetPreferences.OPTIONAL_DICE_RULES_PREF_KEY.equals(type) || Fonts.FONT_NOTIFICATION_KEY.equals(type) || SheetPreferences.WEIGHT_UNITS_PREF_KEY.equals(type) || SheetPreferences.GURPS_METRIC_RULES_PREF_KEY.equals(type) || Profile.ID_BODY_TYPE.equals(type) || SheetPreferences.OPTIONAL_STRENGTH_RULES_PREF_KEY.equals(type) || SheetPreferences.OPTIONAL_REDUCED_SWING_PREF_KEY.equals(type) || OutputPreferences.BLOCK_LAYOUT_PREF_KEY.equals(type)) {
+        if (mDetached) {
+            // Nothing is shown, so just bring everything up to date before the next page is painted
+            markForRebuild();
+        } else if (SheetPreferences.OPTIONAL_DICE_RULES_PREF_KEY.equals(type) || Fonts.FONT_NOTIFICATION_KEY.equals(type) || SheetPreferences.WEIGHT_UNITS_PREF_KEY.equals(type) || SheetPreferences.GURPS_METRIC_RULES_PREF_KEY.equals(type) || Profile.ID_BODY_TYPE.equals(type) || SheetPreferences.OPTIONAL_STRENGTH_RULES_PREF_KEY.equals(type) || SheetPreferences.OPTIONAL_REDUCED_SWING_PREF_KEY.equals(type) || OutputPreferences.BLOCK_LAYOUT_PREF_KEY.equals(type)) {
             markForRebuild();
         } else {
             if (type.startsWith(Advantage.PREFIX)) {
@@ -961,6 +871,11 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
         return mCharacter;
     }
 
+    /** @return The engine for the character being displayed. */
+    public CharacterEngine getEngine() {
+        return mEngine;
+    }
+
     @Override
     public void actionPerformed(ActionEvent event) {
         String command = event.getActionCommand();
@@ -974,7 +889,9 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
     public void markForRebuild() {
         if (!mRebuildPending) {
             mRebuildPending = true;
-            EventQueue.invokeLater(this);
+            if (!mDetached) {
+                EventQueue.invokeLater(this);
+            }
         }
     }
 
@@ -1126,8 +1043,7 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
         expandAllContainers(mCharacter.getSpellsIterator(), changed);
         expandAllContainers(mCharacter.getEquipmentIterator(), changed);
         if (mRebuildPending) {
-            syncRoots();
-            rebuild();
+            run();
         }
         return changed;
     }
@@ -1146,8 +1062,7 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
             row.setOpen(false);
         }
         if (mRebuildPending) {
-            syncRoots();
-            rebuild();
+            run();
         }
     }
 
@@ -1177,7 +1092,7 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
                 cb = writer.getDirectContent();
                 while (true) {
                     PdfTemplate template = cb.createTemplate(width, height);
-                    Graphics2D  g2d      = template.createGraphics(width, height, new DefaultFontMapper());
+                    Graphics2D  g2d      = template.createGraphics(width, height, FONT_MAPPER);
 
                     if (print(g2d, format, pageNum) == NO_SUCH_PAGE) {
                         g2d.dispose();
@@ -1208,27 +1123,49 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
      * @return <code>true</code> on success.
      */
     public boolean saveAsPNG(File file, ArrayList<File> createdFiles) {
-        HashSet<Row> changed = expandAllContainers();
         try {
-            int          dpi      = OutputPreferences.getPNGResolution();
-            PrintManager settings = mCharacter.getPageSettings();
-            PageFormat   format   = settings != null ? settings.createPageFormat() : createDefaultPageFormat();
-            Paper        paper    = format.getPaper();
-            int          width    = (int) (paper.getWidth() / 72.0 * dpi);
-            int          height   = (int) (paper.getHeight() / 72.0 * dpi);
-            StdImage     buffer   = StdImage.create(width, height, Transparency.OPAQUE);
-            int          pageNum  = 0;
-            String       name     = PathUtils.getLeafName(file.getName(), false);
+            int dpi   = OutputPreferences.getPNGResolution();
+            int batch = Runtime.getRuntime().availableProcessors();
+            // Pages are rendered a batch at a time, so that only a few full-size images are held
+            for (int first = 0; ; first += batch) {
+                List<StdImage> pages = renderPNGPages(dpi, first, batch);
+                createdFiles.addAll(writePNGPages(file, pages, first, dpi));
+                if (pages.size() < batch) {
+                    return true;
+                }
+            }
+        } catch (Exception exception) {
+            return false;
+        }
+    }
 
-            file = file.getParentFile();
+    /**
+     * Paints a run of the pages of the sheet, each into its own image. Like any other painting of
+     * the sheet, this must be done on the thread that owns its layout.
+     *
+     * @param dpi       The resolution to render at.
+     * @param firstPage The index of the first page to render.
+     * @param maxPages  The most pages to render.
+     * @return The images of the pages, which will be fewer than asked for once the last page of the
+     *         sheet has been rendered.
+     */
+    public List<StdImage> renderPNGPages(int dpi, int firstPage, int maxPages) {
+        HashSet<Row> changed = expandAllContainers();
+        try {
+            PrintManager   settings = mCharacter.getPageSettings();
+            PageFormat     format   = settings != null ? settings.createPageFormat() : createDefaultPageFormat();
+            Paper          paper    = format.getPaper();
+            int            width    = (int) (paper.getWidth() / 72.0 * dpi);
+            int            height   = (int) (paper.getHeight() / 72.0 * dpi);
+            List<StdImage> pages    = new ArrayList<>();
+            int            pageNum  = firstPage;
 
             adjustToPageSetupChanges(true);
             setPrinting(true);
 
-            while (true) {
-                File       pngFile;
-
-                Graphics2D gc = buffer.getGraphics();
+            while (pages.size() < maxPages) {
+                StdImage   buffer = StdImage.create(width, height, Transparency.OPAQUE);
+                Graphics2D gc     = buffer.getGraphics();
                 if (print(gc, format, pageNum) == NO_SUCH_PAGE) {
                     gc.dispose();
                     break;
@@ -1239,19 +1176,42 @@ public class CharacterSheet extends JPanel implements ChangeListener, Scrollable
                 gc.scale(dpi / 72.0, dpi / 72.0);
                 print(gc, format, pageNum++);
                 gc.dispose();
-                pngFile = new File(file, PathUtils.enforceExtension(name + (pageNum > 1 ? " " + pageNum : ""), FileType.PNG_EXTENSION)); //$NON-NLS-1$ //$NON-NLS-2$
-                AnnotatedImage.writePNG(pngFile, buffer, dpi, null);
-                createdFiles.add(pngFile);
+                pages.add(buffer);
             }
-            return true;
-        } catch (Exception exception) {
-            return false;
+            return pages;
         } finally {
             setPrinting(false);
             closeContainers(changed);
         }
     }
 
+    /**
+     * Writes pages rendered by {@link #renderPNGPages(int, int, int)}, encoding them concurrently.
+     * Since the sheet itself isn't touched, this need not be called on the thread that owns its
+     * layout.
+     *
+     * @param file      The file to save to. Pages after the first have their page number appended.
+     * @param pages     The images of the pages.
+     * @param firstPage The index of the first of the pages.
+     * @param dpi       The resolution the pages were rendered at.
+     * @return The files that were created.
+     */
+    public static List<File> writePNGPages(File file, List<StdImage> pages, int firstPage, int dpi) throws Exception {
+        String               name = PathUtils.getLeafName(file.getName(), false);
+        File                 dir  = file.getParentFile();
+        List<Callable<File>> jobs = new ArrayList<>();
+        for (int i = 0; i < pages.size(); i++) {
+            int      pageNum = firstPage + i;
+            StdImage page    = pages.get(i);
+            File     pngFile = new File(dir, PathUtils.enforceExtension(name + (pageNum > 0 ? " " + (pageNum + 1) : ""), FileType.PNG_EXTENSION)); //$NON-NLS-1$ //$NON-NLS-2$
+            jobs.add(() -> {
+                AnnotatedImage.writePNG(pngFile, page, dpi, null);
+                return pngFile;
+            });
+        }
+        return BackgroundScheduler.invokeAll(jobs);
+    }
+
     @Override
     public int getNotificationPriority() {
         return 0;
@@ -0,0 +1,524 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import com.trollworks.gcs.advantage.Advantage;
+import com.trollworks.gcs.equipment.Equipment;
+import com.trollworks.gcs.feature.Bonus;
+import com.trollworks.gcs.feature.Feature;
+import com.trollworks.gcs.modifier.Modifier;
+import com.trollworks.gcs.notes.Note;
+import com.trollworks.gcs.prereq.PrereqList;
+import com.trollworks.gcs.skill.Skill;
+import com.trollworks.gcs.skill.SkillDefault;
+import com.trollworks.gcs.skill.Technique;
+import com.trollworks.gcs.spell.Spell;
+import com.trollworks.gcs.weapon.WeaponStats;
+import com.trollworks.gcs.widgets.outline.ListRow;
+import com.trollworks.toolkit.ui.widget.outline.OutlineModel;
+import com.trollworks.toolkit.ui.widget.outline.Row;
+import com.trollworks.toolkit.utility.units.WeightValue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A read-only view of a {@link GURPSCharacter}, taken at the end of each notification batch. It
+ * captures the character's attribute values, which rows exist and how they are arranged, the
+ * state of each row that prerequisites, features and weapons depend upon, and the compiled feature
+ * map, so that background readers can work from a consistent state without racing the thread
+ * making changes. Nothing read through a snapshot touches the live rows, which serve only as keys.
+ * Rows that have not changed since the previous snapshot share their captured state with it.
+ */
+public class CharacterSnapshot {
+    /** The IDs of the values captured by each snapshot. */
+    static final String[]       VALUE_IDS = { GURPSCharacter.ID_STRENGTH, GURPSCharacter.ID_DEXTERITY, GURPSCharacter.ID_INTELLIGENCE, GURPSCharacter.ID_HEALTH, GURPSCharacter.ID_WILL, GURPSCharacter.ID_PERCEPTION, GURPSCharacter.ID_VISION, GURPSCharacter.ID_HEARING, GURPSCharacter.ID_TASTE_AND_SMELL, GURPSCharacter.ID_TOUCH, GURPSCharacter.ID_FRIGHT_CHECK, GURPSCharacter.ID_BASIC_SPEED, GURPSCharacter.ID_BASIC_MOVE, GURPSCharacter.ID_HIT_POINTS, GURPSCharacter.ID_FATIGUE_POINTS, GURPSCharacter.ID_TOTAL_POINTS, GURPSCharacter.ID_UNSPENT_POINTS };
+    private long                mVersion;
+    private Map<String, Object> mValues;
+    private String              mTechLevel;
+    private int                 mSizeModifier;
+    private RowTree<Advantage>  mAdvantages;
+    private RowTree<Skill>      mSkills;
+    private RowTree<Spell>      mSpells;
+    private RowTree<Equipment>  mEquipment;
+    private RowTree<Note>       mNotes;
+    private BonusIndex          mBonuses;
+
+    CharacterSnapshot(long version, Map<String, Object> values, String techLevel, int sizeModifier, RowTree<Advantage> advantages, RowTree<Skill> skills, RowTree<Spell> spells, RowTree<Equipment> equipment, RowTree<Note> notes, BonusIndex bonuses) {
+        mVersion      = version;
+        mValues       = Collections.unmodifiableMap(values);
+        mTechLevel    = techLevel;
+        mSizeModifier = sizeModifier;
+        mAdvantages   = advantages;
+        mSkills       = skills;
+        mSpells       = spells;
+        mEquipment    = equipment;
+        mNotes        = notes;
+        mBonuses      = bonuses;
+    }
+
+    /** @return The version of the character this snapshot was taken from. Increases each time. */
+    public long getVersion() {
+        return mVersion;
+    }
+
+    /**
+     * @param id One of the character value IDs, such as {@link GURPSCharacter#ID_STRENGTH}.
+     * @return The value, or <code>null</code> if the ID isn't one that is captured.
+     */
+    public Object getValue(String id) {
+        return mValues.get(id);
+    }
+
+    /**
+     * @param id One of the integer character value IDs, such as {@link GURPSCharacter#ID_STRENGTH}.
+     * @return The value, or zero if the ID isn't one that is captured.
+     */
+    public int getIntegerValue(String id) {
+        Object value = mValues.get(id);
+        return value instanceof Number ? ((Number) value).intValue() : 0;
+    }
+
+    /** @return All of the captured values, keyed by their IDs. */
+    public Map<String, Object> getValues() {
+        return mValues;
+    }
+
+    /** @return The tech level. */
+    public String getTechLevel() {
+        return mTechLevel;
+    }
+
+    /** @return The size modifier. */
+    public int getSizeModifier() {
+        return mSizeModifier;
+    }
+
+    /** @return The advantages, including those that are disabled. */
+    public RowTree<Advantage> getAdvantages() {
+        return mAdvantages;
+    }
+
+    /** @return The skills and techniques. */
+    public RowTree<Skill> getSkills() {
+        return mSkills;
+    }
+
+    /** @return The spells. */
+    public RowTree<Spell> getSpells() {
+        return mSpells;
+    }
+
+    /** @return The equipment. */
+    public RowTree<Equipment> getEquipment() {
+        return mEquipment;
+    }
+
+    /** @return The notes. */
+    public RowTree<Note> getNotes() {
+        return mNotes;
+    }
+
+    /**
+     * @param row The row to look up.
+     * @return The state captured for the row, or <code>null</code> if it isn't one of the
+     *         character's rows.
+     */
+    public RowState getState(ListRow row) {
+        if (row instanceof Advantage) {
+            return mAdvantages.getState(row);
+        }
+        if (row instanceof Skill) {
+            return mSkills.getState(row);
+        }
+        if (row instanceof Spell) {
+            return mSpells.getState(row);
+        }
+        if (row instanceof Equipment) {
+            return mEquipment.getState(row);
+        }
+        if (row instanceof Note) {
+            return mNotes.getState(row);
+        }
+        return null;
+    }
+
+    /**
+     * @param id The feature ID to search for.
+     * @return The bonus.
+     */
+    public int getIntegerBonusFor(String id) {
+        return mBonuses.getIntegerBonus(id, null);
+    }
+
+    /**
+     * @param id The feature ID to search for.
+     * @return The bonus.
+     */
+    public double getDoubleBonusFor(String id) {
+        return mBonuses.getDoubleBonus(id);
+    }
+
+    /**
+     * @param id The cost reduction ID to search for.
+     * @return The cost reduction, as a percentage.
+     */
+    public int getCostReductionFor(String id) {
+        return mBonuses.getCostReduction(id);
+    }
+
+    /** The arrangement of the rows in one of the character's lists, and their captured state. */
+    public static class RowTree<T extends ListRow> {
+        private List<T>                    mTopLevel;
+        private List<T>                    mAll;
+        private HashMap<Row, List<T>>      mChildren;
+        private HashMap<ListRow, RowState> mStates;
+        private HashMap<String, List<T>>   mNames;
+
+        /**
+         * Captures a list. The state of a row is captured again only if it, one of its ancestors or
+         * one of its descendants has changed; otherwise it is shared with the previous capture.
+         *
+         * @param model    The model to capture.
+         * @param type     The type of rows the model holds.
+         * @param previous The previous capture of the list. May be <code>null</code>.
+         * @param changes  The changes made to the list since the previous capture.
+         * @return The captured rows, which will be the previous capture if nothing has changed.
+         */
+        static <T extends ListRow> RowTree<T> capture(OutlineModel model, Class<T> type, RowTree<T> previous, Changes changes) {
+            if (previous != null && !changes.mStructural && !changes.mAll && Collections.disjoint(previous.mStates.keySet(), changes.mRows)) {
+                return previous;
+            }
+            RowTree<T> tree = new RowTree<>();
+            tree.mAll      = new ArrayList<>();
+            tree.mChildren = new HashMap<>();
+            tree.mStates   = new HashMap<>();
+            tree.mTopLevel = tree.captureRows(model.getTopLevelRows(), type, previous, changes.mRows, changes.mAll, false);
+            tree.mAll      = Collections.unmodifiableList(tree.mAll);
+            return tree;
+        }
+
+        private RowTree() {
+        }
+
+        private List<T> captureRows(List<Row> rows, Class<T> type, RowTree<T> previous, Set<ListRow> changed, boolean allChanged, boolean ancestorChanged) {
+            ArrayList<T> list = new ArrayList<>(rows.size());
+            for (Row row : rows) {
+                if (type.isInstance(row)) {
+                    T one = type.cast(row);
+                    list.add(one);
+                    mAll.add(one);
+                    captureRow(one, type, previous, changed, allChanged, ancestorChanged);
+                }
+            }
+            return Collections.unmodifiableList(list);
+        }
+
+        private void captureRow(T row, Class<T> type, RowTree<T> previous, Set<ListRow> changed, boolean allChanged, boolean ancestorChanged) {
+            boolean selfChanged    = allChanged || ancestorChanged || changed.contains(row);
+            boolean subtreeChanged = selfChanged;
+            if (row.canHaveChildren()) {
+                int     start    = mAll.size();
+                List<T> children = captureRows(row.getChildren(), type, previous, changed, allChanged, selfChanged);
+                List<T> added    = mAll.subList(start, mAll.size());
+                mChildren.put(row, children);
+                if (!subtreeChanged) {
+                    for (T one : added) {
+                        if (changed.contains(one)) {
+                            subtreeChanged = true;
+                            break;
+                        }
+                    }
+                }
+            }
+            RowState state = previous != null && !subtreeChanged ? previous.mStates.get(row) : null;
+            mStates.put(row, state != null ? state : new RowState(row));
+        }
+
+        /** @return The rows at the top level of the list. */
+        public List<T> getTopLevelRows() {
+            return mTopLevel;
+        }
+
+        /**
+         * @param parent The container row.
+         * @return The children of the container, which will be empty if it isn't a container.
+         */
+        public List<T> getChildren(Row parent) {
+            List<T> children = mChildren.get(parent);
+            return children != null ? children : Collections.emptyList();
+        }
+
+        /** @return All of the rows, containers first, in the order a depth-first walk finds them. */
+        public List<T> getAllRows() {
+            return mAll;
+        }
+
+        /**
+         * @param row The row to look up.
+         * @return The state captured for the row, or <code>null</code> if it isn't in this list.
+         */
+        public RowState getState(ListRow row) {
+            return mStates.get(row);
+        }
+
+        /**
+         * @param name The name to look for, ignoring case.
+         * @return All of the rows with the name, including containers, in list order.
+         */
+        public synchronized List<T> getRowsNamed(String name) {
+            if (mNames == null) {
+                mNames = new HashMap<>();
+                for (T row : mAll) {
+                    String  key  = fold(mStates.get(row).getName());
+                    List<T> rows = mNames.get(key);
+                    if (rows == null) {
+                        rows = new ArrayList<>(1);
+                        mNames.put(key, rows);
+                    }
+                    rows.add(row);
+                }
+            }
+            List<T> rows = mNames.get(fold(name));
+            return rows != null ? Collections.unmodifiableList(rows) : Collections.emptyList();
+        }
+    }
+
+    /** The changes made to one of the character's lists since it was last captured. */
+    static class Changes {
+        boolean          mStructural;
+        boolean          mAll;
+        HashSet<ListRow> mRows = new HashSet<>();
+
+        /** @param row The row that changed. */
+        void rowChanged(ListRow row) {
+            if (!mAll) {
+                mRows.add(row);
+            }
+        }
+
+        /** Marks every row as having changed, along with the arrangement of the rows. */
+        void allChanged() {
+            mStructural = true;
+            mAll        = true;
+            mRows.clear();
+        }
+
+        void reset() {
+            mStructural = false;
+            mAll        = false;
+            mRows.clear();
+        }
+    }
+
+    /**
+     * @param text The text to fold.
+     * @return The text in the form used for comparisons that ignore case.
+     */
+    public static String fold(String text) {
+        return text != null ? text.toLowerCase(Locale.ROOT) : ""; //$NON-NLS-1$
+    }
+
+    /**
+     * The state of a single row, as captured on the thread that changes the character. The values
+     * that don't apply to the kind of row the state was captured from are left empty.
+     */
+    public static final class RowState {
+        private String            mName;
+        private String            mSpecialization;
+        private String            mNotes;
+        private String            mTechLevel;
+        private String            mCollege;
+        private int               mLevel;
+        private int               mPoints;
+        private int               mLevels;
+        private boolean           mEnabled;
+        private boolean           mContainer;
+        private boolean           mEquipped;
+        private int               mQuantity;
+        private WeightValue       mWeight;
+        private WeightValue       mExtendedWeight;
+        private PrereqList        mPrereqs;
+        private SkillDefault      mDefault;
+        private List<Feature>     mFeatures;
+        private List<WeaponStats> mWeapons;
+
+        RowState(ListRow row) {
+            mEnabled   = true;
+            mContainer = row.canHaveChildren();
+            mPrereqs   = row.getPrereqs();
+            mWeapons   = Collections.emptyList();
+            ArrayList<Feature> features = new ArrayList<>();
+            if (row instanceof Advantage) {
+                Advantage advantage     = (Advantage) row;
+                String    modifierNotes = advantage.getModifierNotes();
+                mName    = advantage.getName();
+                mNotes   = modifierNotes.length() > 0 ? modifierNotes + '\n' + advantage.getNotes() : advantage.getNotes();
+                mLevels  = advantage.getLevels();
+                mPoints  = advantage.getPoints();
+                mEnabled = advantage.isEnabled();
+                mWeapons = new ArrayList<>(advantage.getWeapons());
+                addFeatures(features, row, row.getFeatures(), mLevels);
+                addFeatures(features, row, advantage.getCRAdj().getBonuses(advantage.getCR()), 0);
+                for (Modifier modifier : advantage.getModifiers()) {
+                    if (modifier.isEnabled()) {
+                        addFeatures(features, row, modifier.getFeatures(), modifier.getLevels());
+                    }
+                }
+            } else if (row instanceof Skill) {
+                Skill skill = (Skill) row;
+                mName           = skill.getName();
+                mSpecialization = skill.getSpecialization();
+                mTechLevel      = skill.getTechLevel();
+                mLevel          = skill.getLevel();
+                mPoints         = skill.getPoints();
+                mWeapons        = new ArrayList<>(skill.getWeapons());
+                if (skill instanceof Technique) {
+                    mDefault = new SkillDefault(((Technique) skill).getDefault());
+                }
+                addFeatures(features, row, row.getFeatures(), 0);
+            } else if (row instanceof Spell) {
+                Spell spell = (Spell) row;
+                mName      = spell.getName();
+                mTechLevel = spell.getTechLevel();
+                mCollege   = spell.getCollege();
+                mLevel     = spell.getLevel();
+                mPoints    = spell.getPoints();
+                mWeapons   = new ArrayList<>(spell.getWeapons());
+                addFeatures(features, row, row.getFeatures(), 0);
+            } else if (row instanceof Equipment) {
+                Equipment equipment = (Equipment) row;
+                mEquipped       = equipment.isEquipped();
+                mQuantity       = equipment.getQuantity();
+                mWeight         = new WeightValue(equipment.getWeight());
+                mExtendedWeight = new WeightValue(equipment.getExtendedWeight());
+                mWeapons        = new ArrayList<>(equipment.getWeapons());
+                // Unequipped equipment doesn't affect the character
+                if (mEquipped && mQuantity > 0) {
+                    addFeatures(features, row, row.getFeatures(), 0);
+                }
+            }
+            mFeatures = Collections.unmodifiableList(features);
+            mWeapons  = Collections.unmodifiableList(mWeapons);
+        }
+
+        private static void addFeatures(List<Feature> features, ListRow row, List<? extends Feature> source, int levels) {
+            for (Feature feature : source) {
+                if (feature instanceof Bonus) {
+                    Bonus bonus = (Bonus) feature;
+                    bonus.getAmount().setLevel(levels);
+                    bonus.setParent(row);
+                }
+                features.add(feature);
+            }
+        }
+
+        /** @return The name. */
+        public String getName() {
+            return mName;
+        }
+
+        /** @return The specialization of a skill. */
+        public String getSpecialization() {
+            return mSpecialization;
+        }
+
+        /** @return The notes of an advantage, preceded by those of its modifiers. */
+        public String getNotes() {
+            return mNotes;
+        }
+
+        /** @return The tech level of a skill or spell. */
+        public String getTechLevel() {
+            return mTechLevel;
+        }
+
+        /** @return The college of a spell. */
+        public String getCollege() {
+            return mCollege;
+        }
+
+        /** @return The level of a skill or spell. */
+        public int getLevel() {
+            return mLevel;
+        }
+
+        /** @return The points spent. */
+        public int getPoints() {
+            return mPoints;
+        }
+
+        /** @return The levels of an advantage. */
+        public int getLevels() {
+            return mLevels;
+        }
+
+        /** @return Whether the row is enabled. Only advantages can be disabled. */
+        public boolean isEnabled() {
+            return mEnabled;
+        }
+
+        /** @return Whether the row is a container. */
+        public boolean isContainer() {
+            return mContainer;
+        }
+
+        /** @return Whether a piece of equipment is equipped. */
+        public boolean isEquipped() {
+            return mEquipped;
+        }
+
+        /** @return The quantity of a piece of equipment. */
+        public int getQuantity() {
+            return mQuantity;
+        }
+
+        /** @return The weight of a single piece of equipment. Must not be modified. */
+        public WeightValue getWeight() {
+            return mWeight;
+        }
+
+        /** @return The weight of a piece of equipment and its contents. Must not be modified. */
+        public WeightValue getExtendedWeight() {
+            return mExtendedWeight;
+        }
+
+        /** @return The prerequisites. */
+        public PrereqList getPrereqs() {
+            return mPrereqs;
+        }
+
+        /** @return The default of a technique. Must not be modified. */
+        public SkillDefault getDefault() {
+            return mDefault;
+        }
+
+        /**
+         * @return The features the row contributes to the character, with their levels and parents
+         *         already set.
+         */
+        public List<Feature> getFeatures() {
+            return mFeatures;
+        }
+
+        /** @return The weapons. */
+        public List<WeaponStats> getWeapons() {
+            return mWeapons;
+        }
+    }
+}
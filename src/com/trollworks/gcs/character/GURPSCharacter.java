@@ -16,16 +16,15 @@ import com.trollworks.gcs.advantage.AdvantageContainerType;
 import com.trollworks.gcs.advantage.AdvantageList;
 import com.trollworks.gcs.app.GCSImages;
 import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.common.LoadState;
 import com.trollworks.gcs.equipment.Equipment;
 import com.trollworks.gcs.equipment.EquipmentList;
 import com.trollworks.gcs.feature.AttributeBonusLimitation;
-import com.trollworks.gcs.feature.Bonus;
 import com.trollworks.gcs.feature.BonusAttributeType;
-import com.trollworks.gcs.feature.CostReduction;
+import com.trollworks.gcs.feature.BonusToolTip;
 import com.trollworks.gcs.feature.Feature;
-import com.trollworks.gcs.feature.SkillBonus;
-import com.trollworks.gcs.feature.SpellBonus;
 import com.trollworks.gcs.feature.WeaponBonus;
 import com.trollworks.gcs.modifier.Modifier;
 import com.trollworks.gcs.notes.Note;
@@ -33,6 +32,7 @@ import com.trollworks.gcs.notes.NoteList;
 import com.trollworks.gcs.preferences.OutputPreferences;
 import com.trollworks.gcs.preferences.SheetPreferences;
 import com.trollworks.gcs.skill.Skill;
+import com.trollworks.gcs.skill.SkillLevelResolver;
 import com.trollworks.gcs.skill.SkillList;
 import com.trollworks.gcs.skill.Technique;
 import com.trollworks.gcs.spell.Spell;
@@ -63,9 +63,11 @@ import java.io.IOException;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /** A GURPS character. */
@@ -172,6 +174,7 @@ public class GURPSCharacter extends DataFile {
     private static final int                    CURRENT_VERSION                      = 3;
     private static final String                 EMPTY                                = ""; //$NON-NLS-1$
     private static final String                 TAG_ROOT                             = "character"; //$NON-NLS-1$
+    private static final Set<String>            LIST_TAGS                            = new HashSet<>(Arrays.asList(AdvantageList.TAG_ROOT, SkillList.TAG_ROOT, SpellList.TAG_ROOT, EquipmentList.TAG_ROOT, NoteList.TAG_ROOT));
     private static final String                 TAG_CREATED_DATE                     = "created_date"; //$NON-NLS-1$
     private static final String                 TAG_MODIFIED_DATE                    = "modified_date"; //$NON-NLS-1$
     private static final String                 TAG_CURRENT_HP                       = "current_hp"; //$NON-NLS-1$
@@ -319,7 +322,18 @@ public class GURPSCharacter extends DataFile {
     public static final String                  ID_UNCONSCIOUS_FATIGUE_POINTS        = FATIGUE_POINTS_PREFIX + "Unconscious"; //$NON-NLS-1$
     private long                                mLastModified;
     private long                                mCreatedOn;
-    private HashMap<String, ArrayList<Feature>> mFeatureMap;
+    private BonusIndex                          mBonusIndex;
+    private SkillLevelResolver                  mSkillLevelResolver;
+    private RowNameIndex<Advantage>             mAdvantageNames;
+    private RowNameIndex<Skill>                 mSkillNames;
+    private RowNameIndex<Spell>                 mSpellNames;
+    private volatile CharacterSnapshot          mSnapshot;
+    private long                                mSnapshotVersion;
+    private CharacterSnapshot.Changes           mAdvantagesChanged;
+    private CharacterSnapshot.Changes           mSkillsChanged;
+    private CharacterSnapshot.Changes           mSpellsChanged;
+    private CharacterSnapshot.Changes           mEquipmentChanged;
+    private CharacterSnapshot.Changes           mNotesChanged;
     private int                                 mStrength;
     private int                                 mStrengthBonus;
     private int                                 mLiftingStrengthBonus;
@@ -391,6 +405,7 @@ public class GURPSCharacter extends DataFile {
         super();
         characterInitialize(true);
         calculateAll();
+        takeSnapshot();
     }
 
     /**
@@ -406,12 +421,21 @@ public class GURPSCharacter extends DataFile {
     }
 
     private void characterInitialize(boolean full) {
-        mFeatureMap           = new HashMap<>();
+        mBonusIndex           = BonusIndex.EMPTY;
         mAdvantages           = new OutlineModel();
         mSkills               = new OutlineModel();
         mSpells               = new OutlineModel();
         mEquipment            = new OutlineModel();
         mNotes                = new OutlineModel();
+        mAdvantageNames       = new RowNameIndex<>(() -> getAdvantagesIterator(true), Advantage::getName, null);
+        mSkillNames           = new RowNameIndex<>(this::getSkillsIterator, Skill::getName, Skill::getSpecialization);
+        mSpellNames           = new RowNameIndex<>(this::getSpellsIterator, Spell::getName, null);
+        mAdvantagesChanged    = new CharacterSnapshot.Changes();
+        mSkillsChanged        = new CharacterSnapshot.Changes();
+        mSpellsChanged        = new CharacterSnapshot.Changes();
+        mEquipmentChanged     = new CharacterSnapshot.Changes();
+        mNotesChanged         = new CharacterSnapshot.Changes();
+        markSnapshotAllChanged();
         mTotalPoints          = SheetPreferences.getInitialPoints();
         mStrength             = 10;
         mDexterity            = 10;
@@ -522,11 +546,154 @@ public class GURPSCharacter extends DataFile {
                 }
             }
         } while (reader.withinMarker(marker));
+        if (state.mSections != null) {
+            state.mSections.load(this, state, this::loadList);
+        }
 
+        // Rows may have looked each other up while the lists were still
+        // being filled in, so start the name indexes over.
+        mAdvantageNames.invalidate();
+        mSkillNames.invalidate();
+        mSpellNames.invalidate();
         calculateAll();
         if (unspentPoints != 0) {
             setUnspentPoints(unspentPoints);
         }
+        takeSnapshot();
+    }
+
+    @Override
+    protected Set<String> getSectionTags() {
+        return LIST_TAGS;
+    }
+
+    @Override
+    protected final void loadSelf(JsonReader in, LoadState state) throws IOException {
+        characterInitialize(false);
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (Profile.TAG_ROOT.equals(name)) {
+                mDescription.load(in);
+            } else if (TAG_CREATED_DATE.equals(name)) {
+                mCreatedOn = in.nextLong();
+            } else if (TAG_MODIFIED_DATE.equals(name)) {
+                mLastModified = in.nextLong();
+            } else if (BonusAttributeType.HP.getXMLTag().equals(name)) {
+                mHitPoints = in.nextInt();
+            } else if (TAG_CURRENT_HP.equals(name)) {
+                mCurrentHitPoints = in.nextString();
+            } else if (BonusAttributeType.FP.getXMLTag().equals(name)) {
+                mFatiguePoints = in.nextInt();
+            } else if (TAG_CURRENT_FP.equals(name)) {
+                mCurrentFatiguePoints = in.nextString();
+            } else if (TAG_TOTAL_POINTS.equals(name)) {
+                mTotalPoints = in.nextInt();
+            } else if (BonusAttributeType.ST.getXMLTag().equals(name)) {
+                mStrength = in.nextInt();
+            } else if (BonusAttributeType.DX.getXMLTag().equals(name)) {
+                mDexterity = in.nextInt();
+            } else if (BonusAttributeType.IQ.getXMLTag().equals(name)) {
+                mIntelligence = in.nextInt();
+            } else if (BonusAttributeType.HT.getXMLTag().equals(name)) {
+                mHealth = in.nextInt();
+            } else if (BonusAttributeType.WILL.getXMLTag().equals(name)) {
+                mWill = in.nextInt();
+            } else if (BonusAttributeType.PERCEPTION.getXMLTag().equals(name)) {
+                mPerception = in.nextInt();
+            } else if (BonusAttributeType.SPEED.getXMLTag().equals(name)) {
+                mSpeed = in.nextDouble();
+            } else if (BonusAttributeType.MOVE.getXMLTag().equals(name)) {
+                mMove = in.nextInt();
+            } else if (TAG_INCLUDE_PUNCH.equals(name)) {
+                mIncludePunch = in.nextBoolean();
+            } else if (TAG_INCLUDE_KICK.equals(name)) {
+                mIncludeKick = in.nextBoolean();
+            } else if (TAG_INCLUDE_BOOTS.equals(name)) {
+                mIncludeKickBoots = in.nextBoolean();
+            } else if (AdvantageList.TAG_ROOT.equals(name)) {
+                ListRow.loadRows(in, state, type -> Advantage.create(this, type), row -> mAdvantages.addRow(row, true));
+            } else if (SkillList.TAG_ROOT.equals(name)) {
+                ListRow.loadRows(in, state, type -> Skill.create(this, type), row -> mSkills.addRow(row, true));
+            } else if (SpellList.TAG_ROOT.equals(name)) {
+                ListRow.loadRows(in, state, type -> Spell.create(this, type), row -> mSpells.addRow(row, true));
+            } else if (EquipmentList.TAG_ROOT.equals(name)) {
+                ListRow.loadRows(in, state, type -> Equipment.create(this, type), row -> mEquipment.addRow(row, true));
+            } else if (NoteList.TAG_ROOT.equals(name)) {
+                ListRow.loadRows(in, state, type -> Note.create(this, type), row -> mNotes.addRow(row, true));
+            } else {
+                in.skipValue();
+            }
+        }
+        mAdvantageNames.invalidate();
+        mSkillNames.invalidate();
+        mSpellNames.invalidate();
+        calculateAll();
+        takeSnapshot();
+    }
+
+    @Override
+    protected void writeCalculated(JsonWriter out) throws IOException {
+        out.name(BonusAttributeType.ST.getXMLTag()).value(getStrength());
+        out.name(BonusAttributeType.DX.getXMLTag()).value(getDexterity());
+        out.name(BonusAttributeType.IQ.getXMLTag()).value(getIntelligence());
+        out.name(BonusAttributeType.HT.getXMLTag()).value(getHealth());
+        out.name(BonusAttributeType.WILL.getXMLTag()).value(getWill());
+        out.name(BonusAttributeType.PERCEPTION.getXMLTag()).value(getPerception());
+        out.name(BonusAttributeType.VISION.getXMLTag()).value(getVision());
+        out.name(BonusAttributeType.HEARING.getXMLTag()).value(getHearing());
+        out.name(BonusAttributeType.HP.getXMLTag()).value(getHitPoints());
+        out.name(BonusAttributeType.FP.getXMLTag()).value(getFatiguePoints());
+        out.name(BonusAttributeType.SPEED.getXMLTag()).value(getBasicSpeed());
+        out.name(BonusAttributeType.MOVE.getXMLTag()).value(getBasicMove());
+        out.name("thrust").value(getThrust().toString()); //$NON-NLS-1$
+        out.name("swing").value(getSwing().toString()); //$NON-NLS-1$
+        out.name("basic_lift").value(getBasicLift().toString()); //$NON-NLS-1$
+        out.name("weight_carried").value(getWeightCarried().toString()); //$NON-NLS-1$
+        out.name("wealth_carried").value(getWealthCarried()); //$NON-NLS-1$
+
+        out.name("points").startObject(); //$NON-NLS-1$
+        out.name("total").value(getTotalPoints()); //$NON-NLS-1$
+        out.name("spent").value(getSpentPoints()); //$NON-NLS-1$
+        out.name("unspent").value(getTotalPoints() - getSpentPoints()); //$NON-NLS-1$
+        out.name("attributes").value(getAttributePoints()); //$NON-NLS-1$
+        out.name("race").value(getRacePoints()); //$NON-NLS-1$
+        out.name("advantages").value(getAdvantagePoints()); //$NON-NLS-1$
+        out.name("disadvantages").value(getDisadvantagePoints()); //$NON-NLS-1$
+        out.name("quirks").value(getQuirkPoints()); //$NON-NLS-1$
+        out.name("skills").value(getSkillPoints()); //$NON-NLS-1$
+        out.name("spells").value(getSpellPoints()); //$NON-NLS-1$
+        out.endObject();
+
+        Encumbrance current = getEncumbranceLevel();
+        out.name("encumbrance").startArray(); //$NON-NLS-1$
+        for (Encumbrance encumbrance : Encumbrance.values()) {
+            out.startObject();
+            out.name("level").value(encumbrance.ordinal()); //$NON-NLS-1$
+            out.name("name").value(encumbrance.toString()); //$NON-NLS-1$
+            out.name("current").value(encumbrance == current); //$NON-NLS-1$
+            out.name("maximum_load").value(getMaximumCarry(encumbrance).toString()); //$NON-NLS-1$
+            out.name("move").value(getMove(encumbrance)); //$NON-NLS-1$
+            out.name("dodge").value(getDodge(encumbrance)); //$NON-NLS-1$
+            out.endObject();
+        }
+        out.endArray();
+    }
+
+    private void loadList(XMLReader reader, LoadState state) throws IOException {
+        String name = reader.getName();
+        if (AdvantageList.TAG_ROOT.equals(name)) {
+            loadAdvantageList(reader, state);
+        } else if (SkillList.TAG_ROOT.equals(name)) {
+            loadSkillList(reader, state);
+        } else if (SpellList.TAG_ROOT.equals(name)) {
+            loadSpellList(reader, state);
+        } else if (EquipmentList.TAG_ROOT.equals(name)) {
+            loadEquipmentList(reader, state);
+        } else if (NoteList.TAG_ROOT.equals(name)) {
+            loadNoteList(reader, state);
+        } else {
+            reader.skipTag(name);
+        }
     }
 
     private void loadAdvantageList(XMLReader reader, LoadState state) throws IOException {
@@ -663,6 +830,41 @@ public class GURPSCharacter extends DataFile {
         }
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        out.name(TAG_CREATED_DATE).value(mCreatedOn);
+        out.name(TAG_MODIFIED_DATE).value(mLastModified);
+        out.name(Profile.TAG_ROOT);
+        mDescription.save(out);
+        out.name(BonusAttributeType.HP.getXMLTag()).value(mHitPoints);
+        out.name(TAG_CURRENT_HP).value(mCurrentHitPoints);
+        out.name(BonusAttributeType.FP.getXMLTag()).value(mFatiguePoints);
+        out.name(TAG_CURRENT_FP).value(mCurrentFatiguePoints);
+        out.name(TAG_TOTAL_POINTS).value(mTotalPoints);
+        out.name(BonusAttributeType.ST.getXMLTag()).value(mStrength);
+        out.name(BonusAttributeType.DX.getXMLTag()).value(mDexterity);
+        out.name(BonusAttributeType.IQ.getXMLTag()).value(mIntelligence);
+        out.name(BonusAttributeType.HT.getXMLTag()).value(mHealth);
+        out.name(BonusAttributeType.WILL.getXMLTag()).value(mWill);
+        out.name(BonusAttributeType.PERCEPTION.getXMLTag()).value(mPerception);
+        out.name(BonusAttributeType.SPEED.getXMLTag()).value(mSpeed);
+        out.name(BonusAttributeType.MOVE.getXMLTag()).value(mMove);
+        out.name(TAG_INCLUDE_PUNCH).value(mIncludePunch);
+        out.name(TAG_INCLUDE_KICK).value(mIncludeKick);
+        out.name(TAG_INCLUDE_BOOTS).value(mIncludeKickBoots);
+
+        out.name(AdvantageList.TAG_ROOT);
+        ListRow.saveRows(out, mAdvantages.getTopLevelRows());
+        out.name(SkillList.TAG_ROOT);
+        ListRow.saveRows(out, mSkills.getTopLevelRows());
+        out.name(SpellList.TAG_ROOT);
+        ListRow.saveRows(out, mSpells.getTopLevelRows());
+        out.name(EquipmentList.TAG_ROOT);
+        ListRow.saveRows(out, mEquipment.getTopLevelRows());
+        out.name(NoteList.TAG_ROOT);
+        ListRow.saveRows(out, mNotes.getTopLevelRows());
+    }
+
     /**
      * @param id The field ID to retrieve the data for.
      * @return The value of the specified field ID, or <code>null</code> if the field ID is invalid.
@@ -882,6 +1084,20 @@ public class GURPSCharacter extends DataFile {
 
     @Override
     public void notify(String type, Object data) {
+        if (Skill.ID_NAME.equals(type) || Skill.ID_SPECIALIZATION.equals(type)) {
+            mSkillNames.update(data);
+        } else if (Skill.ID_LIST_CHANGED.equals(type)) {
+            mSkillNames.invalidate();
+        } else if (Spell.ID_NAME.equals(type)) {
+            mSpellNames.update(data);
+        } else if (Spell.ID_LIST_CHANGED.equals(type)) {
+            mSpellNames.invalidate();
+        } else if (Advantage.ID_NAME.equals(type)) {
+            mAdvantageNames.update(data);
+        } else if (Advantage.ID_LIST_CHANGED.equals(type)) {
+            mAdvantageNames.invalidate();
+        }
+        markSnapshotChanged(type, data);
         super.notify(type, data);
         if (Advantage.ID_POINTS.equals(type) || Advantage.ID_ROUND_COST_DOWN.equals(type) || Advantage.ID_LEVELS.equals(type) || Advantage.ID_CONTAINER_TYPE.equals(type) || Advantage.ID_LIST_CHANGED.equals(type) || Advantage.ID_CR.equals(type) || Modifier.ID_LIST_CHANGED.equals(type) || Modifier.ID_ENABLED.equals(type)) {
             mNeedAdvantagesPointCalculation = true;
@@ -940,6 +1156,92 @@ public class GURPSCharacter extends DataFile {
                 notify(ID_LAST_MODIFIED, Long.valueOf(mLastModified));
             }
         }
+        takeSnapshot();
+    }
+
+    /**
+     * Records a change for the next snapshot. A change to a single row only requires that row and
+     * those it is nested with to be captured again. Changes to modifiers, or that don't name the row
+     * they were made to, require the whole list to be captured again.
+     */
+    private synchronized void markSnapshotChanged(String type, Object data) {
+        if (mAdvantagesChanged == null || type == null) {
+            // Still being initialized, or nothing to go on
+            return;
+        }
+        if (type.startsWith(Modifier.MODIFIER_PREFIX)) {
+            mAdvantagesChanged.allChanged();
+        } else if (type.startsWith(Advantage.PREFIX)) {
+            markSnapshotChanged(mAdvantagesChanged, Advantage.ID_LIST_CHANGED.equals(type), data instanceof Advantage ? (ListRow) data : null);
+        } else if (type.startsWith(Skill.PREFIX)) {
+            markSnapshotChanged(mSkillsChanged, Skill.ID_LIST_CHANGED.equals(type), data instanceof Skill ? (ListRow) data : null);
+        } else if (type.startsWith(Spell.PREFIX)) {
+            markSnapshotChanged(mSpellsChanged, Spell.ID_LIST_CHANGED.equals(type), data instanceof Spell ? (ListRow) data : null);
+        } else if (type.startsWith(Equipment.PREFIX)) {
+            markSnapshotChanged(mEquipmentChanged, Equipment.ID_LIST_CHANGED.equals(type), data instanceof Equipment ? (ListRow) data : null);
+        } else if (type.startsWith(Note.PREFIX)) {
+            markSnapshotChanged(mNotesChanged, Note.ID_LIST_CHANGED.equals(type), data instanceof Note ? (ListRow) data : null);
+        }
+    }
+
+    private static void markSnapshotChanged(CharacterSnapshot.Changes changes, boolean structural, ListRow row) {
+        if (structural) {
+            changes.mStructural = true;
+        } else if (row != null) {
+            changes.rowChanged(row);
+        } else {
+            changes.allChanged();
+        }
+    }
+
+    private synchronized void markSnapshotAllChanged() {
+        mAdvantagesChanged.allChanged();
+        mSkillsChanged.allChanged();
+        mSpellsChanged.allChanged();
+        mEquipmentChanged.allChanged();
+        mNotesChanged.allChanged();
+    }
+
+    /**
+     * Captures the current state of the character into a new {@link CharacterSnapshot}. Only the
+     * rows that have changed since the last snapshot are captured again; the rest are shared with
+     * it.
+     */
+    private synchronized void takeSnapshot() {
+        HashMap<String, Object> values = new HashMap<>();
+        for (String id : CharacterSnapshot.VALUE_IDS) {
+            values.put(id, getValueForID(id));
+        }
+        CharacterSnapshot                    previous   = mSnapshot;
+        CharacterSnapshot.RowTree<Advantage> advantages = CharacterSnapshot.RowTree.capture(mAdvantages, Advantage.class, previous != null ? previous.getAdvantages() : null, mAdvantagesChanged);
+        CharacterSnapshot.RowTree<Skill>     skills     = CharacterSnapshot.RowTree.capture(mSkills, Skill.class, previous != null ? previous.getSkills() : null, mSkillsChanged);
+        CharacterSnapshot.RowTree<Spell>     spells     = CharacterSnapshot.RowTree.capture(mSpells, Spell.class, previous != null ? previous.getSpells() : null, mSpellsChanged);
+        CharacterSnapshot.RowTree<Equipment> equipment  = CharacterSnapshot.RowTree.capture(mEquipment, Equipment.class, previous != null ? previous.getEquipment() : null, mEquipmentChanged);
+        CharacterSnapshot.RowTree<Note>      notes      = CharacterSnapshot.RowTree.capture(mNotes, Note.class, previous != null ? previous.getNotes() : null, mNotesChanged);
+        mSnapshot = new CharacterSnapshot(++mSnapshotVersion, values, mDescription.getTechLevel(), mDescription.getSizeModifier(), advantages, skills, spells, equipment, notes, mBonusIndex);
+        mAdvantagesChanged.reset();
+        mSkillsChanged.reset();
+        mSpellsChanged.reset();
+        mEquipmentChanged.reset();
+        mNotesChanged.reset();
+    }
+
+    /**
+     * Takes a new snapshot that captures every row again, for use after changes that aren't
+     * announced by notifications, such as replacing a row's features or prerequisites.
+     */
+    public void refreshSnapshot() {
+        markSnapshotAllChanged();
+        startNotify();
+        endNotify();
+    }
+
+    /**
+     * @return The most recent read-only snapshot of the character, taken at the end of the last
+     *         notification batch. Safe to use from any thread.
+     */
+    public CharacterSnapshot getSnapshot() {
+        return mSnapshot;
     }
 
     /** @return The last modified date and time. */
@@ -977,9 +1279,7 @@ public class GURPSCharacter extends DataFile {
     }
 
     private void updateSkills() {
-        for (Skill skill : getSkillsIterator()) {
-            skill.updateLevel(true);
-        }
+        SkillLevelResolver.updateAll(this, true);
         mSkillsUpdated = true;
     }
 
@@ -2480,8 +2780,8 @@ public class GURPSCharacter extends DataFile {
      * @return The advantage, if present, or <code>null</code>.
      */
     public Advantage getAdvantageNamed(String name) {
-        for (Advantage advantage : getAdvantagesIterator(false)) {
-            if (advantage.getName().equals(name)) {
+        for (Advantage advantage : mAdvantageNames.get(name)) {
+            if (advantage.isEnabled() && advantage.getName().equals(name)) {
                 return advantage;
             }
         }
@@ -2521,15 +2821,11 @@ public class GURPSCharacter extends DataFile {
     public ArrayList<Skill> getSkillNamed(String name, String specialization, boolean requirePoints, HashSet<String> excludes) {
         ArrayList<Skill> skills              = new ArrayList<>();
         boolean          checkSpecialization = specialization != null && specialization.length() > 0;
-        for (Skill skill : getSkillsIterator()) {
+        for (Skill skill : checkSpecialization ? mSkillNames.get(name, specialization) : mSkillNames.get(name)) {
             if (!skill.canHaveChildren()) {
                 if (excludes == null || !excludes.contains(skill.toString())) {
                     if (!requirePoints || skill.getPoints() > 0) {
-                        if (skill.getName().equalsIgnoreCase(name)) {
-                            if (!checkSpecialization || skill.getSpecialization().equalsIgnoreCase(specialization)) {
-                                skills.add(skill);
-                            }
-                        }
+                        skills.add(skill);
                     }
                 }
             }
@@ -2537,6 +2833,24 @@ public class GURPSCharacter extends DataFile {
         return skills;
     }
 
+    /**
+     * @param name The name to look for, ignoring case.
+     * @return All of the character's {@link Skill}s and {@link Technique}s with the name, including
+     *         containers, in list order.
+     */
+    public List<Skill> getSkillsWithName(String name) {
+        return mSkillNames.get(name);
+    }
+
+    /**
+     * @param name The name to look for, ignoring case.
+     * @return All of the character's {@link Spell}s with the name, including containers, in list
+     *         order.
+     */
+    public List<Spell> getSpellsWithName(String name) {
+        return mSpellNames.get(name);
+    }
+
     /**
      * Searches the character's current {@link Skill} list for the {@link Skill} with the best level
      * that matches the name.
@@ -2593,9 +2907,22 @@ public class GURPSCharacter extends DataFile {
         return new RowIterator<>(mNotes);
     }
 
+    /**
+     * @return The {@link SkillLevelResolver} for the skill level update in progress, or
+     *         <code>null</code> if there isn't one.
+     */
+    public SkillLevelResolver getSkillLevelResolver() {
+        return mSkillLevelResolver;
+    }
+
+    /** @param resolver The {@link SkillLevelResolver} to use. May be <code>null</code>. */
+    public void setSkillLevelResolver(SkillLevelResolver resolver) {
+        mSkillLevelResolver = resolver;
+    }
+
     /** @param map The new feature map. */
     public void setFeatureMap(HashMap<String, ArrayList<Feature>> map) {
-        mFeatureMap    = map;
+        mBonusIndex    = new BonusIndex(map);
         mSkillsUpdated = false;
         mSpellsUpdated = false;
 
@@ -2640,20 +2967,7 @@ public class GURPSCharacter extends DataFile {
      * @return The cost reduction, as a percentage.
      */
     public int getCostReductionFor(String id) {
-        int                total = 0;
-        ArrayList<Feature> list  = mFeatureMap.get(id.toLowerCase());
-
-        if (list != null) {
-            for (Feature feature : list) {
-                if (feature instanceof CostReduction) {
-                    total += ((CostReduction) feature).getPercentage();
-                }
-            }
-        }
-        if (total > 80) {
-            total = 80;
-        }
-        return total;
+        return mBonusIndex.getCostReduction(id);
     }
 
     /**
@@ -2661,7 +2975,7 @@ public class GURPSCharacter extends DataFile {
      * @return The bonus.
      */
     public int getIntegerBonusFor(String id) {
-        return getIntegerBonusFor(id, null);
+        return mBonusIndex.getIntegerBonus(id, null);
     }
 
     /**
@@ -2670,20 +2984,23 @@ public class GURPSCharacter extends DataFile {
      * @return The bonus.
      */
     public int getIntegerBonusFor(String id, StringBuilder toolTip) {
-        int                total = 0;
-        ArrayList<Feature> list  = mFeatureMap.get(id.toLowerCase());
-        if (list != null) {
-            for (Feature feature : list) {
-                if (feature instanceof Bonus && !(feature instanceof WeaponBonus)) {
-                    Bonus bonus = (Bonus) feature;
-                    total += bonus.getAmount().getIntegerAdjustedAmount();
-                    bonus.addToToolTip(toolTip);
-                }
-            }
+        BonusToolTip bonuses = toolTip != null ? new BonusToolTip() : null;
+        int          total   = mBonusIndex.getIntegerBonus(id, bonuses);
+        if (bonuses != null) {
+            bonuses.appendTo(toolTip);
         }
         return total;
     }
 
+    /**
+     * @param id      The feature ID to search for.
+     * @param toolTip The tooltip to add the contributing bonuses to. May be <code>null</code>.
+     * @return The bonus.
+     */
+    public int getIntegerBonusFor(String id, BonusToolTip toolTip) {
+        return mBonusIndex.getIntegerBonus(id, toolTip);
+    }
+
     /**
      * @param id                      The feature ID to search for.
      * @param nameQualifier           The name qualifier.
@@ -2703,17 +3020,9 @@ public class GURPSCharacter extends DataFile {
         }
 
         if (rsl != Integer.MIN_VALUE) {
-            ArrayList<Feature> list = mFeatureMap.get(id.toLowerCase());
-            if (list != null) {
-                for (Feature feature : list) {
-                    if (feature instanceof WeaponBonus) {
-                        WeaponBonus bonus = (WeaponBonus) feature;
-                        if (bonus.getNameCriteria().matches(nameQualifier) && bonus.getSpecializationCriteria().matches(specializationQualifier) && bonus.getLevelCriteria().matches(rsl)) {
-                            bonuses.add(bonus);
-                            bonus.addToToolTip(toolTip);
-                        }
-                    }
-                }
+            mBonusIndex.collectWeaponBonuses(id, nameQualifier, specializationQualifier, rsl, bonuses);
+            for (WeaponBonus bonus : bonuses) {
+                bonus.addToToolTip(toolTip);
             }
         }
         return bonuses;
@@ -2727,7 +3036,7 @@ public class GURPSCharacter extends DataFile {
      * @return The bonus.
      */
     public int getSkillComparedIntegerBonusFor(String id, String nameQualifier, String specializationQualifier, Set<String> categoryQualifier) {
-        return getSkillComparedIntegerBonusFor(id, nameQualifier, specializationQualifier, categoryQualifier, null);
+        return mBonusIndex.getSkillComparedIntegerBonus(id, nameQualifier, specializationQualifier, categoryQualifier, null);
     }
 
     /**
@@ -2739,59 +3048,57 @@ public class GURPSCharacter extends DataFile {
      * @return The bonus.
      */
     public int getSkillComparedIntegerBonusFor(String id, String nameQualifier, String specializationQualifier, Set<String> categoryQualifier, StringBuilder toolTip) {
-        int                total = 0;
-        ArrayList<Feature> list  = mFeatureMap.get(id.toLowerCase());
-        if (list != null) {
-            for (Feature feature : list) {
-                if (feature instanceof SkillBonus) {
-                    SkillBonus bonus = (SkillBonus) feature;
-                    if (bonus.getNameCriteria().matches(nameQualifier) && bonus.getSpecializationCriteria().matches(specializationQualifier) && bonus.matchesCategories(categoryQualifier)) {
-                        total += bonus.getAmount().getIntegerAdjustedAmount();
-                        bonus.addToToolTip(toolTip);
-                    }
-                }
-            }
+        BonusToolTip bonuses = toolTip != null ? new BonusToolTip() : null;
+        int          total   = mBonusIndex.getSkillComparedIntegerBonus(id, nameQualifier, specializationQualifier, categoryQualifier, bonuses);
+        if (bonuses != null) {
+            bonuses.appendTo(toolTip);
         }
         return total;
     }
 
+    /**
+     * @param id                      The feature ID to search for.
+     * @param nameQualifier           The name qualifier.
+     * @param specializationQualifier The specialization qualifier.
+     * @param categoryQualifier       The categories qualifier
+     * @param toolTip                 The tooltip to add the contributing bonuses to. May be
+     *                                <code>null</code>.
+     * @return The bonus.
+     */
+    public int getSkillComparedIntegerBonusFor(String id, String nameQualifier, String specializationQualifier, Set<String> categoryQualifier, BonusToolTip toolTip) {
+        return mBonusIndex.getSkillComparedIntegerBonus(id, nameQualifier, specializationQualifier, categoryQualifier, toolTip);
+    }
+
     /**
      * @param id        The feature ID to search for.
      * @param qualifier The qualifier.
      * @return The bonus.
      */
     public int getSpellComparedIntegerBonusFor(String id, String qualifier, StringBuilder toolTip) {
-        int                total = 0;
-        ArrayList<Feature> list  = mFeatureMap.get(id.toLowerCase());
-        if (list != null) {
-            for (Feature feature : list) {
-                if (feature instanceof SpellBonus) {
-                    SpellBonus bonus = (SpellBonus) feature;
-                    if (bonus.getNameCriteria().matches(qualifier)) {
-                        total += bonus.getAmount().getIntegerAdjustedAmount();
-                        bonus.addToToolTip(toolTip);
-                    }
-                }
-            }
+        BonusToolTip bonuses = toolTip != null ? new BonusToolTip() : null;
+        int          total   = mBonusIndex.getSpellComparedIntegerBonus(id, qualifier, bonuses);
+        if (bonuses != null) {
+            bonuses.appendTo(toolTip);
         }
         return total;
     }
 
+    /**
+     * @param id        The feature ID to search for.
+     * @param qualifier The qualifier.
+     * @param toolTip   The tooltip to add the contributing bonuses to. May be <code>null</code>.
+     * @return The bonus.
+     */
+    public int getSpellComparedIntegerBonusFor(String id, String qualifier, BonusToolTip toolTip) {
+        return mBonusIndex.getSpellComparedIntegerBonus(id, qualifier, toolTip);
+    }
+
     /**
      * @param id The feature ID to search for.
      * @return The bonus.
      */
     public double getDoubleBonusFor(String id) {
-        double             total = 0;
-        ArrayList<Feature> list  = mFeatureMap.get(id.toLowerCase());
-        if (list != null) {
-            for (Feature feature : list) {
-                if (feature instanceof Bonus && !(feature instanceof WeaponBonus)) {
-                    total += ((Bonus) feature).getAmount().getAdjustedAmount();
-                }
-            }
-        }
-        return total;
+        return mBonusIndex.getDoubleBonus(id);
     }
 
     /**
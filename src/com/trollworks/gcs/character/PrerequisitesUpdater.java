@@ -0,0 +1,546 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import com.trollworks.gcs.advantage.Advantage;
+import com.trollworks.gcs.common.BackgroundScheduler;
+import com.trollworks.gcs.equipment.Equipment;
+import com.trollworks.gcs.feature.Feature;
+import com.trollworks.gcs.preferences.SheetPreferences;
+import com.trollworks.gcs.prereq.PrereqDependencyGraph;
+import com.trollworks.gcs.prereq.UnsatisfiedPrereq;
+import com.trollworks.gcs.prereq.UnsatisfiedReason;
+import com.trollworks.gcs.skill.Skill;
+import com.trollworks.gcs.skill.Technique;
+import com.trollworks.gcs.spell.Spell;
+import com.trollworks.gcs.widgets.outline.ListRow;
+import com.trollworks.toolkit.io.Log;
+import com.trollworks.toolkit.utility.Preferences;
+import com.trollworks.toolkit.utility.notification.BatchNotifierTarget;
+
+import java.awt.EventQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Performs background updates of the feature map and prerequisite status of a character on the
+ * {@link BackgroundScheduler}. An update starts as soon as a relevant change is made. Changes to
+ * individual rows and character values only cause the rows whose prerequisites read them to be
+ * re-evaluated. Changes that alter which rows exist or how they are named fall back to a full
+ * recompute. The prerequisites of the advantage, skill, spell and equipment categories are
+ * evaluated in parallel.
+ * <p>
+ * The background work reads nothing but the character's {@link CharacterSnapshot}, which is taken
+ * at the end of each notification batch, so it can never see the character part way through being
+ * changed. Its results are handed back to the thread that owns the character (the event dispatch
+ * thread when it is being edited interactively, otherwise whichever thread waits for processing to finish) and
+ * are only applied there if the character hasn't changed since the snapshot was taken; otherwise
+ * the work is done over against the newer snapshot. A new feature map is applied before any
+ * prerequisites are evaluated, so that they see the snapshot taken once it is in place.
+ */
+public class PrerequisitesUpdater implements BatchNotifierTarget {
+    private static final HashSet<String> STRUCTURAL_IDS    = new HashSet<>(Arrays.asList(Spell.ID_NAME, Spell.ID_LIST_CHANGED, Skill.ID_NAME, Skill.ID_LIST_CHANGED, Advantage.ID_NAME, Advantage.ID_LIST_CHANGED, Equipment.ID_LIST_CHANGED));
+    private static final HashSet<String> FEATURE_IDS       = new HashSet<>(Arrays.asList(Advantage.ID_LEVELS, Equipment.ID_STATE, Equipment.ID_QUANTITY));
+    private static int                   COUNTER           = 0;
+    private static boolean               CONSISTENCY_CHECK = false;
+    private static final int             CATEGORY_COUNT    = 4;
+    private BackgroundScheduler.Task     mTask;
+    private GURPSCharacter               mCharacter;
+    private boolean                      mInteractive;
+    private volatile Runnable            mStateListener;
+    private PrereqDependencyGraph        mDependencies;
+    private HashSet<Object>              mChanged;
+    private ArrayList<Runnable>          mPending;
+    private boolean                      mNeedUpdate;
+    private boolean                      mNeedFullUpdate;
+    private boolean                      mNeedFeatureUpdate;
+    private boolean                      mBatchMode;
+    private volatile boolean             mDisposed;
+
+    /**
+     * @param enabled Whether each incremental update should be followed by a full recompute that
+     *                reports and corrects any row the dependency tracking missed.
+     */
+    public static void setConsistencyCheckEnabled(boolean enabled) {
+        CONSISTENCY_CHECK = enabled;
+    }
+
+    /**
+     * Creates a new prerequisites updater. Only the {@link CharacterEngine} that owns the character
+     * creates one.
+     *
+     * @param character   The character to process.
+     * @param interactive Whether the character is being displayed for editing. If so, results are
+     *                    applied on the event dispatch thread and the reasons prerequisites are not
+     *                    satisfied are kept for display. If not, results are applied by the thread
+     *                    that waits for processing to finish.
+     */
+    PrerequisitesUpdater(GURPSCharacter character, boolean interactive) {
+        mTask              = BackgroundScheduler.createTask("Prerequisites #" + ++COUNTER, this::update); //$NON-NLS-1$
+        mCharacter         = character;
+        mInteractive       = interactive;
+        mDependencies      = new PrereqDependencyGraph();
+        mChanged           = new HashSet<>();
+        mPending           = new ArrayList<>();
+        mNeedUpdate        = true;
+        mNeedFullUpdate    = true;
+        mNeedFeatureUpdate = true;
+        mCharacter.addTarget(this, Profile.ID_TECH_LEVEL, GURPSCharacter.ID_STRENGTH, GURPSCharacter.ID_DEXTERITY, GURPSCharacter.ID_INTELLIGENCE, GURPSCharacter.ID_HEALTH, GURPSCharacter.ID_WILL, GURPSCharacter.ID_PERCEPTION, Spell.ID_NAME, Spell.ID_COLLEGE, Spell.ID_POINTS, Spell.ID_LIST_CHANGED, Skill.ID_NAME, Skill.ID_SPECIALIZATION, Skill.ID_LEVEL, Skill.ID_RELATIVE_LEVEL, Skill.ID_ENCUMBRANCE_PENALTY, Skill.ID_POINTS, Skill.ID_TECH_LEVEL, Skill.ID_LIST_CHANGED, Advantage.ID_NAME, Advantage.ID_LEVELS, Advantage.ID_LIST_CHANGED, Equipment.ID_EXTENDED_WEIGHT, Equipment.ID_STATE, Equipment.ID_QUANTITY, Equipment.ID_LIST_CHANGED);
+        Preferences.getInstance().getNotifier().add(this, SheetPreferences.OPTIONAL_IQ_RULES_PREF_KEY, SheetPreferences.OPTIONAL_MODIFIER_RULES_PREF_KEY, SheetPreferences.OPTIONAL_STRENGTH_RULES_PREF_KEY);
+    }
+
+    /**
+     * @param listener Called on the thread results are applied on whenever the satisfied state of
+     *                 any row changes. May be <code>null</code>.
+     */
+    void setStateListener(Runnable listener) {
+        mStateListener = listener;
+    }
+
+    /** Starts processing. Further updates are started automatically as changes are made. */
+    public void start() {
+        mTask.signal();
+    }
+
+    /** Stops processing and detaches from the character. */
+    public void dispose() {
+        mDisposed = true;
+        mTask.cancel();
+        mCharacter.removeTarget(this);
+        Preferences.getInstance().getNotifier().remove(this);
+    }
+
+    /** Returns only when the updater is idle and its results have been applied to the character. */
+    public void waitForProcessingToFinish() {
+        while (!isDisposed()) {
+            mTask.awaitIdle();
+            synchronized (this) {
+                if (mPending.isEmpty()) {
+                    return;
+                }
+            }
+            if (!mInteractive || EventQueue.isDispatchThread()) {
+                runPending();
+            } else {
+                try {
+                    EventQueue.invokeAndWait(this::runPending);
+                } catch (Exception exception) {
+                    Log.error(exception);
+                    return;
+                }
+            }
+        }
+    }
+
+    private void update() {
+        if (isDisposed()) {
+            return;
+        }
+        boolean         needUpdate;
+        boolean         needFullUpdate;
+        boolean         needFeatureUpdate;
+        HashSet<Object> changed;
+        synchronized (this) {
+            needUpdate         = mNeedUpdate;
+            needFullUpdate     = mNeedFullUpdate;
+            needFeatureUpdate  = mNeedFeatureUpdate;
+            changed            = mChanged;
+            mNeedUpdate        = false;
+            mNeedFullUpdate    = false;
+            mNeedFeatureUpdate = false;
+            mChanged           = new HashSet<>();
+        }
+        if (needUpdate) {
+            CharacterSnapshot snapshot = mCharacter.getSnapshot();
+            try {
+                List<List<ListRow>> categories = needFullUpdate || needFeatureUpdate || CONSISTENCY_CHECK ? getCategories(snapshot) : null;
+                if (needFeatureUpdate) {
+                    HashMap<String, ArrayList<Feature>> map = buildFeatureMap(snapshot, categories);
+                    post(snapshot, needFullUpdate, needFeatureUpdate, changed, () -> {
+                        mCharacter.setFeatureMap(map);
+                        // Evaluate the prerequisites against the snapshot taken once the new
+                        // feature map is in place.
+                        requeue(needFullUpdate, false, changed);
+                        mTask.signal();
+                    });
+                } else if (needFullUpdate) {
+                    mDependencies.clear();
+                    List<Result> results = evaluate(snapshot, categories);
+                    post(snapshot, true, false, changed, () -> publish(results));
+                } else {
+                    List<Result> results = evaluate(snapshot, getChangedRows(snapshot, changed));
+                    List<Result> check   = CONSISTENCY_CHECK ? evaluate(snapshot, categories) : null;
+                    post(snapshot, false, false, changed, () -> {
+                        publish(results);
+                        if (check != null) {
+                            checkConsistency(check);
+                        }
+                    });
+                }
+            } catch (SupersededException exception) {
+                // A newer change came in while we were working, so put our
+                // work back; the pass it started will pick it up.
+                requeue(needFullUpdate, needFeatureUpdate, changed);
+            } catch (Exception exception) {
+                Log.error(exception);
+            }
+        }
+    }
+
+    private void requeue(boolean needFullUpdate, boolean needFeatureUpdate, HashSet<Object> changed) {
+        synchronized (this) {
+            mNeedUpdate        = true;
+            mNeedFullUpdate    |= needFullUpdate;
+            mNeedFeatureUpdate |= needFeatureUpdate;
+            mChanged.addAll(changed);
+        }
+    }
+
+    /**
+     * Hands work off to the thread that owns the character. The work is only done if the character
+     * hasn't changed since the snapshot it was based upon was taken; otherwise the update that
+     * produced it is queued again.
+     */
+    private void post(CharacterSnapshot snapshot, boolean needFullUpdate, boolean needFeatureUpdate, HashSet<Object> changed, Runnable work) {
+        synchronized (this) {
+            mPending.add(() -> {
+                if (mCharacter.getSnapshot() == snapshot) {
+                    work.run();
+                } else {
+                    requeue(needFullUpdate, needFeatureUpdate, changed);
+                    mTask.signal();
+                }
+            });
+        }
+        if (mInteractive) {
+            EventQueue.invokeLater(this::runPending);
+        }
+    }
+
+    private void runPending() {
+        ArrayList<Runnable> pending;
+        synchronized (this) {
+            pending  = mPending;
+            mPending = new ArrayList<>();
+        }
+        for (Runnable work : pending) {
+            if (!isDisposed()) {
+                work.run();
+            }
+        }
+    }
+
+    /**
+     * @return The rows of each category that can have prerequisites or features, so that the
+     *         categories can be worked on in parallel.
+     */
+    private static List<List<ListRow>> getCategories(CharacterSnapshot snapshot) {
+        List<List<ListRow>>                  categories = new ArrayList<>(CATEGORY_COUNT);
+        ArrayList<ListRow>                   advantages = new ArrayList<>();
+        CharacterSnapshot.RowTree<Advantage> tree       = snapshot.getAdvantages();
+        for (Advantage advantage : tree.getAllRows()) {
+            if (tree.getState(advantage).isEnabled()) {
+                advantages.add(advantage);
+            }
+        }
+        categories.add(advantages);
+        categories.add(new ArrayList<>(snapshot.getSkills().getAllRows()));
+        categories.add(new ArrayList<>(snapshot.getSpells().getAllRows()));
+        categories.add(new ArrayList<>(snapshot.getEquipment().getAllRows()));
+        return categories;
+    }
+
+    /**
+     * Gathers the features captured for each row. The categories are walked in order, so that each
+     * feature list ends up in the same order every time.
+     */
+    private HashMap<String, ArrayList<Feature>> buildFeatureMap(CharacterSnapshot snapshot, List<List<ListRow>> categories) throws SupersededException {
+        HashMap<String, ArrayList<Feature>> map = new HashMap<>();
+        for (List<ListRow> rows : categories) {
+            for (ListRow row : rows) {
+                for (Feature feature : snapshot.getState(row).getFeatures()) {
+                    processFeature(map, feature);
+                }
+            }
+            checkIfUpdated();
+        }
+        return map;
+    }
+
+    private static void processFeature(HashMap<String, ArrayList<Feature>> map, Feature feature) {
+        String             key  = feature.getKey().toLowerCase(Locale.ROOT);
+        ArrayList<Feature> list = map.get(key);
+        if (list == null) {
+            list = new ArrayList<>(1);
+            map.put(key, list);
+        }
+        list.add(feature);
+    }
+
+    private void checkIfUpdated() throws SupersededException {
+        boolean needUpdate;
+        synchronized (this) {
+            needUpdate = mNeedUpdate;
+        }
+        if (needUpdate || isDisposed()) {
+            throw new SupersededException();
+        }
+    }
+
+    private boolean isDisposed() {
+        return mDisposed;
+    }
+
+    private List<List<ListRow>> getChangedRows(CharacterSnapshot snapshot, HashSet<Object> changed) {
+        HashSet<ListRow> rows = new HashSet<>();
+        for (Object source : changed) {
+            if (source instanceof ListRow) {
+                rows.add((ListRow) source);
+            }
+            mDependencies.collectDependents(source, rows);
+        }
+        List<List<ListRow>> categories = new ArrayList<>(CATEGORY_COUNT);
+        for (int i = 0; i < CATEGORY_COUNT; i++) {
+            categories.add(new ArrayList<>());
+        }
+        for (ListRow row : rows) {
+            // Rows that are no longer part of the character won't have any state
+            CharacterSnapshot.RowState state = snapshot.getState(row);
+            if (state != null) {
+                if (row instanceof Advantage) {
+                    if (state.isEnabled()) {
+                        categories.get(0).add(row);
+                    }
+                } else if (row instanceof Skill) {
+                    categories.get(1).add(row);
+                } else if (row instanceof Spell) {
+                    categories.get(2).add(row);
+                } else if (row instanceof Equipment) {
+                    categories.get(3).add(row);
+                }
+            }
+        }
+        return categories;
+    }
+
+    /**
+     * Evaluates the prerequisites of each category of rows in parallel. Nothing is changed on the
+     * rows themselves until the results are published.
+     */
+    private List<Result> evaluate(CharacterSnapshot snapshot, List<List<ListRow>> categories) throws Exception {
+        ArrayList<Callable<List<Result>>> jobs = new ArrayList<>(categories.size());
+        for (List<ListRow> rows : categories) {
+            if (!rows.isEmpty()) {
+                jobs.add(() -> evaluateRows(snapshot, rows));
+            }
+        }
+        ArrayList<Result> results = new ArrayList<>();
+        for (List<Result> one : BackgroundScheduler.invokeAll(jobs)) {
+            results.addAll(one);
+        }
+        return results;
+    }
+
+    private List<Result> evaluateRows(CharacterSnapshot snapshot, List<ListRow> rows) throws SupersededException {
+        ArrayList<Result>       results     = new ArrayList<>(rows.size());
+        List<UnsatisfiedPrereq> unsatisfied = mInteractive ? new ArrayList<>() : null;
+        for (ListRow row : rows) {
+            results.add(evaluate(snapshot, row, unsatisfied));
+            checkIfUpdated();
+        }
+        return results;
+    }
+
+    /**
+     * Checks the prerequisites of a row, keeping hold of any that are not met. The text describing
+     * them is left to the {@link UnsatisfiedReason}, which only builds it when it is displayed.
+     *
+     * @param snapshot    The snapshot to evaluate against.
+     * @param row         The row to check.
+     * @param unsatisfied A list to collect the prerequisites that are not met into, which is reused
+     *                    from one row to the next, or <code>null</code> if the reasons are never
+     *                    displayed.
+     */
+    private Result evaluate(CharacterSnapshot snapshot, ListRow row, List<UnsatisfiedPrereq> unsatisfied) {
+        boolean satisfied;
+        mDependencies.startRecording(row);
+        try {
+            satisfied = snapshot.getState(row).getPrereqs().satisfied(snapshot, row, unsatisfied);
+            if (satisfied && row instanceof Technique) {
+                satisfied = ((Technique) row).satisfied(snapshot, unsatisfied);
+            }
+        } finally {
+            mDependencies.stopRecording();
+        }
+        UnsatisfiedReason reason = null;
+        if (unsatisfied != null) {
+            if (!satisfied) {
+                reason = new UnsatisfiedReason(new ArrayList<>(unsatisfied));
+            }
+            unsatisfied.clear();
+        }
+        return new Result(row, satisfied, reason);
+    }
+
+    /**
+     * Applies the results to their rows all at once, notifying the state listener a single time if
+     * any of them changed.
+     */
+    private void publish(List<Result> results) {
+        boolean changed = false;
+        for (Result result : results) {
+            changed |= result.apply();
+        }
+        Runnable listener = mStateListener;
+        if (changed && listener != null) {
+            listener.run();
+        }
+    }
+
+    private void checkConsistency(List<Result> results) {
+        for (Result result : results) {
+            if (result.isChange()) {
+                Log.error("Incremental prerequisite update missed a change to: " + result.mRow); //$NON-NLS-1$
+            }
+        }
+        publish(results);
+    }
+
+    /**
+     * Marks a request for a full update of the features and all rows, first taking a new snapshot
+     * so that changes which aren't announced by notifications, such as replacing a row's features
+     * or prerequisites, are seen. If a notification batch is in progress, the update won't start
+     * until it ends.
+     */
+    public void markForUpdate() {
+        mCharacter.refreshSnapshot();
+        boolean batchMode;
+        synchronized (this) {
+            mNeedUpdate        = true;
+            mNeedFullUpdate    = true;
+            mNeedFeatureUpdate = true;
+            batchMode          = mBatchMode;
+        }
+        if (!batchMode) {
+            mTask.signal();
+        }
+    }
+
+    /**
+     * Marks a request to update only those rows whose prerequisites depend on the specified source,
+     * or all rows if the change is a structural one. If a notification batch is in progress, the
+     * update won't start until it ends.
+     *
+     * @param source          The {@link ListRow} or character value notification ID that changed.
+     * @param affectsFeatures Whether the change may alter the character's feature map.
+     * @param full            Whether all rows need to be updated.
+     */
+    private void markForUpdate(Object source, boolean affectsFeatures, boolean full) {
+        boolean batchMode;
+        synchronized (this) {
+            mNeedUpdate        = true;
+            mNeedFeatureUpdate |= affectsFeatures;
+            mNeedFullUpdate    |= full;
+            mChanged.add(source);
+            batchMode          = mBatchMode;
+        }
+        if (!batchMode) {
+            mTask.signal();
+        }
+    }
+
+    @Override
+    public void enterBatchMode() {
+        synchronized (this) {
+            mBatchMode = true;
+        }
+    }
+
+    @Override
+    public void leaveBatchMode() {
+        boolean needUpdate;
+        synchronized (this) {
+            mBatchMode = false;
+            needUpdate = mNeedUpdate;
+        }
+        if (needUpdate) {
+            mTask.signal();
+        }
+    }
+
+    @Override
+    public void handleNotification(Object producer, String type, Object data) {
+        if (SheetPreferences.OPTIONAL_IQ_RULES_PREF_KEY.equals(type)) {
+            mCharacter.updateWillAndPerceptionDueToOptionalIQRuleUseChange();
+            markForUpdate();
+        } else if (SheetPreferences.OPTIONAL_MODIFIER_RULES_PREF_KEY.equals(type)) {
+            mCharacter.notifySingle(Advantage.ID_LIST_CHANGED, null);
+            markForUpdate();
+        } else if (SheetPreferences.OPTIONAL_STRENGTH_RULES_PREF_KEY.equals(type)) {
+            mCharacter.notifySingle(type, data);
+            markForUpdate();
+        } else if (STRUCTURAL_IDS.contains(type)) {
+            markForUpdate(type, true, true);
+        } else if (data instanceof ListRow) {
+            markForUpdate(data, FEATURE_IDS.contains(type), false);
+        } else {
+            markForUpdate(type, false, false);
+        }
+    }
+
+    @Override
+    public int getNotificationPriority() {
+        return 0;
+    }
+
+    /** Thrown when the work in progress has been overtaken by a newer change. */
+    private static class SupersededException extends Exception {
+        SupersededException() {
+            super(null, null, false, false);
+        }
+    }
+
+    /** The outcome of evaluating the prerequisites of a row, waiting to be published. */
+    private static class Result {
+        ListRow           mRow;
+        boolean           mSatisfied;
+        UnsatisfiedReason mReason;
+
+        Result(ListRow row, boolean satisfied, UnsatisfiedReason reason) {
+            mRow       = row;
+            mSatisfied = satisfied;
+            mReason    = reason;
+        }
+
+        /** @return Whether publishing this result will change the row's satisfied state. */
+        boolean isChange() {
+            return mRow.isSatisfied() != mSatisfied;
+        }
+
+        /** @return Whether the row's satisfied state was changed. */
+        boolean apply() {
+            boolean changed = isChange();
+            if (changed) {
+                mRow.setSatisfied(mSatisfied);
+            }
+            if (!mSatisfied) {
+                mRow.setReasonForUnsatisfied(mReason);
+            }
+            return changed;
+        }
+    }
+}
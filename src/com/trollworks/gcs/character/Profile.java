@@ -13,6 +13,8 @@ package com.trollworks.gcs.character;
 
 import com.trollworks.gcs.advantage.Advantage;
 import com.trollworks.gcs.character.names.USCensusNames;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.feature.BonusAttributeType;
 import com.trollworks.gcs.notes.Note;
 import com.trollworks.gcs.preferences.SheetPreferences;
@@ -489,6 +491,66 @@ public class Profile {
         return true;
     }
 
+    void load(JsonReader in) throws IOException {
+        in.startObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (TAG_PLAYER_NAME.equals(name)) {
+                mPlayerName = in.nextString();
+            } else if (TAG_CAMPAIGN.equals(name)) {
+                mCampaign = in.nextString();
+            } else if (TAG_NAME.equals(name)) {
+                mName = in.nextString();
+            } else if (TAG_TITLE.equals(name)) {
+                mTitle = in.nextString();
+            } else if (TAG_AGE.equals(name)) {
+                mAge = in.nextInt();
+            } else if (TAG_BIRTHDAY.equals(name)) {
+                mBirthday = in.nextString();
+            } else if (TAG_EYES.equals(name)) {
+                mEyeColor = in.nextString();
+            } else if (TAG_HAIR.equals(name)) {
+                mHair = in.nextString();
+            } else if (TAG_SKIN.equals(name)) {
+                mSkinColor = in.nextString();
+            } else if (TAG_HANDEDNESS.equals(name)) {
+                mHandedness = in.nextString();
+            } else if (TAG_HEIGHT.equals(name)) {
+                mHeight = LengthValue.extract(in.nextString(), false);
+            } else if (TAG_WEIGHT.equals(name)) {
+                mWeight = WeightValue.extract(in.nextString(), false);
+            } else if (BonusAttributeType.SM.getXMLTag().equals(name)) {
+                mSizeModifier = in.nextInt();
+            } else if (TAG_GENDER.equals(name)) {
+                mGender = in.nextString();
+            } else if (TAG_RACE.equals(name)) {
+                mRace = in.nextString();
+            } else if (TAG_BODY_TYPE.equals(name)) {
+                mHitLocationTable = HitLocationTable.MAP.get(in.nextString());
+                if (mHitLocationTable == null) {
+                    mHitLocationTable = HitLocationTable.HUMANOID;
+                }
+            } else if (TAG_TECH_LEVEL.equals(name)) {
+                mTechLevel = in.nextString();
+            } else if (TAG_RELIGION.equals(name)) {
+                mReligion = in.nextString();
+            } else if (TAG_PORTRAIT.equals(name)) {
+                String portrait = in.nextString();
+                if (portrait != null) {
+                    try {
+                        mPortrait       = createPortrait(StdImage.loadImage(Base64.getMimeDecoder().decode(portrait)));
+                        mCustomPortrait = true;
+                    } catch (Exception imageException) {
+                        // Ignore
+                    }
+                }
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
     void save(XMLWriter out) {
         out.startSimpleTagEOL(TAG_ROOT);
         out.simpleTagNotEmpty(TAG_PLAYER_NAME, mPlayerName);
@@ -529,6 +591,39 @@ public class Profile {
         out.endTagEOL(TAG_ROOT, true);
     }
 
+    void save(JsonWriter out) throws IOException {
+        out.startObject();
+        out.name(TAG_PLAYER_NAME).value(mPlayerName);
+        out.name(TAG_CAMPAIGN).value(mCampaign);
+        out.name(TAG_NAME).value(mName);
+        out.name(TAG_TITLE).value(mTitle);
+        out.name(TAG_AGE).value(mAge);
+        out.name(TAG_BIRTHDAY).value(mBirthday);
+        out.name(TAG_EYES).value(mEyeColor);
+        out.name(TAG_HAIR).value(mHair);
+        out.name(TAG_SKIN).value(mSkinColor);
+        out.name(TAG_HANDEDNESS).value(mHandedness);
+        out.name(TAG_HEIGHT).value(mHeight.toString(false));
+        out.name(TAG_WEIGHT).value(mWeight.toString(false));
+        out.name(BonusAttributeType.SM.getXMLTag()).value(mSizeModifier);
+        out.name(TAG_GENDER).value(mGender);
+        out.name(TAG_RACE).value(mRace);
+        out.name(TAG_BODY_TYPE).value(mHitLocationTable.getKey());
+        out.name(TAG_TECH_LEVEL).value(mTechLevel);
+        out.name(TAG_RELIGION).value(mReligion);
+        String portrait = null;
+        if (mCustomPortrait && mPortrait != null) {
+            try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
+                ImageIO.write(mPortrait.getRetina(), FileType.PNG_EXTENSION, baos);
+                portrait = Base64.getEncoder().encodeToString(baos.toByteArray());
+            } catch (Exception ex) {
+                throw new RuntimeException(PORTRAIT_WRITE_ERROR);
+            }
+        }
+        out.name(TAG_PORTRAIT).value(portrait);
+        out.endObject();
+    }
+
     void update() {
         setSizeModifierBonus(mCharacter.getIntegerBonusFor(GURPSCharacter.ATTRIBUTES_PREFIX + BonusAttributeType.SM.name()));
     }
@@ -0,0 +1,178 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import com.trollworks.gcs.widgets.outline.ListRow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * A case-insensitive index of rows by name, and by name plus specialization. Lookups return the
+ * matching rows in the same order as the list they came from. The index is rebuilt lazily after
+ * the list's structure changes and is adjusted in place when a single row is renamed.
+ */
+class RowNameIndex<T extends ListRow> {
+    private Supplier<? extends Iterable<T>> mSource;
+    private Function<T, String>             mName;
+    private Function<T, String>             mSpecialization;
+    private HashMap<String, Bucket<T>>      mBuckets;
+    private HashMap<ListRow, Entry>         mEntries;
+    private boolean                         mValid;
+
+    /**
+     * @param source         Provides the rows to index, in list order.
+     * @param name           Extracts the name of a row.
+     * @param specialization Extracts the specialization of a row. May be <code>null</code> if rows
+     *                       of this type have no specialization.
+     */
+    RowNameIndex(Supplier<? extends Iterable<T>> source, Function<T, String> name, Function<T, String> specialization) {
+        mSource         = source;
+        mName           = name;
+        mSpecialization = specialization;
+        mBuckets        = new HashMap<>();
+        mEntries        = new HashMap<>();
+    }
+
+    /**
+     * @param name The name to look for.
+     * @return The rows with the specified name, ignoring case.
+     */
+    synchronized List<T> get(String name) {
+        validate();
+        Bucket<T> bucket = mBuckets.get(fold(name));
+        return bucket != null ? new ArrayList<>(bucket.mRows) : Collections.emptyList();
+    }
+
+    /**
+     * @param name           The name to look for.
+     * @param specialization The specialization to look for.
+     * @return The rows with the specified name and specialization, ignoring case.
+     */
+    synchronized List<T> get(String name, String specialization) {
+        validate();
+        Bucket<T> bucket = mBuckets.get(fold(name));
+        if (bucket != null) {
+            ArrayList<T> rows = bucket.mBySpecialization.get(fold(specialization));
+            if (rows != null) {
+                return new ArrayList<>(rows);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /** Causes the index to be rebuilt the next time it is used. */
+    synchronized void invalidate() {
+        mValid = false;
+        mBuckets.clear();
+        mEntries.clear();
+    }
+
+    /**
+     * Call when the name or specialization of a row has changed.
+     *
+     * @param row The row that changed.
+     */
+    @SuppressWarnings("unchecked")
+    synchronized void update(Object row) {
+        if (mValid) {
+            Entry entry = row instanceof ListRow ? mEntries.get(row) : null;
+            if (entry != null) {
+                remove((T) row, entry);
+                add((T) row, entry.mOrder);
+            } else {
+                // We don't know about the row, so the list itself must have
+                // changed without telling us.
+                invalidate();
+            }
+        }
+    }
+
+    private void validate() {
+        if (!mValid) {
+            int order = 0;
+            for (T row : mSource.get()) {
+                add(row, order++);
+            }
+            mValid = true;
+        }
+    }
+
+    private void add(T row, int order) {
+        Entry entry = new Entry(order, fold(mName.apply(row)), mSpecialization != null ? fold(mSpecialization.apply(row)) : ""); //$NON-NLS-1$
+        mEntries.put(row, entry);
+        Bucket<T> bucket = mBuckets.get(entry.mName);
+        if (bucket == null) {
+            bucket = new Bucket<>();
+            mBuckets.put(entry.mName, bucket);
+        }
+        insert(bucket.mRows, row, order);
+        ArrayList<T> rows = bucket.mBySpecialization.get(entry.mSpecialization);
+        if (rows == null) {
+            rows = new ArrayList<>(1);
+            bucket.mBySpecialization.put(entry.mSpecialization, rows);
+        }
+        insert(rows, row, order);
+    }
+
+    private void insert(ArrayList<T> rows, T row, int order) {
+        int i = rows.size();
+        while (i > 0 && mEntries.get(rows.get(i - 1)).mOrder > order) {
+            i--;
+        }
+        rows.add(i, row);
+    }
+
+    private void remove(T row, Entry entry) {
+        mEntries.remove(row);
+        Bucket<T> bucket = mBuckets.get(entry.mName);
+        if (bucket != null) {
+            bucket.mRows.remove(row);
+            ArrayList<T> rows = bucket.mBySpecialization.get(entry.mSpecialization);
+            if (rows != null) {
+                rows.remove(row);
+                if (rows.isEmpty()) {
+                    bucket.mBySpecialization.remove(entry.mSpecialization);
+                }
+            }
+            if (bucket.mRows.isEmpty()) {
+                mBuckets.remove(entry.mName);
+            }
+        }
+    }
+
+    private static String fold(String text) {
+        return text != null ? text.toLowerCase(Locale.ROOT) : ""; //$NON-NLS-1$
+    }
+
+    private static class Entry {
+        int    mOrder;
+        String mName;
+        String mSpecialization;
+
+        Entry(int order, String name, String specialization) {
+            mOrder          = order;
+            mName           = name;
+            mSpecialization = specialization;
+        }
+    }
+
+    private static class Bucket<T> {
+        ArrayList<T>                  mRows             = new ArrayList<>(1);
+        HashMap<String, ArrayList<T>> mBySpecialization = new HashMap<>();
+    }
+}
@@ -90,13 +90,14 @@ public class SheetDockable extends CommonDockable implements SearchTarget, Retar
     private JComboBox<Scales>           mScaleCombo;
     private Search                      mSearch;
     private JComboBox<HitLocationTable> mHitLocationTableCombo;
-    private PrerequisitesThread         mPrereqThread;
+    private CharacterEngine             mEngine;
 
     /** Creates a new {@link SheetDockable}. */
     public SheetDockable(GURPSCharacter character) {
         super(character);
         GURPSCharacter dataFile = getDataFile();
-        mSheet = new CharacterSheet(dataFile);
+        mEngine = new CharacterEngine(dataFile, true);
+        mSheet  = new CharacterSheet(mEngine);
         createToolbar();
         JScrollPane scroller = new JScrollPane(mSheet);
         scroller.setBorder(null);
@@ -105,9 +106,7 @@ public class SheetDockable extends CommonDockable implements SearchTarget, Retar
         viewport.addChangeListener(mSheet);
         add(scroller, BorderLayout.CENTER);
         mSheet.rebuild();
-        mPrereqThread = new PrerequisitesThread(mSheet);
-        mPrereqThread.start();
-        PrerequisitesThread.waitForProcessingToFinish(dataFile);
+        mEngine.calculate();
         dataFile.setModified(false);
         StdUndoManager undoManager = getUndoManager();
         undoManager.discardAllEdits();
@@ -135,6 +134,7 @@ public class SheetDockable extends CommonDockable implements SearchTarget, Retar
         boolean closed = super.attemptClose();
         if (closed) {
             mSheet.dispose();
+            mEngine.dispose();
         }
         return closed;
     }
@@ -440,7 +440,7 @@ public class SheetDockable extends CommonDockable implements SearchTarget, Retar
 
     /** Notify background threads of prereq or feature modifications. */
     public void notifyOfPrereqOrFeatureModification() {
-        mPrereqThread.markForUpdate();
+        mEngine.markForUpdate();
     }
 
     @Override
@@ -0,0 +1,309 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.preferences.OutputPreferences;
+import com.trollworks.toolkit.io.xml.XMLWriter;
+import com.trollworks.toolkit.ui.image.StdImage;
+import com.trollworks.toolkit.utility.FileType;
+import com.trollworks.toolkit.utility.PathUtils;
+
+import java.io.BufferedWriter;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Exports a set of sheets at once. The text template is resolved once for the whole run, and the
+ * compiled template and PDF fonts are shared by every sheet. Independent sheets are exported
+ * concurrently on a pool of worker threads. Each worker loads a private {@link Copy} of its
+ * character, calculates it and lays out a detached {@link CharacterSheet} for it, so the text
+ * output, painting the pages and encoding them all happen on the worker, without involving the
+ * event dispatch thread. PNG pages are rendered a few at a time, and the number of rendered pages
+ * waiting to be encoded across all the sheets is bounded.
+ */
+public class SheetExporter {
+    /** The formats a sheet may be exported in. */
+    public enum Format {
+        /** Output through the text template. */
+        TEXT,
+        /** A PDF document. */
+        PDF,
+        /** One PNG image per page. */
+        PNG,
+        /** The character, along with the values calculated for it. */
+        JSON
+    }
+
+    /** Receives progress from, and may cancel, an export. */
+    public interface Progress {
+        /** @return <code>true</code> if the remaining sheets should be skipped. */
+        boolean isCanceled();
+
+        /**
+         * Called once for each sheet as it finishes, from the worker thread that exported it.
+         *
+         * @param name    The base name of the sheet's files.
+         * @param files   The files that were created.
+         * @param failure The reason the sheet could not be fully exported, or <code>null</code>.
+         */
+        void exported(String name, List<File> files, Exception failure);
+    }
+
+    /**
+     * A private copy of a character. It is taken on the thread that owns the character, after
+     * which it may be exported from any other, while the character itself goes on being edited.
+     */
+    public static class Copy {
+        private File   mFile;
+        private byte[] mData;
+
+        /** @param character The character to copy. */
+        public Copy(GURPSCharacter character) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            try (XMLWriter out = new XMLWriter(buffer)) {
+                out.writeHeader();
+                character.save(out, true, false);
+                if (out.checkError()) {
+                    throw new IOException();
+                }
+            }
+            mFile = character.getFile();
+            mData = buffer.toByteArray();
+        }
+
+        /** @return A new character, loaded from the copy. */
+        GURPSCharacter load() throws IOException {
+            GURPSCharacter character = new GURPSCharacter();
+            character.load(new InputStreamReader(new ByteArrayInputStream(mData), StandardCharsets.UTF_8));
+            character.setFile(mFile);
+            return character;
+        }
+    }
+
+    private EnumSet<Format> mFormats;
+    private int             mWorkers;
+    private File            mTextTemplate;
+    private int             mPagesPerBatch;
+    private Semaphore       mPagesInFlight;
+
+    /**
+     * @param formats The formats to export each sheet in.
+     * @param workers The number of sheets to export at once.
+     */
+    public SheetExporter(Set<Format> formats, int workers) {
+        this(formats, workers, null);
+    }
+
+    /**
+     * @param formats      The formats to export each sheet in.
+     * @param workers      The number of sheets to export at once.
+     * @param textTemplate The text template to use, or <code>null</code> for the one set in the
+     *                     preferences.
+     */
+    public SheetExporter(Set<Format> formats, int workers, File textTemplate) {
+        mFormats = EnumSet.noneOf(Format.class);
+        mFormats.addAll(formats);
+        mWorkers = Math.max(workers, 1);
+        // Each rendered page is a full-resolution image, so only as many are held as can be encoded
+        // at once
+        int pagesInFlight = Math.max(Runtime.getRuntime().availableProcessors(), 2);
+        mPagesPerBatch = Math.max(pagesInFlight / mWorkers, 1);
+        mPagesInFlight = new Semaphore(pagesInFlight);
+        if (mFormats.contains(Format.TEXT)) {
+            mTextTemplate = TextTemplate.resolveTextTemplate(textTemplate);
+        }
+    }
+
+    /**
+     * @param dir    The directory the sheet will be exported into.
+     * @param name   The base name for the sheet's files.
+     * @param format The format.
+     * @return The file the sheet will be exported to. For {@link Format#PNG}, this is the file for
+     *         the first page.
+     */
+    public File getOutputFile(File dir, String name, Format format) {
+        String extension;
+        switch (format) {
+        case TEXT:
+            extension = PathUtils.getExtension(mTextTemplate.getName());
+            break;
+        case PDF:
+            extension = FileType.PDF_EXTENSION;
+            break;
+        case JSON:
+            extension = DataFile.JSON_EXTENSION;
+            break;
+        case PNG:
+        default:
+            extension = FileType.PNG_EXTENSION;
+            break;
+        }
+        return new File(dir, PathUtils.enforceExtension(name, extension));
+    }
+
+    /**
+     * Exports the characters, returning once all of them have been exported or the export has been
+     * canceled.
+     *
+     * @param copies   The copies of the characters to export, keyed by the base names of their
+     *                 files.
+     * @param dir      The directory to export into.
+     * @param progress The {@link Progress} to report to.
+     */
+    public void export(Map<String, Copy> copies, File dir, Progress progress) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(Math.min(mWorkers, Math.max(copies.size(), 1)));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Map.Entry<String, Copy> entry : copies.entrySet()) {
+                futures.add(pool.submit(() -> exportCopy(entry.getValue(), dir, entry.getKey(), progress)));
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException exception) {
+                    // exportSheet() reports its own failures
+                }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Exports a single sheet on the calling thread, which must own the sheet's layout, such as the
+     * thread that created a sheet with {@link #createDetachedSheet(CharacterEngine)}.
+     *
+     * @param sheet The sheet to export.
+     * @param dir   The directory to export into.
+     * @param name  The base name for the sheet's files.
+     * @return The files that were created.
+     */
+    public List<File> export(CharacterSheet sheet, File dir, String name) throws Exception {
+        List<File> files = new ArrayList<>();
+        exportSheet(sheet, dir, name, files, () -> false);
+        return files;
+    }
+
+    /**
+     * Lays out a detached sheet for a character on the calling thread, which becomes the owner of
+     * its layout. The sheet must be disposed of before the engine is.
+     *
+     * @param engine The engine for the character, which should already have been calculated.
+     * @return The sheet.
+     */
+    public static CharacterSheet createDetachedSheet(CharacterEngine engine) {
+        CharacterSheet sheet = new CharacterSheet(engine, true);
+        sheet.addNotify(); // Required to allow layout to work
+        sheet.rebuild();
+        sheet.setSize(sheet.getPreferredSize());
+        return sheet;
+    }
+
+    private void exportCopy(Copy copy, File dir, String name, Progress progress) {
+        List<File> files   = new ArrayList<>();
+        Exception  failure = null;
+        try {
+            if (progress.isCanceled()) {
+                return;
+            }
+            CharacterEngine engine = new CharacterEngine(copy.load());
+            try {
+                engine.calculate();
+                CharacterSheet sheet = createDetachedSheet(engine);
+                try {
+                    if (!exportSheet(sheet, dir, name, files, progress::isCanceled)) {
+                        return;
+                    }
+                } finally {
+                    sheet.dispose();
+                }
+            } finally {
+                engine.dispose();
+            }
+        } catch (Exception exception) {
+            failure = exception;
+        }
+        progress.exported(name, files, failure);
+    }
+
+    /** @return <code>false</code> if the export was canceled. */
+    private boolean exportSheet(CharacterSheet sheet, File dir, String name, List<File> files, BooleanSupplier canceled) throws Exception {
+        for (Format format : mFormats) {
+            if (canceled.getAsBoolean()) {
+                return false;
+            }
+            File file = getOutputFile(dir, name, format);
+            switch (format) {
+            case TEXT:
+                if (!new TextTemplate(sheet).export(file, mTextTemplate)) {
+                    throw new IOException(file.toString());
+                }
+                files.add(file);
+                break;
+            case PDF:
+                if (!sheet.saveAsPDF(file)) {
+                    throw new IOException(file.toString());
+                }
+                files.add(file);
+                break;
+            case PNG:
+                exportPNG(sheet, file, files, canceled);
+                break;
+            case JSON:
+                try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8))) {
+                    sheet.getCharacter().saveJSON(out);
+                }
+                files.add(file);
+                break;
+            default:
+                break;
+            }
+        }
+        return true;
+    }
+
+    private void exportPNG(CharacterSheet sheet, File file, List<File> files, BooleanSupplier canceled) throws Exception {
+        int dpi = OutputPreferences.getPNGResolution();
+        for (int first = 0; !canceled.getAsBoolean(); first += mPagesPerBatch) {
+            List<StdImage> pages;
+            mPagesInFlight.acquire(mPagesPerBatch);
+            try {
+                pages = sheet.renderPNGPages(dpi, first, mPagesPerBatch);
+                files.addAll(CharacterSheet.writePNGPages(file, pages, first, dpi));
+            } finally {
+                mPagesInFlight.release(mPagesPerBatch);
+            }
+            if (pages.size() < mPagesPerBatch) {
+                break;
+            }
+        }
+    }
+}
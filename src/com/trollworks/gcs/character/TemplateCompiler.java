@@ -0,0 +1,229 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Compiles text templates into trees of {@link TemplateNode}s, so that a template is only parsed
+ * once rather than once per export and once per row of each loop. Compiled templates are cached
+ * for as long as the file they came from doesn't change.
+ */
+final class TemplateCompiler {
+    private String                      mEnhancedKeyParsingKey;
+    private LinkedHashMap<String, Loop> mLoops                = new LinkedHashMap<>();
+    private HashMap<File, CachedResult> mCache                = new HashMap<>();
+
+    private static class Loop {
+        String mEnd;
+        String mNestedStart;
+        String mNestedEnd;
+    }
+
+    private static class CachedResult {
+        long               mLastModified;
+        long               mLength;
+        List<TemplateNode> mNodes;
+    }
+
+    /**
+     * @param enhancedKeyParsingKey The key that turns on the ability to enclose keys with '@' for
+     *                              the remainder of the template.
+     */
+    TemplateCompiler(String enhancedKeyParsingKey) {
+        mEnhancedKeyParsingKey = enhancedKeyParsingKey;
+    }
+
+    /**
+     * Adds a loop. Loops are recognized by the prefix of their starting key, in the order they
+     * were added.
+     *
+     * @param start The prefix of the key that starts the loop.
+     * @param end   The key that ends the loop.
+     * @return This compiler.
+     */
+    TemplateCompiler addLoop(String start, String end) {
+        return addLoop(start, end, null, null);
+    }
+
+    /**
+     * Adds a loop that may hold a single level of nested loops within its body.
+     *
+     * @param start       The prefix of the key that starts the loop.
+     * @param end         The key that ends the loop.
+     * @param nestedStart The prefix of the key that starts a nested loop.
+     * @param nestedEnd   The key that ends a nested loop.
+     * @return This compiler.
+     */
+    TemplateCompiler addLoop(String start, String end, String nestedStart, String nestedEnd) {
+        Loop loop = new Loop();
+        loop.mEnd         = end;
+        loop.mNestedStart = nestedStart;
+        loop.mNestedEnd   = nestedEnd;
+        mLoops.put(start, loop);
+        return this;
+    }
+
+    /**
+     * @param template The template file.
+     * @return The compiled template, from the cache if the file hasn't changed since it was last
+     *         compiled.
+     */
+    synchronized List<TemplateNode> get(File template) throws IOException {
+        File         file         = template.getAbsoluteFile();
+        long         lastModified = file.lastModified();
+        long         length       = file.length();
+        CachedResult result       = mCache.get(file);
+        if (result == null || result.mLastModified != lastModified || result.mLength != length) {
+            result               = new CachedResult();
+            result.mLastModified = lastModified;
+            result.mLength       = length;
+            result.mNodes        = compile(new String(Files.readAllBytes(file.toPath()), Charset.defaultCharset()));
+            mCache.put(file, result);
+        }
+        return result.mNodes;
+    }
+
+    /**
+     * @param text The text of a template.
+     * @return The compiled template.
+     */
+    List<TemplateNode> compile(String text) {
+        List<TemplateNode> nodes    = new ArrayList<>();
+        StringBuilder      literal  = new StringBuilder();
+        boolean            enhanced = false;
+        int                length   = text.length();
+        int                i        = 0;
+        while (i < length) {
+            char ch = text.charAt(i++);
+            if (ch != '@') {
+                literal.append(ch);
+                continue;
+            }
+            int keyStart = i;
+            i = skipKey(text, i);
+            String key = text.substring(keyStart, i);
+            if (i == length) {
+                if (!key.isEmpty()) {
+                    flushLiteral(nodes, literal);
+                    nodes.add(TemplateNode.createKey(key));
+                }
+                break;
+            }
+            if (enhanced && text.charAt(i) == '@') {
+                i++;        // Allow KEYs to be surrounded by @KEY@
+            }
+            flushLiteral(nodes, literal);
+            if (key.equals(mEnhancedKeyParsingKey)) {
+                enhanced = true;
+            }
+            Loop loop = findLoop(key);
+            if (loop != null) {
+                int end = findEndMarker(text, i, loop.mEnd);
+                nodes.add(TemplateNode.createLoop(key, compileBody(text.substring(i, end), enhanced, loop)));
+                i = Math.min(end + 1 + loop.mEnd.length(), length);
+            } else {
+                nodes.add(TemplateNode.createKey(key));
+            }
+        }
+        flushLiteral(nodes, literal);
+        return Collections.unmodifiableList(nodes);
+    }
+
+    private List<TemplateNode> compileBody(String text, boolean enhanced, Loop loop) {
+        List<TemplateNode> nodes   = new ArrayList<>();
+        StringBuilder      literal = new StringBuilder();
+        int                length  = text.length();
+        int                i       = 0;
+        while (i < length) {
+            char ch = text.charAt(i++);
+            if (ch != '@') {
+                literal.append(ch);
+                continue;
+            }
+            int keyStart = i;
+            i = skipKey(text, i);
+            String key = text.substring(keyStart, i);
+            if (i < length && enhanced && text.charAt(i) == '@') {
+                i++;        // Allow KEYs to be surrounded by @KEY@
+            }
+            flushLiteral(nodes, literal);
+            if (loop != null && loop.mNestedStart != null && key.startsWith(loop.mNestedStart)) {
+                int end = text.indexOf(loop.mNestedEnd, i);
+                if (end > i) {
+                    nodes.add(TemplateNode.createLoop(key, compileBody(text.substring(i, end - 1), enhanced, null)));
+                    // The character following the end of a nested loop is dropped, as it always has been
+                    i = Math.min(end + loop.mNestedEnd.length() + 1, length);
+                    continue;
+                }
+            }
+            if (i < length || !key.isEmpty()) {
+                nodes.add(TemplateNode.createKey(key));
+            }
+        }
+        flushLiteral(nodes, literal);
+        return Collections.unmodifiableList(nodes);
+    }
+
+    private Loop findLoop(String key) {
+        for (String start : mLoops.keySet()) {
+            if (key.startsWith(start)) {
+                return mLoops.get(start);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return The index of the '@' that starts the end marker, or the length of the text if the
+     *         marker isn't present.
+     */
+    private static int findEndMarker(String text, int start, String marker) {
+        int length = text.length();
+        int i      = start;
+        while ((i = text.indexOf('@', i)) != -1) {
+            int keyStart = ++i;
+            i = skipKey(text, i);
+            if (i < length && i - keyStart == marker.length() && text.startsWith(marker, keyStart)) {
+                return keyStart - 1;
+            }
+        }
+        return length;
+    }
+
+    private static int skipKey(String text, int i) {
+        int length = text.length();
+        while (i < length) {
+            char ch = text.charAt(i);
+            if (ch != '_' && !Character.isLetterOrDigit(ch)) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    private static void flushLiteral(List<TemplateNode> nodes, StringBuilder literal) {
+        if (literal.length() > 0) {
+            nodes.add(TemplateNode.createLiteral(literal.toString()));
+            literal.setLength(0);
+        }
+    }
+}
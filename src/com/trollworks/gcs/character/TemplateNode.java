@@ -0,0 +1,81 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.character;
+
+import java.util.List;
+
+/** A piece of a compiled text template: literal text, a key, or a loop around a body of nodes. */
+final class TemplateNode {
+    private String             mText;
+    private String             mKey;
+    private List<TemplateNode> mBody;
+
+    /**
+     * @param text The literal text.
+     * @return A node that emits the text as-is.
+     */
+    static TemplateNode createLiteral(String text) {
+        TemplateNode node = new TemplateNode();
+        node.mText = text;
+        return node;
+    }
+
+    /**
+     * @param key The key, without its leading '@'.
+     * @return A node that emits the value of the key.
+     */
+    static TemplateNode createKey(String key) {
+        TemplateNode node = new TemplateNode();
+        node.mKey = key;
+        return node;
+    }
+
+    /**
+     * @param key  The key that started the loop, without its leading '@'.
+     * @param body The nodes within the loop.
+     * @return A node that emits its body once for each item the loop covers.
+     */
+    static TemplateNode createLoop(String key, List<TemplateNode> body) {
+        TemplateNode node = new TemplateNode();
+        node.mKey  = key;
+        node.mBody = body;
+        return node;
+    }
+
+    private TemplateNode() {
+    }
+
+    /** @return Whether this is literal text. */
+    boolean isLiteral() {
+        return mText != null;
+    }
+
+    /** @return Whether this is a loop. */
+    boolean isLoop() {
+        return mBody != null;
+    }
+
+    /** @return The literal text, or <code>null</code>. */
+    String getText() {
+        return mText;
+    }
+
+    /** @return The key, or <code>null</code>. */
+    String getKey() {
+        return mKey;
+    }
+
+    /** @return The nodes within the loop, or <code>null</code>. */
+    List<TemplateNode> getBody() {
+        return mBody;
+    }
+}
@@ -39,13 +39,10 @@ import com.trollworks.toolkit.utility.FileType;
 import com.trollworks.toolkit.utility.PathUtils;
 import com.trollworks.toolkit.utility.text.Numbers;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.text.DateFormat;
 import java.text.MessageFormat;
 import java.util.ArrayList;
@@ -264,9 +261,29 @@ public class TextTemplate {
     private static final String KEY_AMMO_TYPE                         = "AmmoType:";
     private static final String KEY_USES_AMMO_TYPE                    = "UsesAmmoType:";
 
+    private static final TemplateCompiler COMPILER = new TemplateCompiler(KEY_ENHANCED_KEY_PARSING)
+            .addLoop(KEY_ENCUMBRANCE_LOOP_START, KEY_ENCUMBRANCE_LOOP_END)
+            .addLoop(KEY_HIT_LOCATION_LOOP_START, KEY_HIT_LOCATION_LOOP_END)
+            .addLoop(KEY_ADVANTAGES_LOOP_START, KEY_ADVANTAGES_LOOP_END)
+            .addLoop(KEY_ADVANTAGES_ALL_LOOP_START, KEY_ADVANTAGES_ALL_LOOP_END)
+            .addLoop(KEY_ADVANTAGES_ONLY_LOOP_START, KEY_ADVANTAGES_ONLY_LOOP_END)
+            .addLoop(KEY_DISADVANTAGES_LOOP_START, KEY_DISADVANTAGES_LOOP_END)
+            .addLoop(KEY_DISADVANTAGES_ALL_LOOP_START, KEY_DISADVANTAGES_ALL_LOOP_END)
+            .addLoop(KEY_QUIRKS_LOOP_START, KEY_QUIRKS_LOOP_END)
+            .addLoop(KEY_PERKS_LOOP_START, KEY_PERKS_LOOP_END)
+            .addLoop(KEY_LANGUAGES_LOOP_START, KEY_LANGUAGES_LOOP_END)
+            .addLoop(KEY_CULTURAL_FAMILIARITIES_LOOP_START, KEY_CULTURAL_FAMILIARITIES_LOOP_END)
+            .addLoop(KEY_SKILLS_LOOP_START, KEY_SKILLS_LOOP_END)
+            .addLoop(KEY_SPELLS_LOOP_START, KEY_SPELLS_LOOP_END)
+            .addLoop(KEY_MELEE_LOOP_START, KEY_MELEE_LOOP_END)
+            .addLoop(KEY_HIERARCHICAL_MELEE_LOOP_START, KEY_HIERARCHICAL_MELEE_LOOP_END, KEY_ATTACK_MODES_LOOP_START, KEY_ATTACK_MODES_LOOP_END)
+            .addLoop(KEY_RANGED_LOOP_START, KEY_RANGED_LOOP_END)
+            .addLoop(KEY_HIERARCHICAL_RANGED_LOOP_START, KEY_HIERARCHICAL_RANGED_LOOP_END, KEY_ATTACK_MODES_LOOP_START, KEY_ATTACK_MODES_LOOP_END)
+            .addLoop(KEY_EQUIPMENT_LOOP_START, KEY_EQUIPMENT_LOOP_END)
+            .addLoop(KEY_NOTES_LOOP_START, KEY_NOTES_LOOP_END);
+
     private CharacterSheet      mSheet;
     private boolean             mEncodeText                           = true;
-    private boolean             mEnhancedKeyParsing                   = false;
     HashSet<String>             mOnlyCategories                       = new HashSet<>();
     HashSet<String>             mExcludedCategories                   = new HashSet<>();
 
@@ -291,37 +308,13 @@ public class TextTemplate {
      */
     public boolean export(File exportTo, File template) {
         try {
-            char[]        buffer           = new char[1];
-            boolean       lookForKeyMarker = true;
-            StringBuilder keyBuffer        = new StringBuilder();
-            template = resolveTextTemplate(template);
-            try (BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(template)))) {
-                try (BufferedWriter out = new BufferedWriter(new FileWriter(exportTo))) {
-                    while (in.read(buffer) != -1) {
-                        char ch = buffer[0];
-                        if (lookForKeyMarker) {
-                            if (ch == '@') {
-                                lookForKeyMarker = false;
-                                in.mark(1);
-                            } else {
-                                out.append(ch);
-                            }
-                        } else {
-                            if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                                keyBuffer.append(ch);
-                                in.mark(1);
-                            } else {
-                                if (!mEnhancedKeyParsing || ch != '@') {
-                                    in.reset();        // Allow KEYs to be surrounded by @KEY@
-                                }
-                                emitKey(in, out, keyBuffer.toString(), exportTo);
-                                keyBuffer.setLength(0);
-                                lookForKeyMarker = true;
-                            }
-                        }
-                    }
-                    if (keyBuffer.length() != 0) {
-                        emitKey(in, out, keyBuffer.toString(), exportTo);
+            List<TemplateNode> nodes = COMPILER.get(resolveTextTemplate(template));
+            try (BufferedWriter out = new BufferedWriter(new FileWriter(exportTo), 64 * 1024)) {
+                for (TemplateNode node : nodes) {
+                    if (node.isLiteral()) {
+                        out.write(node.getText());
+                    } else {
+                        emitKey(out, node, exportTo);
                     }
                 }
             }
@@ -331,7 +324,8 @@ public class TextTemplate {
         }
     }
 
-    private void emitKey(BufferedReader in, BufferedWriter out, String key, File base) throws IOException {
+    private void emitKey(BufferedWriter out, TemplateNode node, File base) throws IOException {
+        String         key            = node.getKey();
         GURPSCharacter gurpsCharacter = mSheet.getCharacter();
         Profile        description    = gurpsCharacter.getDescription();
         switch (key) {
@@ -342,8 +336,7 @@ public class TextTemplate {
             mEncodeText = false;
             break;
         case KEY_ENHANCED_KEY_PARSING:      // Turn on the ability to enclose a KEY with @.
-            mEnhancedKeyParsing = true;     // ex: @KEY@. Useful for when output needs to
-            break;                          // be embedded. ex: "<HTML@KEY@TAG>"
+            break;                          // ex: @KEY@. Handled by the template compiler.
         case KEY_PORTRAIT:
             String fileName = PathUtils.enforceExtension(PathUtils.getLeafName(base.getName(), false), FileType.PNG_EXTENSION);
             AnnotatedImage.writePNG(new File(base.getParentFile(), fileName), description.getPortrait().getRetina(), 150, null);
@@ -614,43 +607,43 @@ public class TextTemplate {
             break;
         default:
             if (key.startsWith(KEY_ENCUMBRANCE_LOOP_START)) {
-                processEncumbranceLoop(out, extractUpToMarker(in, KEY_ENCUMBRANCE_LOOP_END));
+                processEncumbranceLoop(out, node.getBody());
             } else if (key.startsWith(KEY_HIT_LOCATION_LOOP_START)) {
-                processHitLocationLoop(out, extractUpToMarker(in, KEY_HIT_LOCATION_LOOP_END));
+                processHitLocationLoop(out, node.getBody());
             } else if (key.startsWith(KEY_ADVANTAGES_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_ADVANTAGES_LOOP_END), AdvantagesLoopType.ALL);
+                processAdvantagesLoop(out, node.getBody(), AdvantagesLoopType.ALL);
             } else if (key.startsWith(KEY_ADVANTAGES_ALL_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_ADVANTAGES_ALL_LOOP_END), AdvantagesLoopType.ADS_ALL);
+                processAdvantagesLoop(out, node.getBody(), AdvantagesLoopType.ADS_ALL);
             } else if (key.startsWith(KEY_ADVANTAGES_ONLY_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_ADVANTAGES_ONLY_LOOP_END), AdvantagesLoopType.ADS);
+                processAdvantagesLoop(out, node.getBody(), AdvantagesLoopType.ADS);
             } else if (key.startsWith(KEY_DISADVANTAGES_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_DISADVANTAGES_LOOP_END), AdvantagesLoopType.DISADS);
+                processAdvantagesLoop(out, node.getBody(), AdvantagesLoopType.DISADS);
             } else if (key.startsWith(KEY_DISADVANTAGES_ALL_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_DISADVANTAGES_ALL_LOOP_END), AdvantagesLoopType.DISADS_ALL);
+                processAdvantagesLoop(out, node.getBody(), AdvantagesLoopType.DISADS_ALL);
             } else if (key.startsWith(KEY_QUIRKS_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_QUIRKS_LOOP_END), AdvantagesLoopType.QUIRKS);
+                processAdvantagesLoop(out, node.getBody(), AdvantagesLoopType.QUIRKS);
             } else if (key.startsWith(KEY_PERKS_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_PERKS_LOOP_END), AdvantagesLoopType.PERKS);
+                processAdvantagesLoop(out, node.getBody(), AdvantagesLoopType.PERKS);
             } else if (key.startsWith(KEY_LANGUAGES_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_LANGUAGES_LOOP_END), AdvantagesLoopType.LANGUAGES);
+                processAdvantagesLoop(out, node.getBody(), AdvantagesLoopType.LANGUAGES);
             } else if (key.startsWith(KEY_CULTURAL_FAMILIARITIES_LOOP_START)) {
-                processAdvantagesLoop(out, extractUpToMarker(in, KEY_CULTURAL_FAMILIARITIES_LOOP_END), AdvantagesLoopType.CULTURAL_FAMILIARITIES);
+                processAdvantagesLoop(out, node.getBody(), AdvantagesLoopType.CULTURAL_FAMILIARITIES);
             } else if (key.startsWith(KEY_SKILLS_LOOP_START)) {
-                processSkillsLoop(out, extractUpToMarker(in, KEY_SKILLS_LOOP_END));
+                processSkillsLoop(out, node.getBody());
             } else if (key.startsWith(KEY_SPELLS_LOOP_START)) {
-                processSpellsLoop(out, extractUpToMarker(in, KEY_SPELLS_LOOP_END));
+                processSpellsLoop(out, node.getBody());
             } else if (key.startsWith(KEY_MELEE_LOOP_START)) {
-                processMeleeLoop(out, extractUpToMarker(in, KEY_MELEE_LOOP_END));
+                processMeleeLoop(out, node.getBody());
             } else if (key.startsWith(KEY_HIERARCHICAL_MELEE_LOOP_START)) {
-                processHierarchicalMeleeLoop(out, extractUpToMarker(in, KEY_HIERARCHICAL_MELEE_LOOP_END));
+                processHierarchicalMeleeLoop(out, node.getBody());
             } else if (key.startsWith(KEY_RANGED_LOOP_START)) {
-                processRangedLoop(out, extractUpToMarker(in, KEY_RANGED_LOOP_END));
+                processRangedLoop(out, node.getBody());
             } else if (key.startsWith(KEY_HIERARCHICAL_RANGED_LOOP_START)) {
-                processHierarchicalRangedLoop(out, extractUpToMarker(in, KEY_HIERARCHICAL_RANGED_LOOP_END));
+                processHierarchicalRangedLoop(out, node.getBody());
             } else if (key.startsWith(KEY_EQUIPMENT_LOOP_START)) {
-                processEquipmentLoop(out, extractUpToMarker(in, KEY_EQUIPMENT_LOOP_END));
+                processEquipmentLoop(out, node.getBody());
             } else if (key.startsWith(KEY_NOTES_LOOP_START)) {
-                processNotesLoop(out, extractUpToMarker(in, KEY_NOTES_LOOP_END));
+                processNotesLoop(out, node.getBody());
             } else if (key.startsWith(KEY_ONLY_CATEGORIES)) {
                 setOnlyCategories(key);
             } else if (key.startsWith(KEY_EXCLUDE_CATEGORIES)) {
@@ -697,158 +690,85 @@ public class TextTemplate {
         out.write(mEncodeText ? XMLWriter.encodeData(text).replaceAll("&#10;", "<br>").replaceAll("\"", "&quot;") : text);
     }
 
-    private String extractUpToMarker(BufferedReader in, String marker) throws IOException {
-        char[]        buffer           = new char[1];
-        StringBuilder keyBuffer        = new StringBuilder();
-        StringBuilder extraction       = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        while (in.read(buffer) != -1) {
-            char ch = buffer[0];
-            if (lookForKeyMarker) {
-                if (ch == '@') {
-                    lookForKeyMarker = false;
-                    in.mark(1);
-                } else {
-                    extraction.append(ch);
-                }
-            } else {
-                if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                    keyBuffer.append(ch);
-                    in.mark(1);
-                } else {
-                    if (!mEnhancedKeyParsing || ch != '@') {
-                        in.reset();        // Allow KEYs to be surrounded by @KEY@
-                    }
-                    String key = keyBuffer.toString();
-                    in.reset();
-                    if (key.equals(marker)) {
-                        return extraction.toString();
-                    }
-                    extraction.append('@');
-                    extraction.append(key);
-                    keyBuffer.setLength(0);
-                    lookForKeyMarker = true;
-                }
-            }
-        }
-        return extraction.toString();
-    }
-
-    private void processEncumbranceLoop(BufferedWriter out, String contents) throws IOException {
-        GURPSCharacter gurpsCharacter   = mSheet.getCharacter();
-        int            length           = contents.length();
-        StringBuilder  keyBuffer        = new StringBuilder();
-        boolean        lookForKeyMarker = true;
+    private void processEncumbranceLoop(BufferedWriter out, List<TemplateNode> body) throws IOException {
+        GURPSCharacter gurpsCharacter = mSheet.getCharacter();
         for (Encumbrance encumbrance : Encumbrance.values()) {
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
+                    String key = node.getKey();
+                    switch (key) {
+                    case KEY_CURRENT_MARKER:
+                        if (encumbrance == gurpsCharacter.getEncumbranceLevel()) {
+                            out.write(CURRENT);
                         }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        switch (key) {
-                        case KEY_CURRENT_MARKER:
-                            if (encumbrance == gurpsCharacter.getEncumbranceLevel()) {
-                                out.write(CURRENT);
-                            }
-                            break;
-                        case KEY_CURRENT_MARKER_1:
-                            if (encumbrance == gurpsCharacter.getEncumbranceLevel()) {
-                                out.write(ONE);
-                            }
-                            break;
-                        case KEY_LEVEL:
-                            writeEncodedText(out, MessageFormat.format(encumbrance == gurpsCharacter.getEncumbranceLevel() ? EncumbrancePanel.CURRENT_ENCUMBRANCE_FORMAT : EncumbrancePanel.ENCUMBRANCE_FORMAT, encumbrance, Numbers.format(-encumbrance.getEncumbrancePenalty())));
-                            break;
-                        case KEY_LEVEL_ONLY:
-                            writeEncodedText(out, Numbers.format(-encumbrance.getEncumbrancePenalty()));
-                            break;
-                        case KEY_MAX_LOAD:
-                            writeEncodedText(out, gurpsCharacter.getMaximumCarry(encumbrance).toString());
-                            break;
-                        case KEY_MOVE:
-                            writeEncodedText(out, Numbers.format(gurpsCharacter.getMove(encumbrance)));
-                            break;
-                        case KEY_DODGE:
-                            writeEncodedText(out, Numbers.format(gurpsCharacter.getDodge(encumbrance)));
-                            break;
-                        default:
-                            writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                            break;
+                        break;
+                    case KEY_CURRENT_MARKER_1:
+                        if (encumbrance == gurpsCharacter.getEncumbranceLevel()) {
+                            out.write(ONE);
                         }
+                        break;
+                    case KEY_LEVEL:
+                        writeEncodedText(out, MessageFormat.format(encumbrance == gurpsCharacter.getEncumbranceLevel() ? EncumbrancePanel.CURRENT_ENCUMBRANCE_FORMAT : EncumbrancePanel.ENCUMBRANCE_FORMAT, encumbrance, Numbers.format(-encumbrance.getEncumbrancePenalty())));
+                        break;
+                    case KEY_LEVEL_ONLY:
+                        writeEncodedText(out, Numbers.format(-encumbrance.getEncumbrancePenalty()));
+                        break;
+                    case KEY_MAX_LOAD:
+                        writeEncodedText(out, gurpsCharacter.getMaximumCarry(encumbrance).toString());
+                        break;
+                    case KEY_MOVE:
+                        writeEncodedText(out, Numbers.format(gurpsCharacter.getMove(encumbrance)));
+                        break;
+                    case KEY_DODGE:
+                        writeEncodedText(out, Numbers.format(gurpsCharacter.getDodge(encumbrance)));
+                        break;
+                    default:
+                        writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                        break;
                     }
                 }
             }
         }
     }
 
-    private void processHitLocationLoop(BufferedWriter out, String contents) throws IOException {
-        GURPSCharacter   gurpsCharacter   = mSheet.getCharacter();
-        int              length           = contents.length();
-        StringBuilder    keyBuffer        = new StringBuilder();
-        boolean          lookForKeyMarker = true;
-        int              counter          = 0;
-        HitLocationTable table            = gurpsCharacter.getDescription().getHitLocationTable();
+    private void processHitLocationLoop(BufferedWriter out, List<TemplateNode> body) throws IOException {
+        GURPSCharacter   gurpsCharacter = mSheet.getCharacter();
+        int              counter        = 0;
+        HitLocationTable table          = gurpsCharacter.getDescription().getHitLocationTable();
         for (HitLocationTableEntry entry : table.getEntries()) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        switch (key) {
-                        case KEY_ROLL:
-                            writeEncodedText(out, entry.getRoll());
-                            break;
-                        case KEY_WHERE:
-                            writeEncodedText(out, entry.getName());
-                            break;
-                        case KEY_PENALTY:
-                            writeEncodedText(out, Numbers.format(entry.getHitPenalty()));
-                            break;
-                        case KEY_DR:
-                            writeEncodedText(out, Numbers.format(((Integer) gurpsCharacter.getValueForID(entry.getKey())).intValue()));
-                            break;
-                        case KEY_ID:
-                            writeEncodedText(out, Integer.toString(counter));
-                            break;
-                        case KEY_EQUIPMENT:     // Show the equipment that is providing the DR bonus
-                            writeEncodedText(out, hitLocationEquipment(entry).replace(NEWLINE, COMMA_SEPARATOR));
-                            break;
-                        case KEY_EQUIPMENT_FORMATTED:
-                            writeEncodedText(out, PARAGRAPH_START + hitLocationEquipment(entry).replace(NEWLINE, PARAGRAPH_END + NEWLINE + PARAGRAPH_START) + PARAGRAPH_END);
-                            break;
-                        default:
-                            writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                            break;
-                        }
+                    String key = node.getKey();
+                    switch (key) {
+                    case KEY_ROLL:
+                        writeEncodedText(out, entry.getRoll());
+                        break;
+                    case KEY_WHERE:
+                        writeEncodedText(out, entry.getName());
+                        break;
+                    case KEY_PENALTY:
+                        writeEncodedText(out, Numbers.format(entry.getHitPenalty()));
+                        break;
+                    case KEY_DR:
+                        writeEncodedText(out, Numbers.format(((Integer) gurpsCharacter.getValueForID(entry.getKey())).intValue()));
+                        break;
+                    case KEY_ID:
+                        writeEncodedText(out, Integer.toString(counter));
+                        break;
+                    case KEY_EQUIPMENT:     // Show the equipment that is providing the DR bonus
+                        writeEncodedText(out, hitLocationEquipment(entry).replace(NEWLINE, COMMA_SEPARATOR));
+                        break;
+                    case KEY_EQUIPMENT_FORMATTED:
+                        writeEncodedText(out, PARAGRAPH_START + hitLocationEquipment(entry).replace(NEWLINE, PARAGRAPH_END + NEWLINE + PARAGRAPH_START) + PARAGRAPH_END);
+                        break;
+                    default:
+                        writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                        break;
                     }
                 }
             }
@@ -885,62 +805,44 @@ public class TextTemplate {
         return sb.toString();
     }
 
-    private void processAdvantagesLoop(BufferedWriter out, String contents, AdvantagesLoopType loopType) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        int           counter          = 0;
+    private void processAdvantagesLoop(BufferedWriter out, List<TemplateNode> body, AdvantagesLoopType loopType) throws IOException {
+        int counter = 0;
         for (Advantage advantage : mSheet.getCharacter().getAdvantagesIterator(false)) {
             if (loopType.shouldInclude(advantage, mOnlyCategories, mExcludedCategories)) {
                 counter++;
-                for (int i = 0; i < length; i++) {
-                    char ch = contents.charAt(i);
-                    if (lookForKeyMarker) {
-                        if (ch == '@') {
-                            lookForKeyMarker = false;
-                        } else {
-                            out.append(ch);
-                        }
+                for (TemplateNode node : body) {
+                    if (node.isLiteral()) {
+                        out.write(node.getText());
                     } else {
-                        if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                            keyBuffer.append(ch);
-                        } else {
-                            String key = keyBuffer.toString();
-                            i--;
-                            if (mEnhancedKeyParsing && ch == '@') {
-                                i++;        // Allow KEYs to be surrounded with @, e.g. @KEY@
-                            }
-                            keyBuffer.setLength(0);
-                            lookForKeyMarker = true;
-                            if (!processStyleIndentWarning(key, out, advantage)) {
-                                if (!processDescription(key, out, advantage)) {
-                                    switch (key) {
-                                    case KEY_POINTS:
-                                        writeEncodedText(out, AdvantageColumn.POINTS.getDataAsText(advantage));
-                                        break;
-                                    case KEY_REF:
-                                        writeEncodedText(out, AdvantageColumn.REFERENCE.getDataAsText(advantage));
-                                        break;
-                                    case KEY_ID:
-                                        writeEncodedText(out, Integer.toString(counter));
-                                        break;
-                                    case KEY_TYPE:
-                                        writeEncodedText(out, advantage.canHaveChildren() ? advantage.getContainerType().name() : ITEM);
-                                        break;
-                                    default:
-                                        /* Allows the access to notes on modifiers.  Currently only used in the 'Language' loop.
-                                         * e.g. Advantage:Language, Modifier:Spoken -> Note:Native, Advantage:Language, Modifier:Written -> Note:Accented
-                                         */
-                                        if (key.startsWith(KEY_MODIFIER_NOTES_FOR)) {
-                                            Modifier m = advantage.getActiveModifierFor(key.substring(KEY_MODIFIER_NOTES_FOR.length()));
-                                            if (m != null) {
-                                                writeEncodedText(out, m.getNotes());
-                                            }
-                                        } else {
-                                            writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                        String key = node.getKey();
+                        if (!processStyleIndentWarning(key, out, advantage)) {
+                            if (!processDescription(key, out, advantage)) {
+                                switch (key) {
+                                case KEY_POINTS:
+                                    writeEncodedText(out, AdvantageColumn.POINTS.getDataAsText(advantage));
+                                    break;
+                                case KEY_REF:
+                                    writeEncodedText(out, AdvantageColumn.REFERENCE.getDataAsText(advantage));
+                                    break;
+                                case KEY_ID:
+                                    writeEncodedText(out, Integer.toString(counter));
+                                    break;
+                                case KEY_TYPE:
+                                    writeEncodedText(out, advantage.canHaveChildren() ? advantage.getContainerType().name() : ITEM);
+                                    break;
+                                default:
+                                    /* Allows the access to notes on modifiers.  Currently only used in the 'Language' loop.
+                                     * e.g. Advantage:Language, Modifier:Spoken -> Note:Native, Advantage:Language, Modifier:Written -> Note:Accented
+                                     */
+                                    if (key.startsWith(KEY_MODIFIER_NOTES_FOR)) {
+                                        Modifier m = advantage.getActiveModifierFor(key.substring(KEY_MODIFIER_NOTES_FOR.length()));
+                                        if (m != null) {
+                                            writeEncodedText(out, m.getNotes());
                                         }
-                                        break;
+                                    } else {
+                                        writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
                                     }
+                                    break;
                                 }
                             }
                         }
@@ -990,57 +892,39 @@ public class TextTemplate {
         }
     }
 
-    private void processSkillsLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        int           counter          = 0;
+    private void processSkillsLoop(BufferedWriter out, List<TemplateNode> body) throws IOException {
+        int counter = 0;
         for (Skill skill : mSheet.getCharacter().getSkillsIterator()) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        if (!processStyleIndentWarning(key, out, skill)) {
-                            if (!processDescription(key, out, skill)) {
-                                switch (key) {
-                                case KEY_SL:
-                                    writeEncodedText(out, SkillColumn.LEVEL.getDataAsText(skill));
-                                    break;
-                                case KEY_RSL:
-                                    writeEncodedText(out, SkillColumn.RELATIVE_LEVEL.getDataAsText(skill));
-                                    break;
-                                case KEY_DIFFICULTY:
-                                    writeEncodedText(out, SkillColumn.DIFFICULTY.getDataAsText(skill));
-                                    break;
-                                case KEY_POINTS:
-                                    writeEncodedText(out, SkillColumn.POINTS.getDataAsText(skill));
-                                    break;
-                                case KEY_REF:
-                                    writeEncodedText(out, SkillColumn.REFERENCE.getDataAsText(skill));
-                                    break;
-                                case KEY_ID:
-                                    writeEncodedText(out, Integer.toString(counter));
-                                    break;
-                                default:
-                                    writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                                    break;
-                                }
+                    String key = node.getKey();
+                    if (!processStyleIndentWarning(key, out, skill)) {
+                        if (!processDescription(key, out, skill)) {
+                            switch (key) {
+                            case KEY_SL:
+                                writeEncodedText(out, SkillColumn.LEVEL.getDataAsText(skill));
+                                break;
+                            case KEY_RSL:
+                                writeEncodedText(out, SkillColumn.RELATIVE_LEVEL.getDataAsText(skill));
+                                break;
+                            case KEY_DIFFICULTY:
+                                writeEncodedText(out, SkillColumn.DIFFICULTY.getDataAsText(skill));
+                                break;
+                            case KEY_POINTS:
+                                writeEncodedText(out, SkillColumn.POINTS.getDataAsText(skill));
+                                break;
+                            case KEY_REF:
+                                writeEncodedText(out, SkillColumn.REFERENCE.getDataAsText(skill));
+                                break;
+                            case KEY_ID:
+                                writeEncodedText(out, Integer.toString(counter));
+                                break;
+                            default:
+                                writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                                break;
                             }
                         }
                     }
@@ -1079,75 +963,57 @@ public class TextTemplate {
         return true;
     }
 
-    private void processSpellsLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        int           counter          = 0;
+    private void processSpellsLoop(BufferedWriter out, List<TemplateNode> body) throws IOException {
+        int counter = 0;
         for (Spell spell : mSheet.getCharacter().getSpellsIterator()) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        if (!processStyleIndentWarning(key, out, spell)) {
-                            if (!processDescription(key, out, spell)) {
-                                switch (key) {
-                                case KEY_CLASS:
-                                    writeEncodedText(out, spell.getSpellClass());
-                                    break;
-                                case KEY_COLLEGE:
-                                    writeEncodedText(out, spell.getCollege());
-                                    break;
-                                case KEY_MANA_CAST:
-                                    writeEncodedText(out, spell.getCastingCost());
-                                    break;
-                                case KEY_MANA_MAINTAIN:
-                                    writeEncodedText(out, spell.getMaintenance());
-                                    break;
-                                case KEY_TIME_CAST:
-                                    writeEncodedText(out, spell.getCastingTime());
-                                    break;
-                                case KEY_DURATION:
-                                    writeEncodedText(out, spell.getDuration());
-                                    break;
-                                case KEY_SL:
-                                    writeEncodedText(out, SpellColumn.LEVEL.getDataAsText(spell));
-                                    break;
-                                case KEY_RSL:
-                                    writeEncodedText(out, SpellColumn.RELATIVE_LEVEL.getDataAsText(spell));
-                                    break;
-                                case KEY_DIFFICULTY:
-                                    writeEncodedText(out, (spell.isVeryHard() ? SkillDifficulty.VH : SkillDifficulty.H).toString());
-                                    break;
-                                case KEY_POINTS:
-                                    writeEncodedText(out, SpellColumn.POINTS.getDataAsText(spell));
-                                    break;
-                                case KEY_REF:
-                                    writeEncodedText(out, SpellColumn.REFERENCE.getDataAsText(spell));
-                                    break;
-                                case KEY_ID:
-                                    writeEncodedText(out, Integer.toString(counter));
-                                    break;
-                                default:
-                                    writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                                    break;
-                                }
+                    String key = node.getKey();
+                    if (!processStyleIndentWarning(key, out, spell)) {
+                        if (!processDescription(key, out, spell)) {
+                            switch (key) {
+                            case KEY_CLASS:
+                                writeEncodedText(out, spell.getSpellClass());
+                                break;
+                            case KEY_COLLEGE:
+                                writeEncodedText(out, spell.getCollege());
+                                break;
+                            case KEY_MANA_CAST:
+                                writeEncodedText(out, spell.getCastingCost());
+                                break;
+                            case KEY_MANA_MAINTAIN:
+                                writeEncodedText(out, spell.getMaintenance());
+                                break;
+                            case KEY_TIME_CAST:
+                                writeEncodedText(out, spell.getCastingTime());
+                                break;
+                            case KEY_DURATION:
+                                writeEncodedText(out, spell.getDuration());
+                                break;
+                            case KEY_SL:
+                                writeEncodedText(out, SpellColumn.LEVEL.getDataAsText(spell));
+                                break;
+                            case KEY_RSL:
+                                writeEncodedText(out, SpellColumn.RELATIVE_LEVEL.getDataAsText(spell));
+                                break;
+                            case KEY_DIFFICULTY:
+                                writeEncodedText(out, (spell.isVeryHard() ? SkillDifficulty.VH : SkillDifficulty.H).toString());
+                                break;
+                            case KEY_POINTS:
+                                writeEncodedText(out, SpellColumn.POINTS.getDataAsText(spell));
+                                break;
+                            case KEY_REF:
+                                writeEncodedText(out, SpellColumn.REFERENCE.getDataAsText(spell));
+                                break;
+                            case KEY_ID:
+                                writeEncodedText(out, Integer.toString(counter));
+                                break;
+                            default:
+                                writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                                break;
                             }
                         }
                     }
@@ -1156,101 +1022,78 @@ public class TextTemplate {
         }
     }
 
-    private void processMeleeLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        int           counter          = 0;
+    private void processMeleeLoop(BufferedWriter out, List<TemplateNode> body) throws IOException {
+        int counter = 0;
         for (WeaponDisplayRow row : new FilteredIterator<>(mSheet.getMeleeWeaponOutline().getModel().getRows(), WeaponDisplayRow.class)) {
             counter++;
             MeleeWeaponStats weapon = (MeleeWeaponStats) row.getWeapon();
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i                = processMeleeWeaponKeys(out, key, counter, weapon, i, contents, null);
-                    }
+                    processMeleeWeaponKeys(out, node, counter, weapon, null);
                 }
             }
         }
     }
 
     /* Handle keys specific to MeleeWeaponStats.   If "attackModes" is NOT NULL, then we could allow processing of a hierarchical loop  */
-    private int processMeleeWeaponKeys(BufferedWriter out, String key, int counter, MeleeWeaponStats weapon, int index, String contents, ArrayList<MeleeWeaponStats> attackModes) throws IOException {
+    private void processMeleeWeaponKeys(BufferedWriter out, TemplateNode node, int counter, MeleeWeaponStats weapon, ArrayList<MeleeWeaponStats> attackModes) throws IOException {
+        String key = node.getKey();
         switch (key) {
         case KEY_PARRY:
             writeEncodedText(out, weapon.getResolvedParry());
-            return index;
+            break;
         case KEY_BLOCK:
             writeEncodedText(out, weapon.getResolvedBlock());
-            return index;
+            break;
         case KEY_REACH:
             writeEncodedText(out, weapon.getReach());
-            return index;
+            break;
         default:
-            if (attackModes != null && key.startsWith(KEY_ATTACK_MODES_LOOP_START)) {
-                int endIndex = contents.indexOf(KEY_ATTACK_MODES_LOOP_END);
-                if (endIndex > 0) {
-                    String subContents = contents.substring(index + 1, endIndex - 1);
-                    processMeleeAttackModes(out, subContents, attackModes);
-                    return endIndex + KEY_ATTACK_MODES_LOOP_END.length();
-                }
+            if (attackModes != null && node.isLoop()) {
+                processMeleeAttackModes(out, node.getBody(), attackModes);
+            } else {
+                processWeaponKeys(out, key, counter, weapon);
             }
-            return processWeaponKeys(out, key, counter, weapon, index);
+            break;
         }
     }
 
     /* Handle keys specific to RangedWeaponStats.   If "attackModes" is NOT NULL, then we could allow processing of a hierarchical loop  */
-    private int processRangedWeaponKeys(BufferedWriter out, String key, int counter, RangedWeaponStats weapon, int index, String contents, ArrayList<RangedWeaponStats> attackModes) throws IOException {
+    private void processRangedWeaponKeys(BufferedWriter out, TemplateNode node, int counter, RangedWeaponStats weapon, ArrayList<RangedWeaponStats> attackModes) throws IOException {
+        String key = node.getKey();
         switch (key) {
         case KEY_BULK:
             writeEncodedText(out, weapon.getBulk());
-            return index;
+            break;
         case KEY_ACCURACY:
             writeEncodedText(out, weapon.getAccuracy());
-            return index;
+            break;
         case KEY_RANGE:
             writeEncodedText(out, weapon.getRange());
-            return index;
+            break;
         case KEY_ROF:
             writeEncodedText(out, weapon.getRateOfFire());
-            return index;
+            break;
         case KEY_SHOTS:
             writeEncodedText(out, weapon.getShots());
-            return index;
+            break;
         case KEY_RECOIL:
             writeEncodedText(out, weapon.getRecoil());
-            return index;
+            break;
         default:
-            if (attackModes != null && key.startsWith(KEY_ATTACK_MODES_LOOP_START)) {
-                int endIndex = contents.indexOf(KEY_ATTACK_MODES_LOOP_END);
-                if (endIndex > 0) {
-                    String subContents = contents.substring(index + 1, endIndex - 1);
-                    processRangedAttackModes(out, subContents, attackModes);
-                    return endIndex + KEY_ATTACK_MODES_LOOP_END.length();
-                }
+            if (attackModes != null && node.isLoop()) {
+                processRangedAttackModes(out, node.getBody(), attackModes);
+            } else {
+                processWeaponKeys(out, key, counter, weapon);
             }
-            return processWeaponKeys(out, key, counter, weapon, index);
+            break;
         }
     }
 
     /* Break out handling of general weapons information. Anything known by WeaponStats or the equipment.  */
-    private int processWeaponKeys(BufferedWriter out, String key, int counter, WeaponStats weapon, int index) throws IOException {
+    private void processWeaponKeys(BufferedWriter out, String key, int counter, WeaponStats weapon) throws IOException {
         Equipment equipment = null;
         if (weapon.getOwner() instanceof Equipment) {
             equipment = (Equipment) weapon.getOwner();
@@ -1305,20 +1148,16 @@ public class TextTemplate {
                 break;
             }
         }
-        return index;
     }
 
     /* Process the weapons in a hierarchical format.   One time for each weapon with a unique name,
      * and then possibly one time for each different "attack mode" that the weapon can support.
      * e.g. Weapon Name: Spear, attack modes "1 Handed" and "2 Handed"
      */
-    private void processHierarchicalMeleeLoop(BufferedWriter out, String contents) throws IOException {
-        int                                          length           = contents.length();
-        StringBuilder                                keyBuffer        = new StringBuilder();
-        boolean                                      lookForKeyMarker = true;
-        int                                          counter          = 0;
-        HashMap<String, ArrayList<MeleeWeaponStats>> weaponsMap       = new HashMap<>();
-        HashMap<String, MeleeWeaponStats>            weapons          = new HashMap<>();
+    private void processHierarchicalMeleeLoop(BufferedWriter out, List<TemplateNode> body) throws IOException {
+        int                                          counter    = 0;
+        HashMap<String, ArrayList<MeleeWeaponStats>> weaponsMap = new HashMap<>();
+        HashMap<String, MeleeWeaponStats>            weapons    = new HashMap<>();
         for (WeaponDisplayRow row : new FilteredIterator<>(mSheet.getMeleeWeaponOutline().getModel().getRows(), WeaponDisplayRow.class)) {
             MeleeWeaponStats weapon = (MeleeWeaponStats) row.getWeapon();
             weapons.put(weapon.getDescription(), weapon);
@@ -1331,27 +1170,11 @@ public class TextTemplate {
         }
         for (MeleeWeaponStats weapon : weapons.values()) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i                = processMeleeWeaponKeys(out, key, counter, weapon, i, contents, weaponsMap.get(weapon.getDescription()));
-                    }
+                    processMeleeWeaponKeys(out, node, counter, weapon, weaponsMap.get(weapon.getDescription()));
                 }
             }
         }
@@ -1361,13 +1184,10 @@ public class TextTemplate {
      * and then possibly one time for each different "attack mode" that the weapon can support.
      * e.g. Weapon Name: Atlatl, attack modes "Shoot Dart" and "Shoot Javelin"
      */
-    private void processHierarchicalRangedLoop(BufferedWriter out, String contents) throws IOException {
-        int                                           length           = contents.length();
-        StringBuilder                                 keyBuffer        = new StringBuilder();
-        boolean                                       lookForKeyMarker = true;
-        int                                           counter          = 0;
-        HashMap<String, ArrayList<RangedWeaponStats>> weaponsMap       = new HashMap<>();
-        HashMap<String, RangedWeaponStats>            weapons          = new HashMap<>();
+    private void processHierarchicalRangedLoop(BufferedWriter out, List<TemplateNode> body) throws IOException {
+        int                                           counter    = 0;
+        HashMap<String, ArrayList<RangedWeaponStats>> weaponsMap = new HashMap<>();
+        HashMap<String, RangedWeaponStats>            weapons    = new HashMap<>();
         for (WeaponDisplayRow row : new FilteredIterator<>(mSheet.getRangedWeaponOutline().getModel().getRows(), WeaponDisplayRow.class)) {
             RangedWeaponStats weapon = (RangedWeaponStats) row.getWeapon();
             weapons.put(weapon.getDescription(), weapon);
@@ -1380,27 +1200,11 @@ public class TextTemplate {
         }
         for (RangedWeaponStats weapon : weapons.values()) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i                = processRangedWeaponKeys(out, key, counter, weapon, i, contents, weaponsMap.get(weapon.getDescription()));
-                    }
+                    processRangedWeaponKeys(out, node, counter, weapon, weaponsMap.get(weapon.getDescription()));
                 }
             }
         }
@@ -1409,34 +1213,15 @@ public class TextTemplate {
     /* Loop through all of the attackModes for a particular weapon.   We need to make melee/ranged specific
      * versions of this method because they must call the correct "processXXWeaponKeys" method.
      */
-    private void processMeleeAttackModes(BufferedWriter out, String contents, ArrayList<MeleeWeaponStats> attackModes) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        int           counter          = 0;
+    private void processMeleeAttackModes(BufferedWriter out, List<TemplateNode> body, ArrayList<MeleeWeaponStats> attackModes) throws IOException {
+        int counter = 0;
         for (MeleeWeaponStats weapon : attackModes) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i                = processMeleeWeaponKeys(out, key, counter, weapon, i, contents, null);
-                    }
+                    processMeleeWeaponKeys(out, node, counter, weapon, null);
                 }
             }
         }
@@ -1445,34 +1230,15 @@ public class TextTemplate {
     /* Loop through all of the attackModes for a particular weapon.   We need to make melee/ranged specific
      * versions of this method because they must call the correct "processXXWeaponKeys" method.
      */
-    private void processRangedAttackModes(BufferedWriter out, String contents, ArrayList<RangedWeaponStats> attackModes) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        int           counter          = 0;
+    private void processRangedAttackModes(BufferedWriter out, List<TemplateNode> body, ArrayList<RangedWeaponStats> attackModes) throws IOException {
+        int counter = 0;
         for (RangedWeaponStats weapon : attackModes) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i                = processRangedWeaponKeys(out, key, counter, weapon, i, contents, null);
-                    }
+                    processRangedWeaponKeys(out, node, counter, weapon, null);
                 }
             }
         }
@@ -1519,50 +1285,28 @@ public class TextTemplate {
         return true;
     }
 
-    private void processRangedLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        int           counter          = 0;
+    private void processRangedLoop(BufferedWriter out, List<TemplateNode> body) throws IOException {
+        int counter = 0;
         for (WeaponDisplayRow row : new FilteredIterator<>(mSheet.getRangedWeaponOutline().getModel().getRows(), WeaponDisplayRow.class)) {
             counter++;
             RangedWeaponStats weapon = (RangedWeaponStats) row.getWeapon();
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        i                = processRangedWeaponKeys(out, key, counter, weapon, i, contents, null);
-                    }
+                    processRangedWeaponKeys(out, node, counter, weapon, null);
                 }
             }
         }
     }
 
-    private void processEquipmentLoop(BufferedWriter out, String contents) throws IOException {
-        int                  length           = contents.length();
-        StringBuilder        keyBuffer        = new StringBuilder();
-        boolean              lookForKeyMarker = true;
-        int                  counter          = 0;
+    private void processEquipmentLoop(BufferedWriter out, List<TemplateNode> body) throws IOException {
+        int                  counter       = 0;
         // Create child-to-parent maps to determine where items are being stored.
         // Used by KEY_LOCATION
-        ArrayList<List<Row>> children         = new ArrayList<>();
-        ArrayList<Equipment> parents          = new ArrayList<>();
-        ArrayList<Equipment> equipmentList    = new ArrayList<>();
+        ArrayList<List<Row>> children      = new ArrayList<>();
+        ArrayList<Equipment> parents       = new ArrayList<>();
+        ArrayList<Equipment> equipmentList = new ArrayList<>();
         for (Equipment equipment : mSheet.getCharacter().getEquipmentIterator()) {
             if (shouldInclude(equipment)) {   // Allows category filtering
                 equipmentList.add(equipment);
@@ -1574,78 +1318,63 @@ public class TextTemplate {
         }
         for (Equipment equipment : equipmentList) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        if (!processStyleIndentWarning(key, out, equipment)) {
-                            if (!processDescription(key, out, equipment)) {
-                                switch (key) {
-                                case KEY_STATE:
-                                    out.write(equipment.getState().toShortName());
-                                    break;
-                                case KEY_QTY:
-                                    writeEncodedText(out, Numbers.format(equipment.getQuantity()));
-                                    break;
-                                case KEY_COST:
-                                    writeEncodedText(out, Numbers.format(equipment.getValue()));
-                                    break;
-                                case KEY_WEIGHT:
-                                    writeEncodedText(out, EquipmentColumn.getDisplayWeight(equipment.getWeight()));
-                                    break;
-                                case KEY_COST_SUMMARY:
-                                    writeEncodedText(out, Numbers.format(equipment.getExtendedValue()));
-                                    break;
-                                case KEY_WEIGHT_SUMMARY:
-                                    writeEncodedText(out, EquipmentColumn.getDisplayWeight(equipment.getExtendedWeight()));
-                                    break;
-                                case KEY_WEIGHT_RAW:
-                                    writeEncodedText(out, Numbers.format(equipment.getWeight().getNormalizedValue()));
-                                    break;
-                                case KEY_REF:
-                                    writeEncodedText(out, equipment.getReference());
-                                    break;
-                                case KEY_ID:
-                                    writeEncodedText(out, Integer.toString(counter));
-                                    break;
-                                case KEY_TL:
-                                    writeEncodedText(out, equipment.getTechLevel());
-                                    break;
-                                case KEY_LEGAILITY_CLASS:
-                                    writeEncodedText(out, equipment.getDisplayLegalityClass());
-                                    break;
-                                case KEY_CARRIED_STATUS:
-                                    writeEncodedText(out, Numbers.format(equipment.getCarriedStatus()));
-                                    break;
-                                case KEY_CATEGORIES:
-                                    writeEncodedText(out, equipment.getCategoriesAsString());
-                                    break;
-                                case KEY_LOCATION:
-                                    for (int j = 0; j < children.size(); j++) {
-                                        if (children.get(j).contains(equipment)) {
-                                            writeEncodedText(out, parents.get(j).getDescription());
-                                        }
+                    String key = node.getKey();
+                    if (!processStyleIndentWarning(key, out, equipment)) {
+                        if (!processDescription(key, out, equipment)) {
+                            switch (key) {
+                            case KEY_STATE:
+                                out.write(equipment.getState().toShortName());
+                                break;
+                            case KEY_QTY:
+                                writeEncodedText(out, Numbers.format(equipment.getQuantity()));
+                                break;
+                            case KEY_COST:
+                                writeEncodedText(out, Numbers.format(equipment.getValue()));
+                                break;
+                            case KEY_WEIGHT:
+                                writeEncodedText(out, EquipmentColumn.getDisplayWeight(equipment.getWeight()));
+                                break;
+                            case KEY_COST_SUMMARY:
+                                writeEncodedText(out, Numbers.format(equipment.getExtendedValue()));
+                                break;
+                            case KEY_WEIGHT_SUMMARY:
+                                writeEncodedText(out, EquipmentColumn.getDisplayWeight(equipment.getExtendedWeight()));
+                                break;
+                            case KEY_WEIGHT_RAW:
+                                writeEncodedText(out, Numbers.format(equipment.getWeight().getNormalizedValue()));
+                                break;
+                            case KEY_REF:
+                                writeEncodedText(out, equipment.getReference());
+                                break;
+                            case KEY_ID:
+                                writeEncodedText(out, Integer.toString(counter));
+                                break;
+                            case KEY_TL:
+                                writeEncodedText(out, equipment.getTechLevel());
+                                break;
+                            case KEY_LEGAILITY_CLASS:
+                                writeEncodedText(out, equipment.getDisplayLegalityClass());
+                                break;
+                            case KEY_CARRIED_STATUS:
+                                writeEncodedText(out, Numbers.format(equipment.getCarriedStatus()));
+                                break;
+                            case KEY_CATEGORIES:
+                                writeEncodedText(out, equipment.getCategoriesAsString());
+                                break;
+                            case KEY_LOCATION:
+                                for (int j = 0; j < children.size(); j++) {
+                                    if (children.get(j).contains(equipment)) {
+                                        writeEncodedText(out, parents.get(j).getDescription());
                                     }
-                                    break;
-                                default:
-                                    writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                                    break;
                                 }
+                                break;
+                            default:
+                                writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                                break;
                             }
                         }
                     }
@@ -1674,47 +1403,29 @@ public class TextTemplate {
         return true;
     }
 
-    private void processNotesLoop(BufferedWriter out, String contents) throws IOException {
-        int           length           = contents.length();
-        StringBuilder keyBuffer        = new StringBuilder();
-        boolean       lookForKeyMarker = true;
-        int           counter          = 0;
+    private void processNotesLoop(BufferedWriter out, List<TemplateNode> body) throws IOException {
+        int counter = 0;
         for (Note note : mSheet.getCharacter().getNoteIterator()) {
             counter++;
-            for (int i = 0; i < length; i++) {
-                char ch = contents.charAt(i);
-                if (lookForKeyMarker) {
-                    if (ch == '@') {
-                        lookForKeyMarker = false;
-                    } else {
-                        out.append(ch);
-                    }
+            for (TemplateNode node : body) {
+                if (node.isLiteral()) {
+                    out.write(node.getText());
                 } else {
-                    if (ch == '_' || Character.isLetterOrDigit(ch)) {
-                        keyBuffer.append(ch);
-                    } else {
-                        String key = keyBuffer.toString();
-                        i--;
-                        if (mEnhancedKeyParsing && ch == '@') {
-                            i++;        // Allow KEYs to be surrounded by @KEY@
-                        }
-                        keyBuffer.setLength(0);
-                        lookForKeyMarker = true;
-                        if (!processStyleIndentWarning(key, out, note)) {
-                            switch (key) {
-                            case KEY_NOTE:
-                                writeEncodedText(out, note.getDescription());
-                                break;
-                            case KEY_NOTE_FORMATTED:
-                                writeEncodedText(out, PARAGRAPH_START + note.getDescription().replace(NEWLINE, PARAGRAPH_END + NEWLINE + PARAGRAPH_START) + PARAGRAPH_END);
-                                break;
-                            case KEY_ID:
-                                writeEncodedText(out, Integer.toString(counter));
-                                break;
-                            default:
-                                writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
-                                break;
-                            }
+                    String key = node.getKey();
+                    if (!processStyleIndentWarning(key, out, note)) {
+                        switch (key) {
+                        case KEY_NOTE:
+                            writeEncodedText(out, note.getDescription());
+                            break;
+                        case KEY_NOTE_FORMATTED:
+                            writeEncodedText(out, PARAGRAPH_START + note.getDescription().replace(NEWLINE, PARAGRAPH_END + NEWLINE + PARAGRAPH_START) + PARAGRAPH_END);
+                            break;
+                        case KEY_ID:
+                            writeEncodedText(out, Integer.toString(counter));
+                            break;
+                        default:
+                            writeEncodedText(out, String.format(UNIDENTIFIED_KEY, key));
+                            break;
                         }
                     }
                 }
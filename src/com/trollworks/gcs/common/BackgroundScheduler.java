@@ -0,0 +1,245 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.common;
+
+import com.trollworks.toolkit.io.Log;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A shared pool of daemon threads for background work. Work is submitted through {@link Task}s,
+ * which run as soon as they are signaled rather than polling for changes. Independent pieces of a
+ * single unit of work may be spread across a separate fork/join pool with
+ * {@link #invokeAll(List)}.
+ */
+public class BackgroundScheduler {
+    private static final AtomicInteger               COUNTER  = new AtomicInteger();
+    private static final ScheduledThreadPoolExecutor EXECUTOR = new ScheduledThreadPoolExecutor(Math.max(2, Runtime.getRuntime().availableProcessors()), BackgroundScheduler::newThread);
+    private static final ForkJoinPool                PARALLEL = new ForkJoinPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * @param name The name of the task.
+     * @param work The work to perform each time the task runs.
+     * @return A new {@link Task}.
+     */
+    public static Task createTask(String name, Runnable work) {
+        return new Task(name, work);
+    }
+
+    /**
+     * Runs the jobs in parallel and waits for all of them to finish.
+     *
+     * @param jobs The jobs to run.
+     * @return The results of the jobs, in the same order as the jobs.
+     */
+    public static <T> List<T> invokeAll(List<Callable<T>> jobs) throws Exception {
+        ArrayList<T> results = new ArrayList<>(jobs.size());
+        if (jobs.size() == 1) {
+            results.add(jobs.get(0).call());
+        } else {
+            for (Future<T> future : PARALLEL.invokeAll(jobs)) {
+                try {
+                    results.add(future.get());
+                } catch (ExecutionException exception) {
+                    Throwable cause = exception.getCause();
+                    throw cause instanceof Exception ? (Exception) cause : exception;
+                }
+            }
+        }
+        return results;
+    }
+
+    private BackgroundScheduler() {
+    }
+
+    private static Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "Background #" + COUNTER.incrementAndGet()); //$NON-NLS-1$
+        thread.setPriority(Thread.NORM_PRIORITY);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /**
+     * A unit of background work. Any number of signals received while a run is pending are
+     * coalesced into that single run, and signals received while a run is in progress are
+     * coalesced into one follow-up run. A task never runs concurrently with itself.
+     */
+    public static final class Task {
+        private String                  mName;
+        private Runnable                mWork;
+        private CompletableFuture<Void> mPending;
+        private long                    mPendingDelay;
+        private boolean                 mQueued;
+        private ScheduledFuture<?>      mDelayed;
+        private CompletableFuture<Void> mRunning;
+        private Thread                  mThread;
+        private boolean                 mCancelled;
+
+        Task(String name, Runnable work) {
+            mName = name;
+            mWork = work;
+        }
+
+        /** @return The name of the task. */
+        public String getName() {
+            return mName;
+        }
+
+        /**
+         * Requests that the task run as soon as possible.
+         *
+         * @return A future that completes once the requested run has finished.
+         */
+        public synchronized CompletableFuture<Void> signal() {
+            if (mCancelled) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (mPending == null) {
+                mPending = new CompletableFuture<>();
+            }
+            mPendingDelay = 0;
+            dispatch();
+            return mPending;
+        }
+
+        /**
+         * Requests that the task run after a delay. If a run has already been requested, this has
+         * no effect other than returning the future for it.
+         *
+         * @param delay The delay before running.
+         * @param unit  The units of the delay.
+         * @return A future that completes once the requested run has finished.
+         */
+        public synchronized CompletableFuture<Void> signalAfter(long delay, TimeUnit unit) {
+            if (mCancelled) {
+                return CompletableFuture.completedFuture(null);
+            }
+            if (mPending == null) {
+                mPending      = new CompletableFuture<>();
+                mPendingDelay = unit.toMillis(delay);
+            }
+            dispatch();
+            return mPending;
+        }
+
+        /**
+         * @return A future that completes once the pending run, if any, or the run in progress,
+         *         if any, has finished. Note that the task may have been signaled again by the time
+         *         the future completes; use {@link #awaitIdle()} to wait until there is no more
+         *         work.
+         */
+        public synchronized CompletableFuture<Void> whenIdle() {
+            if (mPending != null) {
+                return mPending;
+            }
+            if (mRunning != null) {
+                return mRunning;
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        /**
+         * Blocks until the task has no pending run and no run in progress. Returns immediately when
+         * called from the task itself.
+         */
+        public void awaitIdle() {
+            if (!isCurrentThread()) {
+                CompletableFuture<Void> future;
+                while (!(future = whenIdle()).isDone()) {
+                    future.join();
+                }
+            }
+        }
+
+        /** @return Whether the calling thread is the one currently running this task. */
+        public synchronized boolean isCurrentThread() {
+            return mThread == Thread.currentThread();
+        }
+
+        /** Cancels any pending run and prevents further signals from having any effect. */
+        public void cancel() {
+            CompletableFuture<Void> pending;
+            synchronized (this) {
+                mCancelled = true;
+                if (mDelayed != null) {
+                    mDelayed.cancel(false);
+                    mDelayed = null;
+                }
+                pending  = mPending;
+                mPending = null;
+            }
+            if (pending != null) {
+                pending.complete(null);
+            }
+        }
+
+        private void dispatch() {
+            if (mPending != null && mRunning == null && !mQueued) {
+                if (mPendingDelay <= 0) {
+                    if (mDelayed != null) {
+                        mDelayed.cancel(false);
+                        mDelayed = null;
+                    }
+                    mQueued = true;
+                    EXECUTOR.execute(this::run);
+                } else if (mDelayed == null) {
+                    mDelayed = EXECUTOR.schedule(this::delayElapsed, mPendingDelay, TimeUnit.MILLISECONDS);
+                }
+            }
+        }
+
+        private synchronized void delayElapsed() {
+            mDelayed      = null;
+            mPendingDelay = 0;
+            dispatch();
+        }
+
+        private void run() {
+            CompletableFuture<Void> future;
+            boolean                 cancelled;
+            synchronized (this) {
+                future    = mPending;
+                cancelled = mCancelled;
+                mPending  = null;
+                mQueued   = false;
+                mRunning  = future;
+                mThread   = Thread.currentThread();
+            }
+            try {
+                if (!cancelled) {
+                    mWork.run();
+                }
+            } catch (Throwable throwable) {
+                Log.error(throwable);
+            } finally {
+                synchronized (this) {
+                    mRunning = null;
+                    mThread  = null;
+                    dispatch();
+                }
+                if (future != null) {
+                    future.complete(null);
+                }
+            }
+        }
+    }
+}
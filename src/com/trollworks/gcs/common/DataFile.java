@@ -28,11 +28,21 @@ import com.trollworks.toolkit.utility.notification.NotifierTarget;
 import com.trollworks.toolkit.utility.undo.StdUndoManager;
 
 import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Set;
 import java.util.UUID;
 
 import javax.swing.undo.UndoableEdit;
@@ -41,6 +51,10 @@ import javax.swing.undo.UndoableEdit;
 public abstract class DataFile implements Undoable {
     /** The 'id' attribute. */
     public static final String              ATTRIBUTE_ID           = "id"; //$NON-NLS-1$
+    /** The extension for files written by {@link #saveJSON(Writer)}. */
+    public static final String              JSON_EXTENSION         = "json"; //$NON-NLS-1$
+    private static final int                READ_BUFFER_SIZE       = 64 * 1024;
+    private static final int                SPLIT_THRESHOLD        = 64 * 1024;
     private File                            mFile;
     private UUID                            mId                    = UUID.randomUUID();
     private Notifier                        mNotifier              = new Notifier();
@@ -48,35 +62,152 @@ public abstract class DataFile implements Undoable {
     private StdUndoManager                  mUndoManager           = new StdUndoManager();
     private ArrayList<DataModifiedListener> mDataModifiedListeners = new ArrayList<>();
     private boolean                         mSortingMarksDirty     = true;
+    private volatile boolean                mNotificationsSuspended;
 
-    /** @param file The file to load. */
+    /**
+     * Loads the file from its snapshot in the {@link SnapshotCache} when it has one, and from its
+     * XML otherwise. Only data files for which {@link #canUseSnapshots()} returns
+     * <code>true</code> use snapshots, and files large enough to have their sections loaded in
+     * parallel don't, since a snapshot replays the whole document in a single pass.
+     *
+     * @param file The file to load.
+     */
     public void load(File file) throws IOException {
         setFile(file);
-        try (FileReader fileReader = new FileReader(file)) {
-            try (XMLReader reader = new XMLReader(fileReader)) {
-                XMLNodeType type  = reader.next();
-                boolean     found = false;
-                while (type != XMLNodeType.END_DOCUMENT) {
-                    if (type == XMLNodeType.START_TAG) {
-                        String name = reader.getName();
-                        if (matchesRootTag(name)) {
-                            if (!found) {
-                                found = true;
-                                load(reader, new LoadState());
-                            } else {
-                                throw new IOException();
-                            }
-                        } else {
-                            reader.skipTag(name);
-                        }
-                        type = reader.getType();
+        // Lazy rows need the original text to read the rest of themselves from
+        if (!canUseSnapshots() || !getLazyRowTags().isEmpty()) {
+            try (Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8), READ_BUFFER_SIZE)) {
+                load(in);
+            }
+            return;
+        }
+        byte[] data = Files.readAllBytes(file.toPath());
+        if (data.length >= SPLIT_THRESHOLD && !getSectionTags().isEmpty()) {
+            load(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+            return;
+        }
+        SnapshotCache  cache    = SnapshotCache.get();
+        String         key      = SnapshotCache.getKey(getClass(), data);
+        SnapshotReader snapshot = cache.open(key, data);
+        if (snapshot != null) {
+            try (XMLReader reader = snapshot) {
+                loadDocument(reader, new LoadState());
+            } catch (IOException | RuntimeException exception) {
+                cache.discard(key);
+                throw exception;
+            }
+            if (snapshot.hasFallenBack()) {
+                // The snapshot no longer matches what the loaders ask, so make it again next time
+                cache.discard(key);
+            }
+        } else {
+            // Files this small are never split into sections, so the whole document passes
+            // through the recorder
+            SnapshotRecorder recorder = new SnapshotRecorder(new InputStreamReader(new ByteArrayInputStream(data), StandardCharsets.UTF_8));
+            try (XMLReader reader = recorder) {
+                loadDocument(reader, new LoadState());
+            }
+            cache.store(key, recorder.getSnapshot());
+        }
+        mModified = false;
+    }
+
+    /**
+     * Loads the data from a stream. Unlike {@link #load(File)}, this does not change the result of
+     * {@link #getFile()}.
+     *
+     * @param in The stream to load the data from.
+     */
+    public void load(Reader in) throws IOException {
+        LoadState   state   = new LoadState();
+        Set<String> tags    = getSectionTags();
+        Set<String> rowTags = getLazyRowTags();
+        if (!tags.isEmpty() || !rowTags.isEmpty()) {
+            String text = readFully(in);
+            if (!rowTags.isEmpty()) {
+                state.mLazyRows = LazyRows.scan(text, rowTags);
+            }
+            if (!tags.isEmpty() && text.length() >= SPLIT_THRESHOLD) {
+                state.mSections = DocumentSections.split(text, tags);
+            }
+            in = new StringReader(state.mSections != null ? state.mSections.getRemainder() : text);
+        }
+        try (XMLReader reader = new XMLReader(in)) {
+            loadDocument(reader, state);
+        }
+        mModified = false;
+    }
+
+    private void loadDocument(XMLReader reader, LoadState state) throws IOException {
+        XMLNodeType type  = reader.next();
+        boolean     found = false;
+        while (type != XMLNodeType.END_DOCUMENT) {
+            if (type == XMLNodeType.START_TAG) {
+                String name = reader.getName();
+                if (matchesRootTag(name)) {
+                    if (!found) {
+                        found = true;
+                        load(reader, state);
                     } else {
-                        type = reader.next();
+                        throw new IOException();
                     }
+                } else {
+                    reader.skipTag(name);
                 }
+                type = reader.getType();
+            } else {
+                type = reader.next();
             }
         }
-        mModified = false;
+    }
+
+    private static String readFully(Reader in) throws IOException {
+        StringBuilder buffer = new StringBuilder(READ_BUFFER_SIZE);
+        char[]        chars  = new char[READ_BUFFER_SIZE];
+        int           count;
+        while ((count = in.read(chars)) != -1) {
+            buffer.append(chars, 0, count);
+        }
+        return buffer.toString();
+    }
+
+    /**
+     * Large files may have the sections with these tags split out of the document before it is
+     * parsed, so that they can be loaded in parallel. When that happens, the sections are left out
+     * of the {@link XMLReader} handed to {@link #loadSelf(XMLReader, LoadState)} and are instead
+     * made available through {@link LoadState#mSections}. By default, returns an empty set.
+     *
+     * @return The tags of the sections directly within the root tag that may be loaded in parallel.
+     */
+    @SuppressWarnings("static-method")
+    protected Set<String> getSectionTags() {
+        return Collections.emptySet();
+    }
+
+    /**
+     * When this returns <code>true</code>, {@link #load(File)} keeps a snapshot of what the loaders
+     * read in the {@link SnapshotCache}, and loads the file from it while the file is unchanged.
+     * The loaders of such a data file must only use the {@link XMLReader} methods a
+     * {@link SnapshotRecorder} records, and must not hand the reader to code outside of GCS. By
+     * default, returns <code>false</code>.
+     *
+     * @return Whether the data file may be loaded from a snapshot.
+     */
+    @SuppressWarnings("static-method")
+    protected boolean canUseSnapshots() {
+        return false;
+    }
+
+    /**
+     * When this returns any tags, the rows with those tags are loaded lazily: they skip the parts of
+     * themselves that aren't needed to display them until something asks for them. See
+     * {@link LazyRows}. By default, returns an empty set.
+     *
+     * @return The tags of the rows that should be loaded lazily.
+     */
+    @SuppressWarnings("static-method")
+    protected Set<String> getLazyRowTags() {
+        return Collections.emptySet();
     }
 
     /**
@@ -163,6 +294,102 @@ public abstract class DataFile implements Undoable {
      */
     protected abstract void saveSelf(XMLWriter out);
 
+    /**
+     * Writes the data out as JSON. The values calculated from the data, such as skill levels and
+     * encumbrance, are written alongside the data they were calculated from. Nothing is built up in
+     * memory first, so the JSON may be streamed straight to its destination.
+     *
+     * @param out The {@link Writer} to write to.
+     */
+    public void saveJSON(Writer out) throws IOException {
+        save(new JsonWriter(out));
+        out.flush();
+    }
+
+    /**
+     * Saves the root object.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(getXMLTagName());
+        out.name(LoadState.ATTRIBUTE_VERSION).value(getXMLTagVersion());
+        out.name(ATTRIBUTE_ID).value(mId.toString());
+        saveSelf(out);
+        out.name(JsonWriter.CALCULATED).startObject();
+        writeCalculated(out);
+        out.endObject();
+        out.endObject();
+    }
+
+    /**
+     * Called to save the data file as JSON.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    protected abstract void saveSelf(JsonWriter out) throws IOException;
+
+    /**
+     * Loads the data from JSON written by {@link #saveJSON(Writer)}. Calculated values are ignored.
+     * Like {@link #load(Reader)}, this does not change the result of {@link #getFile()}.
+     *
+     * @param in The stream to load the JSON from.
+     */
+    public void loadJSON(Reader in) throws IOException {
+        try (JsonReader reader = new JsonReader(in)) {
+            load(reader, new LoadState());
+            reader.finish();
+        }
+        mModified = false;
+    }
+
+    /**
+     * @param in    The {@link JsonReader} to load data from, positioned at the root object.
+     * @param state The {@link LoadState} to use.
+     */
+    public void load(JsonReader in, LoadState state) throws IOException {
+        if (!matchesRootTag(in.startTypedObject())) {
+            throw new IOException();
+        }
+        // The version and id are always written first, so the version is known before anything
+        // else is loaded
+        if (!LoadState.ATTRIBUTE_VERSION.equals(in.nextName())) {
+            throw new IOException();
+        }
+        state.mDataFileVersion = in.nextInt();
+        if (state.mDataFileVersion > getXMLTagVersion()) {
+            throw VersionException.createTooNew();
+        }
+        if (!ATTRIBUTE_ID.equals(in.nextName())) {
+            throw new IOException();
+        }
+        try {
+            mId = UUID.fromString(in.nextString());
+        } catch (Exception exception) {
+            mId = UUID.randomUUID();
+        }
+        loadSelf(in, state);
+        in.endObject();
+    }
+
+    /**
+     * Called to load the remaining members of the root object from JSON.
+     *
+     * @param in    The {@link JsonReader} to load data from.
+     * @param state The {@link LoadState} to use.
+     */
+    protected abstract void loadSelf(JsonReader in, LoadState state) throws IOException;
+
+    /**
+     * Called when writing JSON to add the values calculated for the data file as a whole to the
+     * calculated object of the root. Does nothing by default.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    protected void writeCalculated(JsonWriter out) throws IOException {
+        // Does nothing by default.
+    }
+
     /** @return Whether the file is empty. By default, returns <code>false</code>. */
     @SuppressWarnings("static-method")
     public boolean isEmpty() {
@@ -278,6 +505,9 @@ public abstract class DataFile implements Undoable {
      * {@link #notify(String,Object)}.
      */
     public void startNotify() {
+        if (mNotificationsSuspended) {
+            return;
+        }
         if (mNotifier.getBatchLevel() == 0) {
             startNotifyAtBatchLevelZero();
         }
@@ -298,6 +528,9 @@ public abstract class DataFile implements Undoable {
      * @param data Extra data specific to this notification.
      */
     public void notify(String type, Object data) {
+        if (mNotificationsSuspended) {
+            return;
+        }
         setModified(true);
         mNotifier.notify(this, type, data);
         notifyOccured();
@@ -312,6 +545,9 @@ public abstract class DataFile implements Undoable {
      * Ends the notification process. Must be called after calling {@link #notify(String,Object)}.
      */
     public void endNotify() {
+        if (mNotificationsSuspended) {
+            return;
+        }
         if (mNotifier.getBatchLevel() == 1) {
             endNotifyAtBatchLevelOne();
         }
@@ -337,6 +573,16 @@ public abstract class DataFile implements Undoable {
         endNotify();
     }
 
+    /**
+     * While notifications are suspended, they are dropped rather than sent. This allows rows to be
+     * loaded on several threads at once, which the notification machinery does not support.
+     *
+     * @param suspended Whether notifications should be suspended.
+     */
+    protected final void setNotificationsSuspended(boolean suspended) {
+        mNotificationsSuspended = suspended;
+    }
+
     /** @return The {@link StdUndoManager} to use. */
     @Override
     public final StdUndoManager getUndoManager() {
@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.common;
+
+import com.trollworks.toolkit.io.xml.XMLNodeType;
+import com.trollworks.toolkit.io.xml.XMLReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+
+/**
+ * Supports loading a document in two phases. The first phase splits the text of the document into
+ * the sections that sit directly within its root element and have one of a given set of tags, and
+ * the remainder of the document. In the second phase, each kind of section is parsed on its own
+ * worker with its own {@link XMLReader}, while the remainder is parsed as usual.
+ */
+public class DocumentSections {
+    private String                              mRemainder;
+    private LinkedHashMap<String, List<String>> mSections = new LinkedHashMap<>();
+
+    /** Loads a single section. */
+    public interface SectionLoader {
+        /**
+         * @param reader The {@link XMLReader} to load from, positioned at the start of the section.
+         * @param state  The {@link LoadState} to use. Each kind of section is given its own.
+         */
+        void load(XMLReader reader, LoadState state) throws IOException;
+    }
+
+    /**
+     * @param text The text of the document.
+     * @param tags The tags of the sections to split out.
+     * @return The split document, or <code>null</code> if no sections were found or the document
+     *         could not be split.
+     */
+    public static DocumentSections split(String text, Set<String> tags) {
+        DocumentSections sections  = new DocumentSections();
+        StringBuilder    remainder = new StringBuilder(text.length());
+        int              depth     = 0;
+        int              copied    = 0;
+        int              i         = 0;
+        while ((i = text.indexOf('<', i)) != -1) {
+            int end;
+            if (text.startsWith("<!--", i)) { //$NON-NLS-1$
+                end = indexAfter(text, "-->", i); //$NON-NLS-1$
+            } else if (text.startsWith("<![CDATA[", i)) { //$NON-NLS-1$
+                end = indexAfter(text, "]]>", i); //$NON-NLS-1$
+            } else if (text.startsWith("<?", i) || text.startsWith("<!", i)) { //$NON-NLS-1$ //$NON-NLS-2$
+                end = indexAfter(text, ">", i); //$NON-NLS-1$
+            } else if (text.startsWith("</", i)) { //$NON-NLS-1$
+                end = indexAfter(text, ">", i); //$NON-NLS-1$
+                depth--;
+            } else {
+                end = findEndOfStartTag(text, i);
+                if (end == -1) {
+                    return null;
+                }
+                boolean empty = text.charAt(end - 2) == '/';
+                String  name  = getTagName(text, i + 1);
+                if (depth == 1 && tags.contains(name)) {
+                    if (!empty) {
+                        // Sections are lists, which never hold another of their own kind
+                        end = indexAfter(text, "</" + name + ">", end); //$NON-NLS-1$ //$NON-NLS-2$
+                        if (end == -1) {
+                            return null;
+                        }
+                    }
+                    List<String> list = sections.mSections.get(name);
+                    if (list == null) {
+                        list = new ArrayList<>();
+                        sections.mSections.put(name, list);
+                    }
+                    list.add(text.substring(i, end));
+                    remainder.append(text, copied, i);
+                    copied = end;
+                } else if (!empty) {
+                    depth++;
+                }
+            }
+            if (end == -1) {
+                return null;
+            }
+            i = end;
+        }
+        if (sections.mSections.isEmpty()) {
+            return null;
+        }
+        remainder.append(text, copied, text.length());
+        sections.mRemainder = remainder.toString();
+        return sections;
+    }
+
+    static int indexAfter(String text, String marker, int start) {
+        int index = text.indexOf(marker, start);
+        return index == -1 ? -1 : index + marker.length();
+    }
+
+    static int findEndOfStartTag(String text, int start) {
+        int  length = text.length();
+        char quote  = 0;
+        for (int i = start + 1; i < length; i++) {
+            char ch = text.charAt(i);
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+            } else if (ch == '"' || ch == '\'') {
+                quote = ch;
+            } else if (ch == '>') {
+                return i + 1;
+            }
+        }
+        return -1;
+    }
+
+    static String getTagName(String text, int start) {
+        int length = text.length();
+        int i      = start;
+        while (i < length) {
+            char ch = text.charAt(i);
+            if (Character.isWhitespace(ch) || ch == '/' || ch == '>') {
+                break;
+            }
+            i++;
+        }
+        return text.substring(start, i);
+    }
+
+    private DocumentSections() {
+    }
+
+    /** @return The text of the document with the sections removed. */
+    public String getRemainder() {
+        return mRemainder;
+    }
+
+    /**
+     * Loads the sections, one worker per kind of section, returning once all of them have been
+     * loaded. Sections of the same kind are loaded in document order. Notifications from the data
+     * file are suspended while this happens.
+     *
+     * @param dataFile The {@link DataFile} being loaded.
+     * @param state    The {@link LoadState} being used for the document.
+     * @param loader   The {@link SectionLoader} to call for each section.
+     */
+    public void load(DataFile dataFile, LoadState state, SectionLoader loader) throws IOException {
+        List<Callable<Void>> jobs = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : mSections.entrySet()) {
+            LoadState    sectionState = state.createSectionState();
+            List<String> texts        = entry.getValue();
+            jobs.add(() -> {
+                for (String text : texts) {
+                    try (XMLReader reader = new XMLReader(new StringReader(text))) {
+                        if (reader.next() == XMLNodeType.START_TAG) {
+                            loader.load(reader, sectionState);
+                        }
+                    }
+                }
+                return null;
+            });
+        }
+        dataFile.setNotificationsSuspended(true);
+        try {
+            BackgroundScheduler.invokeAll(jobs);
+        } catch (IOException | RuntimeException exception) {
+            throw exception;
+        } catch (Exception exception) {
+            throw new IOException(exception);
+        } finally {
+            dataFile.setNotificationsSuspended(false);
+        }
+    }
+}
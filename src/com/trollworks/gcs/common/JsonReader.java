@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.common;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Reads JSON directly from a {@link Reader} a token at a time, without building up the document in
+ * memory first. The caller walks the document in the order it was written, asking for each object,
+ * array, name and value it expects, and skipping anything it doesn't understand.
+ */
+public class JsonReader implements Closeable {
+    private static final int NONE         = -2;
+    private static final int END_OF_INPUT = -1;
+    private static final int STRING       = '"';
+    private static final int LITERAL      = 'v';
+    private Reader           mIn;
+    private int              mPeekChar    = NONE;
+    private int              mPeekToken   = NONE;
+    private String           mToken;
+
+    /** @param in The {@link Reader} to read JSON from. */
+    public JsonReader(Reader in) {
+        mIn = in instanceof BufferedReader ? in : new BufferedReader(in);
+    }
+
+    /** Reads the start of an object. */
+    public void startObject() throws IOException {
+        hasNext();
+        expect(nextToken(), '{');
+    }
+
+    /** Reads the end of the current object. Any members that weren't read are skipped. */
+    public void endObject() throws IOException {
+        skipRemaining(true);
+        expect(nextToken(), '}');
+    }
+
+    /** Reads the start of an array. */
+    public void startArray() throws IOException {
+        hasNext();
+        expect(nextToken(), '[');
+    }
+
+    /** Reads the end of the current array. Any values that weren't read are skipped. */
+    public void endArray() throws IOException {
+        skipRemaining(false);
+        expect(nextToken(), ']');
+    }
+
+    /** @return Whether the current object or array has another member. */
+    public boolean hasNext() throws IOException {
+        int token = peekToken();
+        if (token == ',') {
+            mPeekToken = NONE;
+            token      = peekToken();
+        }
+        return token != '}' && token != ']' && token != END_OF_INPUT;
+    }
+
+    /** @return The name of the next member of the current object. */
+    public String nextName() throws IOException {
+        hasNext();
+        expect(nextToken(), STRING);
+        String name = mToken;
+        expect(nextToken(), ':');
+        return name;
+    }
+
+    /**
+     * Reads the start of an object written with its type as its first member, as
+     * {@link JsonWriter#startObject(String)} does.
+     *
+     * @return The type of the object.
+     */
+    public String startTypedObject() throws IOException {
+        startObject();
+        if (!JsonWriter.TYPE.equals(nextName())) {
+            throw new IOException();
+        }
+        return nextString();
+    }
+
+    /** @return The next value, which may be a string, a number or <code>null</code>. */
+    public String nextString() throws IOException {
+        hasNext();
+        int token = nextToken();
+        if (token == LITERAL) {
+            return "null".equals(mToken) ? null : mToken; //$NON-NLS-1$
+        }
+        expect(token, STRING);
+        return mToken;
+    }
+
+    /** @return The next value, which must be a boolean. */
+    public boolean nextBoolean() throws IOException {
+        String value = nextLiteral();
+        if ("true".equals(value)) { //$NON-NLS-1$
+            return true;
+        }
+        if ("false".equals(value)) { //$NON-NLS-1$
+            return false;
+        }
+        throw new IOException();
+    }
+
+    /** @return The next value, which must be a whole number. */
+    public int nextInt() throws IOException {
+        try {
+            return Integer.parseInt(nextLiteral());
+        } catch (NumberFormatException exception) {
+            throw new IOException(exception);
+        }
+    }
+
+    /** @return The next value, which must be a whole number. */
+    public long nextLong() throws IOException {
+        try {
+            return Long.parseLong(nextLiteral());
+        } catch (NumberFormatException exception) {
+            throw new IOException(exception);
+        }
+    }
+
+    /**
+     * @return The next value, which must be a number, or a string holding a number JSON can't
+     *         represent, as {@link JsonWriter#value(double)} writes them.
+     */
+    public double nextDouble() throws IOException {
+        try {
+            return Double.parseDouble(nextString());
+        } catch (NumberFormatException | NullPointerException exception) {
+            throw new IOException(exception);
+        }
+    }
+
+    /** Skips the next value, along with everything within it. */
+    public void skipValue() throws IOException {
+        hasNext();
+        int token = nextToken();
+        if (token == STRING || token == LITERAL) {
+            return;
+        }
+        if (token != '{' && token != '[') {
+            throw new IOException();
+        }
+        int depth = 1;
+        while (depth > 0) {
+            token = nextToken();
+            if (token == '{' || token == '[') {
+                depth++;
+            } else if (token == '}' || token == ']') {
+                depth--;
+            } else if (token == END_OF_INPUT) {
+                throw new IOException();
+            }
+        }
+    }
+
+    /** Checks that nothing but whitespace follows the document. */
+    public void finish() throws IOException {
+        expect(nextToken(), END_OF_INPUT);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mIn.close();
+    }
+
+    private void skipRemaining(boolean named) throws IOException {
+        while (hasNext()) {
+            if (named) {
+                nextName();
+            }
+            skipValue();
+        }
+    }
+
+    private String nextLiteral() throws IOException {
+        hasNext();
+        expect(nextToken(), LITERAL);
+        return mToken;
+    }
+
+    private static void expect(int token, int expected) throws IOException {
+        if (token != expected) {
+            throw new IOException();
+        }
+    }
+
+    private int peekToken() throws IOException {
+        if (mPeekToken == NONE) {
+            mPeekToken = readToken();
+        }
+        return mPeekToken;
+    }
+
+    private int nextToken() throws IOException {
+        int token = peekToken();
+        mPeekToken = NONE;
+        return token;
+    }
+
+    /**
+     * @return The next token, which is either a structural character, {@link #STRING} or
+     *         {@link #LITERAL} with its text left in {@link #mToken}, or {@link #END_OF_INPUT}.
+     */
+    private int readToken() throws IOException {
+        int ch = readChar();
+        while (ch != -1 && Character.isWhitespace(ch)) {
+            ch = readChar();
+        }
+        switch (ch) {
+        case -1:
+            return END_OF_INPUT;
+        case '{':
+        case '}':
+        case '[':
+        case ']':
+        case ':':
+        case ',':
+            return ch;
+        case '"':
+            mToken = readString();
+            return STRING;
+        default:
+            StringBuilder buffer = new StringBuilder();
+            while (ch != -1 && (Character.isLetterOrDigit(ch) || ch == '-' || ch == '+' || ch == '.')) {
+                buffer.append((char) ch);
+                ch = readChar();
+            }
+            if (buffer.length() == 0) {
+                throw new IOException();
+            }
+            mPeekChar = ch;
+            mToken    = buffer.toString();
+            return LITERAL;
+        }
+    }
+
+    private String readString() throws IOException {
+        StringBuilder buffer = new StringBuilder();
+        while (true) {
+            int ch = readChar();
+            switch (ch) {
+            case -1:
+                throw new IOException();
+            case '"':
+                return buffer.toString();
+            case '\\':
+                ch = readChar();
+                switch (ch) {
+                case 'b':
+                    buffer.append('\b');
+                    break;
+                case 'f':
+                    buffer.append('\f');
+                    break;
+                case 'n':
+                    buffer.append('\n');
+                    break;
+                case 'r':
+                    buffer.append('\r');
+                    break;
+                case 't':
+                    buffer.append('\t');
+                    break;
+                case 'u':
+                    char[] hex = new char[4];
+                    for (int i = 0; i < hex.length; i++) {
+                        ch = readChar();
+                        if (Character.digit(ch, 16) == -1) {
+                            throw new IOException();
+                        }
+                        hex[i] = (char) ch;
+                    }
+                    buffer.append((char) Integer.parseInt(new String(hex), 16));
+                    break;
+                case '"':
+                case '\\':
+                case '/':
+                    buffer.append((char) ch);
+                    break;
+                default:
+                    throw new IOException();
+                }
+                break;
+            default:
+                buffer.append((char) ch);
+                break;
+            }
+        }
+    }
+
+    private int readChar() throws IOException {
+        if (mPeekChar != NONE) {
+            int ch = mPeekChar;
+            mPeekChar = NONE;
+            return ch;
+        }
+        return mIn.read();
+    }
+}
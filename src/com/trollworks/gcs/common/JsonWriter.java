@@ -0,0 +1,189 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.common;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.BitSet;
+
+/**
+ * Writes JSON directly to a {@link Writer} as it is produced, without building up the document in
+ * memory first. The caller is responsible for balancing objects and arrays and for naming each
+ * value within an object.
+ */
+public class JsonWriter {
+    /** The name of the member that holds the type of an object. */
+    public static final String TYPE       = "type"; //$NON-NLS-1$
+    /** The name of the member that holds the values calculated for an object. */
+    public static final String CALCULATED = "calculated"; //$NON-NLS-1$
+    private Writer             mOut;
+    private BitSet             mHasValue  = new BitSet();
+    private int                mDepth;
+    private boolean            mNamed;
+
+    /** @param out The {@link Writer} to write to. */
+    public JsonWriter(Writer out) {
+        mOut = out;
+    }
+
+    /** Starts an object. */
+    public JsonWriter startObject() throws IOException {
+        return open('{');
+    }
+
+    /**
+     * Starts an object and writes its type as its first member, so that a {@link JsonReader} can
+     * tell what to create before reading the rest of it.
+     *
+     * @param type The type of the object.
+     */
+    public JsonWriter startObject(String type) throws IOException {
+        open('{');
+        return name(TYPE).value(type);
+    }
+
+    /** Ends the current object. */
+    public JsonWriter endObject() throws IOException {
+        return close('}');
+    }
+
+    /** Starts an array. */
+    public JsonWriter startArray() throws IOException {
+        return open('[');
+    }
+
+    /** Ends the current array. */
+    public JsonWriter endArray() throws IOException {
+        return close(']');
+    }
+
+    /**
+     * Names the next value within the current object.
+     *
+     * @param name The name.
+     */
+    public JsonWriter name(String name) throws IOException {
+        separate();
+        writeString(name);
+        mOut.write(':');
+        mNamed = true;
+        return this;
+    }
+
+    /** @param value The value to write. May be <code>null</code>. */
+    public JsonWriter value(String value) throws IOException {
+        separate();
+        if (value == null) {
+            mOut.write("null"); //$NON-NLS-1$
+        } else {
+            writeString(value);
+        }
+        return this;
+    }
+
+    /** @param value The value to write. */
+    public JsonWriter value(boolean value) throws IOException {
+        separate();
+        mOut.write(value ? "true" : "false"); //$NON-NLS-1$ //$NON-NLS-2$
+        return this;
+    }
+
+    /** @param value The value to write. */
+    public JsonWriter value(long value) throws IOException {
+        separate();
+        mOut.write(Long.toString(value));
+        return this;
+    }
+
+    /** @param value The value to write. Values that JSON can't represent are written as strings. */
+    public JsonWriter value(double value) throws IOException {
+        if (Double.isNaN(value) || Double.isInfinite(value)) {
+            return value(Double.toString(value));
+        }
+        if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return value((long) value);
+        }
+        separate();
+        mOut.write(Double.toString(value));
+        return this;
+    }
+
+    /** Flushes the underlying {@link Writer}. */
+    public void flush() throws IOException {
+        mOut.flush();
+    }
+
+    private JsonWriter open(char ch) throws IOException {
+        separate();
+        mOut.write(ch);
+        mHasValue.clear(++mDepth);
+        return this;
+    }
+
+    private JsonWriter close(char ch) throws IOException {
+        if (mDepth == 0) {
+            throw new IllegalStateException();
+        }
+        mDepth--;
+        mOut.write(ch);
+        return this;
+    }
+
+    private void separate() throws IOException {
+        if (mNamed) {
+            mNamed = false;
+        } else {
+            if (mHasValue.get(mDepth)) {
+                mOut.write(',');
+            }
+            mHasValue.set(mDepth);
+        }
+    }
+
+    private void writeString(String text) throws IOException {
+        mOut.write('"');
+        int length = text.length();
+        int start  = 0;
+        for (int i = 0; i < length; i++) {
+            char   ch = text.charAt(i);
+            String escape;
+            switch (ch) {
+            case '"':
+                escape = "\\\""; //$NON-NLS-1$
+                break;
+            case '\\':
+                escape = "\\\\"; //$NON-NLS-1$
+                break;
+            case '\n':
+                escape = "\\n"; //$NON-NLS-1$
+                break;
+            case '\r':
+                escape = "\\r"; //$NON-NLS-1$
+                break;
+            case '\t':
+                escape = "\\t"; //$NON-NLS-1$
+                break;
+            default:
+                if (ch >= ' ' && ch != '\u2028' && ch != '\u2029') {
+                    continue;
+                }
+                escape = String.format("\\u%04x", Integer.valueOf(ch)); //$NON-NLS-1$
+                break;
+            }
+            mOut.write(text, start, i - start);
+            mOut.write(escape);
+            start = i + 1;
+        }
+        mOut.write(text, start, length - start);
+        mOut.write('"');
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.common;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Set;
+
+/**
+ * The text of a list that is being loaded lazily. Rows loaded from it skip the parts of themselves
+ * that aren't needed to display them and keep their place in the text instead, so that they can
+ * read those parts in when something first asks for them. Rows are numbered in the order their
+ * tags start, which is also the order in which they are loaded.
+ */
+public class LazyRows {
+    private String      mText;
+    private Set<String> mRowTags;
+    private int[]       mBounds;
+    private int         mCount;
+    private int         mNext;
+    private LoadState   mState;
+
+    /**
+     * @param text    The text of the list.
+     * @param rowTags The tags of the rows in the list.
+     * @return The rows of the list, or <code>null</code> if the text could not be scanned.
+     */
+    public static LazyRows scan(String text, Set<String> rowTags) {
+        LazyRows           rows    = new LazyRows();
+        ArrayList<Integer> open    = new ArrayList<>();
+        int                i       = 0;
+        rows.mText    = text;
+        rows.mRowTags = rowTags;
+        rows.mBounds  = new int[64];
+        // Each open element is recorded as the row it starts, -1 if it can hold rows but isn't
+        // one, or -2 if it can't hold rows.
+        while ((i = text.indexOf('<', i)) != -1) {
+            int end;
+            if (text.startsWith("<!--", i)) { //$NON-NLS-1$
+                end = DocumentSections.indexAfter(text, "-->", i); //$NON-NLS-1$
+            } else if (text.startsWith("<![CDATA[", i)) { //$NON-NLS-1$
+                end = DocumentSections.indexAfter(text, "]]>", i); //$NON-NLS-1$
+            } else if (text.startsWith("<?", i) || text.startsWith("<!", i)) { //$NON-NLS-1$ //$NON-NLS-2$
+                end = DocumentSections.indexAfter(text, ">", i); //$NON-NLS-1$
+            } else if (text.startsWith("</", i)) { //$NON-NLS-1$
+                end = DocumentSections.indexAfter(text, ">", i); //$NON-NLS-1$
+                if (end == -1 || open.isEmpty()) {
+                    return null;
+                }
+                int row = open.remove(open.size() - 1).intValue();
+                if (row >= 0) {
+                    rows.mBounds[row * 2 + 1] = end;
+                }
+            } else {
+                end = DocumentSections.findEndOfStartTag(text, i);
+                if (end == -1) {
+                    return null;
+                }
+                boolean empty = text.charAt(end - 2) == '/';
+                int     state;
+                if (open.isEmpty()) {
+                    state = -1;
+                } else if (open.get(open.size() - 1).intValue() != -2 && rowTags.contains(DocumentSections.getTagName(text, i + 1))) {
+                    state = rows.add(i, end);
+                } else {
+                    state = -2;
+                }
+                if (!empty) {
+                    open.add(Integer.valueOf(state));
+                }
+            }
+            if (end == -1) {
+                return null;
+            }
+            i = end;
+        }
+        return open.isEmpty() ? rows : null;
+    }
+
+    private LazyRows() {
+    }
+
+    private int add(int start, int end) {
+        if (mCount * 2 == mBounds.length) {
+            mBounds = Arrays.copyOf(mBounds, mBounds.length * 2);
+        }
+        mBounds[mCount * 2]     = start;
+        mBounds[mCount * 2 + 1] = end;
+        return mCount++;
+    }
+
+    /**
+     * Called as each row starts to load. Only rows whose tags were counted when the text was
+     * scanned are given a number; anything else loaded the same way, such as a modifier within a
+     * row, must not use one up.
+     *
+     * @param tag   The tag of the row.
+     * @param state The {@link LoadState} the row is being loaded with.
+     * @return The number of the row, or -1 if the row isn't one of those the text was scanned for
+     *         or there are more rows being loaded than were found.
+     */
+    public int nextRow(String tag, LoadState state) {
+        if (!mRowTags.contains(tag) || mNext >= mCount) {
+            return -1;
+        }
+        if (mState == null) {
+            mState = state.createSectionState();
+        }
+        return mNext++;
+    }
+
+    /**
+     * @return A new {@link LoadState} for reading in the skipped parts of a row, with the same
+     *         file-level settings, such as the version of the file, that the list was loaded with.
+     */
+    public LoadState createInflateState() {
+        return mState != null ? mState.createSectionState() : new LoadState();
+    }
+
+    /**
+     * @param row The number of the row.
+     * @return The text of the row, including any rows within it.
+     */
+    public String getText(int row) {
+        return mText.substring(mBounds[row * 2], mBounds[row * 2 + 1]);
+    }
+}
@@ -27,4 +27,16 @@ public interface ListCollectionListener {
      *              list is either another {@link List} or a {@link Path}.
      */
     void dataFileListUpdated(List<Object> lists);
+
+    /**
+     * Called whenever the {@link ListCollectionThread} has new data, but only some of its
+     * directories have changed. By default, this treats everything as having changed.
+     *
+     * @param lists   The data, in the same form as for {@link #dataFileListUpdated(List)}.
+     * @param changed The directories whose contents changed, each given as the names of the
+     *                directories leading to it from the root. An empty list is the root itself.
+     */
+    default void dataFileListUpdated(List<Object> lists, List<List<String>> changed) {
+        dataFileListUpdated(lists);
+    }
 }
@@ -12,7 +12,7 @@
 package com.trollworks.gcs.common;
 
 import com.trollworks.gcs.app.GCS;
-import com.trollworks.toolkit.collections.Stack;
+import com.trollworks.gcs.library.LibraryCatalog;
 import com.trollworks.toolkit.io.Log;
 import com.trollworks.toolkit.utility.FileType;
 import com.trollworks.toolkit.utility.PathUtils;
@@ -20,41 +20,67 @@ import com.trollworks.toolkit.utility.text.NumericComparator;
 
 import java.awt.EventQueue;
 import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
 import java.nio.file.FileVisitOption;
 import java.nio.file.FileVisitResult;
 import java.nio.file.FileVisitor;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
-/** A thread that periodically updates the set of available list files. */
-public class ListCollectionThread extends Thread implements FileVisitor<Path>, Comparator<Object> {
-    private static final ListCollectionThread INSTANCE;
-    private List<Object>                      mLists;
-    private List<Object>                      mCurrent;
-    private Stack<List<Object>>               mStack;
+/**
+ * Keeps the set of available list files up to date, using a task on the
+ * {@link BackgroundScheduler}. The library is walked once, after which each of its directories is
+ * watched for files being created, changed, deleted or renamed, and only the directories and files
+ * those changes affect are updated, both here and in the {@link LibraryCatalog}. A directory is
+ * only walked again if the events for it overflow. Should the file system not support watching, or
+ * the library not exist yet, the whole library is walked periodically instead.
+ * <p>
+ * Until the first walk has completed, the contents recorded by the {@link LibraryCatalog} are
+ * used, so that the library can be shown immediately at startup.
+ */
+public class ListCollectionThread implements FileVisitor<Path>, Comparator<Object> {
+    private static final int                  RESCAN_INTERVAL = 5000;
+    private static final ListCollectionThread INSTANCE        = new ListCollectionThread();
+    private BackgroundScheduler.Task          mTask;
+    private CompletableFuture<Void>           mInitialScan;
+    private volatile List<Object>             mLists;
+    private Directory                         mRoot;
+    private WatchService                      mWatcher;
+    private HashMap<WatchKey, Directory>      mKeys;
+    private ArrayDeque<WatchKey>              mReadyKeys      = new ArrayDeque<>();
+    private Directory                         mScanning;
+    private Directory                         mCurrent;
+    private HashSet<Path>                     mChangedFiles   = new HashSet<>();
     private List<ListCollectionListener>      mListeners;
 
-    static {
-        INSTANCE = new ListCollectionThread();
-        INSTANCE.start();
-    }
-
     /** @return The one and only instance of this thread. */
     public static final ListCollectionThread get() {
         return INSTANCE;
     }
 
     private ListCollectionThread() {
-        super("List Collection"); //$NON-NLS-1$
-        setPriority(NORM_PRIORITY);
-        setDaemon(true);
-        mListeners = new ArrayList<>();
+        mListeners   = new ArrayList<>();
+        mKeys        = new HashMap<>();
+        mLists       = loadFromCatalog();
+        mTask        = BackgroundScheduler.createTask("List Collection", this::update); //$NON-NLS-1$
+        mInitialScan = mTask.signal();
     }
 
     /** @param listener The {@link ListCollectionListener} to add. */
@@ -67,7 +93,11 @@ public class ListCollectionThread extends Thread implements FileVisitor<Path>, C
         mListeners.remove(listener);
     }
 
-    protected void notifyListeners() {
+    /**
+     * @param changed The directories whose contents changed, or <code>null</code> if everything
+     *                should be considered changed.
+     */
+    protected void notifyListeners(List<List<String>> changed) {
         ListCollectionListener[] listeners;
         synchronized (this) {
             listeners = mListeners.toArray(new ListCollectionListener[mListeners.size()]);
@@ -75,81 +105,344 @@ public class ListCollectionThread extends Thread implements FileVisitor<Path>, C
         List<Object> lists = getLists();
         for (ListCollectionListener listener : listeners) {
             try {
-                listener.dataFileListUpdated(lists);
+                if (changed == null) {
+                    listener.dataFileListUpdated(lists);
+                } else {
+                    listener.dataFileListUpdated(lists, changed);
+                }
             } catch (Throwable throwable) {
                 Log.error(throwable);
             }
         }
     }
 
-    /** @return The current list of lists. */
+    /**
+     * @return The current list of lists. If nothing has been recorded in the {@link LibraryCatalog},
+     *         blocks until the first scan has completed.
+     */
     public List<Object> getLists() {
-        try {
-            while (mLists == null) {
-                sleep(100);
+        if (mLists == null && !mTask.isCurrentThread()) {
+            mInitialScan.join();
+        }
+        List<Object> lists = mLists;
+        return lists == null ? new ArrayList<>() : lists;
+    }
+
+    private List<Object> loadFromCatalog() {
+        Set<Path> paths = LibraryCatalog.get().getPaths();
+        if (paths.isEmpty()) {
+            return null;
+        }
+        Path      rootPath = GCS.getLibraryRootPath();
+        Directory root     = new Directory(rootPath, null);
+        for (Path path : paths) {
+            Directory dir = root;
+            for (Path name : rootPath.relativize(path.getParent())) {
+                Path      dirPath = dir.mPath.resolve(name);
+                Directory child   = dir.mDirs.get(dirPath);
+                if (child == null) {
+                    child = new Directory(dirPath, dir);
+                    dir.mDirs.put(dirPath, child);
+                }
+                dir = child;
             }
-        } catch (InterruptedException outerIEx) {
-            // Someone is trying to terminate us... let them.
+            dir.mFiles.add(path);
         }
-        return mLists == null ? new ArrayList<>() : mLists;
+        return root.isVisible() ? root.getList() : new ArrayList<>();
     }
 
-    @Override
-    public void run() {
-        try {
-            while (true) {
-                List<Object> lists = collectLists();
-                if (!lists.equals(mLists)) {
-                    mLists = lists;
-                    EventQueue.invokeLater(() -> notifyListeners());
+    private void update() {
+        if (mRoot == null) {
+            startWatching();
+            mRoot = scan(GCS.getLibraryRootPath(), null);
+            publish(null);
+        } else if (mWatcher == null || mRoot.mKey == null) {
+            // Watching isn't available, or the library didn't exist to be watched, so fall back to
+            // walking everything again.
+            closeKeys(mRoot);
+            mRoot = scan(mRoot.mPath, null);
+            publish(null);
+        } else {
+            publish(processEvents());
+            if (!mChangedFiles.isEmpty()) {
+                LibraryCatalog.get().revalidatePaths(new ArrayList<>(mChangedFiles));
+                mChangedFiles.clear();
+            }
+            return;
+        }
+        List<Path> files = new ArrayList<>();
+        collectFiles(mRoot, files);
+        LibraryCatalog.get().revalidate(files);
+        if (mWatcher == null || mRoot.mKey == null) {
+            mTask.signalAfter(RESCAN_INTERVAL, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void publish(Set<Directory> changed) {
+        List<Object> lists = mRoot.isVisible() ? mRoot.getList() : new ArrayList<>();
+        if (changed == null) {
+            if (!lists.equals(mLists)) {
+                mLists = lists;
+                EventQueue.invokeLater(() -> notifyListeners(null));
+            }
+        } else if (!changed.isEmpty()) {
+            List<List<String>> paths = new ArrayList<>();
+            for (Directory dir : changed) {
+                if (!hasChangedAncestor(dir, changed)) {
+                    paths.add(dir.getNamePath());
                 }
-                sleep(5000);
             }
-        } catch (InterruptedException outerIEx) {
-            // Someone is trying to terminate us... let them.
+            mLists = lists;
+            EventQueue.invokeLater(() -> notifyListeners(paths));
         }
     }
 
-    @SuppressWarnings("unchecked")
-    private List<Object> collectLists() {
-        mCurrent = new ArrayList<>();
-        mStack   = new Stack<>();
+    private static void collectFiles(Directory dir, Collection<Path> files) {
+        files.addAll(dir.mFiles);
+        for (Directory child : dir.mDirs.values()) {
+            collectFiles(child, files);
+        }
+    }
+
+    private static boolean hasChangedAncestor(Directory dir, Set<Directory> changed) {
+        for (Directory parent = dir.mParent; parent != null; parent = parent.mParent) {
+            if (changed.contains(parent)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void startWatching() {
         try {
-            Files.walkFileTree(GCS.getLibraryRootPath(), EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, this);
+            mWatcher = GCS.getLibraryRootPath().getFileSystem().newWatchService();
         } catch (Exception exception) {
             Log.error(exception);
+            mWatcher = null;
+            return;
+        }
+        WatchService watcher = mWatcher;
+        Thread       thread  = new Thread(() -> {
+                                 try {
+                                     while (true) {
+                                         // Hand the key, and any others that are also ready, to
+                                         // the task
+                                         WatchKey key = watcher.take();
+                                         synchronized (mReadyKeys) {
+                                             do {
+                                                 mReadyKeys.add(key);
+                                             } while ((key = watcher.poll()) != null);
+                                         }
+                                         mTask.signal();
+                                     }
+                                 } catch (InterruptedException | ClosedWatchServiceException exception) {
+                                     // Done watching
+                                 }
+                             }, "Library Watcher"); //$NON-NLS-1$
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Applies the events waiting on the watched directories whose keys have been signalled.
+     *
+     * @return The directories whose visible contents changed.
+     */
+    private Set<Directory> processEvents() {
+        HashSet<Directory> changed = new HashSet<>();
+        HashSet<Directory> pending = new HashSet<>();
+        List<WatchKey>     ready;
+        synchronized (mReadyKeys) {
+            ready = new ArrayList<>(mReadyKeys);
+            mReadyKeys.clear();
+        }
+        synchronized (mKeys) {
+            for (WatchKey key : ready) {
+                Directory dir = mKeys.get(key);
+                if (dir != null) {
+                    List<WatchEvent<?>> events = key.pollEvents();
+                    if (!events.isEmpty()) {
+                        pending.add(dir);
+                        dir.mEvents = events;
+                    }
+                    if (!key.reset()) {
+                        mKeys.remove(key);
+                    }
+                }
+            }
+        }
+        for (Directory dir : pending) {
+            if (dir.mEvents != null) {
+                applyEvents(dir, dir.mEvents, changed);
+                dir.mEvents = null;
+            }
+        }
+        for (Directory dir : changed) {
+            dir.invalidate();
         }
-        List<Object> result = mCurrent;
-        mCurrent = null;
-        mStack   = null;
-        return result.isEmpty() ? new ArrayList<>() : (List<Object>) result.get(0);
+        // A directory that gains its first entry or loses its last one
+        // changes its parent as well, since empty directories aren't shown.
+        HashSet<Directory> result = new HashSet<>();
+        for (Directory dir : changed) {
+            Directory one = dir;
+            while (one.mParent != null) {
+                boolean wasVisible = one.mVisible;
+                if (wasVisible == one.isVisible()) {
+                    break;
+                }
+                one = one.mParent;
+            }
+            result.add(one);
+        }
+        return result;
+    }
+
+    private void applyEvents(Directory dir, List<WatchEvent<?>> events, Set<Directory> changed) {
+        for (WatchEvent<?> event : events) {
+            WatchEvent.Kind<?> kind = event.kind();
+            if (kind == StandardWatchEventKinds.OVERFLOW) {
+                rescan(dir, changed);
+                return;
+            }
+            Path path = dir.mPath.resolve((Path) event.context());
+            if (shouldSkip(path)) {
+                continue;
+            }
+            if (kind == StandardWatchEventKinds.ENTRY_CREATE) {
+                if (Files.isDirectory(path)) {
+                    Directory child = dir.mDirs.get(path);
+                    if (child != null) {
+                        collectFiles(child, mChangedFiles);
+                        closeKeys(child);
+                    }
+                    child = scan(path, dir);
+                    collectFiles(child, mChangedFiles);
+                    dir.mDirs.put(path, child);
+                    changed.add(dir);
+                } else if (isListFile(path)) {
+                    // A file saved by replacing it may be created without first being deleted
+                    mChangedFiles.add(path);
+                    if (!dir.mFiles.contains(path)) {
+                        dir.mFiles.add(path);
+                        changed.add(dir);
+                    }
+                }
+            } else if (kind == StandardWatchEventKinds.ENTRY_MODIFY) {
+                if (dir.mFiles.contains(path)) {
+                    mChangedFiles.add(path);
+                }
+            } else if (kind == StandardWatchEventKinds.ENTRY_DELETE) {
+                Directory child = dir.mDirs.remove(path);
+                if (child != null) {
+                    collectFiles(child, mChangedFiles);
+                    closeKeys(child);
+                    changed.add(dir);
+                } else if (dir.mFiles.remove(path)) {
+                    mChangedFiles.add(path);
+                    changed.add(dir);
+                }
+            }
+        }
+    }
+
+    private void rescan(Directory dir, Set<Directory> changed) {
+        collectFiles(dir, mChangedFiles);
+        closeKeys(dir);
+        Directory replacement = scan(dir.mPath, dir.mParent);
+        collectFiles(replacement, mChangedFiles);
+        if (dir.mParent == null) {
+            mRoot = replacement;
+            changed.add(replacement);
+        } else {
+            dir.mParent.mDirs.put(dir.mPath, replacement);
+            changed.add(dir.mParent);
+        }
+    }
+
+    private void closeKeys(Directory dir) {
+        synchronized (mKeys) {
+            if (dir.mKey != null) {
+                dir.mKey.cancel();
+                mKeys.remove(dir.mKey);
+                dir.mKey = null;
+            }
+        }
+        dir.mEvents = null;
+        for (Directory child : dir.mDirs.values()) {
+            closeKeys(child);
+        }
+    }
+
+    /**
+     * Walks the specified directory, registering each directory found with the watch service.
+     *
+     * @param path   The directory to walk.
+     * @param parent The parent of the directory.
+     * @return The directory, filled in.
+     */
+    private Directory scan(Path path, Directory parent) {
+        Directory result = new Directory(path, parent);
+        mScanning = result;
+        mCurrent  = null;
+        // A library that doesn't exist yet is simply empty
+        if (Files.isDirectory(path)) {
+            try {
+                Files.walkFileTree(path, EnumSet.of(FileVisitOption.FOLLOW_LINKS), Integer.MAX_VALUE, this);
+            } catch (Exception exception) {
+                Log.error(exception);
+            }
+        }
+        mScanning = null;
+        mCurrent  = null;
+        return result;
     }
 
     private static boolean shouldSkip(Path path) {
         return path.getFileName().toString().startsWith("."); //$NON-NLS-1$
     }
 
+    private static boolean isListFile(Path path) {
+        String ext = PathUtils.getExtension(path.getFileName());
+        for (String one : FileType.getOpenableExtensions()) {
+            if (one.equalsIgnoreCase(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     @Override
     public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) throws IOException {
         if (shouldSkip(dir)) {
             return FileVisitResult.SKIP_SUBTREE;
         }
-        mStack.push(mCurrent);
-        mCurrent = new ArrayList<>();
-        mCurrent.add(dir.getFileName().toString());
+        Directory directory;
+        if (mCurrent == null) {
+            // The first directory visited is the one being scanned
+            directory = mScanning;
+        } else {
+            directory = new Directory(dir, mCurrent);
+            mCurrent.mDirs.put(dir, directory);
+        }
+        mCurrent = directory;
+        if (mWatcher != null) {
+            try {
+                WatchKey key = dir.register(mWatcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+                synchronized (mKeys) {
+                    mKeys.put(key, directory);
+                }
+                directory.mKey = key;
+            } catch (IOException exception) {
+                Log.error(exception);
+            }
+        }
         return FileVisitResult.CONTINUE;
     }
 
     @Override
     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
-        if (!shouldSkip(file)) {
-            String ext = PathUtils.getExtension(file.getFileName());
-            for (String one : FileType.getOpenableExtensions()) {
-                if (one.equalsIgnoreCase(ext)) {
-                    mCurrent.add(file);
-                    break;
-                }
-            }
+        if (!shouldSkip(file) && isListFile(file)) {
+            mCurrent.mFiles.add(file);
         }
         return FileVisitResult.CONTINUE;
     }
@@ -165,12 +458,7 @@ public class ListCollectionThread extends Thread implements FileVisitor<Path>, C
         if (exception != null) {
             Log.error(exception);
         }
-        Collections.sort(mCurrent, this);
-        List<Object> restoring = mStack.pop();
-        if (mCurrent.size() > 1) {
-            restoring.add(mCurrent);
-        }
-        mCurrent = restoring;
+        mCurrent = mCurrent == mScanning ? null : mCurrent.mParent;
         return FileVisitResult.CONTINUE;
     }
 
@@ -188,4 +476,65 @@ public class ListCollectionThread extends Thread implements FileVisitor<Path>, C
         }
         return ""; //$NON-NLS-1$
     }
+
+    /** A directory within the library, and the watch registered for it. */
+    private class Directory {
+        Path                     mPath;
+        Directory                mParent;
+        HashMap<Path, Directory> mDirs  = new HashMap<>();
+        ArrayList<Path>          mFiles = new ArrayList<>();
+        WatchKey                 mKey;
+        List<WatchEvent<?>>      mEvents;
+        List<Object>             mList;
+        boolean                  mVisible;
+
+        Directory(Path path, Directory parent) {
+            mPath   = path;
+            mParent = parent;
+        }
+
+        /** Forgets the published form of this directory and of each directory containing it. */
+        void invalidate() {
+            for (Directory dir = this; dir != null; dir = dir.mParent) {
+                dir.mList = null;
+            }
+        }
+
+        /** @return Whether this directory has anything in it to show. */
+        boolean isVisible() {
+            getList();
+            return mVisible;
+        }
+
+        /**
+         * @return The published form of this directory: its name, followed by its files and the
+         *         published forms of those of its sub-directories that have something in them, in
+         *         name order. Directories that haven't changed keep returning the same list.
+         */
+        List<Object> getList() {
+            if (mList == null) {
+                ArrayList<Object> list = new ArrayList<>(1 + mFiles.size() + mDirs.size());
+                list.add(mPath.getFileName().toString());
+                list.addAll(mFiles);
+                for (Directory dir : mDirs.values()) {
+                    if (dir.isVisible()) {
+                        list.add(dir.getList());
+                    }
+                }
+                Collections.sort(list.subList(1, list.size()), ListCollectionThread.this);
+                mList    = Collections.unmodifiableList(list);
+                mVisible = list.size() > 1;
+            }
+            return mList;
+        }
+
+        /** @return The names of the directories leading from the root to this one. */
+        List<String> getNamePath() {
+            ArrayList<String> names = new ArrayList<>();
+            for (Directory dir = this; dir.mParent != null; dir = dir.mParent) {
+                names.add(0, dir.mPath.getFileName().toString());
+            }
+            return names;
+        }
+    }
 }
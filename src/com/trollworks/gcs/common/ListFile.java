@@ -18,12 +18,16 @@ import com.trollworks.toolkit.ui.widget.outline.OutlineModel;
 import com.trollworks.toolkit.ui.widget.outline.Row;
 
 import java.io.IOException;
+import java.util.Collections;
 import java.util.List;
+import java.util.Set;
 import java.util.TreeSet;
 
 /** A list of rows. */
 public abstract class ListFile extends DataFile {
+    private static final String KEY_ROWS = "rows"; //$NON-NLS-1$
     private OutlineModel mModel = new OutlineModel();
+    private boolean      mLoadLazily;
 
     public ListFile() {
         setSortingMarksDirty(false);
@@ -42,6 +46,51 @@ public abstract class ListFile extends DataFile {
      */
     protected abstract void loadList(XMLReader reader, LoadState state) throws IOException;
 
+    @Override
+    protected final void loadSelf(JsonReader in, LoadState state) throws IOException {
+        while (in.hasNext()) {
+            if (KEY_ROWS.equals(in.nextName())) {
+                ListRow.loadRows(in, state, this::createRow, row -> mModel.addRow(row, true));
+            } else {
+                in.skipValue();
+            }
+        }
+    }
+
+    /**
+     * @param type The type of a top-level row being loaded from JSON.
+     * @return A new, empty row of the type to load the row into, or <code>null</code> if this list
+     *         can't hold rows of that type.
+     */
+    protected abstract ListRow createRow(String type);
+
+    /**
+     * @param lazily Whether the rows should skip the parts of themselves that aren't needed to
+     *               display them until something asks for them. Must be set before loading.
+     */
+    public void setLoadLazily(boolean lazily) {
+        mLoadLazily = lazily;
+    }
+
+    @Override
+    protected boolean canUseSnapshots() {
+        return true;
+    }
+
+    @Override
+    protected Set<String> getLazyRowTags() {
+        return mLoadLazily ? getRowTags() : super.getLazyRowTags();
+    }
+
+    /**
+     * @return The tags of the rows in this list, if they support being loaded lazily. By default,
+     *         returns an empty set.
+     */
+    @SuppressWarnings("static-method")
+    protected Set<String> getRowTags() {
+        return Collections.emptySet();
+    }
+
     @Override
     protected final void saveSelf(XMLWriter out) {
         for (Row one : getTopLevelRows()) {
@@ -49,6 +98,12 @@ public abstract class ListFile extends DataFile {
         }
     }
 
+    @Override
+    protected final void saveSelf(JsonWriter out) throws IOException {
+        out.name(KEY_ROWS);
+        ListRow.saveRows(out, getTopLevelRows());
+    }
+
     /** @return The top-level rows in this list. */
     public List<Row> getTopLevelRows() {
         return mModel.getTopLevelRows();
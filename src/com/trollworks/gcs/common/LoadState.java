@@ -14,20 +14,55 @@ package com.trollworks.gcs.common;
 import com.trollworks.gcs.weapon.OldWeapon;
 
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 /** Temporary storage for data needed at load time. */
 public class LoadState {
     /** The attribute used for versioning. */
-    public static final String        ATTRIBUTE_VERSION = "version"; //$NON-NLS-1$
+    public static final String                ATTRIBUTE_VERSION = "version"; //$NON-NLS-1$
 
     /** The data file version. */
-    public int                        mDataFileVersion;
+    public int                                mDataFileVersion;
     /** The data item version. Used for individual items within a file. */
-    public int                        mDataItemVersion;
+    public int                                mDataItemVersion;
     /** Whether the load is happening to restore undo state. */
-    public boolean                    mForUndo;
+    public boolean                            mForUndo;
     /** Used to convert old weapon data in equipment lists. */
-    public HashMap<Object, OldWeapon> mOldWeapons       = new HashMap<>();
+    public HashMap<Object, OldWeapon>         mOldWeapons       = new HashMap<>();
     /** Used to convert old equipment data. */
-    public boolean                    mDefaultCarried;
+    public boolean                            mDefaultCarried;
+    /**
+     * The sections split out of the document for parallel loading, or <code>null</code> if none
+     * were.
+     */
+    public DocumentSections                   mSections;
+    /** The rows being loaded lazily, or <code>null</code> if rows are being loaded in full. */
+    public LazyRows                           mLazyRows;
+    private ConcurrentHashMap<String, String> mStrings          = new ConcurrentHashMap<>();
+
+    /**
+     * Large lists repeat the same few categories, tech levels, references and the like many times
+     * over. Passing such values through here lets every row loaded with this state share a single
+     * copy of each.
+     *
+     * @param text The text to share.
+     * @return The shared copy of the text.
+     */
+    public String intern(String text) {
+        String existing = mStrings.putIfAbsent(text, text);
+        return existing != null ? existing : text;
+    }
+
+    /**
+     * @return A new {@link LoadState} for loading a section of the document on its own thread. It
+     *         starts out with this state's file-level settings and shares its pool of strings.
+     */
+    public LoadState createSectionState() {
+        LoadState state = new LoadState();
+        state.mDataFileVersion = mDataFileVersion;
+        state.mForUndo         = mForUndo;
+        state.mDefaultCarried  = mDefaultCarried;
+        state.mStrings         = mStrings;
+        return state;
+    }
 }
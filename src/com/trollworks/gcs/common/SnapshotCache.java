@@ -0,0 +1,232 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.common;
+
+import com.trollworks.gcs.app.GCS;
+import com.trollworks.toolkit.io.Log;
+import com.trollworks.toolkit.io.SafeFileUpdater;
+import com.trollworks.toolkit.io.xml.XMLReader;
+import com.trollworks.toolkit.utility.BundleInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+/**
+ * A cache of the answers the toolkit's {@link XMLReader} gave while a data file was loaded, so
+ * that a file that hasn't changed since it was last loaded can be read back without being parsed
+ * as XML again. A {@link SnapshotRecorder} makes the snapshot as the file is loaded from its XML,
+ * and a {@link SnapshotReader} replays it. Snapshots are kept in the per-user cache directory and
+ * are named for a hash of the type of data file and the contents of the file they were made from.
+ * The XML files remain the canonical form; snapshots may be deleted at any time and are made again
+ * as files are loaded.
+ */
+public class SnapshotCache {
+    /** The value that starts every snapshot. */
+    static final int                      MAGIC                   = 0x47435353;
+    /** The current snapshot format version. */
+    static final int                      CURRENT_VERSION         = 2;
+    /**
+     * The version of the loaders. Must be incremented whenever a loader changes the questions it
+     * asks of the {@link XMLReader}, so that snapshots made by the old loaders are not replayed.
+     */
+    static final int                      LOADER_VERSION          = 1;
+    /** The record for {@link XMLReader#getType()}. */
+    static final byte                     OP_TYPE                 = 1;
+    /** The record for {@link XMLReader#next()}. */
+    static final byte                     OP_NEXT                 = 2;
+    /** The record for {@link XMLReader#getName()}. */
+    static final byte                     OP_NAME                 = 3;
+    /** The record for {@link XMLReader#getMarker()}. */
+    static final byte                     OP_MARKER               = 4;
+    /** The record for {@link XMLReader#withinMarker(String)}. */
+    static final byte                     OP_WITHIN_MARKER        = 5;
+    /** The record for {@link XMLReader#getAttribute(String)}. */
+    static final byte                     OP_ATTRIBUTE            = 6;
+    /** The record for {@link XMLReader#hasAttribute(String)}. */
+    static final byte                     OP_HAS_ATTRIBUTE        = 7;
+    /** The record for {@link XMLReader#isAttributeSet(String)}. */
+    static final byte                     OP_IS_ATTRIBUTE_SET     = 8;
+    /** The record for {@link XMLReader#getAttributeAsInteger(String, int)}. */
+    static final byte                     OP_ATTRIBUTE_AS_INTEGER = 9;
+    /** The record for {@link XMLReader#readText()}. */
+    static final byte                     OP_READ_TEXT            = 10;
+    /** The record for {@link XMLReader#readInteger(int)}. */
+    static final byte                     OP_READ_INTEGER         = 11;
+    /** The record for {@link XMLReader#readDouble(double)}. */
+    static final byte                     OP_READ_DOUBLE          = 12;
+    /** The record for {@link XMLReader#readBoolean()}. */
+    static final byte                     OP_READ_BOOLEAN         = 13;
+    /** The record for {@link XMLReader#skipTag(String)}. */
+    static final byte                     OP_SKIP_TAG             = 14;
+    private static final String           DIRECTORY_NAME          = "snapshots"; //$NON-NLS-1$
+    private static final String           EXTENSION               = ".snapshot"; //$NON-NLS-1$
+    private static final int              MAXIMUM_SNAPSHOTS       = 1000;
+    private static final SnapshotCache    INSTANCE                = new SnapshotCache();
+    private Path                          mDirectory;
+    private LinkedHashMap<String, byte[]> mPending                = new LinkedHashMap<>();
+    private BackgroundScheduler.Task      mTask;
+
+    /** @return The one and only instance of the cache. */
+    public static final SnapshotCache get() {
+        return INSTANCE;
+    }
+
+    private SnapshotCache() {
+        mDirectory = GCS.getCachePath().resolve(DIRECTORY_NAME);
+        mTask      = BackgroundScheduler.createTask("Snapshot Cache", this::storePending); //$NON-NLS-1$
+    }
+
+    /**
+     * @param type The type of data file being loaded.
+     * @param data The contents of a file.
+     * @return The key the snapshot of the file is stored under.
+     */
+    public static String getKey(Class<? extends DataFile> type, byte[] data) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1"); //$NON-NLS-1$
+            // The same file loaded as another type of data file asks the reader other questions
+            digest.update(type.getName().getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            // Snapshots made by the loaders of another build of GCS are made again
+            digest.update(Long.toString(BundleInfo.getDefault().getVersion()).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            digest.update(Integer.toString(LOADER_VERSION).getBytes(StandardCharsets.UTF_8));
+            digest.update((byte) 0);
+            StringBuilder buffer = new StringBuilder(40);
+            for (byte one : digest.digest(data)) {
+                buffer.append(Character.forDigit((one >> 4) & 0xF, 16));
+                buffer.append(Character.forDigit(one & 0xF, 16));
+            }
+            return buffer.toString();
+        } catch (NoSuchAlgorithmException exception) {
+            // Every Java platform is required to provide SHA-1
+            throw new IllegalStateException(exception);
+        }
+    }
+
+    /**
+     * @param key  The key of the file, as returned by {@link #getKey(Class, byte[])}.
+     * @param data The contents of the file, which the reader falls back to should the loader ask
+     *             it anything the snapshot doesn't hold the answer to.
+     * @return A {@link SnapshotReader} that replays the snapshot of the file, or <code>null</code>
+     *         if there isn't a usable one.
+     */
+    SnapshotReader open(String key, byte[] data) {
+        Path path = getPath(key);
+        if (Files.isRegularFile(path)) {
+            try {
+                SnapshotReader reader = new SnapshotReader(Files.readAllBytes(path), data);
+                // Snapshots are discarded oldest use first
+                Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+                return reader;
+            } catch (Exception exception) {
+                // A snapshot from another version or one that is damaged is simply made again
+                discard(key);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Writes a snapshot to the cache in the background.
+     *
+     * @param key      The key of the file, as returned by {@link #getKey(Class, byte[])}.
+     * @param snapshot The snapshot, as returned by {@link SnapshotRecorder#getSnapshot()}.
+     */
+    void store(String key, byte[] snapshot) {
+        synchronized (mPending) {
+            mPending.put(key, snapshot);
+        }
+        mTask.signal();
+    }
+
+    /** @param key The key of the snapshot to remove, as returned by {@link #getKey(Class, byte[])}. */
+    public void discard(String key) {
+        synchronized (mPending) {
+            mPending.remove(key);
+        }
+        try {
+            Files.deleteIfExists(getPath(key));
+        } catch (IOException exception) {
+            Log.error(exception);
+        }
+    }
+
+    private Path getPath(String key) {
+        return mDirectory.resolve(key + EXTENSION);
+    }
+
+    private void storePending() {
+        Map<String, byte[]> pending;
+        synchronized (mPending) {
+            pending = new LinkedHashMap<>(mPending);
+            mPending.clear();
+        }
+        boolean stored = false;
+        for (Map.Entry<String, byte[]> entry : pending.entrySet()) {
+            Path path = getPath(entry.getKey());
+            if (!Files.exists(path) && write(path, entry.getValue())) {
+                stored = true;
+            }
+        }
+        if (stored) {
+            prune();
+        }
+    }
+
+    private static boolean write(Path path, byte[] snapshot) {
+        SafeFileUpdater transaction = new SafeFileUpdater();
+        transaction.begin();
+        try {
+            Files.createDirectories(path.getParent());
+            File transactionFile = transaction.getTransactionFile(path.toFile());
+            Files.write(transactionFile.toPath(), snapshot);
+            transaction.commit();
+            return true;
+        } catch (Exception exception) {
+            Log.error(exception);
+            transaction.abort();
+            return false;
+        }
+    }
+
+    private void prune() {
+        try (Stream<Path> stream = Files.list(mDirectory)) {
+            List<Path> paths = new ArrayList<>();
+            stream.filter(path -> path.getFileName().toString().endsWith(EXTENSION)).forEach(paths::add);
+            if (paths.size() > MAXIMUM_SNAPSHOTS) {
+                HashMap<Path, Long> used = new HashMap<>();
+                for (Path path : paths) {
+                    used.put(path, Long.valueOf(path.toFile().lastModified()));
+                }
+                paths.sort((p1, p2) -> used.get(p1).compareTo(used.get(p2)));
+                for (Path path : paths.subList(0, paths.size() - MAXIMUM_SNAPSHOTS)) {
+                    Files.deleteIfExists(path);
+                }
+            }
+        } catch (IOException exception) {
+            Log.error(exception);
+        }
+    }
+}
@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.common;
+
+import com.trollworks.toolkit.io.xml.XMLNodeType;
+import com.trollworks.toolkit.io.xml.XMLReader;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Replays a snapshot made by a {@link SnapshotRecorder}, giving a loader the same answers the
+ * toolkit's {@link XMLReader} gave it when the file was recorded. Each question is checked against
+ * the one that was recorded; should the loader ask anything else, the reader parses the XML of the
+ * file, brings it up to the same point and answers from it from then on.
+ * <p>
+ * Only the methods the {@link SnapshotRecorder} records are answered from the snapshot, so this
+ * must only be used for data files whose loaders ask nothing else of their reader. See
+ * {@link DataFile#canUseSnapshots()}.
+ */
+class SnapshotReader extends XMLReader {
+    private static final XMLNodeType[] TYPES = XMLNodeType.values();
+    private byte[]                     mData;
+    private String[]                   mStrings;
+    private ByteBuffer                 mRecords;
+    private int                        mMark;
+    private XMLReader                  mFallback;
+
+    /**
+     * @param snapshot The snapshot.
+     * @param data     The contents of the file the snapshot was made from.
+     * @throws IOException if the snapshot is damaged or not one this version knows how to read.
+     */
+    SnapshotReader(byte[] snapshot, byte[] data) throws IOException {
+        super(new StringReader("<snapshot/>")); //$NON-NLS-1$
+        mData = data;
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(snapshot);
+            if (buffer.getInt() != SnapshotCache.MAGIC || buffer.getInt() != SnapshotCache.CURRENT_VERSION) {
+                throw new IOException();
+            }
+            long  checksum = buffer.getLong();
+            CRC32 crc      = new CRC32();
+            crc.update(snapshot, buffer.position(), buffer.remaining());
+            if (crc.getValue() != checksum) {
+                throw new IOException();
+            }
+            mStrings = new String[buffer.getInt()];
+            for (int i = 0; i < mStrings.length; i++) {
+                int length = buffer.getInt();
+                mStrings[i] = new String(snapshot, buffer.position(), length, StandardCharsets.UTF_8);
+                buffer.position(buffer.position() + length);
+            }
+            int length = buffer.getInt();
+            if (length != buffer.remaining()) {
+                throw new IOException();
+            }
+            mRecords = buffer.slice();
+        } catch (BufferUnderflowException | IllegalArgumentException | IndexOutOfBoundsException exception) {
+            throw new IOException(exception);
+        }
+    }
+
+    /** @return Whether the loader asked something the snapshot didn't hold the answer to. */
+    boolean hasFallenBack() {
+        return mFallback != null;
+    }
+
+    @Override
+    public XMLNodeType getType() {
+        if (start(SnapshotCache.OP_TYPE)) {
+            return readType();
+        }
+        return fallback().getType();
+    }
+
+    @Override
+    public XMLNodeType next() throws IOException {
+        if (start(SnapshotCache.OP_NEXT)) {
+            return readType();
+        }
+        return fallback().next();
+    }
+
+    @Override
+    public String getName() {
+        if (start(SnapshotCache.OP_NAME)) {
+            return readString();
+        }
+        return fallback().getName();
+    }
+
+    @Override
+    public String getMarker() {
+        if (start(SnapshotCache.OP_MARKER)) {
+            return readString();
+        }
+        return fallback().getMarker();
+    }
+
+    @Override
+    public boolean withinMarker(String marker) {
+        if (start(SnapshotCache.OP_WITHIN_MARKER) && matches(marker)) {
+            return readBooleanRecord();
+        }
+        return fallback().withinMarker(marker);
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        if (start(SnapshotCache.OP_ATTRIBUTE) && matches(name)) {
+            return readString();
+        }
+        return fallback().getAttribute(name);
+    }
+
+    @Override
+    public boolean hasAttribute(String name) {
+        if (start(SnapshotCache.OP_HAS_ATTRIBUTE) && matches(name)) {
+            return readBooleanRecord();
+        }
+        return fallback().hasAttribute(name);
+    }
+
+    @Override
+    public boolean isAttributeSet(String name) {
+        if (start(SnapshotCache.OP_IS_ATTRIBUTE_SET) && matches(name)) {
+            return readBooleanRecord();
+        }
+        return fallback().isAttributeSet(name);
+    }
+
+    @Override
+    public int getAttributeAsInteger(String name, int defaultValue) {
+        if (start(SnapshotCache.OP_ATTRIBUTE_AS_INTEGER) && matches(name) && mRecords.getInt() == defaultValue) {
+            return mRecords.getInt();
+        }
+        return fallback().getAttributeAsInteger(name, defaultValue);
+    }
+
+    @Override
+    public String readText() throws IOException {
+        if (start(SnapshotCache.OP_READ_TEXT)) {
+            return readString();
+        }
+        return fallback().readText();
+    }
+
+    @Override
+    public int readInteger(int defaultValue) throws IOException {
+        if (start(SnapshotCache.OP_READ_INTEGER) && mRecords.getInt() == defaultValue) {
+            return mRecords.getInt();
+        }
+        return fallback().readInteger(defaultValue);
+    }
+
+    @Override
+    public double readDouble(double defaultValue) throws IOException {
+        if (start(SnapshotCache.OP_READ_DOUBLE) && mRecords.getLong() == Double.doubleToRawLongBits(defaultValue)) {
+            return Double.longBitsToDouble(mRecords.getLong());
+        }
+        return fallback().readDouble(defaultValue);
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        if (start(SnapshotCache.OP_READ_BOOLEAN)) {
+            return readBooleanRecord();
+        }
+        return fallback().readBoolean();
+    }
+
+    @Override
+    public void skipTag(String name) throws IOException {
+        if (start(SnapshotCache.OP_SKIP_TAG) && matches(name)) {
+            return;
+        }
+        fallback().skipTag(name);
+    }
+
+    /**
+     * Starts reading the next record.
+     *
+     * @param op The record the question being asked should have.
+     * @return Whether the next record is for the question.
+     */
+    private boolean start(byte op) {
+        if (mFallback != null) {
+            return false;
+        }
+        mMark = mRecords.position();
+        return mRecords.hasRemaining() && mRecords.get() == op;
+    }
+
+    private boolean matches(String argument) {
+        return Objects.equals(readString(), argument);
+    }
+
+    private XMLNodeType readType() {
+        int ordinal = mRecords.get();
+        return ordinal < 0 ? null : TYPES[ordinal];
+    }
+
+    private boolean readBooleanRecord() {
+        return mRecords.get() != 0;
+    }
+
+    private String readString() {
+        int index = mRecords.getInt();
+        return index < 0 ? null : mStrings[index];
+    }
+
+    /**
+     * @return A reader over the XML of the file that has been asked each of the questions that
+     *         came before the one that couldn't be answered from the snapshot, so that it is in the
+     *         same state this reader would have been.
+     */
+    private XMLReader fallback() {
+        if (mFallback == null) {
+            try {
+                mFallback = new XMLReader(new InputStreamReader(new ByteArrayInputStream(mData), StandardCharsets.UTF_8));
+                int end = mMark;
+                mRecords.position(0);
+                while (mRecords.position() < end) {
+                    replayInto(mFallback);
+                }
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }
+        return mFallback;
+    }
+
+    /** Asks the reader the question the next record holds, if it is one that changes its state. */
+    private void replayInto(XMLReader reader) throws IOException {
+        switch (mRecords.get()) {
+        case SnapshotCache.OP_NEXT:
+            reader.next();
+            mRecords.get();
+            break;
+        case SnapshotCache.OP_READ_TEXT:
+            reader.readText();
+            mRecords.getInt();
+            break;
+        case SnapshotCache.OP_READ_INTEGER:
+            reader.readInteger(mRecords.getInt());
+            mRecords.getInt();
+            break;
+        case SnapshotCache.OP_READ_DOUBLE:
+            reader.readDouble(Double.longBitsToDouble(mRecords.getLong()));
+            mRecords.getLong();
+            break;
+        case SnapshotCache.OP_READ_BOOLEAN:
+            reader.readBoolean();
+            mRecords.get();
+            break;
+        case SnapshotCache.OP_SKIP_TAG:
+            reader.skipTag(readString());
+            break;
+        case SnapshotCache.OP_TYPE:
+            mRecords.get();
+            break;
+        case SnapshotCache.OP_NAME:
+        case SnapshotCache.OP_MARKER:
+            mRecords.getInt();
+            break;
+        case SnapshotCache.OP_WITHIN_MARKER:
+        case SnapshotCache.OP_HAS_ATTRIBUTE:
+        case SnapshotCache.OP_IS_ATTRIBUTE_SET:
+            mRecords.getInt();
+            mRecords.get();
+            break;
+        case SnapshotCache.OP_ATTRIBUTE:
+            mRecords.getInt();
+            mRecords.getInt();
+            break;
+        case SnapshotCache.OP_ATTRIBUTE_AS_INTEGER:
+            mRecords.getInt();
+            mRecords.getInt();
+            mRecords.getInt();
+            break;
+        default:
+            throw new IOException();
+        }
+    }
+}
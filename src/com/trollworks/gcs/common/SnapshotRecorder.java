@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.common;
+
+import com.trollworks.toolkit.io.xml.XMLNodeType;
+import com.trollworks.toolkit.io.xml.XMLReader;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * An {@link XMLReader} that parses XML as usual, while recording each question a loader asks of it
+ * along with the answer, so that a {@link SnapshotReader} can give the same answers later without
+ * parsing the XML again. The tokenizing, entity and whitespace handling all remain the toolkit's.
+ */
+class SnapshotRecorder extends XMLReader {
+    private HashMap<String, Integer> mIndexes = new HashMap<>();
+    private List<String>             mStrings = new ArrayList<>();
+    private ByteArrayOutputStream    mRecords = new ByteArrayOutputStream();
+    private int                      mDepth;
+
+    /** @param in The XML to parse. */
+    SnapshotRecorder(Reader in) {
+        super(in);
+    }
+
+    @Override
+    public XMLNodeType getType() {
+        boolean outer = mDepth++ == 0;
+        try {
+            XMLNodeType type = super.getType();
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_TYPE);
+                writeType(type);
+            }
+            return type;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public XMLNodeType next() throws IOException {
+        boolean outer = mDepth++ == 0;
+        try {
+            XMLNodeType type = super.next();
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_NEXT);
+                writeType(type);
+            }
+            return type;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public String getName() {
+        boolean outer = mDepth++ == 0;
+        try {
+            String name = super.getName();
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_NAME);
+                writeString(name);
+            }
+            return name;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public String getMarker() {
+        boolean outer = mDepth++ == 0;
+        try {
+            String marker = super.getMarker();
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_MARKER);
+                writeString(marker);
+            }
+            return marker;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public boolean withinMarker(String marker) {
+        boolean outer = mDepth++ == 0;
+        try {
+            boolean within = super.withinMarker(marker);
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_WITHIN_MARKER);
+                writeString(marker);
+                writeBoolean(within);
+            }
+            return within;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public String getAttribute(String name) {
+        boolean outer = mDepth++ == 0;
+        try {
+            String value = super.getAttribute(name);
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_ATTRIBUTE);
+                writeString(name);
+                writeString(value);
+            }
+            return value;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public boolean hasAttribute(String name) {
+        boolean outer = mDepth++ == 0;
+        try {
+            boolean has = super.hasAttribute(name);
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_HAS_ATTRIBUTE);
+                writeString(name);
+                writeBoolean(has);
+            }
+            return has;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public boolean isAttributeSet(String name) {
+        boolean outer = mDepth++ == 0;
+        try {
+            boolean set = super.isAttributeSet(name);
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_IS_ATTRIBUTE_SET);
+                writeString(name);
+                writeBoolean(set);
+            }
+            return set;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public int getAttributeAsInteger(String name, int defaultValue) {
+        boolean outer = mDepth++ == 0;
+        try {
+            int value = super.getAttributeAsInteger(name, defaultValue);
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_ATTRIBUTE_AS_INTEGER);
+                writeString(name);
+                writeInt(defaultValue);
+                writeInt(value);
+            }
+            return value;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public String readText() throws IOException {
+        boolean outer = mDepth++ == 0;
+        try {
+            String text = super.readText();
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_READ_TEXT);
+                writeString(text);
+            }
+            return text;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public int readInteger(int defaultValue) throws IOException {
+        boolean outer = mDepth++ == 0;
+        try {
+            int value = super.readInteger(defaultValue);
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_READ_INTEGER);
+                writeInt(defaultValue);
+                writeInt(value);
+            }
+            return value;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public double readDouble(double defaultValue) throws IOException {
+        boolean outer = mDepth++ == 0;
+        try {
+            double value = super.readDouble(defaultValue);
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_READ_DOUBLE);
+                writeLong(Double.doubleToRawLongBits(defaultValue));
+                writeLong(Double.doubleToRawLongBits(value));
+            }
+            return value;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public boolean readBoolean() throws IOException {
+        boolean outer = mDepth++ == 0;
+        try {
+            boolean value = super.readBoolean();
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_READ_BOOLEAN);
+                writeBoolean(value);
+            }
+            return value;
+        } finally {
+            mDepth--;
+        }
+    }
+
+    @Override
+    public void skipTag(String name) throws IOException {
+        boolean outer = mDepth++ == 0;
+        try {
+            super.skipTag(name);
+            if (outer) {
+                mRecords.write(SnapshotCache.OP_SKIP_TAG);
+                writeString(name);
+            }
+        } finally {
+            mDepth--;
+        }
+    }
+
+    /** @return The snapshot of everything recorded so far. */
+    byte[] getSnapshot() {
+        List<byte[]> strings = new ArrayList<>(mStrings.size());
+        int          length  = 8 + mRecords.size();
+        for (String one : mStrings) {
+            byte[] bytes = one.getBytes(StandardCharsets.UTF_8);
+            strings.add(bytes);
+            length += 4 + bytes.length;
+        }
+        ByteBuffer body = ByteBuffer.allocate(length);
+        body.putInt(strings.size());
+        for (byte[] bytes : strings) {
+            body.putInt(bytes.length);
+            body.put(bytes);
+        }
+        body.putInt(mRecords.size());
+        body.put(mRecords.toByteArray());
+        CRC32 crc = new CRC32();
+        crc.update(body.array());
+        ByteBuffer snapshot = ByteBuffer.allocate(16 + length);
+        snapshot.putInt(SnapshotCache.MAGIC);
+        snapshot.putInt(SnapshotCache.CURRENT_VERSION);
+        snapshot.putLong(crc.getValue());
+        snapshot.put(body.array());
+        return snapshot.array();
+    }
+
+    private void writeType(XMLNodeType type) {
+        mRecords.write(type != null ? type.ordinal() : -1);
+    }
+
+    private void writeBoolean(boolean value) {
+        mRecords.write(value ? 1 : 0);
+    }
+
+    private void writeInt(int value) {
+        mRecords.write(value >>> 24);
+        mRecords.write(value >>> 16);
+        mRecords.write(value >>> 8);
+        mRecords.write(value);
+    }
+
+    private void writeLong(long value) {
+        writeInt((int) (value >>> 32));
+        writeInt((int) value);
+    }
+
+    private void writeString(String value) {
+        if (value == null) {
+            writeInt(-1);
+        } else {
+            Integer index = mIndexes.get(value);
+            if (index == null) {
+                index = Integer.valueOf(mStrings.size());
+                mIndexes.put(value, index);
+                mStrings.add(value);
+            }
+            writeInt(index.intValue());
+        }
+    }
+}
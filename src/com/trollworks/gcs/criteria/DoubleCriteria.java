@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.criteria;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.io.xml.XMLReader;
 
 import java.io.IOException;
@@ -62,6 +64,16 @@ public class DoubleCriteria extends NumericCriteria {
         setQualifier(reader.readDouble(0.0));
     }
 
+    @Override
+    protected void loadQualifier(JsonReader in) throws IOException {
+        setQualifier(in.nextDouble());
+    }
+
+    @Override
+    protected void saveQualifier(JsonWriter out) throws IOException {
+        out.value(mQualifier);
+    }
+
     /** @return The qualifier to match against. */
     public double getQualifier() {
         return mQualifier;
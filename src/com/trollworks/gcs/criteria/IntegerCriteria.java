@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.criteria;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.utility.text.Numbers;
 
@@ -64,6 +66,16 @@ public class IntegerCriteria extends NumericCriteria {
         setQualifier(reader.readInteger(0));
     }
 
+    @Override
+    protected void loadQualifier(JsonReader in) throws IOException {
+        setQualifier(in.nextInt());
+    }
+
+    @Override
+    protected void saveQualifier(JsonWriter out) throws IOException {
+        out.value(mQualifier);
+    }
+
     /** @return The qualifier to match against. */
     public int getQualifier() {
         return mQualifier;
@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.criteria;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.annotation.Localize;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.io.xml.XMLWriter;
@@ -32,8 +34,9 @@ public abstract class NumericCriteria {
     }
 
     /** The comparison attribute. */
-    public static final String ATTRIBUTE_COMPARE = "compare"; //$NON-NLS-1$
-    private NumericCompareType mType;
+    public static final String  ATTRIBUTE_COMPARE = "compare"; //$NON-NLS-1$
+    private static final String KEY_QUALIFIER     = "qualifier"; //$NON-NLS-1$
+    private NumericCompareType  mType;
 
     /**
      * Creates a new numeric comparison.
@@ -80,6 +83,45 @@ public abstract class NumericCriteria {
         out.simpleTagWithAttribute(tag, getQualifierAsString(false), ATTRIBUTE_COMPARE, Enums.toId(mType));
     }
 
+    /**
+     * @param in The {@link JsonReader} to load data from, positioned at an object written by
+     *           {@link #save(JsonWriter, String)}.
+     */
+    public void load(JsonReader in) throws IOException {
+        in.startObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (ATTRIBUTE_COMPARE.equals(name)) {
+                setType(Enums.extract(in.nextString(), NumericCompareType.values(), NumericCompareType.AT_LEAST));
+            } else if (KEY_QUALIFIER.equals(name)) {
+                loadQualifier(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    /**
+     * Saves this object as JSON.
+     *
+     * @param out  The {@link JsonWriter} to use.
+     * @param name The name to use.
+     */
+    public void save(JsonWriter out, String name) throws IOException {
+        out.name(name).startObject();
+        out.name(ATTRIBUTE_COMPARE).value(Enums.toId(mType));
+        out.name(KEY_QUALIFIER);
+        saveQualifier(out);
+        out.endObject();
+    }
+
+    /** @param in The {@link JsonReader} to load the qualifier from. */
+    protected abstract void loadQualifier(JsonReader in) throws IOException;
+
+    /** @param out The {@link JsonWriter} to write the qualifier to. */
+    protected abstract void saveQualifier(JsonWriter out) throws IOException;
+
     /**
      * @param allowAdornments Whether extras, such as "lbs." can be appended to the text.
      * @return The numeric qualifier, as a {@link String}.
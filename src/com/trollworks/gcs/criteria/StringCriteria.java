@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.criteria;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.io.xml.XMLWriter;
 import com.trollworks.toolkit.utility.text.Enums;
@@ -20,6 +22,7 @@ import java.io.IOException;
 /** Manages string comparison criteria. */
 public class StringCriteria {
     private static final String ATTRIBUTE_COMPARE = "compare"; //$NON-NLS-1$
+    private static final String KEY_QUALIFIER     = "qualifier"; //$NON-NLS-1$
     private StringCompareType   mType;
     private String              mQualifier;
 
@@ -79,6 +82,38 @@ public class StringCriteria {
         out.simpleTagWithAttribute(tag, mQualifier, ATTRIBUTE_COMPARE, Enums.toId(mType));
     }
 
+    /**
+     * @param in The {@link JsonReader} to load data from, positioned at an object written by
+     *           {@link #save(JsonWriter, String)}.
+     */
+    public void load(JsonReader in) throws IOException {
+        in.startObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (ATTRIBUTE_COMPARE.equals(name)) {
+                setType(Enums.extract(in.nextString(), StringCompareType.values()));
+            } else if (KEY_QUALIFIER.equals(name)) {
+                setQualifier(in.nextString());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    /**
+     * Saves this object as JSON.
+     *
+     * @param out  The {@link JsonWriter} to use.
+     * @param name The name to use.
+     */
+    public void save(JsonWriter out, String name) throws IOException {
+        out.name(name).startObject();
+        out.name(ATTRIBUTE_COMPARE).value(Enums.toId(mType));
+        out.name(KEY_QUALIFIER).value(mQualifier);
+        out.endObject();
+    }
+
     /** @return The type of comparison to make. */
     public StringCompareType getType() {
         return mType;
@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.criteria;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.utility.units.WeightValue;
 
@@ -63,6 +65,16 @@ public class WeightCriteria extends NumericCriteria {
         setQualifier(WeightValue.extract(reader.readText(), false));
     }
 
+    @Override
+    protected void loadQualifier(JsonReader in) throws IOException {
+        setQualifier(WeightValue.extract(in.nextString(), false));
+    }
+
+    @Override
+    protected void saveQualifier(JsonWriter out) throws IOException {
+        out.value(mQualifier.toString(false));
+    }
+
     /** @return The qualifier to match against. */
     public WeightValue getQualifier() {
         return mQualifier;
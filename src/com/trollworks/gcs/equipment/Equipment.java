@@ -15,6 +15,8 @@ import com.trollworks.gcs.app.GCSImages;
 import com.trollworks.gcs.character.GURPSCharacter;
 import com.trollworks.gcs.common.DataFile;
 import com.trollworks.gcs.common.HasSourceReference;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.common.LoadState;
 import com.trollworks.gcs.feature.ContainedWeightReduction;
 import com.trollworks.gcs.feature.Feature;
@@ -196,6 +198,19 @@ public class Equipment extends ListRow implements HasSourceReference {
         load(reader, state);
     }
 
+    /**
+     * @param dataFile The data file to associate it with.
+     * @param type     The type of a row being loaded from JSON.
+     * @return A new, empty equipment to load the row into, or <code>null</code> if the type isn't
+     *         that of an equipment.
+     */
+    public static Equipment create(DataFile dataFile, String type) {
+        if (TAG_EQUIPMENT.equals(type) || TAG_EQUIPMENT_CONTAINER.equals(type)) {
+            return new Equipment(dataFile, TAG_EQUIPMENT_CONTAINER.equals(type));
+        }
+        return null;
+    }
+
     @Override
     public boolean isEquivalentTo(Object obj) {
         if (obj == this) {
@@ -271,15 +286,15 @@ public class Equipment extends ListRow implements HasSourceReference {
         if (TAG_DESCRIPTION.equals(name)) {
             mDescription = reader.readText().replace(NEWLINE, SPACE);
         } else if (TAG_TECH_LEVEL.equals(name)) {
-            mTechLevel = reader.readText().replace(NEWLINE, SPACE);
+            mTechLevel = state.intern(reader.readText().replace(NEWLINE, SPACE));
         } else if (TAG_LEGALITY_CLASS.equals(name)) {
-            mLegalityClass = reader.readText().replace(NEWLINE, SPACE);
+            mLegalityClass = state.intern(reader.readText().replace(NEWLINE, SPACE));
         } else if (TAG_VALUE.equals(name)) {
             mValue = reader.readDouble(0.0);
         } else if (TAG_WEIGHT.equals(name)) {
             mWeight = WeightValue.extract(reader.readText(), false);
         } else if (TAG_REFERENCE.equals(name)) {
-            mReference = reader.readText().replace(NEWLINE, SPACE);
+            mReference = state.intern(reader.readText().replace(NEWLINE, SPACE));
         } else if (!state.mForUndo && (TAG_EQUIPMENT.equals(name) || TAG_EQUIPMENT_CONTAINER.equals(name))) {
             addChild(new Equipment(mDataFile, reader, state));
         } else if (MeleeWeaponStats.TAG_ROOT.equals(name)) {
@@ -299,6 +314,45 @@ public class Equipment extends ListRow implements HasSourceReference {
         }
     }
 
+    @Override
+    protected void loadSubElement(JsonReader in, String name, LoadState state) throws IOException {
+        if (ATTRIBUTE_STATE.equals(name)) {
+            EquipmentState equipmentState = Enums.extract(in.nextString(), EquipmentState.values(), EquipmentState.NOT_CARRIED);
+            if (mDataFile instanceof GURPSCharacter) {
+                setState(equipmentState);
+            }
+        } else if (TAG_DESCRIPTION.equals(name)) {
+            mDescription = in.nextString();
+        } else if (TAG_TECH_LEVEL.equals(name)) {
+            mTechLevel = state.intern(in.nextString());
+        } else if (TAG_LEGALITY_CLASS.equals(name)) {
+            mLegalityClass = state.intern(in.nextString());
+        } else if (TAG_VALUE.equals(name)) {
+            mValue = in.nextDouble();
+        } else if (TAG_WEIGHT.equals(name)) {
+            mWeight = WeightValue.extract(in.nextString(), false);
+        } else if (TAG_REFERENCE.equals(name)) {
+            mReference = state.intern(in.nextString());
+        } else if (WeaponStats.KEY_WEAPONS.equals(name)) {
+            WeaponStats.load(in, this, mWeapons);
+        } else if (!canHaveChildren() && TAG_QUANTITY.equals(name)) {
+            mQuantity = in.nextInt();
+        } else {
+            super.loadSubElement(in, name, state);
+        }
+    }
+
+    @Override
+    protected ListRow createChild(String type) {
+        return create(mDataFile, type);
+    }
+
+    @Override
+    protected boolean isDeferrable(String name) {
+        // Features are kept, as contained weight reductions are needed to show the weight
+        return MeleeWeaponStats.TAG_ROOT.equals(name) || RangedWeaponStats.TAG_ROOT.equals(name) || super.isDeferrable(name) && !isFeature(name);
+    }
+
     @Override
     protected void finishedLoading(LoadState state) {
         OldWeapon oldWeapon = state.mOldWeapons.remove(this);
@@ -337,6 +391,23 @@ public class Equipment extends ListRow implements HasSourceReference {
         }
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        if (mDataFile instanceof GURPSCharacter) {
+            out.name(ATTRIBUTE_STATE).value(Enums.toId(mState));
+        }
+        if (!canHaveChildren()) {
+            out.name(TAG_QUANTITY).value(mQuantity);
+        }
+        out.name(TAG_DESCRIPTION).value(mDescription);
+        out.name(TAG_TECH_LEVEL).value(mTechLevel);
+        out.name(TAG_LEGALITY_CLASS).value(mLegalityClass);
+        out.name(TAG_VALUE).value(mValue);
+        out.name(TAG_WEIGHT).value(mWeight.toString(false));
+        out.name(TAG_REFERENCE).value(mReference);
+        WeaponStats.save(out, mWeapons);
+    }
+
     @Override
     public void update() {
         updateExtendedValue(true);
@@ -677,14 +748,22 @@ public class Equipment extends ListRow implements HasSourceReference {
 
     /** @return The weapon list. */
     public List<WeaponStats> getWeapons() {
+        inflate();
         return Collections.unmodifiableList(mWeapons);
     }
 
+    @Override
+    public void writeCalculated(JsonWriter out) throws IOException {
+        out.name("extended_value").value(getExtendedValue()); //$NON-NLS-1$
+        out.name("extended_weight").value(getExtendedWeight().toString()); //$NON-NLS-1$
+    }
+
     /**
      * @param weapons The weapons to set.
      * @return Whether it was modified.
      */
     public boolean setWeapons(List<WeaponStats> weapons) {
+        inflate();
         if (!mWeapons.equals(weapons)) {
             mWeapons = new ArrayList<>(weapons);
             for (WeaponStats weapon : mWeapons) {
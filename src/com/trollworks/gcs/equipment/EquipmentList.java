@@ -21,15 +21,19 @@ import com.trollworks.toolkit.ui.widget.outline.OutlineModel;
 import com.trollworks.toolkit.utility.FileType;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /** A list of equipment. */
 public class EquipmentList extends ListFile {
     /** The current version. */
-    public static final int    CURRENT_VERSION = 1;
+    public static final int          CURRENT_VERSION = 1;
     /** The XML tag for {@link EquipmentList}s. */
-    public static final String TAG_ROOT        = "equipment_list"; //$NON-NLS-1$
+    public static final String       TAG_ROOT        = "equipment_list"; //$NON-NLS-1$
     /** The extension for {@link EquipmentList}s. */
-    public static final String EXTENSION       = "eqp"; //$NON-NLS-1$
+    public static final String       EXTENSION       = "eqp"; //$NON-NLS-1$
+    private static final Set<String> ROW_TAGS        = new HashSet<>(Arrays.asList(Equipment.TAG_EQUIPMENT, Equipment.TAG_EQUIPMENT_CONTAINER));
 
     @Override
     public int getXMLTagVersion() {
@@ -51,6 +55,11 @@ public class EquipmentList extends ListFile {
         return GCSImages.getEquipmentDocumentIcons();
     }
 
+    @Override
+    protected Set<String> getRowTags() {
+        return ROW_TAGS;
+    }
+
     @Override
     protected void loadList(XMLReader reader, LoadState state) throws IOException {
         OutlineModel model  = getModel();
@@ -66,4 +75,9 @@ public class EquipmentList extends ListFile {
             }
         } while (reader.withinMarker(marker));
     }
+
+    @Override
+    protected Equipment createRow(String type) {
+        return Equipment.create(this, type);
+    }
 }
@@ -122,7 +122,7 @@ public class EquipmentOutline extends ListOutline implements Incrementable, Tech
             if (!equipment.canHaveChildren()) {
                 int qty = equipment.getQuantity();
                 if (qty > 0) {
-                    RowUndo undo = new RowUndo(equipment);
+                    RowUndo undo = new RowUndo(equipment, Equipment::getQuantity, Equipment::setQuantity);
                     equipment.setQuantity(qty - 1);
                     if (undo.finish()) {
                         undos.add(undo);
@@ -142,7 +142,7 @@ public class EquipmentOutline extends ListOutline implements Incrementable, Tech
         List<RowUndo> undos = new ArrayList<>();
         for (Equipment equipment : new FilteredIterator<>(getModel().getSelectionAsList(), Equipment.class)) {
             if (!equipment.canHaveChildren()) {
-                RowUndo undo = new RowUndo(equipment);
+                RowUndo undo = new RowUndo(equipment, Equipment::getQuantity, Equipment::setQuantity);
                 equipment.setQuantity(equipment.getQuantity() + 1);
                 if (undo.finish()) {
                     undos.add(undo);
@@ -197,7 +197,7 @@ public class EquipmentOutline extends ListOutline implements Incrementable, Tech
         for (Equipment equipment : new FilteredIterator<>(getModel().getSelectionAsList(), Equipment.class)) {
             int tl = getCurrentTechLevel(equipment);
             if (tl >= 0) {
-                RowUndo undo = new RowUndo(equipment);
+                RowUndo undo = new RowUndo(equipment, Equipment::getTechLevel, Equipment::setTechLevel);
                 equipment.setTechLevel(Integer.toString(tl + 1));
                 if (undo.finish()) {
                     undos.add(undo);
@@ -218,7 +218,7 @@ public class EquipmentOutline extends ListOutline implements Incrementable, Tech
             if (!equipment.canHaveChildren()) {
                 int tl = getCurrentTechLevel(equipment);
                 if (tl >= 1) {
-                    RowUndo undo = new RowUndo(equipment);
+                    RowUndo undo = new RowUndo(equipment, Equipment::getTechLevel, Equipment::setTechLevel);
                     equipment.setTechLevel(Integer.toString(tl - 1));
                     if (undo.finish()) {
                         undos.add(undo);
@@ -12,6 +12,8 @@
 package com.trollworks.gcs.feature;
 
 import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.io.xml.XMLWriter;
 import com.trollworks.toolkit.utility.text.Enums;
@@ -44,6 +46,17 @@ public class AttributeBonus extends Bonus {
         load(reader);
     }
 
+    /**
+     * Loads a {@link AttributeBonus}.
+     *
+     * @param in The {@link JsonReader} to use, positioned just after the type of an object
+     *           written by {@link #save(JsonWriter)}.
+     */
+    public AttributeBonus(JsonReader in) throws IOException {
+        this();
+        load(in);
+    }
+
     /**
      * Creates a clone of the specified bonus.
      *
@@ -104,6 +117,17 @@ public class AttributeBonus extends Bonus {
         }
     }
 
+    @Override
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (TAG_ATTRIBUTE.equals(name)) {
+            setAttribute(Enums.extract(in.nextString(), BonusAttributeType.values(), BonusAttributeType.ST));
+        } else if (ATTRIBUTE_LIMITATION.equals(name)) {
+            setLimitation(Enums.extract(in.nextString(), AttributeBonusLimitation.values(), AttributeBonusLimitation.NONE));
+        } else {
+            super.loadSelf(in, name);
+        }
+    }
+
     /**
      * Saves the bonus.
      *
@@ -123,6 +147,15 @@ public class AttributeBonus extends Bonus {
         out.endTagEOL(TAG_ROOT, true);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        out.name(TAG_ATTRIBUTE).value(Enums.toId(mAttribute));
+        out.name(ATTRIBUTE_LIMITATION).value(Enums.toId(mLimitation));
+        saveBase(out);
+        out.endObject();
+    }
+
     /** @return The attribute this bonus applies to. */
     public BonusAttributeType getAttribute() {
         return mAttribute;
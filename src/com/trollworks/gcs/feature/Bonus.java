@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.feature;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.widgets.outline.ListRow;
 import com.trollworks.toolkit.annotation.Localize;
 import com.trollworks.toolkit.io.xml.XMLNodeType;
@@ -101,6 +103,29 @@ public abstract class Bonus implements Feature {
         }
     }
 
+    /**
+     * @param in The {@link JsonReader} to use, positioned just after the type of an object written
+     *           by {@link #save(JsonWriter)}.
+     */
+    protected final void load(JsonReader in) throws IOException {
+        while (in.hasNext()) {
+            loadSelf(in, in.nextName());
+        }
+        in.endObject();
+    }
+
+    /**
+     * @param in   The {@link JsonReader} to use.
+     * @param name The name of the member to load.
+     */
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (TAG_AMOUNT.equals(name)) {
+            mAmount.load(in);
+        } else {
+            in.skipValue();
+        }
+    }
+
     /**
      * Saves the bonus base information.
      *
@@ -110,6 +135,15 @@ public abstract class Bonus implements Feature {
         mAmount.save(out, TAG_AMOUNT);
     }
 
+    /**
+     * Saves the bonus base information as JSON.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    public void saveBase(JsonWriter out) throws IOException {
+        mAmount.save(out, TAG_AMOUNT);
+    }
+
     /** @return The leveled amount. */
     public LeveledAmount getAmount() {
         return mAmount;
@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.feature;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * Collects the {@link Bonus}es that contributed to a calculated value, deferring the creation of
+ * the tooltip text that describes them until it is actually needed. The source and amount of each
+ * {@link Bonus} are taken as it is added, so the text matches the value it was collected for.
+ */
+public class BonusToolTip {
+    private ArrayList<String> mSources;
+    private ArrayList<String> mAmounts;
+    private ArrayList<String> mLines;
+
+    /** Creates a new, empty, {@link BonusToolTip}. */
+    public BonusToolTip() {
+        mSources = new ArrayList<>();
+        mAmounts = new ArrayList<>();
+    }
+
+    /** @param bonus The {@link Bonus} to add. */
+    public void add(Bonus bonus) {
+        mSources.add(bonus.getParentName());
+        mAmounts.add(bonus.getToolTipAmount());
+    }
+
+    /** @param bonuses The {@link Bonus}es to add. */
+    public void addAll(Collection<? extends Bonus> bonuses) {
+        for (Bonus bonus : bonuses) {
+            add(bonus);
+        }
+    }
+
+    /**
+     * Adds a line for a modifier that doesn't come from a {@link Bonus}. Such lines always follow
+     * the lines for the {@link Bonus}es.
+     *
+     * @param label  The label describing the modifier.
+     * @param amount The amount of the modifier.
+     */
+    public void addLine(String label, int amount) {
+        if (mLines == null) {
+            mLines = new ArrayList<>();
+        }
+        mLines.add("\n" + label + " [" + amount + "]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+    }
+
+    /** @return Whether nothing has been collected. */
+    public boolean isEmpty() {
+        return mSources.isEmpty() && (mLines == null || mLines.isEmpty());
+    }
+
+    /** @param toolTip The tooltip being built. */
+    public void appendTo(StringBuilder toolTip) {
+        if (toolTip != null) {
+            int count = mSources.size();
+            for (int i = 0; i < count; i++) {
+                toolTip.append("\n").append(mSources.get(i)).append(" [").append(mAmounts.get(i)).append("]"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+            }
+            if (mLines != null) {
+                for (String line : mLines) {
+                    toolTip.append(line);
+                }
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buffer = new StringBuilder();
+        appendTo(buffer);
+        return buffer.toString();
+    }
+}
@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.feature;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.equipment.Equipment;
 import com.trollworks.gcs.preferences.SheetPreferences;
 import com.trollworks.toolkit.io.xml.XMLReader;
@@ -25,8 +27,10 @@ import java.util.HashSet;
 /** Describes a contained weight reduction. */
 public class ContainedWeightReduction implements Feature {
     /** The XML tag. */
-    public static final String TAG_ROOT = "contained_weight_reduction"; //$NON-NLS-1$
-    private Object             mValue;
+    public static final String  TAG_ROOT       = "contained_weight_reduction"; //$NON-NLS-1$
+    private static final String KEY_PERCENTAGE = "percentage"; //$NON-NLS-1$
+    private static final String KEY_WEIGHT     = "weight"; //$NON-NLS-1$
+    private Object              mValue;
 
     /** Creates a new contained weight reduction. */
     public ContainedWeightReduction() {
@@ -56,6 +60,27 @@ public class ContainedWeightReduction implements Feature {
         load(reader);
     }
 
+    /**
+     * Loads a {@link ContainedWeightReduction}.
+     *
+     * @param in The {@link JsonReader} to use, positioned just after the type of an object written
+     *           by {@link #save(JsonWriter)}.
+     */
+    public ContainedWeightReduction(JsonReader in) throws IOException {
+        this();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (KEY_PERCENTAGE.equals(name)) {
+                mValue = Integer.valueOf(in.nextInt());
+            } else if (KEY_WEIGHT.equals(name)) {
+                mValue = WeightValue.extract(in.nextString(), false);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) {
@@ -188,6 +213,17 @@ public class ContainedWeightReduction implements Feature {
         out.simpleTag(TAG_ROOT, text);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        if (mValue instanceof WeightValue) {
+            out.name(KEY_WEIGHT).value(((WeightValue) mValue).toString(false));
+        } else {
+            out.name(KEY_PERCENTAGE).value(((Integer) mValue).intValue());
+        }
+        out.endObject();
+    }
+
     @Override
     public void fillWithNameableKeys(HashSet<String> set) {
         // Nothing to do.
@@ -12,6 +12,8 @@
 package com.trollworks.gcs.feature;
 
 import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.io.xml.XMLNodeType;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.io.xml.XMLWriter;
@@ -58,6 +60,27 @@ public class CostReduction implements Feature {
         load(reader);
     }
 
+    /**
+     * Loads a {@link CostReduction}.
+     *
+     * @param in The {@link JsonReader} to use, positioned just after the type of an object written
+     *           by {@link #save(JsonWriter)}.
+     */
+    public CostReduction(JsonReader in) throws IOException {
+        this();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (TAG_ATTRIBUTE.equals(name)) {
+                setAttribute(Enums.extract(in.nextString(), TYPES, BonusAttributeType.ST));
+            } else if (TAG_PERCENTAGE.equals(name)) {
+                setPercentage(in.nextInt());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
     @Override
     public boolean equals(Object obj) {
         if (obj == this) {
@@ -141,6 +164,14 @@ public class CostReduction implements Feature {
         out.endTagEOL(TAG_ROOT, true);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        out.name(TAG_ATTRIBUTE).value(Enums.toId(mAttribute));
+        out.name(TAG_PERCENTAGE).value(mPercentage);
+        out.endObject();
+    }
+
     @Override
     public void fillWithNameableKeys(HashSet<String> set) {
         // Nothing to do.
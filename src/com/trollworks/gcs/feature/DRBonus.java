@@ -12,6 +12,8 @@
 package com.trollworks.gcs.feature;
 
 import com.trollworks.gcs.character.Armor;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.io.xml.XMLWriter;
 import com.trollworks.toolkit.utility.text.Enums;
@@ -41,6 +43,17 @@ public class DRBonus extends Bonus {
         load(reader);
     }
 
+    /**
+     * Loads a {@link DRBonus}.
+     *
+     * @param in The {@link JsonReader} to use, positioned just after the type of an object
+     *           written by {@link #save(JsonWriter)}.
+     */
+    public DRBonus(JsonReader in) throws IOException {
+        this();
+        load(in);
+    }
+
     /**
      * Creates a clone of the specified bonus.
      *
@@ -90,6 +103,15 @@ public class DRBonus extends Bonus {
         }
     }
 
+    @Override
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (TAG_LOCATION.equals(name)) {
+            setLocation(Enums.extract(in.nextString(), HitLocation.values(), HitLocation.TORSO));
+        } else {
+            super.loadSelf(in, name);
+        }
+    }
+
     /**
      * Saves the bonus.
      *
@@ -103,6 +125,14 @@ public class DRBonus extends Bonus {
         out.endTagEOL(TAG_ROOT, true);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        out.name(TAG_LOCATION).value(Enums.toId(mLocation));
+        saveBase(out);
+        out.endObject();
+    }
+
     /** @return The location protected by the DR. */
     public HitLocation getLocation() {
         return mLocation;
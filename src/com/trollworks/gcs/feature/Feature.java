@@ -11,8 +11,10 @@
 
 package com.trollworks.gcs.feature;
 
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.io.xml.XMLWriter;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
 
@@ -34,6 +36,13 @@ public interface Feature {
      */
     void save(XMLWriter out);
 
+    /**
+     * Saves the feature as JSON.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    void save(JsonWriter out) throws IOException;
+
     /** @param set The nameable keys. */
     void fillWithNameableKeys(HashSet<String> set);
 
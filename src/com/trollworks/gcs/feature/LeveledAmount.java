@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.feature;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.annotation.Localize;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.io.xml.XMLWriter;
@@ -22,17 +24,18 @@ import java.io.IOException;
 /** Manages a leveled amount. */
 public class LeveledAmount {
     /** The "per level" attribute. */
-    public static final String ATTRIBUTE_PER_LEVEL = "per_level"; //$NON-NLS-1$
-    private boolean            mPerLevel;
-    private int                mLevel;
-    private double             mAmount;
-    private boolean            mInteger;
+    public static final String  ATTRIBUTE_PER_LEVEL = "per_level"; //$NON-NLS-1$
+    private static final String KEY_VALUE           = "value"; //$NON-NLS-1$
+    private boolean             mPerLevel;
+    private int                 mLevel;
+    private double              mAmount;
+    private boolean             mInteger;
 
     @Localize(" per die")
     @Localize(locale = "de", value = " pro Würfel")
     @Localize(locale = "ru", value = " за кубик")
     @Localize(locale = "es", value = " por dados")
-    static String              PER_DIE;
+    static String               PER_DIE;
 
     static {
         Localization.initialize();
@@ -117,6 +120,43 @@ public class LeveledAmount {
         }
     }
 
+    /**
+     * @param in The {@link JsonReader} to load data from, positioned at an object written by
+     *           {@link #save(JsonWriter, String)}.
+     */
+    public void load(JsonReader in) throws IOException {
+        mPerLevel = false;
+        in.startObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (KEY_VALUE.equals(name)) {
+                mAmount = in.nextDouble();
+            } else if (ATTRIBUTE_PER_LEVEL.equals(name)) {
+                mPerLevel = in.nextBoolean();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
+    /**
+     * Saves this object as JSON.
+     *
+     * @param out  The {@link JsonWriter} to use.
+     * @param name The name to use.
+     */
+    public void save(JsonWriter out, String name) throws IOException {
+        out.name(name).startObject();
+        if (mInteger) {
+            out.name(KEY_VALUE).value(getIntegerAmount());
+        } else {
+            out.name(KEY_VALUE).value(mAmount);
+        }
+        out.name(ATTRIBUTE_PER_LEVEL).value(mPerLevel);
+        out.endObject();
+    }
+
     /** @return Whether the amount should be applied per level. */
     public boolean isPerLevel() {
         return mPerLevel;
@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.feature;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.criteria.StringCompareType;
 import com.trollworks.gcs.criteria.StringCriteria;
 import com.trollworks.gcs.skill.Skill;
@@ -54,6 +56,17 @@ public class SkillBonus extends Bonus {
         load(reader);
     }
 
+    /**
+     * Loads a {@link SkillBonus}.
+     *
+     * @param in The {@link JsonReader} to use, positioned just after the type of an object
+     *           written by {@link #save(JsonWriter)}.
+     */
+    public SkillBonus(JsonReader in) throws IOException {
+        this();
+        load(in);
+    }
+
     /**
      * Creates a clone of the specified bonus.
      *
@@ -127,6 +140,19 @@ public class SkillBonus extends Bonus {
         }
     }
 
+    @Override
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (TAG_NAME.equals(name)) {
+            mNameCriteria.load(in);
+        } else if (TAG_SPECIALIZATION.equals(name)) {
+            mSpecializationCriteria.load(in);
+        } else if (TAG_CATEGORY.equals(name)) {
+            mCategoryCriteria.load(in);
+        } else {
+            super.loadSelf(in, name);
+        }
+    }
+
     /**
      * Saves the bonus.
      *
@@ -142,6 +168,16 @@ public class SkillBonus extends Bonus {
         out.endTagEOL(TAG_ROOT, true);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        mNameCriteria.save(out, TAG_NAME);
+        mSpecializationCriteria.save(out, TAG_SPECIALIZATION);
+        mCategoryCriteria.save(out, TAG_CATEGORY);
+        saveBase(out);
+        out.endObject();
+    }
+
     /** @return The name criteria. */
     public StringCriteria getNameCriteria() {
         return mNameCriteria;
@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.feature;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.criteria.StringCompareType;
 import com.trollworks.gcs.criteria.StringCriteria;
 import com.trollworks.gcs.spell.Spell;
@@ -58,6 +60,18 @@ public class SpellBonus extends Bonus {
         load(reader);
     }
 
+    /**
+     * Loads a {@link SpellBonus}.
+     *
+     * @param in The {@link JsonReader} to use, positioned just after the type of an object
+     *           written by {@link #save(JsonWriter)}.
+     */
+    public SpellBonus(JsonReader in) throws IOException {
+        this();
+        mAllColleges = false;
+        load(in);
+    }
+
     /**
      * Creates a clone of the specified bonus.
      * 
@@ -133,6 +147,24 @@ public class SpellBonus extends Bonus {
         }
     }
 
+    @Override
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (ATTRIBUTE_ALL_COLLEGES.equals(name)) {
+            mAllColleges = in.nextBoolean();
+        } else if (TAG_COLLEGE_NAME.equals(name)) {
+            mMatchType = TAG_COLLEGE_NAME;
+            mNameCriteria.load(in);
+        } else if (TAG_POWER_SOURCE_NAME.equals(name)) {
+            mMatchType = TAG_POWER_SOURCE_NAME;
+            mNameCriteria.load(in);
+        } else if (TAG_SPELL_NAME.equals(name)) {
+            mMatchType = TAG_SPELL_NAME;
+            mNameCriteria.load(in);
+        } else {
+            super.loadSelf(in, name);
+        }
+    }
+
     /**
      * Saves the bonus.
      * 
@@ -152,6 +184,17 @@ public class SpellBonus extends Bonus {
         out.endTagEOL(TAG_ROOT, true);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        out.name(ATTRIBUTE_ALL_COLLEGES).value(mAllColleges);
+        if (!mAllColleges) {
+            mNameCriteria.save(out, mMatchType);
+        }
+        saveBase(out);
+        out.endObject();
+    }
+
     /** @return Whether the bonus applies to all colleges. */
     public boolean allColleges() {
         return mAllColleges;
@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.feature;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.criteria.IntegerCriteria;
 import com.trollworks.gcs.criteria.NumericCompareType;
 import com.trollworks.gcs.criteria.StringCompareType;
@@ -54,6 +56,17 @@ public class WeaponBonus extends Bonus {
         load(reader);
     }
 
+    /**
+     * Loads a {@link WeaponBonus}.
+     *
+     * @param in The {@link JsonReader} to use, positioned just after the type of an object
+     *           written by {@link #save(JsonWriter)}.
+     */
+    public WeaponBonus(JsonReader in) throws IOException {
+        this();
+        load(in);
+    }
+
     /**
      * Creates a clone of the specified bonus.
      *
@@ -115,6 +128,19 @@ public class WeaponBonus extends Bonus {
         }
     }
 
+    @Override
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (TAG_NAME.equals(name)) {
+            mNameCriteria.load(in);
+        } else if (TAG_SPECIALIZATION.equals(name)) {
+            mSpecializationCriteria.load(in);
+        } else if (TAG_LEVEL.equals(name)) {
+            mLevelCriteria.load(in);
+        } else {
+            super.loadSelf(in, name);
+        }
+    }
+
     /**
      * Saves the bonus.
      *
@@ -130,6 +156,16 @@ public class WeaponBonus extends Bonus {
         out.endTagEOL(TAG_ROOT, true);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        mNameCriteria.save(out, TAG_NAME);
+        mSpecializationCriteria.save(out, TAG_SPECIALIZATION);
+        mLevelCriteria.save(out, TAG_LEVEL);
+        saveBase(out);
+        out.endObject();
+    }
+
     /** @return The name criteria. */
     public StringCriteria getNameCriteria() {
         return mNameCriteria;
@@ -0,0 +1,542 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.library;
+
+import com.trollworks.gcs.advantage.Advantage;
+import com.trollworks.gcs.advantage.AdvantageList;
+import com.trollworks.gcs.app.GCS;
+import com.trollworks.gcs.common.BackgroundScheduler;
+import com.trollworks.gcs.common.HasSourceReference;
+import com.trollworks.gcs.common.ListFile;
+import com.trollworks.gcs.common.LoadState;
+import com.trollworks.gcs.equipment.EquipmentList;
+import com.trollworks.gcs.feature.Feature;
+import com.trollworks.gcs.modifier.Modifier;
+import com.trollworks.gcs.notes.NoteList;
+import com.trollworks.gcs.skill.Skill;
+import com.trollworks.gcs.skill.SkillList;
+import com.trollworks.gcs.spell.SpellList;
+import com.trollworks.gcs.template.Template;
+import com.trollworks.gcs.widgets.outline.ListRow;
+import com.trollworks.toolkit.io.Log;
+import com.trollworks.toolkit.io.SafeFileUpdater;
+import com.trollworks.toolkit.io.xml.XMLNodeType;
+import com.trollworks.toolkit.io.xml.XMLReader;
+import com.trollworks.toolkit.io.xml.XMLWriter;
+import com.trollworks.toolkit.ui.widget.outline.OutlineModel;
+import com.trollworks.toolkit.ui.widget.outline.Row;
+import com.trollworks.toolkit.utility.PathUtils;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * A record of the files in the library and the rows within them, kept on disk so that the library
+ * explorer and its search can come up immediately at startup rather than waiting for the library to
+ * be walked and its files parsed. Each entry is revalidated in the background against its file's
+ * modification time and size, and only files that have changed are parsed again. The catalog is
+ * kept in the per-user cache directory, and is ignored if it was made for another library. The
+ * {@link LibraryIndex} is kept up to date from the catalog.
+ */
+public class LibraryCatalog {
+    private static final int            CURRENT_VERSION    = 2;
+    private static final String         FILE_NAME          = "library_catalog.xml"; //$NON-NLS-1$
+    private static final String         TAG_ROOT           = "library_catalog"; //$NON-NLS-1$
+    private static final String         TAG_FILE           = "file"; //$NON-NLS-1$
+    private static final String         TAG_ROW            = "row"; //$NON-NLS-1$
+    private static final String         TAG_CATEGORY       = "category"; //$NON-NLS-1$
+    private static final String         TAG_REFERENCE      = "reference"; //$NON-NLS-1$
+    private static final String         ATTRIBUTE_ROOT     = "root"; //$NON-NLS-1$
+    private static final String         ATTRIBUTE_PATH     = "path"; //$NON-NLS-1$
+    private static final String         ATTRIBUTE_MODIFIED = "modified"; //$NON-NLS-1$
+    private static final String         ATTRIBUTE_SIZE     = "size"; //$NON-NLS-1$
+    private static final String         ATTRIBUTE_SECTION  = "section"; //$NON-NLS-1$
+    private static final String         ATTRIBUTE_INDEX    = "index"; //$NON-NLS-1$
+    private static final String         ATTRIBUTE_NAME     = "name"; //$NON-NLS-1$
+    private static final LibraryCatalog INSTANCE           = new LibraryCatalog();
+    private Path                        mRoot;
+    private Path                        mFile;
+    private volatile Map<Path, Entry>   mEntries;
+    private List<Path>                  mPending;
+    private Set<Path>                   mPendingPaths;
+    private BackgroundScheduler.Task    mTask;
+
+    /** @return The one and only instance of the catalog. */
+    public static final LibraryCatalog get() {
+        return INSTANCE;
+    }
+
+    private LibraryCatalog() {
+        mRoot    = GCS.getLibraryRootPath();
+        mFile    = GCS.getCachePath().resolve(FILE_NAME);
+        mEntries = Collections.unmodifiableMap(load());
+        mTask    = BackgroundScheduler.createTask("Library Catalog", this::revalidate); //$NON-NLS-1$
+        // Builds the search index from what was recorded
+        mTask.signal();
+    }
+
+    /** @return The paths of the files in the library, as last recorded. */
+    public Set<Path> getPaths() {
+        return mEntries.keySet();
+    }
+
+    /** @return The entries for the files in the library, as last recorded. */
+    public Collection<Entry> getEntries() {
+        return mEntries.values();
+    }
+
+    /**
+     * @param path The path to a file in the library.
+     * @return The entry for the file, or <code>null</code> if it hasn't been recorded.
+     */
+    public Entry getEntry(Path path) {
+        return mEntries.get(path);
+    }
+
+    /**
+     * Brings the whole catalog up to date in the background.
+     *
+     * @param files The files currently in the library.
+     */
+    public void revalidate(List<Path> files) {
+        synchronized (this) {
+            mPending      = files;
+            mPendingPaths = null;
+        }
+        mTask.signal();
+    }
+
+    /**
+     * Brings the entries for some of the files in the library up to date in the background,
+     * leaving the rest as they are.
+     *
+     * @param paths The files that may have been created, changed or deleted.
+     */
+    public void revalidatePaths(Collection<Path> paths) {
+        synchronized (this) {
+            if (mPending == null) {
+                if (mPendingPaths == null) {
+                    mPendingPaths = new HashSet<>();
+                }
+                mPendingPaths.addAll(paths);
+            }
+        }
+        mTask.signal();
+    }
+
+    private void revalidate() {
+        List<Path> files;
+        Set<Path>  paths;
+        synchronized (this) {
+            files         = mPending;
+            paths         = mPendingPaths;
+            mPending      = null;
+            mPendingPaths = null;
+        }
+        if (paths != null) {
+            HashMap<Path, Entry> updated = new HashMap<>(mEntries);
+            boolean              changed = false;
+            for (Path path : paths) {
+                Entry entry = updated.get(path);
+                try {
+                    long modified = Files.getLastModifiedTime(path).toMillis();
+                    long size     = Files.size(path);
+                    if (entry == null || entry.mModified != modified || entry.mSize != size) {
+                        entry = new Entry(path, modified, size);
+                        entry.collect();
+                        updated.put(path, entry);
+                        changed = true;
+                    }
+                } catch (IOException exception) {
+                    // The file is gone
+                    if (updated.remove(path) != null) {
+                        changed = true;
+                    }
+                }
+            }
+            if (changed) {
+                mEntries = Collections.unmodifiableMap(updated);
+                save(updated.values());
+            }
+        } else if (files != null) {
+            Map<Path, Entry>     entries = mEntries;
+            HashMap<Path, Entry> updated = new HashMap<>();
+            boolean              changed = files.size() != entries.size();
+            for (Path path : files) {
+                try {
+                    long  modified = Files.getLastModifiedTime(path).toMillis();
+                    long  size     = Files.size(path);
+                    Entry entry    = entries.get(path);
+                    if (entry == null || entry.mModified != modified || entry.mSize != size) {
+                        entry = new Entry(path, modified, size);
+                        entry.collect();
+                        changed = true;
+                    }
+                    updated.put(path, entry);
+                } catch (IOException exception) {
+                    // The file went away before it could be looked at
+                    changed = true;
+                }
+            }
+            if (changed) {
+                mEntries = Collections.unmodifiableMap(updated);
+                save(updated.values());
+            }
+        }
+        LibraryIndex.get().update(mEntries);
+    }
+
+    private HashMap<Path, Entry> load() {
+        HashMap<Path, Entry> entries = new HashMap<>();
+        File                 file    = mFile.toFile();
+        if (file.isFile()) {
+            try (Reader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+                try (XMLReader reader = new XMLReader(in)) {
+                    XMLNodeType type = reader.next();
+                    while (type != XMLNodeType.END_DOCUMENT) {
+                        if (type == XMLNodeType.START_TAG) {
+                            String name = reader.getName();
+                            if (TAG_ROOT.equals(name) && reader.getAttributeAsInteger(LoadState.ATTRIBUTE_VERSION, 0) == CURRENT_VERSION && mRoot.toString().equals(reader.getAttribute(ATTRIBUTE_ROOT))) {
+                                loadEntries(reader, entries);
+                            } else {
+                                reader.skipTag(name);
+                            }
+                            type = reader.getType();
+                        } else {
+                            type = reader.next();
+                        }
+                    }
+                }
+            } catch (Exception exception) {
+                // A damaged catalog is simply rebuilt
+                Log.error(exception);
+                entries.clear();
+            }
+        }
+        return entries;
+    }
+
+    private void loadEntries(XMLReader reader, Map<Path, Entry> entries) throws IOException {
+        String marker = reader.getMarker();
+        do {
+            if (reader.next() == XMLNodeType.START_TAG) {
+                String name = reader.getName();
+                if (TAG_FILE.equals(name)) {
+                    Entry entry = new Entry(mRoot.resolve(reader.getAttribute(ATTRIBUTE_PATH)), parseLong(reader.getAttribute(ATTRIBUTE_MODIFIED)), parseLong(reader.getAttribute(ATTRIBUTE_SIZE)));
+                    entry.load(reader);
+                    entries.put(entry.mPath, entry);
+                } else {
+                    reader.skipTag(name);
+                }
+            }
+        } while (reader.withinMarker(marker));
+    }
+
+    private static long parseLong(String text) {
+        try {
+            return Long.parseLong(text);
+        } catch (Exception exception) {
+            // Forces the entry to be revalidated
+            return -1;
+        }
+    }
+
+    private void save(Collection<Entry> entries) {
+        SafeFileUpdater transaction = new SafeFileUpdater();
+        transaction.begin();
+        try {
+            Files.createDirectories(mFile.getParent());
+            File    transactionFile = transaction.getTransactionFile(mFile.toFile());
+            boolean success;
+            try (XMLWriter out = new XMLWriter(new BufferedOutputStream(new FileOutputStream(transactionFile)))) {
+                out.writeHeader();
+                out.startTag(TAG_ROOT);
+                out.writeAttribute(LoadState.ATTRIBUTE_VERSION, CURRENT_VERSION);
+                out.writeAttribute(ATTRIBUTE_ROOT, mRoot.toString());
+                out.finishTagEOL();
+                for (Entry entry : entries) {
+                    entry.save(out);
+                }
+                out.endTagEOL(TAG_ROOT, true);
+                success = !out.checkError();
+            }
+            if (success) {
+                transaction.commit();
+            } else {
+                transaction.abort();
+            }
+        } catch (Exception exception) {
+            Log.error(exception);
+            transaction.abort();
+        }
+    }
+
+    /**
+     * @param model The model to look in.
+     * @param index The position of the row, counting each row and then its children in turn.
+     * @return The row, or <code>null</code> if there is no such row.
+     */
+    public static Row getRow(OutlineModel model, int index) {
+        int[] remaining = { index };
+        return getRow(model.getTopLevelRows(), remaining);
+    }
+
+    private static Row getRow(List<Row> rows, int[] remaining) {
+        for (Row row : rows) {
+            if (remaining[0]-- == 0) {
+                return row;
+            }
+            if (row.hasChildren()) {
+                Row found = getRow(row.getChildren(), remaining);
+                if (found != null) {
+                    return found;
+                }
+            }
+        }
+        return null;
+    }
+
+    /** The recorded contents of a single file in the library. */
+    public class Entry {
+        Path                    mPath;
+        long                    mModified;
+        long                    mSize;
+        private List<RowRecord> mRows       = new ArrayList<>();
+        private TreeSet<String> mCategories = new TreeSet<>();
+        private TreeSet<String> mReferences = new TreeSet<>();
+        private int             mIndex;
+
+        Entry(Path path, long modified, long size) {
+            mPath     = path;
+            mModified = modified;
+            mSize     = size;
+        }
+
+        /** @return The path to the file. */
+        public Path getPath() {
+            return mPath;
+        }
+
+        /** @return The rows within the file. */
+        public List<RowRecord> getRows() {
+            return Collections.unmodifiableList(mRows);
+        }
+
+        /** @return The categories used by the rows within the file. */
+        public Set<String> getCategories() {
+            return Collections.unmodifiableSet(mCategories);
+        }
+
+        /** @return The page references used by the rows within the file. */
+        public Set<String> getReferences() {
+            return Collections.unmodifiableSet(mReferences);
+        }
+
+        void collect() {
+            File file = mPath.toFile();
+            try {
+                switch (PathUtils.getExtension(mPath)) {
+                case AdvantageList.EXTENSION:
+                    collect(new AdvantageList(), file);
+                    break;
+                case EquipmentList.EXTENSION:
+                    collect(new EquipmentList(), file);
+                    break;
+                case SkillList.EXTENSION:
+                    collect(new SkillList(), file);
+                    break;
+                case SpellList.EXTENSION:
+                    collect(new SpellList(), file);
+                    break;
+                case NoteList.EXTENSION:
+                    collect(new NoteList(), file);
+                    break;
+                case LibraryFile.EXTENSION:
+                    LibraryFile library = new LibraryFile(file);
+                    collect(AdvantageList.TAG_ROOT, library.getAdvantageList().getModel());
+                    collect(SkillList.TAG_ROOT, library.getSkillList().getModel());
+                    collect(SpellList.TAG_ROOT, library.getSpellList().getModel());
+                    collect(EquipmentList.TAG_ROOT, library.getEquipmentList().getModel());
+                    collect(NoteList.TAG_ROOT, library.getNoteList().getModel());
+                    break;
+                case Template.EXTENSION:
+                    Template template = new Template(file);
+                    collect(AdvantageList.TAG_ROOT, template.getAdvantagesModel());
+                    collect(SkillList.TAG_ROOT, template.getSkillsModel());
+                    collect(SpellList.TAG_ROOT, template.getSpellsModel());
+                    collect(EquipmentList.TAG_ROOT, template.getEquipmentModel());
+                    collect(NoteList.TAG_ROOT, template.getNotesModel());
+                    break;
+                default:
+                    // Sheets and PDFs are recorded, but have no rows of their own
+                    break;
+                }
+            } catch (Exception exception) {
+                Log.error(exception);
+            }
+        }
+
+        private void collect(ListFile list, File file) throws IOException {
+            list.load(file);
+            collect(list.getXMLTagName(), list.getModel());
+        }
+
+        private void collect(String section, OutlineModel model) {
+            mIndex = 0;
+            collect(section, model.getTopLevelRows());
+        }
+
+        private void collect(String section, List<Row> rows) {
+            for (Row row : rows) {
+                int index = mIndex++;
+                if (row instanceof ListRow) {
+                    ListRow       listRow = (ListRow) row;
+                    StringBuilder buffer  = new StringBuilder();
+                    mCategories.addAll(listRow.getCategories());
+                    if (row instanceof Skill) {
+                        append(buffer, ((Skill) row).getSpecialization());
+                    }
+                    for (String category : listRow.getCategories()) {
+                        append(buffer, category);
+                    }
+                    append(buffer, listRow.getNotes());
+                    if (row instanceof HasSourceReference) {
+                        String reference = ((HasSourceReference) row).getReference();
+                        if (reference != null && !reference.isEmpty()) {
+                            mReferences.add(reference);
+                            append(buffer, reference);
+                        }
+                    }
+                    for (Feature feature : listRow.getFeatures()) {
+                        append(buffer, feature.getKey());
+                    }
+                    if (row instanceof Advantage) {
+                        for (Modifier modifier : ((Advantage) row).getModifiers()) {
+                            append(buffer, modifier.getFullDescription());
+                        }
+                    }
+                    mRows.add(new RowRecord(section, index, row.toString(), buffer.toString()));
+                }
+                if (row.hasChildren()) {
+                    collect(section, row.getChildren());
+                }
+            }
+        }
+
+        private void append(StringBuilder buffer, String text) {
+            if (text != null && !text.isEmpty()) {
+                if (buffer.length() > 0) {
+                    buffer.append('\n');
+                }
+                buffer.append(text);
+            }
+        }
+
+        void load(XMLReader reader) throws IOException {
+            String marker = reader.getMarker();
+            do {
+                if (reader.next() == XMLNodeType.START_TAG) {
+                    String name = reader.getName();
+                    if (TAG_ROW.equals(name)) {
+                        String section = reader.getAttribute(ATTRIBUTE_SECTION);
+                        int    index   = reader.getAttributeAsInteger(ATTRIBUTE_INDEX, 0);
+                        String title   = reader.getAttribute(ATTRIBUTE_NAME);
+                        mRows.add(new RowRecord(section, index, title, reader.readText()));
+                    } else if (TAG_CATEGORY.equals(name)) {
+                        mCategories.add(reader.readText());
+                    } else if (TAG_REFERENCE.equals(name)) {
+                        mReferences.add(reader.readText());
+                    } else {
+                        reader.skipTag(name);
+                    }
+                }
+            } while (reader.withinMarker(marker));
+        }
+
+        void save(XMLWriter out) {
+            out.startTag(TAG_FILE);
+            out.writeAttribute(ATTRIBUTE_PATH, mRoot.relativize(mPath).toString());
+            out.writeAttribute(ATTRIBUTE_MODIFIED, Long.toString(mModified));
+            out.writeAttribute(ATTRIBUTE_SIZE, Long.toString(mSize));
+            out.finishTagEOL();
+            for (RowRecord row : mRows) {
+                out.startTag(TAG_ROW);
+                out.writeAttribute(ATTRIBUTE_SECTION, row.mSection);
+                out.writeAttribute(ATTRIBUTE_INDEX, row.mIndex);
+                out.writeAttribute(ATTRIBUTE_NAME, row.mName);
+                out.finishTag();
+                out.writeEncodedData(row.mText);
+                out.endTagEOL(TAG_ROW, false);
+            }
+            for (String category : mCategories) {
+                out.simpleTag(TAG_CATEGORY, category);
+            }
+            for (String reference : mReferences) {
+                out.simpleTag(TAG_REFERENCE, reference);
+            }
+            out.endTagEOL(TAG_FILE, true);
+        }
+    }
+
+    /** The recorded contents of a single row within a file in the library. */
+    public static class RowRecord {
+        String mSection;
+        int    mIndex;
+        String mName;
+        String mText;
+
+        RowRecord(String section, int index, String name, String text) {
+            mSection = section;
+            mIndex   = index;
+            mName    = name;
+            mText    = text;
+        }
+
+        /** @return The XML tag of the list within the file that holds the row. */
+        public String getSection() {
+            return mSection;
+        }
+
+        /** @return The position of the row within its list, as used by {@link LibraryCatalog#getRow(OutlineModel, int)}. */
+        public int getIndex() {
+            return mIndex;
+        }
+
+        /** @return The name of the row. */
+        public String getName() {
+            return mName;
+        }
+
+        /** @return The rest of the row's searchable text, one item per line. */
+        public String getText() {
+            return mText;
+        }
+    }
+}
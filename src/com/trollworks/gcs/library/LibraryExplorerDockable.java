@@ -44,6 +44,9 @@ import com.trollworks.toolkit.ui.widget.dock.DockContainer;
 import com.trollworks.toolkit.ui.widget.dock.DockLayout;
 import com.trollworks.toolkit.ui.widget.dock.DockLocation;
 import com.trollworks.toolkit.ui.widget.dock.Dockable;
+import com.trollworks.toolkit.ui.widget.outline.Outline;
+import com.trollworks.toolkit.ui.widget.outline.OutlineModel;
+import com.trollworks.toolkit.ui.widget.outline.Row;
 import com.trollworks.toolkit.ui.widget.search.Search;
 import com.trollworks.toolkit.ui.widget.search.SearchTarget;
 import com.trollworks.toolkit.ui.widget.tree.FieldAccessor;
@@ -61,6 +64,7 @@ import com.trollworks.toolkit.utility.PathUtils;
 import com.trollworks.toolkit.utility.notification.Notifier;
 
 import java.awt.BorderLayout;
+import java.awt.EventQueue;
 import java.awt.KeyboardFocusManager;
 import java.io.File;
 import java.io.IOException;
@@ -211,20 +215,91 @@ public class LibraryExplorerDockable extends Dockable implements DocumentListene
     @Override
     public void dataFileListUpdated(List<Object> lists) {
         TreeRoot    root     = mTreePanel.getRoot();
+        Set<String> selected = collectSelectedKeys();
+        Set<String> open     = collectOpenKeys();
+        mNotifier.startBatch();
+        root.removeRow(new ArrayList<>(root.getChildren()));
+        fillTree(lists, root);
+        mNotifier.endBatch();
+        restoreState(open, selected);
+    }
+
+    @Override
+    public void dataFileListUpdated(List<Object> lists, List<List<String>> changed) {
+        List<TreeContainerRow> containers = new ArrayList<>();
+        List<List<?>>          subLists   = new ArrayList<>();
+        for (List<String> names : changed) {
+            TreeContainerRow container = mTreePanel.getRoot();
+            List<?>          subList   = lists;
+            for (String name : names) {
+                container = findDirectoryRow(container, name);
+                subList = findSubList(subList, name);
+                if (container == null || subList == null) {
+                    // The tree is out of step with the changes, so rebuild all of it
+                    dataFileListUpdated(lists);
+                    return;
+                }
+            }
+            containers.add(container);
+            subLists.add(subList);
+        }
+        Set<String> selected = collectSelectedKeys();
+        Set<String> open     = collectOpenKeys();
+        mNotifier.startBatch();
+        int count = containers.size();
+        for (int i = 0; i < count; i++) {
+            TreeContainerRow container = containers.get(i);
+            container.removeRow(new ArrayList<>(container.getChildren()));
+            fillTree(subLists.get(i), container);
+        }
+        mNotifier.endBatch();
+        restoreState(open, selected);
+    }
+
+    private static TreeContainerRow findDirectoryRow(TreeContainerRow parent, String name) {
+        if (parent != null) {
+            for (TreeRow row : parent.getChildren()) {
+                if (row instanceof LibraryDirectoryRow && name.equals(((LibraryDirectoryRow) row).getName())) {
+                    return (TreeContainerRow) row;
+                }
+            }
+        }
+        return null;
+    }
+
+    private static List<?> findSubList(List<?> lists, String name) {
+        if (lists != null) {
+            int count = lists.size();
+            for (int i = 1; i < count; i++) {
+                Object entry = lists.get(i);
+                if (entry instanceof List<?> && name.equals(((List<?>) entry).get(0))) {
+                    return (List<?>) entry;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Set<String> collectSelectedKeys() {
         Set<String> selected = new HashSet<>();
         for (TreeRow row : mTreePanel.getExplicitlySelectedRows()) {
             selected.add(((LibraryExplorerRow) row).getSelectionKey());
         }
+        return selected;
+    }
+
+    private Set<String> collectOpenKeys() {
         Set<String> open = new HashSet<>();
-        for (TreeRow row : new TreeRowViewIterator(mTreePanel, root)) {
+        for (TreeRow row : new TreeRowViewIterator(mTreePanel, mTreePanel.getRoot())) {
             if (row instanceof TreeContainerRow && mTreePanel.isOpen((TreeContainerRow) row)) {
                 open.add(((LibraryExplorerRow) row).getSelectionKey());
             }
         }
-        mNotifier.startBatch();
-        root.removeRow(new ArrayList<>(root.getChildren()));
-        fillTree(lists, root);
-        mNotifier.endBatch();
+        return open;
+    }
+
+    private void restoreState(Set<String> open, Set<String> selected) {
+        TreeRoot root = mTreePanel.getRoot();
         mTreePanel.setOpen(true, collectRowsToOpen(root, open, null));
         mTreePanel.select(collectRows(root, selected, null));
     }
@@ -358,6 +433,7 @@ public class LibraryExplorerDockable extends Dockable implements DocumentListene
 
     private FileProxy openAdvantageList(Path path) throws IOException {
         AdvantageList list = new AdvantageList();
+        list.setLoadLazily(true);
         list.load(path.toFile());
         list.getModel().setLocked(true);
         return dockLibrary(new AdvantagesDockable(list));
@@ -365,6 +441,7 @@ public class LibraryExplorerDockable extends Dockable implements DocumentListene
 
     private FileProxy openEquipmentList(Path path) throws IOException {
         EquipmentList list = new EquipmentList();
+        list.setLoadLazily(true);
         list.load(path.toFile());
         list.getModel().setLocked(true);
         return dockLibrary(new EquipmentDockable(list));
@@ -585,8 +662,8 @@ public class LibraryExplorerDockable extends Dockable implements DocumentListene
     @Override
     public List<Object> search(String filter) {
         ArrayList<Object> list = new ArrayList<>();
-        filter = filter.toLowerCase();
-        collect(mTreePanel.getRoot(), filter, list);
+        collect(mTreePanel.getRoot(), filter.toLowerCase(), list);
+        list.addAll(LibraryIndex.get().search(filter));
         return list;
     }
 
@@ -609,11 +686,61 @@ public class LibraryExplorerDockable extends Dockable implements DocumentListene
         for (Object one : selection) {
             if (one instanceof TreeRow) {
                 list.add((TreeRow) one);
+            } else if (one instanceof LibraryIndex.Hit) {
+                openToRow((LibraryIndex.Hit) one);
+            }
+        }
+        if (!list.isEmpty()) {
+            mTreePanel.setParentsOpen(list);
+            mTreePanel.select(list);
+            mTreePanel.requestFocus();
+        }
+    }
 
+    private void openToRow(LibraryIndex.Hit hit) {
+        FileProxy proxy   = open(hit.getPath());
+        Outline   outline = null;
+        if (proxy instanceof LibraryDockable) {
+            LibraryDockable dockable = (LibraryDockable) proxy;
+            if (hit.getSection().equals(dockable.getDataFile().getXMLTagName())) {
+                outline = dockable.getOutline();
+            }
+        } else if (proxy instanceof TemplateDockable) {
+            TemplateDockable dockable = (TemplateDockable) proxy;
+            switch (hit.getSection()) {
+            case AdvantageList.TAG_ROOT:
+                outline = dockable.getAdvantageOutline();
+                break;
+            case SkillList.TAG_ROOT:
+                outline = dockable.getSkillOutline();
+                break;
+            case SpellList.TAG_ROOT:
+                outline = dockable.getSpellOutline();
+                break;
+            case EquipmentList.TAG_ROOT:
+                outline = dockable.getEquipmentOutline();
+                break;
+            case NoteList.TAG_ROOT:
+                outline = dockable.getNoteOutline();
+                break;
+            default:
+                break;
+            }
+        }
+        if (outline != null) {
+            OutlineModel model = outline.getModel();
+            Row          row   = LibraryCatalog.getRow(model, hit.getIndex());
+            if (row != null) {
+                for (Row parent = row.getParent(); parent != null; parent = parent.getParent()) {
+                    parent.setOpen(true);
+                }
+                ArrayList<Row> rows = new ArrayList<>();
+                rows.add(row);
+                model.select(rows, false);
+                Outline target = outline;
+                EventQueue.invokeLater(() -> target.scrollSelectionIntoView());
+                outline.requestFocus();
             }
         }
-        mTreePanel.setParentsOpen(list);
-        mTreePanel.select(list);
-        mTreePanel.requestFocus();
     }
 }
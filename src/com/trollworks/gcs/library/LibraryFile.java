@@ -13,6 +13,8 @@ package com.trollworks.gcs.library;
 
 import com.trollworks.gcs.advantage.AdvantageList;
 import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.common.LoadState;
 import com.trollworks.gcs.equipment.EquipmentList;
 import com.trollworks.gcs.notes.NoteList;
@@ -28,6 +30,9 @@ import com.trollworks.toolkit.utility.Localization;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
 
 /** Holds the contents of a library file. */
 public class LibraryFile extends DataFile {
@@ -45,16 +50,17 @@ public class LibraryFile extends DataFile {
     }
 
     /** The current version. */
-    public static final int    CURRENT_VERSION = 1;
+    public static final int          CURRENT_VERSION = 1;
     /** The XML tag for library files. */
-    public static final String TAG_ROOT        = "gcs_library"; //$NON-NLS-1$
+    public static final String       TAG_ROOT        = "gcs_library"; //$NON-NLS-1$
     /** The extension for library files. */
-    public static final String EXTENSION       = "glb"; //$NON-NLS-1$
-    private AdvantageList      mAdvantages;
-    private SkillList          mSkills;
-    private SpellList          mSpells;
-    private EquipmentList      mEquipment;
-    private NoteList           mNotes;
+    public static final String       EXTENSION       = "glb"; //$NON-NLS-1$
+    private static final Set<String> LIST_TAGS       = new HashSet<>(Arrays.asList(AdvantageList.TAG_ROOT, SkillList.TAG_ROOT, SpellList.TAG_ROOT, EquipmentList.TAG_ROOT, NoteList.TAG_ROOT));
+    private AdvantageList            mAdvantages;
+    private SkillList                mSkills;
+    private SpellList                mSpells;
+    private EquipmentList            mEquipment;
+    private NoteList                 mNotes;
 
     /** Creates a new, empty, {@link LibraryFile}. */
     public LibraryFile() {
@@ -107,6 +113,11 @@ public class LibraryFile extends DataFile {
         return CURRENT_VERSION;
     }
 
+    @Override
+    protected boolean canUseSnapshots() {
+        return true;
+    }
+
     @Override
     protected void loadSelf(XMLReader reader, LoadState state) throws IOException {
         setup();
@@ -115,25 +126,58 @@ public class LibraryFile extends DataFile {
             String marker = reader.getMarker();
             do {
                 if (reader.next() == XMLNodeType.START_TAG) {
-                    name = reader.getName();
-                    if (AdvantageList.TAG_ROOT.equals(name)) {
-                        mAdvantages.load(reader, state);
-                    } else if (SkillList.TAG_ROOT.equals(name)) {
-                        mSkills.load(reader, state);
-                    } else if (SpellList.TAG_ROOT.equals(name)) {
-                        mSpells.load(reader, state);
-                    } else if (EquipmentList.TAG_ROOT.equals(name)) {
-                        mEquipment.load(reader, state);
-                    } else if (NoteList.TAG_ROOT.equals(name)) {
-                        mNotes.load(reader, state);
-                    } else {
-                        reader.skipTag(name);
-                    }
+                    loadList(reader, state);
                 }
             } while (reader.withinMarker(marker));
+            if (state.mSections != null) {
+                state.mSections.load(this, state, this::loadList);
+            }
+        }
+    }
+
+    private void loadList(XMLReader reader, LoadState state) throws IOException {
+        String name = reader.getName();
+        if (AdvantageList.TAG_ROOT.equals(name)) {
+            mAdvantages.load(reader, state);
+        } else if (SkillList.TAG_ROOT.equals(name)) {
+            mSkills.load(reader, state);
+        } else if (SpellList.TAG_ROOT.equals(name)) {
+            mSpells.load(reader, state);
+        } else if (EquipmentList.TAG_ROOT.equals(name)) {
+            mEquipment.load(reader, state);
+        } else if (NoteList.TAG_ROOT.equals(name)) {
+            mNotes.load(reader, state);
+        } else {
+            reader.skipTag(name);
+        }
+    }
+
+    @Override
+    protected void loadSelf(JsonReader in, LoadState state) throws IOException {
+        setup();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (AdvantageList.TAG_ROOT.equals(name)) {
+                mAdvantages.load(in, state);
+            } else if (SkillList.TAG_ROOT.equals(name)) {
+                mSkills.load(in, state);
+            } else if (SpellList.TAG_ROOT.equals(name)) {
+                mSpells.load(in, state);
+            } else if (EquipmentList.TAG_ROOT.equals(name)) {
+                mEquipment.load(in, state);
+            } else if (NoteList.TAG_ROOT.equals(name)) {
+                mNotes.load(in, state);
+            } else {
+                in.skipValue();
+            }
         }
     }
 
+    @Override
+    protected Set<String> getSectionTags() {
+        return LIST_TAGS;
+    }
+
     @Override
     protected void saveSelf(XMLWriter out) {
         mAdvantages.save(out, false, true);
@@ -142,6 +186,20 @@ public class LibraryFile extends DataFile {
         mEquipment.save(out, false, true);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        out.name(AdvantageList.TAG_ROOT);
+        mAdvantages.save(out);
+        out.name(SkillList.TAG_ROOT);
+        mSkills.save(out);
+        out.name(SpellList.TAG_ROOT);
+        mSpells.save(out);
+        out.name(EquipmentList.TAG_ROOT);
+        mEquipment.save(out);
+        out.name(NoteList.TAG_ROOT);
+        mNotes.save(out);
+    }
+
     /** @return The {@link AdvantageList}. */
     public AdvantageList getAdvantageList() {
         return mAdvantages;
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.library;
+
+import com.trollworks.toolkit.utility.PathUtils;
+import com.trollworks.toolkit.utility.text.NumericComparator;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * An inverted index over the rows of every file in the library, covering their names,
+ * specializations, categories, notes, page references, features and modifiers. It is fed from the
+ * {@link LibraryCatalog}, so only the files that have changed are indexed again.
+ */
+public class LibraryIndex {
+    private static final LibraryIndex           INSTANCE = new LibraryIndex();
+    private TreeMap<String, Set<Hit>>           mTerms   = new TreeMap<>();
+    private HashMap<Path, LibraryCatalog.Entry> mEntries = new HashMap<>();
+    private HashMap<Path, List<Hit>>            mHits    = new HashMap<>();
+
+    /** @return The one and only instance of the index. */
+    public static final LibraryIndex get() {
+        return INSTANCE;
+    }
+
+    private LibraryIndex() {
+    }
+
+    /**
+     * Brings the index into line with the catalog, indexing only those entries that have changed.
+     *
+     * @param entries The current catalog entries.
+     */
+    synchronized void update(Map<Path, LibraryCatalog.Entry> entries) {
+        for (Path path : new ArrayList<>(mEntries.keySet())) {
+            if (entries.get(path) != mEntries.get(path)) {
+                remove(path);
+            }
+        }
+        for (LibraryCatalog.Entry entry : entries.values()) {
+            if (!mEntries.containsKey(entry.getPath())) {
+                add(entry);
+            }
+        }
+    }
+
+    private void add(LibraryCatalog.Entry entry) {
+        Path      path = entry.getPath();
+        List<Hit> hits = new ArrayList<>();
+        for (LibraryCatalog.RowRecord row : entry.getRows()) {
+            Hit hit = new Hit(path, row);
+            hits.add(hit);
+            for (String term : hit.mTerms) {
+                Set<Hit> set = mTerms.get(term);
+                if (set == null) {
+                    set = new HashSet<>();
+                    mTerms.put(term, set);
+                }
+                set.add(hit);
+            }
+        }
+        mEntries.put(path, entry);
+        mHits.put(path, hits);
+    }
+
+    private void remove(Path path) {
+        List<Hit> hits = mHits.remove(path);
+        if (hits != null) {
+            for (Hit hit : hits) {
+                for (String term : hit.mTerms) {
+                    Set<Hit> set = mTerms.get(term);
+                    if (set != null) {
+                        set.remove(hit);
+                        if (set.isEmpty()) {
+                            mTerms.remove(term);
+                        }
+                    }
+                }
+            }
+        }
+        mEntries.remove(path);
+    }
+
+    /**
+     * @param text The text to search for. Each word must be the start of a word in the row.
+     * @return The rows that match, in name order.
+     */
+    public List<Hit> search(String text) {
+        Set<Hit> matches = null;
+        synchronized (this) {
+            for (String word : split(text)) {
+                Set<Hit> found = new HashSet<>();
+                for (Set<Hit> set : mTerms.subMap(word, true, word + Character.MAX_VALUE, true).values()) {
+                    found.addAll(set);
+                }
+                if (matches == null) {
+                    matches = found;
+                } else {
+                    matches.retainAll(found);
+                }
+                if (matches.isEmpty()) {
+                    break;
+                }
+            }
+        }
+        List<Hit> result = matches == null ? new ArrayList<>() : new ArrayList<>(matches);
+        result.sort((h1, h2) -> NumericComparator.compareStrings(h1.getName(), h2.getName()));
+        return result;
+    }
+
+    private static Collection<String> split(String text) {
+        Set<String> words = new HashSet<>();
+        int         start = -1;
+        int         count = text.length();
+        for (int i = 0; i <= count; i++) {
+            if (i < count && Character.isLetterOrDigit(text.charAt(i))) {
+                if (start == -1) {
+                    start = i;
+                }
+            } else if (start != -1) {
+                words.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return words;
+    }
+
+    /** A row that matched a search. */
+    public static class Hit {
+        private Path                     mPath;
+        private LibraryCatalog.RowRecord mRow;
+        private Collection<String>       mTerms;
+
+        Hit(Path path, LibraryCatalog.RowRecord row) {
+            mPath  = path;
+            mRow   = row;
+            mTerms = split(row.getName() + '\n' + row.getText());
+        }
+
+        /** @return The path to the file holding the row. */
+        public Path getPath() {
+            return mPath;
+        }
+
+        /** @return The XML tag of the list within the file that holds the row. */
+        public String getSection() {
+            return mRow.getSection();
+        }
+
+        /** @return The position of the row within its list. */
+        public int getIndex() {
+            return mRow.getIndex();
+        }
+
+        /** @return The name of the row. */
+        public String getName() {
+            return mRow.getName();
+        }
+
+        @Override
+        public String toString() {
+            return mRow.getName() + " (" + PathUtils.getLeafName(mPath, true) + ")"; //$NON-NLS-1$ //$NON-NLS-2$
+        }
+    }
+}
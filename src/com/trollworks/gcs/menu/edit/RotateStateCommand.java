@@ -75,7 +75,7 @@ public class RotateStateCommand extends Command {
         if (focus instanceof EquipmentOutline) {
             EquipmentOutline outline = (EquipmentOutline) focus;
             for (Equipment equipment : new FilteredIterator<Equipment>(outline.getModel().getSelectionAsList(), Equipment.class)) {
-                RowUndo          undo   = new RowUndo(equipment);
+                RowUndo          undo   = new RowUndo(equipment, Equipment::getState, Equipment::setState);
                 EquipmentState[] values = EquipmentState.values();
                 int              index  = equipment.getState().ordinal() - 1;
                 if (index < 0) {
@@ -89,7 +89,7 @@ public class RotateStateCommand extends Command {
         } else if (focus instanceof AdvantageOutline) {
             AdvantageOutline outline = (AdvantageOutline) focus;
             for (Advantage adq : new FilteredIterator<Advantage>(outline.getModel().getSelectionAsList(), Advantage.class)) {
-                RowUndo undo = new RowUndo(adq);
+                RowUndo undo = new RowUndo(adq, Advantage::isSelfEnabled, Advantage::setEnabled);
                 adq.setEnabled(!adq.isSelfEnabled());
                 if (undo.finish()) {
                     undos.add(undo);
@@ -0,0 +1,169 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.menu.file;
+
+import com.trollworks.gcs.app.GCSImages;
+import com.trollworks.gcs.character.SheetDockable;
+import com.trollworks.gcs.character.SheetExporter;
+import com.trollworks.gcs.common.Workspace;
+import com.trollworks.toolkit.annotation.Localize;
+import com.trollworks.toolkit.io.Log;
+import com.trollworks.toolkit.ui.menu.Command;
+import com.trollworks.toolkit.ui.widget.WindowUtils;
+import com.trollworks.toolkit.ui.widget.dock.Dockable;
+import com.trollworks.toolkit.utility.Localization;
+
+import java.awt.EventQueue;
+import java.awt.event.ActionEvent;
+import java.io.File;
+import java.io.IOException;
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.swing.JFileChooser;
+import javax.swing.JOptionPane;
+import javax.swing.ProgressMonitor;
+
+/** Provides the "Export All Sheets" command. */
+public class ExportSheetsCommand extends Command {
+    @Localize("Export All Sheets\u2026")
+    private static String EXPORT_ALL_SHEETS;
+    @Localize("Export all open sheets as:")
+    private static String EXPORT_AS;
+    @Localize("Exporting Sheets")
+    private static String EXPORTING;
+    @Localize("Exported {0} of {1} sheets")
+    private static String EXPORTED;
+    @Localize("Unable to export:\n{0}")
+    private static String EXPORT_ERROR;
+    @Localize("Text")
+    private static String TEXT;
+    @Localize("Cancel")
+    @Localize(locale = "de", value = "Abbrechen")
+    @Localize(locale = "ru", value = "Отмена")
+    @Localize(locale = "es", value = "Cancelar")
+    private static String CANCEL;
+
+    static {
+        Localization.initialize();
+    }
+
+    /** The action command this command will issue. */
+    public static final String              CMD_EXPORT_SHEETS = "ExportSheets"; //$NON-NLS-1$
+
+    /** The singleton {@link ExportSheetsCommand}. */
+    public static final ExportSheetsCommand INSTANCE          = new ExportSheetsCommand();
+
+    private ExportSheetsCommand() {
+        super(EXPORT_ALL_SHEETS, CMD_EXPORT_SHEETS);
+    }
+
+    @Override
+    public void adjust() {
+        setEnabled(!getOpenSheets().isEmpty());
+    }
+
+    @Override
+    public void actionPerformed(ActionEvent event) {
+        List<SheetDockable> dockables = getOpenSheets();
+        if (dockables.isEmpty()) {
+            return;
+        }
+        SheetExporter.Format[] formats = { SheetExporter.Format.PDF, SheetExporter.Format.PNG, SheetExporter.Format.TEXT };
+        int                    choice  = WindowUtils.showOptionDialog(null, EXPORT_AS, EXPORT_ALL_SHEETS, false, JOptionPane.DEFAULT_OPTION, JOptionPane.QUESTION_MESSAGE, GCSImages.getCharacterSheetDocumentIcons().getImage(32), new String[] { "PDF", "PNG", TEXT, CANCEL }, "PDF"); //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        if (choice < 0 || choice >= formats.length) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(EXPORT_ALL_SHEETS);
+        chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        if (chooser.showSaveDialog(Workspace.get()) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File                                      dir    = chooser.getSelectedFile();
+        LinkedHashMap<String, SheetExporter.Copy> copies = new LinkedHashMap<>();
+        for (SheetDockable dockable : dockables) {
+            String base = dockable.getTitle();
+            String name = base;
+            for (int i = 2; copies.containsKey(name); i++) {
+                name = base + " " + i; //$NON-NLS-1$
+            }
+            try {
+                // The copy is all the workers see, so the sheet may go on being edited meanwhile
+                copies.put(name, new SheetExporter.Copy(dockable.getDataFile()));
+            } catch (IOException exception) {
+                Log.error(exception);
+                WindowUtils.showError(Workspace.get(), MessageFormat.format(EXPORT_ERROR, name));
+                return;
+            }
+        }
+        export(copies, dir, new SheetExporter(EnumSet.of(formats[choice]), Runtime.getRuntime().availableProcessors()));
+    }
+
+    private static void export(LinkedHashMap<String, SheetExporter.Copy> copies, File dir, SheetExporter exporter) {
+        int             count   = copies.size();
+        ProgressMonitor monitor = new ProgressMonitor(Workspace.get(), EXPORTING, MessageFormat.format(EXPORTED, Integer.valueOf(0), Integer.valueOf(count)), 0, count);
+        AtomicInteger   done    = new AtomicInteger();
+        List<String>    failed  = new ArrayList<>();
+        monitor.setMillisToDecideToPopup(0);
+        monitor.setMillisToPopup(0);
+        Thread thread = new Thread(() -> {
+            try {
+                exporter.export(copies, dir, new SheetExporter.Progress() {
+                    @Override
+                    public boolean isCanceled() {
+                        return monitor.isCanceled();
+                    }
+
+                    @Override
+                    public void exported(String name, List<File> files, Exception failure) {
+                        int finished = done.incrementAndGet();
+                        if (failure != null) {
+                            Log.error(failure);
+                            synchronized (failed) {
+                                failed.add(name);
+                            }
+                        }
+                        EventQueue.invokeLater(() -> {
+                            monitor.setNote(MessageFormat.format(EXPORTED, Integer.valueOf(finished), Integer.valueOf(count)));
+                            monitor.setProgress(finished);
+                        });
+                    }
+                });
+            } catch (InterruptedException exception) {
+                // Fall through and report what was done
+            }
+            EventQueue.invokeLater(() -> {
+                monitor.close();
+                if (!failed.isEmpty()) {
+                    WindowUtils.showError(Workspace.get(), MessageFormat.format(EXPORT_ERROR, String.join("\n", failed))); //$NON-NLS-1$
+                }
+            });
+        }, EXPORTING);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static List<SheetDockable> getOpenSheets() {
+        List<SheetDockable> sheets = new ArrayList<>();
+        for (Dockable dockable : Workspace.get().getDock().getDockables()) {
+            if (dockable instanceof SheetDockable) {
+                sheets.add((SheetDockable) dockable);
+            }
+        }
+        return sheets;
+    }
+}
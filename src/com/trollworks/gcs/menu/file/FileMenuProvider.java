@@ -61,6 +61,7 @@ public class FileMenuProvider implements MenuProvider {
         cmds.add(SaveCommand.INSTANCE);
         cmds.add(SaveAsCommand.INSTANCE);
         cmds.add(ExportToGurpsCalculatorCommand.INSTANCE);
+        cmds.add(ExportSheetsCommand.INSTANCE);
         cmds.add(PageSetupCommand.INSTANCE);
         cmds.add(PrintCommand.INSTANCE);
         if (!Platform.isMacintosh()) {
@@ -88,6 +89,7 @@ public class FileMenuProvider implements MenuProvider {
         menu.add(new DynamicMenuItem(SaveCommand.INSTANCE));
         menu.add(new DynamicMenuItem(SaveAsCommand.INSTANCE));
         menu.add(new DynamicMenuItem(ExportToGurpsCalculatorCommand.INSTANCE));
+        menu.add(new DynamicMenuItem(ExportSheetsCommand.INSTANCE));
         menu.addSeparator();
         menu.add(new DynamicMenuItem(PageSetupCommand.INSTANCE));
         menu.add(new DynamicMenuItem(PrintCommand.INSTANCE));
@@ -12,6 +12,8 @@
 package com.trollworks.gcs.modifier;
 
 import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.common.LoadState;
 import com.trollworks.gcs.widgets.outline.ListRow;
 import com.trollworks.gcs.widgets.outline.RowEditor;
@@ -68,6 +70,7 @@ public class Modifier extends ListRow implements Comparable<Modifier> {
     protected static final String TAG_REFERENCE       = "reference"; //$NON-NLS-1$
     /** The attribute for whether it is enabled. */
     protected static final String ATTRIBUTE_ENABLED   = "enabled"; //$NON-NLS-1$
+    private static final String   KEY_COST_TYPE       = "cost_type"; //$NON-NLS-1$
     /** The prefix for notifications. */
     public static final String    MODIFIER_PREFIX     = TAG_MODIFIER + Notifier.SEPARATOR;
     /** The ID for name change notification. */
@@ -142,6 +145,16 @@ public class Modifier extends ListRow implements Comparable<Modifier> {
         mEnabled        = true;
     }
 
+    /**
+     * @param file The {@link DataFile} to use.
+     * @param type The type of a row being loaded from JSON.
+     * @return A new, empty {@link Modifier} to load the row into, or <code>null</code> if the type
+     *         isn't that of a {@link Modifier}.
+     */
+    public static Modifier create(DataFile file, String type) {
+        return TAG_MODIFIER.equals(type) ? new Modifier(file) : null;
+    }
+
     @Override
     public boolean isEquivalentTo(Object obj) {
         if (obj == this) {
@@ -348,9 +361,9 @@ public class Modifier extends ListRow implements Comparable<Modifier> {
     protected void loadSubElement(XMLReader reader, LoadState state) throws IOException {
         String name = reader.getName();
         if (TAG_NAME.equals(name)) {
-            mName = reader.readText().replace("\n", " "); //$NON-NLS-1$ //$NON-NLS-2$
+            mName = state.intern(reader.readText().replace("\n", " ")); //$NON-NLS-1$ //$NON-NLS-2$
         } else if (TAG_REFERENCE.equals(name)) {
-            mReference = reader.readText().replace("\n", " "); //$NON-NLS-1$ //$NON-NLS-2$
+            mReference = state.intern(reader.readText().replace("\n", " ")); //$NON-NLS-1$ //$NON-NLS-2$
         } else if (TAG_COST.equals(name)) {
             mCostType = Enums.extract(reader.getAttribute(ATTRIBUTE_COST_TYPE), CostType.values(), CostType.PERCENTAGE);
             if (mCostType == CostType.MULTIPLIER) {
@@ -367,6 +380,32 @@ public class Modifier extends ListRow implements Comparable<Modifier> {
         }
     }
 
+    @Override
+    protected void loadSubElement(JsonReader in, String name, LoadState state) throws IOException {
+        if (ATTRIBUTE_ENABLED.equals(name)) {
+            mEnabled = in.nextBoolean();
+        } else if (TAG_NAME.equals(name)) {
+            mName = state.intern(in.nextString());
+        } else if (TAG_REFERENCE.equals(name)) {
+            mReference = state.intern(in.nextString());
+        } else if (KEY_COST_TYPE.equals(name)) {
+            mCostType = Enums.extract(in.nextString(), CostType.values(), CostType.PERCENTAGE);
+        } else if (TAG_COST.equals(name)) {
+            // The cost type is always written ahead of the cost
+            if (mCostType == CostType.MULTIPLIER) {
+                mCostMultiplier = in.nextDouble();
+            } else {
+                mCost = in.nextInt();
+            }
+        } else if (TAG_LEVELS.equals(name)) {
+            mLevels = in.nextInt();
+        } else if (TAG_AFFECTS.equals(name)) {
+            mAffects = Enums.extract(in.nextString(), Affects.values(), Affects.TOTAL);
+        } else {
+            super.loadSubElement(in, name, state);
+        }
+    }
+
     @Override
     protected void prepareForLoad(LoadState state) {
         super.prepareForLoad(state);
@@ -403,6 +442,21 @@ public class Modifier extends ListRow implements Comparable<Modifier> {
         out.simpleTagNotEmpty(TAG_REFERENCE, mReference);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        out.name(ATTRIBUTE_ENABLED).value(mEnabled);
+        out.name(TAG_NAME).value(mName);
+        out.name(KEY_COST_TYPE).value(Enums.toId(mCostType));
+        if (mCostType == CostType.MULTIPLIER) {
+            out.name(TAG_COST).value(mCostMultiplier);
+        } else {
+            out.name(TAG_COST).value(mCost);
+        }
+        out.name(TAG_LEVELS).value(mLevels);
+        out.name(TAG_AFFECTS).value(Enums.toId(mAffects));
+        out.name(TAG_REFERENCE).value(mReference);
+    }
+
     @Override
     public Object getData(Column column) {
         return ModifierColumnID.values()[column.getID()].getData(this);
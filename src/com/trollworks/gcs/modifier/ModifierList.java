@@ -62,6 +62,11 @@ public class ModifierList extends ListFile {
         } while (reader.withinMarker(marker));
     }
 
+    @Override
+    protected Modifier createRow(String type) {
+        return Modifier.create(this, type);
+    }
+
     @Override
     // Not used
     public FileType getFileType() {
@@ -14,6 +14,8 @@ package com.trollworks.gcs.notes;
 import com.trollworks.gcs.app.GCSImages;
 import com.trollworks.gcs.character.GURPSCharacter;
 import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.common.LoadState;
 import com.trollworks.gcs.widgets.outline.ListRow;
 import com.trollworks.gcs.widgets.outline.RowEditor;
@@ -93,6 +95,19 @@ public class Note extends ListRow {
         load(reader, state);
     }
 
+    /**
+     * @param dataFile The data file to associate it with.
+     * @param type     The type of a row being loaded from JSON.
+     * @return A new, empty note to load the row into, or <code>null</code> if the type isn't that
+     *         of a note.
+     */
+    public static Note create(DataFile dataFile, String type) {
+        if (TAG_NOTE.equals(type) || TAG_NOTE_CONTAINER.equals(type)) {
+            return new Note(dataFile, TAG_NOTE_CONTAINER.equals(type));
+        }
+        return null;
+    }
+
     @Override
     public boolean isEquivalentTo(Object obj) {
         if (obj == this) {
@@ -147,11 +162,30 @@ public class Note extends ListRow {
         }
     }
 
+    @Override
+    protected void loadSubElement(JsonReader in, String name, LoadState state) throws IOException {
+        if (TAG_TEXT.equals(name)) {
+            mText = Text.standardizeLineEndings(in.nextString());
+        } else {
+            super.loadSubElement(in, name, state);
+        }
+    }
+
+    @Override
+    protected ListRow createChild(String type) {
+        return create(mDataFile, type);
+    }
+
     @Override
     protected void saveSelf(XMLWriter out, boolean forUndo) {
         out.simpleTagNotEmpty(TAG_TEXT, mText);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        out.name(TAG_TEXT).value(mText);
+    }
+
     /** @return The description. */
     public String getDescription() {
         return mText;
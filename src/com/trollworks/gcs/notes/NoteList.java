@@ -66,4 +66,9 @@ public class NoteList extends ListFile {
             }
         } while (reader.withinMarker(marker));
     }
+
+    @Override
+    protected Note createRow(String type) {
+        return Note.create(this, type);
+    }
 }
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.pdfview;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * A cache of fully rendered pages, shared by every open PDF, so that returning to a page that was
+ * seen recently doesn't require rendering it again. The least recently used pages are discarded
+ * once the images held exceed a budget based on the memory available to the VM.
+ */
+final class PageCache {
+    private static final long                     LIMIT = Math.min(Runtime.getRuntime().maxMemory() / 8, 256L * 1024 * 1024);
+    private static final LinkedHashMap<Key, Page> PAGES = new LinkedHashMap<>(16, 0.75f, true);
+    private static long                           SIZE;
+
+    /** Identifies a rendering of a page. */
+    static final class Key {
+        private File   mFile;
+        private long   mLastModified;
+        private int    mPageIndex;
+        private float  mScale;
+        private String mHighlight;
+
+        /**
+         * @param file         The PDF file.
+         * @param lastModified The time the file was last modified.
+         * @param pageIndex    The index of the page.
+         * @param scale        The scale the page is rendered at.
+         * @param highlight    The text highlighted on the page, or <code>null</code>.
+         */
+        Key(File file, long lastModified, int pageIndex, float scale, String highlight) {
+            mFile         = file;
+            mLastModified = lastModified;
+            mPageIndex    = pageIndex;
+            mScale        = scale;
+            mHighlight    = highlight;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj == this) {
+                return true;
+            }
+            if (obj instanceof Key) {
+                Key other = (Key) obj;
+                return mPageIndex == other.mPageIndex && mScale == other.mScale && mLastModified == other.mLastModified && mFile.equals(other.mFile) && Objects.equals(mHighlight, other.mHighlight);
+            }
+            return false;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(mFile, Integer.valueOf(mPageIndex), Float.valueOf(mScale), mHighlight);
+        }
+    }
+
+    /** A fully rendered page, made up of bands. */
+    static final class Page {
+        private List<Rectangle>     mBounds;
+        private List<BufferedImage> mBands;
+        private long                mBytes;
+
+        /**
+         * @param bounds The area of the page each band covers.
+         * @param bands  The bands.
+         */
+        Page(List<Rectangle> bounds, List<BufferedImage> bands) {
+            mBounds = Collections.unmodifiableList(bounds);
+            mBands  = Collections.unmodifiableList(bands);
+            for (BufferedImage band : bands) {
+                mBytes += (long) band.getWidth() * band.getHeight() * 4;
+            }
+        }
+
+        /** @return The area of the page each band covers. */
+        List<Rectangle> getBounds() {
+            return mBounds;
+        }
+
+        /** @return The bands. */
+        List<BufferedImage> getBands() {
+            return mBands;
+        }
+    }
+
+    private PageCache() {
+    }
+
+    /**
+     * @param key The {@link Key} to look up.
+     * @return The cached page, or <code>null</code>.
+     */
+    static synchronized Page get(Key key) {
+        return PAGES.get(key);
+    }
+
+    /**
+     * @param key The {@link Key} to look up.
+     * @return Whether the page is cached. Unlike {@link #get(Key)}, this doesn't count as a use of
+     *         the page.
+     */
+    static synchronized boolean contains(Key key) {
+        return PAGES.containsKey(key);
+    }
+
+    /**
+     * Adds a page to the cache, discarding the least recently used pages if it has grown too large.
+     *
+     * @param key  The {@link Key} for the page.
+     * @param page The page.
+     */
+    static synchronized void put(Key key, Page page) {
+        Page previous = PAGES.put(key, page);
+        if (previous != null) {
+            SIZE -= previous.mBytes;
+        }
+        SIZE += page.mBytes;
+        Iterator<Map.Entry<Key, Page>> iterator = PAGES.entrySet().iterator();
+        while (SIZE > LIMIT && PAGES.size() > 1 && iterator.hasNext()) {
+            Map.Entry<Key, Page> entry = iterator.next();
+            if (entry.getValue() != page) {
+                SIZE -= entry.getValue().mBytes;
+                iterator.remove();
+            }
+        }
+    }
+}
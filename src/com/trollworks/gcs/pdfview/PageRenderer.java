@@ -0,0 +1,352 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.pdfview;
+
+import com.trollworks.gcs.common.BackgroundScheduler;
+import com.trollworks.toolkit.io.Log;
+
+import java.awt.Color;
+import java.awt.EventQueue;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.Shape;
+import java.awt.Toolkit;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.rendering.PDFRenderer;
+
+/**
+ * Renders the pages of a PDF on a background task, so that the event dispatch thread only ever
+ * draws images that are already finished. A low-resolution preview of the page is produced first,
+ * then the page is rendered once at full resolution and handed over in horizontal bands. A request
+ * that has been replaced by a newer one, as happens when the user flips through pages quickly, is
+ * abandoned before the full rendering starts. The document may be shared with other renderers, so
+ * it is only held for one rendering or one page of text at a time.
+ * <p>
+ * Finished pages are kept in the {@link PageCache}, so a request for a page seen recently is
+ * satisfied at once. While no request is outstanding, the pages either side of the last one
+ * requested are rendered into the cache ahead of time, after which the {@link TextIndex} of the
+ * document is built up a page at a time. Searches for text are run on the same task, as they may
+ * need pages that haven't been indexed yet.
+ */
+class PageRenderer {
+    private static final int         BAND_HEIGHT      = 256;
+    private static final float       PREVIEW_SCALE    = 0.25f;
+    private static final int[]       PREFETCH_OFFSETS = { 1, -1, 2 };
+    private SharedPdf                mSharedPdf;
+    private PDDocument               mPdf;
+    private float[][]                mPageSizes;
+    private PDFRenderer              mRenderer;
+    private Listener                 mListener;
+    private TextIndex                mIndex;
+    private BackgroundScheduler.Task mTask;
+    private volatile Request         mRequest;
+    private Request                  mRendered;
+    private AtomicReference<Search>  mSearch = new AtomicReference<>();
+
+    /** Receives the images produced for a request, on the event dispatch thread. */
+    interface Listener {
+        /**
+         * @param request The request.
+         * @param image   A low-resolution image of the whole page.
+         */
+        void previewRendered(Request request, BufferedImage image);
+
+        /**
+         * @param request The request.
+         * @param bounds  The area of the full-resolution page the image covers.
+         * @param image   The image.
+         */
+        void bandRendered(Request request, Rectangle bounds, BufferedImage image);
+
+        /**
+         * @param text      The text that was searched for.
+         * @param pageIndex The index of the page it was found on, or -1 if it wasn't found.
+         */
+        void searchFinished(String text, int pageIndex);
+    }
+
+    private static final class Search {
+        String mText;
+        int    mFromPageIndex;
+    }
+
+    /** A request to render a page. */
+    static final class Request {
+        private int            mPageIndex;
+        private float          mScale;
+        private String         mHighlight;
+        private int            mWidth;
+        private int            mHeight;
+        private PageCache.Key  mKey;
+        private PageCache.Page mCached;
+
+        /** @return The index of the page. */
+        int getPageIndex() {
+            return mPageIndex;
+        }
+
+        /** @return The scale, relative to the screen resolution, the page is rendered at. */
+        float getScale() {
+            return mScale;
+        }
+
+        /** @return The width of the full-resolution page. */
+        int getWidth() {
+            return mWidth;
+        }
+
+        /** @return The height of the full-resolution page. */
+        int getHeight() {
+            return mHeight;
+        }
+
+        /**
+         * @return The page, if it was already in the {@link PageCache} when the request was made.
+         *         No images will be delivered for such a request.
+         */
+        PageCache.Page getCachedPage() {
+            return mCached;
+        }
+    }
+
+    /**
+     * @param pdf      The PDF to render.
+     * @param listener The {@link Listener} to hand the images to.
+     */
+    PageRenderer(SharedPdf pdf, Listener listener) {
+        mSharedPdf = pdf;
+        mPdf       = pdf.getDocument();
+        mPageSizes = pdf.getPageSizes();
+        mRenderer  = new PDFRenderer(mPdf);
+        mListener  = listener;
+        mIndex     = pdf.getTextIndex();
+        mTask      = BackgroundScheduler.createTask("PDF Renderer", this::render); //$NON-NLS-1$
+    }
+
+    /**
+     * Replaces any outstanding request with a new one.
+     *
+     * @param pageIndex The index of the page.
+     * @param scale     The scale, relative to the screen resolution, to render the page at.
+     * @param highlight The text to highlight, or <code>null</code>.
+     * @return The new request.
+     */
+    Request request(int pageIndex, float scale, String highlight) {
+        Request request = createRequest(pageIndex, scale, highlight);
+        request.mCached = PageCache.get(request.mKey);
+        mRequest        = request;
+        mTask.signal();
+        return request;
+    }
+
+    /**
+     * Replaces any outstanding search with a new one, which looks for the next page after the one
+     * given that contains the text, wrapping around to the start of the document.
+     *
+     * @param text          The text to look for.
+     * @param fromPageIndex The index of the page to start after.
+     */
+    void findNext(String text, int fromPageIndex) {
+        Search search = new Search();
+        search.mText          = text;
+        search.mFromPageIndex = fromPageIndex;
+        mSearch.set(search);
+        mTask.signal();
+    }
+
+    private Request createRequest(int pageIndex, float scale, String highlight) {
+        Request request  = new Request();
+        float[] pageSize = mPageSizes[pageIndex];
+        float   dpi      = scale * Toolkit.getDefaultToolkit().getScreenResolution() / 72f;
+        request.mPageIndex = pageIndex;
+        request.mScale     = scale;
+        request.mHighlight = highlight;
+        // Matches the size PDFRenderer gives an image of the whole page
+        request.mWidth     = (int) Math.max(Math.floor(pageSize[0] * dpi), 1);
+        request.mHeight    = (int) Math.max(Math.floor(pageSize[1] * dpi), 1);
+        request.mKey       = new PageCache.Key(mSharedPdf.getFile(), mSharedPdf.getLastModified(), pageIndex, scale, highlight);
+        return request;
+    }
+
+    /**
+     * Abandons any outstanding request and waits for the background task to let go of the
+     * document, after which the document may be released.
+     */
+    void dispose() {
+        mRequest = null;
+        mSearch.set(null);
+        mTask.cancel();
+        mTask.awaitIdle();
+    }
+
+    private void render() {
+        Request request = mRequest;
+        if (request == null) {
+            return;
+        }
+        if (request != mRendered) {
+            if (request.mCached == null) {
+                try {
+                    PageCache.Page page = renderPage(request, request);
+                    if (page == null) {
+                        return;
+                    }
+                    PageCache.put(request.mKey, page);
+                } catch (Exception exception) {
+                    Log.error(exception);
+                }
+            }
+            mRendered = request;
+        }
+        Search search = mSearch.get();
+        if (search != null) {
+            search(search);
+        }
+        prefetch(request);
+        buildIndex(request);
+    }
+
+    /** @return Whether work done on behalf of the request should make way for something newer. */
+    private boolean isInterrupted(Request request) {
+        return mRequest != request || mSearch.get() != null;
+    }
+
+    private void search(Search search) {
+        int count = mPageSizes.length;
+        for (int i = 1; i <= count; i++) {
+            if (mSearch.get() != search) {
+                return;
+            }
+            int pageIndex = (search.mFromPageIndex + i) % count;
+            mIndex.indexPage(mPdf, pageIndex);
+            if (mIndex.contains(pageIndex, search.mText)) {
+                finishSearch(search, pageIndex);
+                return;
+            }
+        }
+        finishSearch(search, -1);
+    }
+
+    private void finishSearch(Search search, int pageIndex) {
+        if (mSearch.compareAndSet(search, null)) {
+            EventQueue.invokeLater(() -> {
+                if (mRequest != null) {
+                    mListener.searchFinished(search.mText, pageIndex);
+                }
+            });
+        }
+    }
+
+    /** Indexes the remaining pages, starting with the one requested. */
+    private void buildIndex(Request request) {
+        int pageIndex = request.mPageIndex;
+        while (!isInterrupted(request) && (pageIndex = mIndex.getNextUnindexedPage(pageIndex)) != -1) {
+            mIndex.indexPage(mPdf, pageIndex);
+        }
+    }
+
+    /**
+     * Renders the neighbours of the page just requested into the {@link PageCache}, giving up as
+     * soon as a new request arrives.
+     */
+    private void prefetch(Request request) {
+        for (int offset : PREFETCH_OFFSETS) {
+            int pageIndex = request.mPageIndex + offset;
+            if (isInterrupted(request)) {
+                return;
+            }
+            if (pageIndex >= 0 && pageIndex < mPageSizes.length) {
+                // Pages reached by paging through the document are never highlighted
+                Request neighbour = createRequest(pageIndex, request.mScale, null);
+                if (!PageCache.contains(neighbour.mKey)) {
+                    try {
+                        PageCache.Page page = renderPage(request, neighbour);
+                        if (page != null) {
+                            PageCache.put(neighbour.mKey, page);
+                        }
+                    } catch (Exception exception) {
+                        Log.error(exception);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param owner  The request the work is being done for. Rendering is abandoned once it has been
+     *               replaced.
+     * @param target The request to render. Images are only delivered to the {@link Listener} when
+     *               this is the same as the owner.
+     * @return The rendered page, or <code>null</code> if rendering was abandoned.
+     */
+    private PageCache.Page renderPage(Request owner, Request target) throws Exception {
+        boolean     deliver    = owner == target;
+        int         pageIndex  = target.mPageIndex;
+        float       scale      = target.mScale * Toolkit.getDefaultToolkit().getScreenResolution() / 72f;
+        List<Shape> highlights = Collections.emptyList();
+        if (target.mHighlight != null) {
+            mIndex.indexPage(mPdf, pageIndex);
+            highlights = mIndex.findHighlights(pageIndex, target.mHighlight);
+        }
+        if (mRequest != owner) {
+            return null;
+        }
+        if (deliver) {
+            BufferedImage preview;
+            synchronized (mPdf) {
+                preview = mRenderer.renderImage(pageIndex, scale * PREVIEW_SCALE);
+            }
+            PdfRenderer.paintHighlights(preview, highlights, scale * PREVIEW_SCALE, 0);
+            deliver(owner, () -> mListener.previewRendered(owner, preview));
+        }
+        if (mRequest != owner) {
+            return null;
+        }
+        // The page is drawn once and then sliced into bands, since PDFBox draws the whole of a page
+        // no matter how little of it is visible
+        BufferedImage image = new BufferedImage(target.mWidth, target.mHeight, BufferedImage.TYPE_INT_RGB);
+        Graphics2D    gc    = image.createGraphics();
+        gc.setBackground(Color.WHITE);
+        gc.clearRect(0, 0, target.mWidth, target.mHeight);
+        synchronized (mPdf) {
+            mRenderer.renderPageToGraphics(pageIndex, gc, scale);
+        }
+        gc.dispose();
+        PdfRenderer.paintHighlights(image, highlights, scale, 0);
+        List<Rectangle>     allBounds = new ArrayList<>();
+        List<BufferedImage> bands     = new ArrayList<>();
+        for (int y = 0; y < target.mHeight; y += BAND_HEIGHT) {
+            Rectangle     bounds = new Rectangle(0, y, target.mWidth, Math.min(BAND_HEIGHT, target.mHeight - y));
+            BufferedImage band   = image.getSubimage(bounds.x, bounds.y, bounds.width, bounds.height);
+            allBounds.add(bounds);
+            bands.add(band);
+            if (deliver) {
+                deliver(owner, () -> mListener.bandRendered(owner, bounds, band));
+            }
+        }
+        return new PageCache.Page(allBounds, bands);
+    }
+
+    private void deliver(Request request, Runnable delivery) {
+        EventQueue.invokeLater(() -> {
+            if (mRequest == request) {
+                delivery.run();
+            }
+        });
+    }
+}
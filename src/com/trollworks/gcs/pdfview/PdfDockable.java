@@ -38,13 +38,11 @@ import java.io.File;
 import javax.swing.Icon;
 import javax.swing.JLabel;
 import javax.swing.JScrollPane;
+import javax.swing.JTextField;
 import javax.swing.KeyStroke;
 import javax.swing.SwingConstants;
 import javax.swing.text.DefaultFormatterFactory;
 
-import org.apache.pdfbox.io.MemoryUsageSetting;
-import org.apache.pdfbox.pdmodel.PDDocument;
-
 /** Provides the ability to view a PDF. */
 public class PdfDockable extends Dockable implements FileProxy, CloseHandler {
     @Localize("Previous Page")
@@ -57,13 +55,15 @@ public class PdfDockable extends Dockable implements FileProxy, CloseHandler {
     private static String SCALE_DOC_DOWN;
     @Localize("Actual Size")
     private static String ACTUAL_SIZE;
+    @Localize("Find the next page containing this text")
+    private static String FIND_NEXT;
 
     static {
         Localization.initialize();
     }
 
     private File        mFile;
-    private PDDocument  mPdf;
+    private SharedPdf   mPdf;
     private Toolbar     mToolbar;
     private PdfPanel    mPanel;
     private IconButton  mZoomInButton;
@@ -74,13 +74,14 @@ public class PdfDockable extends Dockable implements FileProxy, CloseHandler {
     private JLabel      mPageStatus;
     private IconButton  mPreviousPageButton;
     private IconButton  mNextPageButton;
+    private JTextField  mFindField;
 
     public PdfDockable(PdfRef pdfRef, int page, String highlight) {
         super(new BorderLayout());
         mFile = pdfRef.getFile();
         int pageCount = 9999;
         try {
-            mPdf      = PDDocument.load(pdfRef.getFile(), MemoryUsageSetting.setupMixed(50 * 1024 * 1024));
+            mPdf      = SharedPdf.acquire(pdfRef.getFile());
             pageCount = mPdf.getNumberOfPages();
         } catch (Exception exception) {
             Log.error(exception);
@@ -114,6 +115,10 @@ public class PdfDockable extends Dockable implements FileProxy, CloseHandler {
         mToolbar.add(mPreviousPageButton);
         mNextPageButton = new IconButton(StdImage.get("PageDown"), formatWithKey(NEXT_PAGE, KeyStroke.getKeyStroke(KeyEvent.VK_DOWN, 0)), () -> mPanel.nextPage()); //$NON-NLS-1$
         mToolbar.add(mNextPageButton);
+        mFindField = new JTextField(15);
+        mFindField.setToolTipText(formatWithKey(FIND_NEXT, KeyStroke.getKeyStroke(KeyEvent.VK_ENTER, 0)));
+        mFindField.addActionListener(event -> mPanel.findNext(mFindField.getText()));
+        mToolbar.add(mFindField);
 
         add(mToolbar, BorderLayout.NORTH);
         mPanel = new PdfPanel(this, mPdf, pdfRef, page, highlight);
@@ -174,12 +179,11 @@ public class PdfDockable extends Dockable implements FileProxy, CloseHandler {
         try {
             getDockContainer().close(this);
         } finally {
+            if (mPanel != null) {
+                mPanel.dispose();
+            }
             if (mPdf != null) {
-                try {
-                    mPdf.close();
-                } catch (Exception exception) {
-                    Log.error(exception);
-                }
+                mPdf.release();
                 mPdf = null;
             }
         }
@@ -16,6 +16,7 @@ import com.trollworks.toolkit.ui.UIUtilities;
 
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.Toolkit;
 import java.awt.event.KeyEvent;
@@ -23,34 +24,68 @@ import java.awt.event.KeyListener;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
 import java.awt.image.BufferedImage;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 
 import javax.swing.JPanel;
 import javax.swing.Scrollable;
 import javax.swing.SwingConstants;
 
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.common.PDPageLabels;
-import org.apache.pdfbox.pdmodel.common.PDRectangle;
-
-/** A panel that will display a single page of a PDF. */
+/**
+ * A panel that will display a single page of a PDF. Pages are rendered by a {@link PageRenderer},
+ * so painting the panel only ever draws images that are already finished, and pages that are still
+ * in its cache appear at once.
+ */
 public class PdfPanel extends JPanel implements KeyListener, MouseListener, Scrollable {
-    public static final float[] SCALES      = { 0.33f, 0.5f, 0.75f, 1f, 1.25f, 1.5f, 1.75f, 2f };
-    private PdfDockable         mOwner;
-    private PDDocument          mPdf;
-    private int                 mPageIndex;
-    private int                 mScaleIndex = Arrays.binarySearch(SCALES, 1f);
-    private String              mHighlight;
-    private BufferedImage       mImg;
-    private int                 mWidth;
-    private int                 mHeight;
-    private boolean             mNeedLoad;
-    private boolean             mIgnorePageChange;
-
-    public PdfPanel(PdfDockable owner, PDDocument pdf, PdfRef pdfRef, int page, String highlight) {
+    public static final float[]  SCALES      = { 0.33f, 0.5f, 0.75f, 1f, 1.25f, 1.5f, 1.75f, 2f };
+    private PdfDockable          mOwner;
+    private SharedPdf            mPdf;
+    private PageRenderer         mRenderer;
+    private int                  mNumberOfPages;
+    private float[][]            mPageSizes;
+    private Map<String, Integer> mPageLabels;
+    private int                  mPageIndex;
+    private int                  mScaleIndex = Arrays.binarySearch(SCALES, 1f);
+    private String               mHighlight;
+    private PageRenderer.Request mRequest;
+    private BufferedImage        mPreview;
+    private List<Rectangle>      mBandBounds = new ArrayList<>();
+    private List<BufferedImage>  mBands      = new ArrayList<>();
+    private int                  mWidth;
+    private int                  mHeight;
+    private boolean              mNeedLoad;
+    private boolean              mIgnorePageChange;
+
+    public PdfPanel(PdfDockable owner, SharedPdf pdf, PdfRef pdfRef, int page, String highlight) {
         mOwner = owner;
         mPdf   = pdf;
+        if (pdf != null) {
+            mNumberOfPages = pdf.getNumberOfPages();
+            mPageSizes     = pdf.getPageSizes();
+            mPageLabels    = pdf.getPageLabels();
+            mRenderer      = new PageRenderer(pdf, new PageRenderer.Listener() {
+                @Override
+                public void previewRendered(PageRenderer.Request request, BufferedImage image) {
+                    showPreview(request, image);
+                }
+
+                @Override
+                public void bandRendered(PageRenderer.Request request, Rectangle bounds, BufferedImage image) {
+                    showBand(request, bounds, image);
+                }
+
+                @Override
+                public void searchFinished(String text, int pageIndex) {
+                    if (pageIndex != -1) {
+                        goToPageIndex(pageIndex, text);
+                    } else {
+                        Toolkit.getDefaultToolkit().beep();
+                    }
+                }
+            });
+        }
         setFocusable(true);
         addMouseListener(this);
         addKeyListener(this);
@@ -61,16 +96,11 @@ public class PdfPanel extends JPanel implements KeyListener, MouseListener, Scro
         if (!mIgnorePageChange && mPdf != null) {
             int lastPageIndex = mPageIndex;
             mPageIndex = page;
-            try {
-                PDPageLabels pageLabels = mPdf.getDocumentCatalog().getPageLabels();
-                if (pageLabels != null) {
-                    Integer result = pageLabels.getPageIndicesByLabels().get(Integer.toString(page));
-                    if (result != null) {
-                        mPageIndex = result.intValue();
-                    }
+            if (mPageLabels != null) {
+                Integer result = mPageLabels.get(Integer.toString(page));
+                if (result != null) {
+                    mPageIndex = result.intValue();
                 }
-            } catch (Exception exception) {
-                // Had no catalog... we will just use the original page number
             }
             mPageIndex += pdfRef.getPageToIndexOffset();
             if (mPageIndex != lastPageIndex || isHighlightNew(highlight)) {
@@ -85,7 +115,7 @@ public class PdfPanel extends JPanel implements KeyListener, MouseListener, Scro
     }
 
     public int goToPageIndex(int pageIndex, String highlight) {
-        if (!mIgnorePageChange && mPdf != null && (mPageIndex != pageIndex || isHighlightNew(highlight)) && pageIndex >= 0 && pageIndex < mPdf.getNumberOfPages()) {
+        if (!mIgnorePageChange && mPdf != null && (mPageIndex != pageIndex || isHighlightNew(highlight)) && pageIndex >= 0 && pageIndex < mNumberOfPages) {
             mPageIndex = pageIndex;
             mHighlight = highlight;
             markPageForLoading();
@@ -102,13 +132,25 @@ public class PdfPanel extends JPanel implements KeyListener, MouseListener, Scro
     }
 
     public void nextPage() {
-        if (!mIgnorePageChange && mPdf != null && mPageIndex < mPdf.getNumberOfPages()) {
+        if (!mIgnorePageChange && mPdf != null && mPageIndex < mNumberOfPages) {
             mPageIndex++;
             mHighlight = null;
             markPageForLoading();
         }
     }
 
+    /**
+     * Moves to the next page that contains the text, wrapping around to the start of the document,
+     * and highlights it there. The search is carried out in the background.
+     *
+     * @param text The text to look for.
+     */
+    public void findNext(String text) {
+        if (mRenderer != null && !TextIndex.normalize(text).isEmpty()) {
+            mRenderer.findNext(text, mPageIndex);
+        }
+    }
+
     public void zoomIn() {
         if (mPdf != null && mScaleIndex < SCALES.length - 1) {
             mScaleIndex++;
@@ -134,18 +176,17 @@ public class PdfPanel extends JPanel implements KeyListener, MouseListener, Scro
     }
 
     private void markPageForLoading() {
-        int numberOfPages = mPdf.getNumberOfPages();
+        int numberOfPages = mNumberOfPages;
         if (mPageIndex >= 0 && mPageIndex == numberOfPages) {
             mPageIndex = numberOfPages - 1;
         }
         if (mPageIndex >= 0 && mPageIndex < numberOfPages) {
-            PDPage      page    = mPdf.getPage(mPageIndex);
-            PDRectangle cropBox = page.getCropBox();
-            float       scale   = SCALES[mScaleIndex] * Toolkit.getDefaultToolkit().getScreenResolution();
-            mWidth    = (int) Math.ceil(cropBox.getWidth() / 72 * scale);
-            mHeight   = (int) Math.ceil(cropBox.getHeight() / 72 * scale);
-            mImg      = null;
+            float[] pageSize = mPageSizes[mPageIndex];
+            float   scale    = SCALES[mScaleIndex] * Toolkit.getDefaultToolkit().getScreenResolution();
+            mWidth    = (int) Math.ceil(pageSize[0] / 72 * scale);
+            mHeight   = (int) Math.ceil(pageSize[1] / 72 * scale);
             mNeedLoad = true;
+            clearImages();
             Dimension size = new Dimension(mWidth, mHeight);
             UIUtilities.setOnlySize(this, size);
             setSize(size);
@@ -156,15 +197,71 @@ public class PdfPanel extends JPanel implements KeyListener, MouseListener, Scro
         }
     }
 
+    /**
+     * Abandons any rendering that is still in progress. Must be called before the PDF is released.
+     */
+    public void dispose() {
+        if (mRenderer != null) {
+            mRenderer.dispose();
+        }
+    }
+
+    private void clearImages() {
+        mRequest = null;
+        mPreview = null;
+        mBandBounds.clear();
+        mBands.clear();
+    }
+
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
-        if (mNeedLoad && mPdf != null) {
-            mImg      = PdfRenderer.create(mPdf, mPageIndex, SCALES[mScaleIndex] * (GraphicsUtilities.isRetinaDisplay(g) ? 2 : 1), mHighlight);
-            mNeedLoad = false;
+        if (mRenderer != null && mPageIndex >= 0 && mPageIndex < mNumberOfPages) {
+            float scale = SCALES[mScaleIndex] * (GraphicsUtilities.isRetinaDisplay(g) ? 2 : 1);
+            if (mNeedLoad || mRequest == null || mRequest.getScale() != scale) {
+                clearImages();
+                mRequest  = mRenderer.request(mPageIndex, scale, mHighlight);
+                mNeedLoad = false;
+                PageCache.Page cached = mRequest.getCachedPage();
+                if (cached != null) {
+                    mBandBounds.addAll(cached.getBounds());
+                    mBands.addAll(cached.getBands());
+                }
+            }
+        }
+        if (mRequest != null) {
+            if (mPreview != null) {
+                g.drawImage(mPreview, 0, 0, mWidth, mHeight, this);
+            }
+            if (!mBands.isEmpty()) {
+                Graphics2D gc = (Graphics2D) g.create();
+                gc.scale(mWidth / (double) mRequest.getWidth(), mHeight / (double) mRequest.getHeight());
+                int count = mBands.size();
+                for (int i = 0; i < count; i++) {
+                    Rectangle bounds = mBandBounds.get(i);
+                    gc.drawImage(mBands.get(i), bounds.x, bounds.y, this);
+                }
+                gc.dispose();
+            }
         }
-        if (mImg != null) {
-            g.drawImage(mImg, 0, 0, mWidth, mHeight, this);
+    }
+
+    private void showPreview(PageRenderer.Request request, BufferedImage image) {
+        if (request == mRequest) {
+            mPreview = image;
+            repaint();
+        }
+    }
+
+    private void showBand(PageRenderer.Request request, Rectangle bounds, BufferedImage image) {
+        if (request == mRequest) {
+            mBandBounds.add(bounds);
+            mBands.add(image);
+            if (bounds.y + bounds.height >= request.getHeight()) {
+                // The page is complete, so the preview will never be seen again
+                mPreview = null;
+            }
+            repaint();
         }
     }
 
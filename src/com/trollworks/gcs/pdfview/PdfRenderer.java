@@ -12,17 +12,15 @@
 package com.trollworks.gcs.pdfview;
 
 import com.trollworks.toolkit.io.DummyWriter;
-import com.trollworks.toolkit.io.Log;
 
-import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Shape;
-import java.awt.Toolkit;
 import java.awt.geom.AffineTransform;
 import java.awt.geom.Rectangle2D;
 import java.awt.image.BufferedImage;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.fontbox.util.BoundingBox;
@@ -33,100 +31,140 @@ import org.apache.pdfbox.pdmodel.font.PDFont;
 import org.apache.pdfbox.pdmodel.font.PDType3Font;
 import org.apache.pdfbox.pdmodel.graphics.blend.BlendComposite;
 import org.apache.pdfbox.pdmodel.graphics.blend.BlendMode;
-import org.apache.pdfbox.rendering.PDFRenderer;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.apache.pdfbox.text.TextPosition;
 
+/**
+ * Extracts the text of a page of a PDF, along with where each character of it sits, for the
+ * {@link TextIndex}.
+ */
 public class PdfRenderer extends PDFTextStripper {
-    private Graphics2D mGC;
-    private String     mTextToHighlight;
+    private StringBuilder mText   = new StringBuilder();
+    private float[]       mBounds = new float[1024];
 
-    public static BufferedImage create(PDDocument pdf, int pageIndex, float scale, String textToHighlight) {
-        try {
-            PDFRenderer renderer = new PDFRenderer(pdf);
-            scale = scale * Toolkit.getDefaultToolkit().getScreenResolution() / 72f;
-            BufferedImage img = renderer.renderImage(pageIndex, scale);
-            if (textToHighlight != null) {
-                Graphics2D gc = img.createGraphics();
-                gc.setStroke(new BasicStroke(0.1f));
-                gc.scale(scale, scale);
-                PdfRenderer processor = new PdfRenderer(gc, textToHighlight);
-                processor.setSortByPosition(true);
-                processor.setStartPage(pageIndex + 1);
-                processor.setEndPage(pageIndex + 1);
-                try (DummyWriter writer = new DummyWriter()) {
-                    processor.writeText(pdf, writer);
-                }
-                gc.dispose();
+    /**
+     * @param pdf       The PDF.
+     * @param pageIndex The index of the page.
+     * @return The text of the page.
+     */
+    static TextIndex.PageText extractText(PDDocument pdf, int pageIndex) throws IOException {
+        PdfRenderer processor = new PdfRenderer();
+        processor.setSortByPosition(true);
+        processor.setStartPage(pageIndex + 1);
+        processor.setEndPage(pageIndex + 1);
+        try (DummyWriter writer = new DummyWriter()) {
+            processor.writeText(pdf, writer);
+        }
+        return new TextIndex.PageText(processor.mText.toString(), Arrays.copyOf(processor.mBounds, processor.mText.length() * 4));
+    }
+
+    /**
+     * Paints highlights onto an image of part of a page.
+     *
+     * @param img        The image.
+     * @param highlights The highlights, as returned by {@link TextIndex#findHighlights(int, String)}.
+     * @param scale      The scale the page was rendered at.
+     * @param y          The vertical position of the top of the image within the rendered page.
+     */
+    public static void paintHighlights(BufferedImage img, List<Shape> highlights, float scale, int y) {
+        if (!highlights.isEmpty()) {
+            Graphics2D gc = img.createGraphics();
+            gc.translate(0, -y);
+            gc.scale(scale, scale);
+            gc.setColor(Color.YELLOW);
+            gc.setComposite(BlendComposite.getInstance(BlendMode.MULTIPLY, 0.3f));
+            for (Shape shape : highlights) {
+                gc.fill(shape);
             }
-            return img;
-        } catch (Exception exception) {
-            Log.error(exception);
-            return null;
+            gc.dispose();
         }
     }
 
-    private PdfRenderer(Graphics2D gc, String textToHighlight) throws IOException {
+    private PdfRenderer() throws IOException {
         super();
-        mGC = gc;
-        mGC.setColor(Color.YELLOW);
-        mGC.setComposite(BlendComposite.getInstance(BlendMode.MULTIPLY, 0.3f));
-        mTextToHighlight = textToHighlight.toLowerCase();
     }
 
     @Override
     protected void writeString(String text, List<TextPosition> textPositions) throws IOException {
-        text = text.toLowerCase();
-        int index = text.indexOf(mTextToHighlight);
-        if (index != -1) {
-            PDPage          currentPage     = getCurrentPage();
-            PDRectangle     pageBoundingBox = currentPage.getBBox();
-            AffineTransform flip            = new AffineTransform();
-            flip.translate(0, pageBoundingBox.getHeight());
-            flip.scale(1, -1);
-            PDRectangle mediaBox    = currentPage.getMediaBox();
-            float       mediaHeight = mediaBox.getHeight();
-            float       mediaWidth  = mediaBox.getWidth();
-            int         size        = textPositions.size();
-            while (index != -1) {
-                int last = index + mTextToHighlight.length() - 1;
-                for (int i = index; i <= last; i++) {
-                    TextPosition      pos  = textPositions.get(i);
-                    PDFont            font = pos.getFont();
-                    BoundingBox       bbox = font.getBoundingBox();
-                    Rectangle2D.Float rect = new Rectangle2D.Float(0, bbox.getLowerLeftY(), font.getWidth(pos.getCharacterCodes()[0]), bbox.getHeight());
-                    AffineTransform   at   = pos.getTextMatrix().createAffineTransform();
-                    if (font instanceof PDType3Font) {
-                        at.concatenate(font.getFontMatrix().createAffineTransform());
-                    } else {
-                        at.scale(1 / 1000f, 1 / 1000f);
-                    }
-                    Shape           shape     = flip.createTransformedShape(at.createTransformedShape(rect));
-                    AffineTransform transform = mGC.getTransform();
-                    int             rotation  = currentPage.getRotation();
-                    if (rotation != 0) {
-                        switch (rotation) {
-                        case 90:
-                            mGC.translate(mediaHeight, 0);
-                            break;
-                        case 270:
-                            mGC.translate(0, mediaWidth);
-                            break;
-                        case 180:
-                            mGC.translate(mediaWidth, mediaHeight);
-                            break;
-                        default:
-                            break;
-                        }
-                        mGC.rotate(Math.toRadians(rotation));
-                    }
-                    mGC.fill(shape);
-                    if (rotation != 0) {
-                        mGC.setTransform(transform);
-                    }
+        PDPage          currentPage     = getCurrentPage();
+        PDRectangle     pageBoundingBox = currentPage.getBBox();
+        AffineTransform flip            = new AffineTransform();
+        flip.translate(0, pageBoundingBox.getHeight());
+        flip.scale(1, -1);
+        PDRectangle mediaBox    = currentPage.getMediaBox();
+        float       mediaHeight = mediaBox.getHeight();
+        float       mediaWidth  = mediaBox.getWidth();
+        int         rotation    = currentPage.getRotation();
+        for (TextPosition pos : textPositions) {
+            PDFont            font = pos.getFont();
+            BoundingBox       bbox = font.getBoundingBox();
+            Rectangle2D.Float rect = new Rectangle2D.Float(0, bbox.getLowerLeftY(), font.getWidth(pos.getCharacterCodes()[0]), bbox.getHeight());
+            AffineTransform   at   = pos.getTextMatrix().createAffineTransform();
+            if (font instanceof PDType3Font) {
+                at.concatenate(font.getFontMatrix().createAffineTransform());
+            } else {
+                at.scale(1 / 1000f, 1 / 1000f);
+            }
+            Shape shape = flip.createTransformedShape(at.createTransformedShape(rect));
+            if (rotation != 0) {
+                AffineTransform transform = new AffineTransform();
+                switch (rotation) {
+                case 90:
+                    transform.translate(mediaHeight, 0);
+                    break;
+                case 270:
+                    transform.translate(0, mediaWidth);
+                    break;
+                case 180:
+                    transform.translate(mediaWidth, mediaHeight);
+                    break;
+                default:
+                    break;
                 }
-                index = last < size - 1 ? text.indexOf(mTextToHighlight, last + 1) : -1;
+                transform.rotate(Math.toRadians(rotation));
+                shape = transform.createTransformedShape(shape);
+            }
+            // A glyph may stand for more than one character, as ligatures do, in which case each
+            // of them is given the whole glyph
+            Rectangle2D bounds  = shape.getBounds2D();
+            String      unicode = pos.getUnicode();
+            int         length  = unicode.length();
+            for (int i = 0; i < length; i++) {
+                add(unicode.charAt(i), bounds);
             }
         }
     }
+
+    @Override
+    protected void writeWordSeparator() throws IOException {
+        super.writeWordSeparator();
+        add(' ', null);
+    }
+
+    @Override
+    protected void writeLineSeparator() throws IOException {
+        super.writeLineSeparator();
+        add(' ', null);
+    }
+
+    private void add(char ch, Rectangle2D bounds) {
+        if (Character.isWhitespace(ch)) {
+            int length = mText.length();
+            if (length == 0 || mText.charAt(length - 1) == ' ') {
+                return;
+            }
+            ch = ' ';
+        }
+        int index = mText.length() * 4;
+        if (index + 4 > mBounds.length) {
+            mBounds = Arrays.copyOf(mBounds, mBounds.length * 2);
+        }
+        if (bounds != null) {
+            mBounds[index]     = (float) bounds.getX();
+            mBounds[index + 1] = (float) bounds.getY();
+            mBounds[index + 2] = (float) bounds.getWidth();
+            mBounds[index + 3] = (float) bounds.getHeight();
+        }
+        mText.append(Character.toLowerCase(ch));
+    }
 }
@@ -0,0 +1,281 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.pdfview;
+
+import com.trollworks.gcs.common.BackgroundScheduler;
+import com.trollworks.toolkit.io.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.common.PDPageLabels;
+import org.apache.pdfbox.pdmodel.common.PDRectangle;
+
+/**
+ * A loaded PDF, shared by everything that has the same file open, so that a large rule book is only
+ * ever loaded once. Each use is counted, and once a document is no longer in use it is kept for a
+ * short while in case it is opened again, then closed. Documents that are no longer in use are also
+ * closed early, oldest first, to keep the memory held by all of the loaded documents within a
+ * budget.
+ * <p>
+ * Documents are loaded by the first caller to ask for them, without holding the pool's lock, while
+ * anyone else asking for the same one waits for that load to finish.
+ * <p>
+ * Since a {@link PDDocument} may not be used from more than one thread at once, all use of the
+ * document after it has been loaded must be synchronized on it.
+ */
+public final class SharedPdf {
+    private static final long               IDLE_TIMEOUT   = TimeUnit.MINUTES.toMillis(1);
+    private static final long               MAIN_MEMORY    = 50 * 1024 * 1024;
+    private static final long               MAXIMUM_MEMORY = 4 * MAIN_MEMORY;
+    private static final Map<String, Slot>  POOL           = new HashMap<>();
+    private static long                     MEMORY_IN_USE;
+    private static BackgroundScheduler.Task EVICTOR;
+    private Slot                            mSlot;
+    private File                            mFile;
+    private long                            mLastModified;
+    private PDDocument                      mPdf;
+    private int                             mNumberOfPages;
+    private float[][]                       mPageSizes;
+    private Map<String, Integer>            mPageLabels;
+    private TextIndex                       mIndex;
+
+    /**
+     * @param file The PDF file.
+     * @return The shared document for the file, which must be given back with {@link #release()}
+     *         once it is no longer needed.
+     */
+    public static SharedPdf acquire(File file) throws IOException {
+        File             canonical    = file.getCanonicalFile();
+        long             lastModified = canonical.lastModified();
+        String           key          = canonical.getPath() + '\u0000' + lastModified;
+        List<PDDocument> evicted;
+        Slot             slot;
+        boolean          load;
+        synchronized (POOL) {
+            slot = POOL.get(key);
+            load = slot == null;
+            if (load) {
+                // The memory is set aside before loading, so that idle documents make room for it
+                slot           = new Slot(key, Math.min(Math.max(canonical.length(), 1), MAIN_MEMORY));
+                MEMORY_IN_USE += slot.mMemory;
+                POOL.put(key, slot);
+            }
+            slot.mUseCount++;
+            evicted = load ? evictOverBudget() : Collections.emptyList();
+        }
+        close(evicted);
+        if (load) {
+            try {
+                slot.mLoaded.complete(new SharedPdf(slot, canonical, lastModified));
+            } catch (IOException | RuntimeException exception) {
+                synchronized (POOL) {
+                    POOL.remove(key);
+                    MEMORY_IN_USE -= slot.mMemory;
+                }
+                slot.mLoaded.completeExceptionally(exception);
+                throw exception;
+            }
+        }
+        try {
+            return slot.mLoaded.get();
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            release(slot);
+            throw new InterruptedIOException();
+        } catch (ExecutionException exception) {
+            Throwable cause = exception.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
+    private SharedPdf(Slot slot, File file, long lastModified) throws IOException {
+        mSlot          = slot;
+        mFile          = file;
+        mLastModified  = lastModified;
+        mPdf           = PDDocument.load(file, MemoryUsageSetting.setupMixed(slot.mMemory));
+        mNumberOfPages = mPdf.getNumberOfPages();
+        mPageSizes     = new float[mNumberOfPages][];
+        for (int i = 0; i < mNumberOfPages; i++) {
+            PDPage      pdPage  = mPdf.getPage(i);
+            PDRectangle cropBox = pdPage.getCropBox();
+            int         angle   = pdPage.getRotation();
+            mPageSizes[i] = angle == 90 || angle == 270 ? new float[] { cropBox.getHeight(), cropBox.getWidth() } : new float[] { cropBox.getWidth(), cropBox.getHeight() };
+        }
+        try {
+            PDPageLabels pageLabels = mPdf.getDocumentCatalog().getPageLabels();
+            if (pageLabels != null) {
+                mPageLabels = pageLabels.getPageIndicesByLabels();
+            }
+        } catch (Exception exception) {
+            // Had no catalog... we will just use the original page numbers
+        }
+        mIndex = new TextIndex(mNumberOfPages);
+    }
+
+    /**
+     * Gives back a use of the document. Once it is no longer in use by anything, it will be closed
+     * if it isn't acquired again soon.
+     */
+    public void release() {
+        release(mSlot);
+    }
+
+    private static void release(Slot slot) {
+        List<PDDocument> evicted = Collections.emptyList();
+        synchronized (POOL) {
+            if (--slot.mUseCount == 0) {
+                slot.mIdleSince = System.currentTimeMillis();
+                if (EVICTOR == null) {
+                    EVICTOR = BackgroundScheduler.createTask("PDF Pool", SharedPdf::evictIdle); //$NON-NLS-1$
+                }
+                EVICTOR.signalAfter(IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+                evicted = evictOverBudget();
+            }
+        }
+        close(evicted);
+    }
+
+    private static void evictIdle() {
+        List<PDDocument> evicted = new ArrayList<>();
+        synchronized (POOL) {
+            long           now      = System.currentTimeMillis();
+            long           next     = Long.MAX_VALUE;
+            Iterator<Slot> iterator = POOL.values().iterator();
+            while (iterator.hasNext()) {
+                Slot slot = iterator.next();
+                if (slot.isIdle()) {
+                    long idle = now - slot.mIdleSince;
+                    if (idle >= IDLE_TIMEOUT) {
+                        iterator.remove();
+                        evicted.add(slot.evict());
+                    } else {
+                        next = Math.min(next, IDLE_TIMEOUT - idle);
+                    }
+                }
+            }
+            if (next != Long.MAX_VALUE) {
+                EVICTOR.signalAfter(next, TimeUnit.MILLISECONDS);
+            }
+        }
+        close(evicted);
+    }
+
+    /**
+     * Must be called while synchronized on the pool. Documents in use are never closed, so the
+     * budget may still be exceeded while they are.
+     *
+     * @return The documents that were removed from the pool and must now be closed.
+     */
+    private static List<PDDocument> evictOverBudget() {
+        List<PDDocument> evicted = new ArrayList<>();
+        while (MEMORY_IN_USE > MAXIMUM_MEMORY) {
+            Slot oldest = null;
+            for (Slot slot : POOL.values()) {
+                if (slot.isIdle() && (oldest == null || slot.mIdleSince < oldest.mIdleSince)) {
+                    oldest = slot;
+                }
+            }
+            if (oldest == null) {
+                break;
+            }
+            POOL.remove(oldest.mKey);
+            evicted.add(oldest.evict());
+        }
+        return evicted;
+    }
+
+    private static void close(List<PDDocument> documents) {
+        for (PDDocument pdf : documents) {
+            try {
+                pdf.close();
+            } catch (Exception exception) {
+                Log.error(exception);
+            }
+        }
+    }
+
+    /** @return The canonical PDF file. */
+    File getFile() {
+        return mFile;
+    }
+
+    /** @return The time the file was last modified when it was loaded. */
+    long getLastModified() {
+        return mLastModified;
+    }
+
+    /** @return The document. All use of it must be synchronized on it. */
+    PDDocument getDocument() {
+        return mPdf;
+    }
+
+    /** @return The number of pages in the document. */
+    public int getNumberOfPages() {
+        return mNumberOfPages;
+    }
+
+    /** @return The width and height, in points, of each page as it will be displayed. */
+    float[][] getPageSizes() {
+        return mPageSizes;
+    }
+
+    /** @return The page indices of the document, keyed by page label, or <code>null</code>. */
+    Map<String, Integer> getPageLabels() {
+        return mPageLabels;
+    }
+
+    /** @return The {@link TextIndex} for the document. */
+    TextIndex getTextIndex() {
+        return mIndex;
+    }
+
+    /** A document in the pool, which may still be loading. Guarded by the pool's lock. */
+    private static final class Slot {
+        String                       mKey;
+        long                         mMemory;
+        CompletableFuture<SharedPdf> mLoaded = new CompletableFuture<>();
+        int                          mUseCount;
+        long                         mIdleSince;
+
+        Slot(String key, long memory) {
+            mKey    = key;
+            mMemory = memory;
+        }
+
+        boolean isIdle() {
+            return mUseCount == 0 && mLoaded.isDone() && !mLoaded.isCompletedExceptionally();
+        }
+
+        /** @return The document, which the caller must close once it has let go of the lock. */
+        PDDocument evict() {
+            MEMORY_IN_USE -= mMemory;
+            return mLoaded.join().mPdf;
+        }
+    }
+}
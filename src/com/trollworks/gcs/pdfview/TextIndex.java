@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.pdfview;
+
+import com.trollworks.toolkit.io.Log;
+
+import java.awt.Shape;
+import java.awt.geom.Rectangle2D;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+
+/**
+ * The text of each page of a PDF, along with where each character of it sits on the page, so that
+ * text can be found and highlighted without extracting it from the document again. Pages are added
+ * one at a time, as they are needed, and may be looked up from any thread.
+ */
+class TextIndex {
+    private PageText[] mPages;
+    private int        mIndexedCount;
+
+    /** The text of a single page. */
+    static final class PageText {
+        private String  mText;
+        private float[] mBounds;
+
+        /**
+         * @param text   The text of the page, in the form {@link TextIndex#normalize(String)}
+         *               produces.
+         * @param bounds The x, y, width and height, in unscaled page coordinates, of each character
+         *               of the text. The spaces between words and lines are given an empty area.
+         */
+        PageText(String text, float[] bounds) {
+            mText   = text;
+            mBounds = bounds;
+        }
+    }
+
+    /** @param numberOfPages The number of pages in the PDF. */
+    TextIndex(int numberOfPages) {
+        mPages = new PageText[numberOfPages];
+    }
+
+    /**
+     * @param pageIndex The index of the page.
+     * @return Whether the page has been indexed.
+     */
+    synchronized boolean isIndexed(int pageIndex) {
+        return mPages[pageIndex] != null;
+    }
+
+    /**
+     * @param fromPageIndex The index of the page to start looking from.
+     * @return The index of the first page at or after the one given that hasn't been indexed yet,
+     *         wrapping around to the start of the document, or -1 if all have been.
+     */
+    synchronized int getNextUnindexedPage(int fromPageIndex) {
+        if (mIndexedCount < mPages.length) {
+            for (int i = 0; i < mPages.length; i++) {
+                int pageIndex = (fromPageIndex + i) % mPages.length;
+                if (mPages[pageIndex] == null) {
+                    return pageIndex;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Extracts the text of a page and adds it to the index, if that hasn't happened already. A page
+     * whose text can't be extracted is treated as having none.
+     *
+     * @param pdf       The PDF.
+     * @param pageIndex The index of the page.
+     */
+    void indexPage(PDDocument pdf, int pageIndex) {
+        if (!isIndexed(pageIndex)) {
+            PageText text;
+            try {
+                synchronized (pdf) {
+                    text = PdfRenderer.extractText(pdf, pageIndex);
+                }
+            } catch (Exception exception) {
+                Log.error(exception);
+                text = new PageText("", new float[0]); //$NON-NLS-1$
+            }
+            synchronized (this) {
+                if (mPages[pageIndex] == null) {
+                    mPages[pageIndex] = text;
+                    mIndexedCount++;
+                }
+            }
+        }
+    }
+
+    /**
+     * @param pageIndex The index of the page.
+     * @param text      The text to look for.
+     * @return Whether the page contains the text. A page that hasn't been indexed yet doesn't.
+     */
+    boolean contains(int pageIndex, String text) {
+        PageText page;
+        synchronized (this) {
+            page = mPages[pageIndex];
+        }
+        String target = normalize(text);
+        return page != null && !target.isEmpty() && page.mText.contains(target);
+    }
+
+    /**
+     * @param pageIndex The index of the page, which must have been indexed.
+     * @param text      The text to look for.
+     * @return The areas of the page, in unscaled page coordinates, that cover each occurrence of
+     *         the text.
+     */
+    List<Shape> findHighlights(int pageIndex, String text) {
+        PageText page;
+        synchronized (this) {
+            page = mPages[pageIndex];
+        }
+        String target = normalize(text);
+        if (page == null || target.isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<Shape> highlights = new ArrayList<>();
+        int         index      = page.mText.indexOf(target);
+        while (index != -1) {
+            int end = index + target.length();
+            for (int i = index; i < end; i++) {
+                int j = i * 4;
+                if (page.mBounds[j + 2] == 0 && page.mBounds[j + 3] == 0) {
+                    continue;
+                }
+                highlights.add(new Rectangle2D.Float(page.mBounds[j], page.mBounds[j + 1], page.mBounds[j + 2], page.mBounds[j + 3]));
+            }
+            index = page.mText.indexOf(target, end);
+        }
+        return highlights;
+    }
+
+    /**
+     * Lowercases text a character at a time, the same way the text of each page is, and reduces
+     * each run of whitespace to a single space.
+     *
+     * @param text The text to normalize.
+     * @return The normalized text.
+     */
+    static String normalize(String text) {
+        int           length = text.length();
+        StringBuilder buffer = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            char ch = text.charAt(i);
+            if (Character.isWhitespace(ch)) {
+                int count = buffer.length();
+                if (count > 0 && buffer.charAt(count - 1) != ' ') {
+                    buffer.append(' ');
+                }
+            } else {
+                buffer.append(Character.toLowerCase(ch));
+            }
+        }
+        int count = buffer.length();
+        if (count > 0 && buffer.charAt(count - 1) == ' ') {
+            buffer.setLength(count - 1);
+        }
+        return buffer.toString();
+    }
+}
@@ -12,7 +12,9 @@
 package com.trollworks.gcs.prereq;
 
 import com.trollworks.gcs.advantage.Advantage;
-import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.character.CharacterSnapshot;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.criteria.IntegerCriteria;
 import com.trollworks.gcs.criteria.StringCompareType;
 import com.trollworks.gcs.criteria.StringCriteria;
@@ -26,6 +28,7 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 /** An Advantage prerequisite. */
 public class AdvantagePrereq extends NameLevelPrereq {
@@ -75,6 +78,17 @@ public class AdvantagePrereq extends NameLevelPrereq {
         super(parent, reader);
     }
 
+    /**
+     * Loads a prerequisite.
+     *
+     * @param parent The owning prerequisite list, if any.
+     * @param in     The {@link JsonReader} to load from, positioned just after the type of an
+     *               object written by {@link #save(JsonWriter)}.
+     */
+    public AdvantagePrereq(PrereqList parent, JsonReader in) throws IOException {
+        super(TAG_ROOT, parent, in);
+    }
+
     private AdvantagePrereq(PrereqList parent, AdvantagePrereq prereq) {
         super(parent, prereq);
         mNotesCriteria = new StringCriteria(prereq.mNotesCriteria);
@@ -110,11 +124,25 @@ public class AdvantagePrereq extends NameLevelPrereq {
         }
     }
 
+    @Override
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (TAG_NOTES.equals(name)) {
+            mNotesCriteria.load(in);
+        } else {
+            super.loadSelf(in, name);
+        }
+    }
+
     @Override
     protected void saveSelf(XMLWriter out) {
         mNotesCriteria.save(out, TAG_NOTES);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        mNotesCriteria.save(out, TAG_NOTES);
+    }
+
     @Override
     public String getXMLTag() {
         return TAG_ROOT;
@@ -126,21 +154,18 @@ public class AdvantagePrereq extends NameLevelPrereq {
     }
 
     @Override
-    public boolean satisfied(GURPSCharacter character, ListRow exclude, StringBuilder builder, String prefix) {
-        boolean         satisfied     = false;
-        StringCriteria  nameCriteria  = getNameCriteria();
-        IntegerCriteria levelCriteria = getLevelCriteria();
-
-        for (Advantage advantage : character.getAdvantagesIterator(false)) {
-            if (exclude != advantage && nameCriteria.matches(advantage.getName())) {
-                String notes         = advantage.getNotes();
-                String modifierNotes = advantage.getModifierNotes();
-
-                if (modifierNotes.length() > 0) {
-                    notes = modifierNotes + '\n' + notes;
-                }
-                if (mNotesCriteria.matches(notes)) {
-                    int levels = advantage.getLevels();
+    public boolean satisfied(CharacterSnapshot snapshot, ListRow exclude, List<UnsatisfiedPrereq> unsatisfied) {
+        boolean                              satisfied     = false;
+        StringCriteria                       nameCriteria  = getNameCriteria();
+        IntegerCriteria                      levelCriteria = getLevelCriteria();
+        CharacterSnapshot.RowTree<Advantage> advantages    = snapshot.getAdvantages();
+
+        for (Advantage advantage : advantages.getAllRows()) {
+            CharacterSnapshot.RowState state = advantages.getState(advantage);
+            if (exclude != advantage && state.isEnabled() && nameCriteria.matches(state.getName())) {
+                PrereqDependencyGraph.recordRead(advantage);
+                if (mNotesCriteria.matches(state.getNotes())) {
+                    int levels = state.getLevels();
                     if (levels < 0) {
                         levels = 0;
                     }
@@ -152,12 +177,18 @@ public class AdvantagePrereq extends NameLevelPrereq {
         if (!has()) {
             satisfied = !satisfied;
         }
-        if (!satisfied && builder != null) {
-            builder.append(MessageFormat.format(NAME_PART, prefix, has() ? HasPrereq.HAS : HasPrereq.DOES_NOT_HAVE, nameCriteria.toString()));
-            if (mNotesCriteria.getType() != StringCompareType.IS_ANYTHING) {
-                builder.append(MessageFormat.format(NOTES_PART, mNotesCriteria.toString()));
-            }
-            builder.append(MessageFormat.format(LEVEL_PART, levelCriteria.toString()));
+        if (!satisfied && unsatisfied != null) {
+            boolean has   = has();
+            String  name  = nameCriteria.toString();
+            String  notes = mNotesCriteria.getType() != StringCompareType.IS_ANYTHING ? mNotesCriteria.toString() : null;
+            String  level = levelCriteria.toString();
+            unsatisfied.add((builder, prefix) -> {
+                builder.append(MessageFormat.format(NAME_PART, prefix, has ? HasPrereq.HAS : HasPrereq.DOES_NOT_HAVE, name));
+                if (notes != null) {
+                    builder.append(MessageFormat.format(NOTES_PART, notes));
+                }
+                builder.append(MessageFormat.format(LEVEL_PART, level));
+            });
         }
         return satisfied;
     }
@@ -11,7 +11,10 @@
 
 package com.trollworks.gcs.prereq;
 
+import com.trollworks.gcs.character.CharacterSnapshot;
 import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.criteria.IntegerCriteria;
 import com.trollworks.gcs.criteria.NumericCompareType;
 import com.trollworks.gcs.feature.BonusAttributeType;
@@ -24,6 +27,7 @@ import com.trollworks.toolkit.utility.text.Enums;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.List;
 
 /** A Attribute prerequisite. */
 public class AttributePrereq extends HasPrereq {
@@ -47,6 +51,7 @@ public class AttributePrereq extends HasPrereq {
     private static final String              ATTRIBUTE_WHICH         = "which"; //$NON-NLS-1$
     private static final String              ATTRIBUTE_COMBINED_WITH = "combined_with"; //$NON-NLS-1$
     private static final String              ATTRIBUTE_COMPARE       = "compare"; //$NON-NLS-1$
+    private static final String              KEY_VALUE               = "value"; //$NON-NLS-1$
     private BonusAttributeType               mWhich;
     private BonusAttributeType               mCombinedWith;
     private IntegerCriteria                  mValueCompare;
@@ -78,6 +83,33 @@ public class AttributePrereq extends HasPrereq {
         mValueCompare.setQualifier(reader.readInteger(10));
     }
 
+    /**
+     * Loads a prerequisite.
+     *
+     * @param parent The owning prerequisite list, if any.
+     * @param in     The {@link JsonReader} to load from, positioned just after the type of an
+     *               object written by {@link #save(JsonWriter)}.
+     */
+    public AttributePrereq(PrereqList parent, JsonReader in) throws IOException {
+        this(parent);
+        has(false);
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (ATTRIBUTE_HAS.equals(name)) {
+                loadHasAttribute(in);
+            } else if (ATTRIBUTE_WHICH.equals(name)) {
+                setWhich(Enums.extract(in.nextString(), TYPES, BonusAttributeType.ST));
+            } else if (ATTRIBUTE_COMBINED_WITH.equals(name)) {
+                setCombinedWith(Enums.extract(in.nextString(), TYPES));
+            } else if (KEY_VALUE.equals(name)) {
+                mValueCompare.load(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
     /**
      * Creates a copy of the specified prerequisite.
      *
@@ -132,6 +164,18 @@ public class AttributePrereq extends HasPrereq {
         out.endTagEOL(TAG_ROOT, false);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        saveHasAttribute(out);
+        out.name(ATTRIBUTE_WHICH).value(Enums.toId(mWhich));
+        if (mCombinedWith != null) {
+            out.name(ATTRIBUTE_COMBINED_WITH).value(Enums.toId(mCombinedWith));
+        }
+        mValueCompare.save(out, KEY_VALUE);
+        out.endObject();
+    }
+
     /** @return The type of comparison to make. */
     public BonusAttributeType getWhich() {
         return mWhich;
@@ -152,23 +196,23 @@ public class AttributePrereq extends HasPrereq {
         mCombinedWith = which;
     }
 
-    private static int getAttributeValue(GURPSCharacter character, BonusAttributeType attribute) {
+    private static int getAttributeValue(CharacterSnapshot snapshot, BonusAttributeType attribute) {
         if (attribute == null) {
             return 0;
         }
         switch (attribute) {
         case ST:
-            return character.getStrength();
+            return snapshot.getIntegerValue(GURPSCharacter.ID_STRENGTH);
         case DX:
-            return character.getDexterity();
+            return snapshot.getIntegerValue(GURPSCharacter.ID_DEXTERITY);
         case IQ:
-            return character.getIntelligence();
+            return snapshot.getIntegerValue(GURPSCharacter.ID_INTELLIGENCE);
         case HT:
-            return character.getHealth();
+            return snapshot.getIntegerValue(GURPSCharacter.ID_HEALTH);
         case WILL:
-            return character.getWill();
+            return snapshot.getIntegerValue(GURPSCharacter.ID_WILL);
         case PERCEPTION:
-            return character.getPerception();
+            return snapshot.getIntegerValue(GURPSCharacter.ID_PERCEPTION);
         default:
             return 0;
         }
@@ -180,14 +224,24 @@ public class AttributePrereq extends HasPrereq {
     }
 
     @Override
-    public boolean satisfied(GURPSCharacter character, ListRow exclude, StringBuilder builder, String prefix) {
-        boolean satisfied = mValueCompare.matches(getAttributeValue(character, mWhich) + getAttributeValue(character, mCombinedWith));
+    public boolean satisfied(CharacterSnapshot snapshot, ListRow exclude, List<UnsatisfiedPrereq> unsatisfied) {
+        PrereqDependencyGraph.recordRead(GURPSCharacter.ATTRIBUTES_PREFIX + mWhich.name());
+        if (mCombinedWith != null) {
+            PrereqDependencyGraph.recordRead(GURPSCharacter.ATTRIBUTES_PREFIX + mCombinedWith.name());
+        }
+        boolean satisfied = mValueCompare.matches(getAttributeValue(snapshot, mWhich) + getAttributeValue(snapshot, mCombinedWith));
 
         if (!has()) {
             satisfied = !satisfied;
         }
-        if (!satisfied && builder != null) {
-            builder.append(MessageFormat.format(DESCRIPTION, prefix, has() ? HAS : DOES_NOT_HAVE, mCombinedWith == null ? mWhich.getPresentationName() : MessageFormat.format(COMBINED, mWhich.getPresentationName(), mCombinedWith.getPresentationName()), mValueCompare.toString()));
+        if (!satisfied && unsatisfied != null) {
+            boolean            has          = has();
+            BonusAttributeType which        = mWhich;
+            BonusAttributeType combinedWith = mCombinedWith;
+            String             value        = mValueCompare.toString();
+            unsatisfied.add((builder, prefix) -> {
+                builder.append(MessageFormat.format(DESCRIPTION, prefix, has ? HAS : DOES_NOT_HAVE, combinedWith == null ? which.getPresentationName() : MessageFormat.format(COMBINED, which.getPresentationName(), combinedWith.getPresentationName()), value));
+            });
         }
         return satisfied;
     }
@@ -11,7 +11,9 @@
 
 package com.trollworks.gcs.prereq;
 
-import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.character.CharacterSnapshot;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.criteria.NumericCompareType;
 import com.trollworks.gcs.criteria.WeightCriteria;
 import com.trollworks.gcs.equipment.Equipment;
@@ -26,6 +28,7 @@ import com.trollworks.toolkit.utility.units.WeightValue;
 
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.List;
 
 /** An equipment contained weight prerequisite. */
 public class ContainedWeightPrereq extends HasPrereq {
@@ -42,6 +45,7 @@ public class ContainedWeightPrereq extends HasPrereq {
     /** The XML tag for this class. */
     public static final String  TAG_ROOT          = "contained_weight_prereq"; //$NON-NLS-1$
     private static final String ATTRIBUTE_COMPARE = "compare"; //$NON-NLS-1$
+    private static final String KEY_WEIGHT        = "weight"; //$NON-NLS-1$
     private WeightCriteria      mWeightCompare;
 
     /**
@@ -67,6 +71,29 @@ public class ContainedWeightPrereq extends HasPrereq {
         mWeightCompare.setQualifier(WeightValue.extract(reader.readText(), false));
     }
 
+    /**
+     * Loads a prerequisite.
+     *
+     * @param parent The owning prerequisite list, if any.
+     * @param in     The {@link JsonReader} to load from, positioned just after the type of an
+     *               object written by {@link #save(JsonWriter)}.
+     */
+    public ContainedWeightPrereq(PrereqList parent, JsonReader in) throws IOException {
+        this(parent);
+        has(false);
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (ATTRIBUTE_HAS.equals(name)) {
+                loadHasAttribute(in);
+            } else if (KEY_WEIGHT.equals(name)) {
+                mWeightCompare.load(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
     /**
      * Creates a copy of the specified prerequisite.
      *
@@ -114,29 +141,51 @@ public class ContainedWeightPrereq extends HasPrereq {
         out.endTagEOL(TAG_ROOT, false);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        saveHasAttribute(out);
+        mWeightCompare.save(out, KEY_WEIGHT);
+        out.endObject();
+    }
+
     /** @return The weight comparison object. */
     public WeightCriteria getWeightCompare() {
         return mWeightCompare;
     }
 
     @Override
-    public boolean satisfied(GURPSCharacter character, ListRow exclude, StringBuilder builder, String prefix) {
+    public boolean satisfied(CharacterSnapshot snapshot, ListRow exclude, List<UnsatisfiedPrereq> unsatisfied) {
         boolean satisfied = false;
         if (exclude instanceof Equipment) {
-            Equipment equipment = (Equipment) exclude;
-            satisfied = !equipment.canHaveChildren();
+            CharacterSnapshot.RowTree<Equipment> equipment = snapshot.getEquipment();
+            CharacterSnapshot.RowState           state     = equipment.getState(exclude);
+            satisfied = !state.isContainer();
             if (!satisfied) {
-                WeightValue weight = new WeightValue(equipment.getExtendedWeight());
-                weight.subtract(equipment.getWeight());
+                // Reads of the row being evaluated are ignored, so record the rows it contains instead
+                recordContentsRead(equipment, exclude);
+                WeightValue weight = new WeightValue(state.getExtendedWeight());
+                weight.subtract(state.getWeight());
                 satisfied = mWeightCompare.matches(weight);
             }
         }
         if (!has()) {
             satisfied = !satisfied;
         }
-        if (!satisfied && builder != null) {
-            builder.append(MessageFormat.format(CONTAINED_WEIGHT, prefix, has() ? HAS : DOES_NOT_HAVE, mWeightCompare));
+        if (!satisfied && unsatisfied != null) {
+            boolean has    = has();
+            String  weight = mWeightCompare.toString();
+            unsatisfied.add((builder, prefix) -> {
+                builder.append(MessageFormat.format(CONTAINED_WEIGHT, prefix, has ? HAS : DOES_NOT_HAVE, weight));
+            });
         }
         return satisfied;
     }
+
+    private static void recordContentsRead(CharacterSnapshot.RowTree<Equipment> equipment, ListRow row) {
+        for (Equipment child : equipment.getChildren(row)) {
+            PrereqDependencyGraph.recordRead(child);
+            recordContentsRead(equipment, child);
+        }
+    }
 }
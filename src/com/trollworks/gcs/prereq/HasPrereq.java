@@ -11,11 +11,15 @@
 
 package com.trollworks.gcs.prereq;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.toolkit.annotation.Localize;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.io.xml.XMLWriter;
 import com.trollworks.toolkit.utility.Localization;
 
+import java.io.IOException;
+
 /** An abstract prerequisite class for whether or not the specific item is present. */
 public abstract class HasPrereq extends Prereq {
     @Localize("Has")
@@ -92,6 +96,24 @@ public abstract class HasPrereq extends Prereq {
         out.writeAttribute(ATTRIBUTE_HAS, mHas);
     }
 
+    /**
+     * Loads the "has" member.
+     *
+     * @param in The {@link JsonReader} to load from.
+     */
+    protected void loadHasAttribute(JsonReader in) throws IOException {
+        mHas = in.nextBoolean();
+    }
+
+    /**
+     * Writes the "has" member.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    protected void saveHasAttribute(JsonWriter out) throws IOException {
+        out.name(ATTRIBUTE_HAS).value(mHas);
+    }
+
     /**
      * @return <code>true</code> if the specified criteria should exist, <code>false</code> if it
      *         should not.
@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.prereq;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.criteria.IntegerCriteria;
 import com.trollworks.gcs.criteria.NumericCompareType;
 import com.trollworks.gcs.criteria.StringCompareType;
@@ -68,6 +70,24 @@ public abstract class NameLevelPrereq extends HasPrereq {
         } while (reader.withinMarker(marker));
     }
 
+    /**
+     * Loads a prerequisite.
+     *
+     * @param tag    The tag for this prerequisite.
+     * @param parent The owning prerequisite list, if any.
+     * @param in     The {@link JsonReader} to load from, positioned just after the type of an
+     *               object written by {@link #save(JsonWriter)}.
+     */
+    protected NameLevelPrereq(String tag, PrereqList parent, JsonReader in) throws IOException {
+        this(tag, parent);
+        initializeForLoad();
+        has(false);
+        while (in.hasNext()) {
+            loadSelf(in, in.nextName());
+        }
+        in.endObject();
+    }
+
     /**
      * Creates a copy of the specified prerequisite.
      *
@@ -111,6 +131,16 @@ public abstract class NameLevelPrereq extends HasPrereq {
         out.endTagEOL(mTag, true);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(mTag);
+        saveHasAttribute(out);
+        mNameCriteria.save(out, TAG_NAME);
+        saveSelf(out);
+        mLevelCriteria.save(out, TAG_LEVEL);
+        out.endObject();
+    }
+
     /** @param reader The XML reader to load from. */
     protected void loadSelf(XMLReader reader) throws IOException {
         String name = reader.getName();
@@ -124,6 +154,22 @@ public abstract class NameLevelPrereq extends HasPrereq {
         }
     }
 
+    /**
+     * @param in   The {@link JsonReader} to load from.
+     * @param name The name of the member to load.
+     */
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (ATTRIBUTE_HAS.equals(name)) {
+            loadHasAttribute(in);
+        } else if (TAG_NAME.equals(name)) {
+            mNameCriteria.load(in);
+        } else if (TAG_LEVEL.equals(name)) {
+            mLevelCriteria.load(in);
+        } else {
+            in.skipValue();
+        }
+    }
+
     /**
      * Called so that sub-classes can save extra data.
      *
@@ -133,6 +179,15 @@ public abstract class NameLevelPrereq extends HasPrereq {
         // Does nothing
     }
 
+    /**
+     * Called so that sub-classes can save extra data as JSON.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    protected void saveSelf(JsonWriter out) throws IOException {
+        // Does nothing
+    }
+
     /** @return The name comparison object. */
     public StringCriteria getNameCriteria() {
         return mNameCriteria;
@@ -11,12 +11,16 @@
 
 package com.trollworks.gcs.prereq;
 
-import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.character.CharacterSnapshot;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.widgets.outline.ListRow;
 import com.trollworks.toolkit.io.xml.XMLWriter;
 
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 /** The abstract base class prerequisite criteria and prerequisite lists. */
 public abstract class Prereq {
@@ -55,14 +59,20 @@ public abstract class Prereq {
     public abstract void save(XMLWriter out);
 
     /**
-     * @param character The character to check.
-     * @param exclude   The data to exclude from the check.
-     * @param builder   The {@link StringBuilder} to append this prerequisite's
-     *                  satisfied/unsatisfied description to. May be <code>null</code>.
-     * @param prefix    The prefix to add to each line appended to the builder.
+     * Saves the prerequisite as JSON.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    public abstract void save(JsonWriter out) throws IOException;
+
+    /**
+     * @param snapshot    The snapshot of the character to check.
+     * @param exclude     The data to exclude from the check.
+     * @param unsatisfied The list to add this prerequisite to, should it not be satisfied. May be
+     *                    <code>null</code>.
      * @return Whether or not this prerequisite is satisfied by the specified character.
      */
-    public abstract boolean satisfied(GURPSCharacter character, ListRow exclude, StringBuilder builder, String prefix);
+    public abstract boolean satisfied(CharacterSnapshot snapshot, ListRow exclude, List<UnsatisfiedPrereq> unsatisfied);
 
     /**
      * Creates a deep clone of the prerequisite.
@@ -0,0 +1,128 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.prereq;
+
+import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.widgets.outline.ListRow;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Records which rows and character values the prerequisites of each row read while being
+ * evaluated, so that a change to one of them only requires re-evaluating the rows that depend upon
+ * it. A source is either a {@link ListRow} or the notification ID of a character value, such as
+ * {@link GURPSCharacter#ID_STRENGTH}.
+ */
+public class PrereqDependencyGraph {
+    private static final ThreadLocal<PrereqDependencyGraph> CURRENT = new ThreadLocal<>();
+    private HashMap<ListRow, HashSet<Object>>               mReads;
+    private HashMap<Object, HashSet<ListRow>>               mDependents;
+    private ThreadLocal<ListRow>                            mRecording;
+
+    /**
+     * Records a read of the specified source by the row the calling thread is currently evaluating,
+     * if it is recording into a graph.
+     *
+     * @param source The {@link ListRow} or character value notification ID that was read.
+     */
+    public static void recordRead(Object source) {
+        PrereqDependencyGraph graph = CURRENT.get();
+        if (graph != null) {
+            graph.record(source);
+        }
+    }
+
+    /** Creates a new, empty, dependency graph. */
+    public PrereqDependencyGraph() {
+        mReads      = new HashMap<>();
+        mDependents = new HashMap<>();
+        mRecording  = new ThreadLocal<>();
+    }
+
+    /**
+     * Starts recording the reads made by the calling thread while evaluating the prerequisites of
+     * the specified row. Any reads previously recorded for the row are discarded.
+     *
+     * @param row The row about to be evaluated.
+     */
+    public void startRecording(ListRow row) {
+        synchronized (this) {
+            remove(row);
+        }
+        mRecording.set(row);
+        CURRENT.set(this);
+    }
+
+    /** Stops recording reads made by the calling thread. */
+    public void stopRecording() {
+        mRecording.remove();
+        CURRENT.remove();
+    }
+
+    private void record(Object source) {
+        ListRow recording = mRecording.get();
+        if (recording != null && source != null && source != recording) {
+            record(recording, source);
+        }
+    }
+
+    private synchronized void record(ListRow recording, Object source) {
+        HashSet<Object> reads = mReads.get(recording);
+        if (reads == null) {
+            reads = new HashSet<>();
+            mReads.put(recording, reads);
+        }
+        if (reads.add(source)) {
+            HashSet<ListRow> dependents = mDependents.get(source);
+            if (dependents == null) {
+                dependents = new HashSet<>();
+                mDependents.put(source, dependents);
+            }
+            dependents.add(recording);
+        }
+    }
+
+    /**
+     * @param source The {@link ListRow} or character value notification ID that changed.
+     * @param set    The set to add the rows whose prerequisites read the source to.
+     */
+    public synchronized void collectDependents(Object source, Set<ListRow> set) {
+        HashSet<ListRow> dependents = mDependents.get(source);
+        if (dependents != null) {
+            set.addAll(dependents);
+        }
+    }
+
+    /** @param row The row to remove from the graph. */
+    public synchronized void remove(ListRow row) {
+        HashSet<Object> reads = mReads.remove(row);
+        if (reads != null) {
+            for (Object source : reads) {
+                HashSet<ListRow> dependents = mDependents.get(source);
+                if (dependents != null) {
+                    dependents.remove(row);
+                    if (dependents.isEmpty()) {
+                        mDependents.remove(source);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Removes all recorded dependencies. */
+    public synchronized void clear() {
+        mReads.clear();
+        mDependents.clear();
+    }
+}
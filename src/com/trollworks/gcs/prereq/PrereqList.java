@@ -11,7 +11,10 @@
 
 package com.trollworks.gcs.prereq;
 
-import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.character.CharacterSnapshot;
+import com.trollworks.gcs.character.Profile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.criteria.IntegerCriteria;
 import com.trollworks.gcs.criteria.NumericCompareType;
 import com.trollworks.gcs.widgets.outline.ListRow;
@@ -51,6 +54,7 @@ public class PrereqList extends Prereq {
     public static final String  TAG_ROOT      = "prereq_list"; //$NON-NLS-1$
     private static final String TAG_WHEN_TL   = "when_tl"; //$NON-NLS-1$
     private static final String ATTRIBUTE_ALL = "all"; //$NON-NLS-1$
+    private static final String KEY_PREREQS   = "prereqs"; //$NON-NLS-1$
     private boolean             mAll;
     private IntegerCriteria     mWhenTLCriteria;
     private ArrayList<Prereq>   mPrereqs;
@@ -103,6 +107,58 @@ public class PrereqList extends Prereq {
         } while (reader.withinMarker(marker));
     }
 
+    /**
+     * Loads a prerequisite list.
+     *
+     * @param parent The owning prerequisite list, if any.
+     * @param in     The {@link JsonReader} to load from, positioned at an object written by
+     *               {@link #save(JsonWriter)}.
+     */
+    public PrereqList(PrereqList parent, JsonReader in) throws IOException {
+        this(parent, true);
+        if (!TAG_ROOT.equals(in.startTypedObject())) {
+            throw new IOException();
+        }
+        loadSelf(in);
+    }
+
+    private void loadSelf(JsonReader in) throws IOException {
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (ATTRIBUTE_ALL.equals(name)) {
+                mAll = in.nextBoolean();
+            } else if (TAG_WHEN_TL.equals(name)) {
+                mWhenTLCriteria.load(in);
+            } else if (KEY_PREREQS.equals(name)) {
+                in.startArray();
+                while (in.hasNext()) {
+                    String type = in.startTypedObject();
+                    if (TAG_ROOT.equals(type)) {
+                        PrereqList list = new PrereqList(this, true);
+                        list.loadSelf(in);
+                        mPrereqs.add(list);
+                    } else if (AdvantagePrereq.TAG_ROOT.equals(type)) {
+                        mPrereqs.add(new AdvantagePrereq(this, in));
+                    } else if (AttributePrereq.TAG_ROOT.equals(type)) {
+                        mPrereqs.add(new AttributePrereq(this, in));
+                    } else if (ContainedWeightPrereq.TAG_ROOT.equals(type)) {
+                        mPrereqs.add(new ContainedWeightPrereq(this, in));
+                    } else if (SkillPrereq.TAG_ROOT.equals(type)) {
+                        mPrereqs.add(new SkillPrereq(this, in));
+                    } else if (SpellPrereq.TAG_ROOT.equals(type)) {
+                        mPrereqs.add(new SpellPrereq(this, in));
+                    } else {
+                        in.endObject();
+                    }
+                }
+                in.endArray();
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
     /**
      * Creates a clone of the specified prerequisite list.
      *
@@ -157,6 +213,21 @@ public class PrereqList extends Prereq {
         }
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        out.name(ATTRIBUTE_ALL).value(mAll);
+        if (isWhenTLEnabled(mWhenTLCriteria)) {
+            mWhenTLCriteria.save(out, TAG_WHEN_TL);
+        }
+        out.name(KEY_PREREQS).startArray();
+        for (Prereq prereq : mPrereqs) {
+            prereq.save(out);
+        }
+        out.endArray();
+        out.endObject();
+    }
+
     /** @return The character's TL criteria. */
     public IntegerCriteria getWhenTLCriteria() {
         return mWhenTLCriteria;
@@ -235,31 +306,41 @@ public class PrereqList extends Prereq {
     }
 
     @Override
-    public boolean satisfied(GURPSCharacter character, ListRow exclude, StringBuilder builder, String prefix) {
+    public boolean satisfied(CharacterSnapshot snapshot, ListRow exclude, List<UnsatisfiedPrereq> unsatisfied) {
         if (isWhenTLEnabled(mWhenTLCriteria)) {
-            if (!mWhenTLCriteria.matches(Numbers.extractInteger(character.getDescription().getTechLevel(), 0, false))) {
+            PrereqDependencyGraph.recordRead(Profile.ID_TECH_LEVEL);
+            if (!mWhenTLCriteria.matches(Numbers.extractInteger(snapshot.getTechLevel(), 0, false))) {
                 return true;
             }
         }
 
-        int           satisfiedCount = 0;
-        int           total          = mPrereqs.size();
-        boolean       requiresAll    = requiresAll();
-        StringBuilder localBuilder   = builder != null ? new StringBuilder() : null;
+        int     satisfiedCount = 0;
+        int     total          = mPrereqs.size();
+        boolean requiresAll    = requiresAll();
+        // The children add their failures after any already in the list; they are moved into the
+        // entry for this list once it is known whether this list failed as a whole.
+        int     start          = unsatisfied != null ? unsatisfied.size() : 0;
         for (Prereq prereq : mPrereqs) {
-            if (prereq.satisfied(character, exclude, localBuilder, prefix)) {
+            if (prereq.satisfied(snapshot, exclude, unsatisfied)) {
                 satisfiedCount++;
             }
         }
-        if (localBuilder != null && localBuilder.length() > 0) {
-            localBuilder.insert(0, "<ul>"); //$NON-NLS-1$
-            localBuilder.append("</ul>"); //$NON-NLS-1$
-        }
 
         boolean satisfied = satisfiedCount == total || !requiresAll && satisfiedCount > 0;
-        if (!satisfied && localBuilder != null && builder != null) {
-            builder.append(MessageFormat.format(requiresAll ? REQUIRES_ALL : REQUIRES_ANY, prefix));
-            builder.append(localBuilder.toString());
+        if (unsatisfied != null && unsatisfied.size() > start) {
+            List<UnsatisfiedPrereq> failed   = unsatisfied.subList(start, unsatisfied.size());
+            UnsatisfiedPrereq[]     contents = satisfied ? null : failed.toArray(new UnsatisfiedPrereq[failed.size()]);
+            failed.clear();
+            if (contents != null) {
+                unsatisfied.add((builder, prefix) -> {
+                    builder.append(MessageFormat.format(requiresAll ? REQUIRES_ALL : REQUIRES_ANY, prefix));
+                    builder.append("<ul>"); //$NON-NLS-1$
+                    for (UnsatisfiedPrereq one : contents) {
+                        one.describe(builder, prefix);
+                    }
+                    builder.append("</ul>"); //$NON-NLS-1$
+                });
+            }
         }
         return satisfied;
     }
@@ -11,7 +11,9 @@
 
 package com.trollworks.gcs.prereq;
 
-import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.character.CharacterSnapshot;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.criteria.IntegerCriteria;
 import com.trollworks.gcs.criteria.StringCompareType;
 import com.trollworks.gcs.criteria.StringCriteria;
@@ -26,6 +28,7 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 /** A Skill prerequisite. */
 public class SkillPrereq extends NameLevelPrereq {
@@ -79,6 +82,17 @@ public class SkillPrereq extends NameLevelPrereq {
         super(parent, reader);
     }
 
+    /**
+     * Loads a prerequisite.
+     *
+     * @param parent The owning prerequisite list, if any.
+     * @param in     The {@link JsonReader} to load from, positioned just after the type of an
+     *               object written by {@link #save(JsonWriter)}.
+     */
+    public SkillPrereq(PrereqList parent, JsonReader in) throws IOException {
+        super(TAG_ROOT, parent, in);
+    }
+
     private SkillPrereq(PrereqList parent, SkillPrereq prereq) {
         super(parent, prereq);
         mSpecializationCriteria = new StringCriteria(prereq.mSpecializationCriteria);
@@ -109,11 +123,25 @@ public class SkillPrereq extends NameLevelPrereq {
         }
     }
 
+    @Override
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (TAG_SPECIALIZATION.equals(name)) {
+            mSpecializationCriteria.load(in);
+        } else {
+            super.loadSelf(in, name);
+        }
+    }
+
     @Override
     protected void saveSelf(XMLWriter out) {
         mSpecializationCriteria.save(out, TAG_SPECIALIZATION);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        mSpecializationCriteria.save(out, TAG_SPECIALIZATION);
+    }
+
     @Override
     public String getXMLTag() {
         return TAG_ROOT;
@@ -125,46 +153,56 @@ public class SkillPrereq extends NameLevelPrereq {
     }
 
     @Override
-    public boolean satisfied(GURPSCharacter character, ListRow exclude, StringBuilder builder, String prefix) {
-        boolean         satisfied     = false;
-        String          techLevel     = null;
-        StringCriteria  nameCriteria  = getNameCriteria();
-        IntegerCriteria levelCriteria = getLevelCriteria();
+    public boolean satisfied(CharacterSnapshot snapshot, ListRow exclude, List<UnsatisfiedPrereq> unsatisfied) {
+        boolean                          satisfied     = false;
+        String                           techLevel     = null;
+        StringCriteria                   nameCriteria  = getNameCriteria();
+        IntegerCriteria                  levelCriteria = getLevelCriteria();
+        CharacterSnapshot.RowTree<Skill> skills        = snapshot.getSkills();
 
         if (exclude instanceof Skill) {
-            techLevel = ((Skill) exclude).getTechLevel();
+            techLevel = skills.getState(exclude).getTechLevel();
         }
 
-        for (Skill skill : character.getSkillsIterator()) {
-            if (exclude != skill && nameCriteria.matches(skill.getName()) && mSpecializationCriteria.matches(skill.getSpecialization())) {
-                satisfied = levelCriteria.matches(skill.getLevel());
-                if (satisfied && techLevel != null) {
-                    String otherTL = skill.getTechLevel();
-                    satisfied = otherTL == null || techLevel.equals(otherTL);
-                }
-                if (satisfied) {
-                    break;
+        for (Skill skill : nameCriteria.isTypeIs() ? skills.getRowsNamed(nameCriteria.getQualifier()) : skills.getAllRows()) {
+            CharacterSnapshot.RowState state = skills.getState(skill);
+            if (exclude != skill && nameCriteria.matches(state.getName())) {
+                PrereqDependencyGraph.recordRead(skill);
+                if (mSpecializationCriteria.matches(state.getSpecialization())) {
+                    satisfied = levelCriteria.matches(state.getLevel());
+                    if (satisfied && techLevel != null) {
+                        String otherTL = state.getTechLevel();
+                        satisfied = otherTL == null || techLevel.equals(otherTL);
+                    }
+                    if (satisfied) {
+                        break;
+                    }
                 }
             }
         }
         if (!has()) {
             satisfied = !satisfied;
         }
-        if (!satisfied && builder != null) {
-            builder.append(MessageFormat.format(SKILL_NAME_PART, prefix, has() ? HAS : DOES_NOT_HAVE, nameCriteria.toString()));
-            boolean notAnySpecialization = mSpecializationCriteria.getType() != StringCompareType.IS_ANYTHING;
-
-            if (notAnySpecialization) {
-                builder.append(MessageFormat.format(SPECIALIZATION_PART, mSpecializationCriteria.toString()));
-            }
-            if (techLevel == null) {
-                builder.append(MessageFormat.format(LEVEL_PART, levelCriteria.toString()));
-            } else {
-                if (notAnySpecialization) {
-                    builder.append(","); //$NON-NLS-1$
+        if (!satisfied && unsatisfied != null) {
+            boolean has            = has();
+            boolean withTechLevel  = techLevel != null;
+            String  name           = nameCriteria.toString();
+            String  specialization = mSpecializationCriteria.getType() != StringCompareType.IS_ANYTHING ? mSpecializationCriteria.toString() : null;
+            String  level          = levelCriteria.toString();
+            unsatisfied.add((builder, prefix) -> {
+                builder.append(MessageFormat.format(SKILL_NAME_PART, prefix, has ? HAS : DOES_NOT_HAVE, name));
+                if (specialization != null) {
+                    builder.append(MessageFormat.format(SPECIALIZATION_PART, specialization));
                 }
-                builder.append(MessageFormat.format(LEVEL_AND_TL_PART, levelCriteria.toString()));
-            }
+                if (!withTechLevel) {
+                    builder.append(MessageFormat.format(LEVEL_PART, level));
+                } else {
+                    if (specialization != null) {
+                        builder.append(","); //$NON-NLS-1$
+                    }
+                    builder.append(MessageFormat.format(LEVEL_AND_TL_PART, level));
+                }
+            });
         }
         return satisfied;
     }
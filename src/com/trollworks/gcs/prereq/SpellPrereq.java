@@ -11,7 +11,9 @@
 
 package com.trollworks.gcs.prereq;
 
-import com.trollworks.gcs.character.GURPSCharacter;
+import com.trollworks.gcs.character.CharacterSnapshot;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.criteria.IntegerCriteria;
 import com.trollworks.gcs.criteria.NumericCompareType;
 import com.trollworks.gcs.criteria.StringCompareType;
@@ -28,6 +30,7 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 
 /** A Spell prerequisite. */
 public class SpellPrereq extends HasPrereq {
@@ -77,6 +80,7 @@ public class SpellPrereq extends HasPrereq {
     /** The tag/type for college count comparison. */
     public static final String  TAG_COLLEGE_COUNT = "college_count"; //$NON-NLS-1$
     private static final String TAG_QUANTITY      = "quantity"; //$NON-NLS-1$
+    private static final String KEY_MATCH         = "match"; //$NON-NLS-1$
     private static final String EMPTY             = ""; //$NON-NLS-1$
     private String              mType;
     private StringCriteria      mStringCriteria;
@@ -131,6 +135,33 @@ public class SpellPrereq extends HasPrereq {
         } while (reader.withinMarker(marker));
     }
 
+    /**
+     * Loads a prerequisite.
+     *
+     * @param parent The owning prerequisite list, if any.
+     * @param in     The {@link JsonReader} to load from, positioned just after the type of an
+     *               object written by {@link #save(JsonWriter)}.
+     */
+    public SpellPrereq(PrereqList parent, JsonReader in) throws IOException {
+        this(parent);
+        has(false);
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (ATTRIBUTE_HAS.equals(name)) {
+                loadHasAttribute(in);
+            } else if (KEY_MATCH.equals(name)) {
+                setType(in.nextString());
+            } else if (TAG_NAME.equals(name) || TAG_COLLEGE.equals(name)) {
+                mStringCriteria.load(in);
+            } else if (TAG_QUANTITY.equals(name)) {
+                mQuantityCriteria.load(in);
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
     /**
      * Creates a copy of the specified prerequisite.
      *
@@ -186,6 +217,18 @@ public class SpellPrereq extends HasPrereq {
         out.endTagEOL(TAG_ROOT, true);
     }
 
+    @Override
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(TAG_ROOT);
+        saveHasAttribute(out);
+        out.name(KEY_MATCH).value(mType);
+        if (mType == TAG_NAME || mType == TAG_COLLEGE) {
+            mStringCriteria.save(out, mType);
+        }
+        mQuantityCriteria.save(out, TAG_QUANTITY);
+        out.endObject();
+    }
+
     /** @return The type of comparison to make. */
     public String getType() {
         return mType;
@@ -222,22 +265,27 @@ public class SpellPrereq extends HasPrereq {
     }
 
     @Override
-    public boolean satisfied(GURPSCharacter character, ListRow exclude, StringBuilder builder, String prefix) {
-        HashSet<String> colleges  = new HashSet<>();
-        String          techLevel = null;
-        int             count     = 0;
-        boolean         satisfied;
+    public boolean satisfied(CharacterSnapshot snapshot, ListRow exclude, List<UnsatisfiedPrereq> unsatisfied) {
+        HashSet<String>                  colleges  = new HashSet<>();
+        String                           techLevel = null;
+        int                              count     = 0;
+        boolean                          satisfied;
+        CharacterSnapshot.RowTree<Spell> spells    = snapshot.getSpells();
 
         if (exclude instanceof Spell) {
-            techLevel = ((Spell) exclude).getTechLevel();
+            techLevel = spells.getState(exclude).getTechLevel();
         }
 
-        for (Spell spell : character.getSpellsIterator()) {
-            if (exclude != spell && spell.getPoints() > 0) {
+        for (Spell spell : mType == TAG_NAME && mStringCriteria.isTypeIs() ? spells.getRowsNamed(mStringCriteria.getQualifier()) : spells.getAllRows()) {
+            CharacterSnapshot.RowState state = spells.getState(spell);
+            if (exclude != spell) {
+                PrereqDependencyGraph.recordRead(spell);
+            }
+            if (exclude != spell && state.getPoints() > 0) {
                 boolean ok;
 
                 if (techLevel != null) {
-                    String otherTL = spell.getTechLevel();
+                    String otherTL = state.getTechLevel();
 
                     ok = otherTL == null || techLevel.equals(otherTL);
                 } else {
@@ -245,17 +293,17 @@ public class SpellPrereq extends HasPrereq {
                 }
                 if (ok) {
                     if (mType == TAG_NAME) {
-                        if (mStringCriteria.matches(spell.getName())) {
+                        if (mStringCriteria.matches(state.getName())) {
                             count++;
                         }
                     } else if (mType == TAG_ANY) {
                         count++;
                     } else if (mType == TAG_COLLEGE) {
-                        if (mStringCriteria.matches(spell.getCollege())) {
+                        if (mStringCriteria.matches(state.getCollege())) {
                             count++;
                         }
                     } else if (mType == TAG_COLLEGE_COUNT) {
-                        colleges.add(spell.getCollege());
+                        colleges.add(state.getCollege());
                     }
                 }
             }
@@ -269,16 +317,23 @@ public class SpellPrereq extends HasPrereq {
         if (!has()) {
             satisfied = !satisfied;
         }
-        if (!satisfied && builder != null) {
-            if (mType == TAG_NAME) {
-                builder.append(MessageFormat.format(WHOSE_NAME, prefix, has() ? HAS : DOES_NOT_HAVE, mQuantityCriteria.toString(EMPTY), mQuantityCriteria.getQualifier() == 1 ? ONE_SPELL : MULTIPLE_SPELLS, mStringCriteria.toString()));
-            } else if (mType == TAG_ANY) {
-                builder.append(MessageFormat.format(OF_ANY_KIND, prefix, has() ? HAS : DOES_NOT_HAVE, mQuantityCriteria.toString(EMPTY), mQuantityCriteria.getQualifier() == 1 ? ONE_SPELL : MULTIPLE_SPELLS));
-            } else if (mType == TAG_COLLEGE) {
-                builder.append(MessageFormat.format(WHOSE_COLLEGE, prefix, has() ? HAS : DOES_NOT_HAVE, mQuantityCriteria.toString(EMPTY), mQuantityCriteria.getQualifier() == 1 ? ONE_SPELL : MULTIPLE_SPELLS, mStringCriteria.toString()));
-            } else if (mType == TAG_COLLEGE_COUNT) {
-                builder.append(MessageFormat.format(COLLEGE_COUNT, prefix, has() ? HAS : DOES_NOT_HAVE, mQuantityCriteria.toString()));
-            }
+        if (!satisfied && unsatisfied != null) {
+            boolean has      = has();
+            String  type     = mType;
+            String  quantity = type == TAG_COLLEGE_COUNT ? mQuantityCriteria.toString() : mQuantityCriteria.toString(EMPTY);
+            String  noun     = mQuantityCriteria.getQualifier() == 1 ? ONE_SPELL : MULTIPLE_SPELLS;
+            String  criteria = mStringCriteria.toString();
+            unsatisfied.add((builder, prefix) -> {
+                if (type == TAG_NAME) {
+                    builder.append(MessageFormat.format(WHOSE_NAME, prefix, has ? HAS : DOES_NOT_HAVE, quantity, noun, criteria));
+                } else if (type == TAG_ANY) {
+                    builder.append(MessageFormat.format(OF_ANY_KIND, prefix, has ? HAS : DOES_NOT_HAVE, quantity, noun));
+                } else if (type == TAG_COLLEGE) {
+                    builder.append(MessageFormat.format(WHOSE_COLLEGE, prefix, has ? HAS : DOES_NOT_HAVE, quantity, noun, criteria));
+                } else if (type == TAG_COLLEGE_COUNT) {
+                    builder.append(MessageFormat.format(COLLEGE_COUNT, prefix, has ? HAS : DOES_NOT_HAVE, quantity));
+                }
+            });
         }
         return satisfied;
     }
@@ -0,0 +1,25 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.prereq;
+
+/**
+ * A requirement found not to be satisfied while a row's prerequisites were being checked. It holds
+ * on to what was found at the time, so that it can be described later without checking again.
+ */
+@FunctionalInterface
+public interface UnsatisfiedPrereq {
+    /**
+     * @param builder The {@link StringBuilder} to append the description to.
+     * @param prefix  The prefix to add to each line appended to the builder.
+     */
+    void describe(StringBuilder builder, String prefix);
+}
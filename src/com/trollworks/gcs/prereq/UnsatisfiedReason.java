@@ -0,0 +1,64 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.prereq;
+
+import com.trollworks.toolkit.annotation.Localize;
+import com.trollworks.toolkit.utility.Localization;
+
+import java.util.List;
+
+/**
+ * The reason a row's prerequisites are not satisfied. Most reasons are never looked at, so the
+ * text describing the unmet prerequisites is only built the first time it is asked for, from what
+ * was found when they were checked.
+ */
+public class UnsatisfiedReason {
+    @Localize("Reason:")
+    private static String REASON;
+
+    static {
+        Localization.initialize();
+    }
+
+    private static final String     LIST_START = "<ul style='margin-top: 0; margin-bottom: 0;'>"; //$NON-NLS-1$
+    private List<UnsatisfiedPrereq> mPrereqs;
+    private String                  mText;
+
+    /**
+     * Creates a new {@link UnsatisfiedReason}.
+     *
+     * @param prereqs The prerequisites that were found not to be satisfied.
+     */
+    public UnsatisfiedReason(List<UnsatisfiedPrereq> prereqs) {
+        mPrereqs = prereqs;
+    }
+
+    /** @return The HTML describing the prerequisites that aren't satisfied. */
+    public synchronized String getText() {
+        if (mText == null) {
+            StringBuilder builder = new StringBuilder("<html><body>"); //$NON-NLS-1$
+            builder.append(REASON);
+            builder.append(LIST_START);
+            for (UnsatisfiedPrereq prereq : mPrereqs) {
+                prereq.describe(builder, "<li>"); //$NON-NLS-1$
+            }
+            builder.append("</ul></body></html>"); //$NON-NLS-1$
+            mText = builder.toString().replace("<ul>", LIST_START); //$NON-NLS-1$
+        }
+        return mText;
+    }
+
+    @Override
+    public String toString() {
+        return getText();
+    }
+}
@@ -15,8 +15,11 @@ import com.trollworks.gcs.app.GCSImages;
 import com.trollworks.gcs.character.GURPSCharacter;
 import com.trollworks.gcs.common.DataFile;
 import com.trollworks.gcs.common.HasSourceReference;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.common.ListFile;
 import com.trollworks.gcs.common.LoadState;
+import com.trollworks.gcs.feature.BonusToolTip;
 import com.trollworks.gcs.library.LibraryFile;
 import com.trollworks.gcs.weapon.MeleeWeaponStats;
 import com.trollworks.gcs.weapon.RangedWeaponStats;
@@ -230,6 +233,22 @@ public class Skill extends ListRow implements HasSourceReference {
         load(reader, state);
     }
 
+    /**
+     * @param dataFile The data file to associate it with.
+     * @param type     The type of a row being loaded from JSON.
+     * @return A new, empty skill or technique to load the row into, or <code>null</code> if the
+     *         type isn't that of either.
+     */
+    public static Skill create(DataFile dataFile, String type) {
+        if (TAG_SKILL.equals(type) || TAG_SKILL_CONTAINER.equals(type)) {
+            return new Skill(dataFile, TAG_SKILL_CONTAINER.equals(type));
+        }
+        if (Technique.TAG_TECHNIQUE.equals(type)) {
+            return new Technique(dataFile);
+        }
+        return null;
+    }
+
     @Override
     public boolean isEquivalentTo(Object obj) {
         if (obj == this) {
@@ -305,9 +324,9 @@ public class Skill extends ListRow implements HasSourceReference {
         if (TAG_NAME.equals(name)) {
             mName = reader.readText().replace(NEWLINE, SPACE);
         } else if (TAG_SPECIALIZATION.equals(name)) {
-            mSpecialization = reader.readText().replace(NEWLINE, SPACE);
+            mSpecialization = state.intern(reader.readText().replace(NEWLINE, SPACE));
         } else if (TAG_TECH_LEVEL.equals(name)) {
-            mTechLevel = reader.readText().replace(NEWLINE, SPACE);
+            mTechLevel = state.intern(reader.readText().replace(NEWLINE, SPACE));
             if (mTechLevel != null) {
                 DataFile dataFile = getDataFile();
                 if (dataFile instanceof ListFile || dataFile instanceof LibraryFile) {
@@ -315,7 +334,7 @@ public class Skill extends ListRow implements HasSourceReference {
                 }
             }
         } else if (TAG_REFERENCE.equals(name)) {
-            mReference = reader.readText().replace(NEWLINE, SPACE);
+            mReference = state.intern(reader.readText().replace(NEWLINE, SPACE));
         } else if (!state.mForUndo && (TAG_SKILL.equals(name) || TAG_SKILL_CONTAINER.equals(name))) {
             addChild(new Skill(mDataFile, reader, state));
         } else if (!state.mForUndo && Technique.TAG_TECHNIQUE.equals(name)) {
@@ -339,6 +358,40 @@ public class Skill extends ListRow implements HasSourceReference {
         }
     }
 
+    @Override
+    protected void loadSubElement(JsonReader in, String name, LoadState state) throws IOException {
+        if (TAG_NAME.equals(name)) {
+            mName = in.nextString();
+        } else if (TAG_REFERENCE.equals(name)) {
+            mReference = state.intern(in.nextString());
+        } else if (canHaveChildren()) {
+            super.loadSubElement(in, name, state);
+        } else if (TAG_SPECIALIZATION.equals(name)) {
+            mSpecialization = state.intern(in.nextString());
+        } else if (TAG_TECH_LEVEL.equals(name)) {
+            mTechLevel = in.nextString();
+            if (mTechLevel != null) {
+                DataFile dataFile = getDataFile();
+                mTechLevel = dataFile instanceof ListFile || dataFile instanceof LibraryFile ? EMPTY : state.intern(mTechLevel);
+            }
+        } else if (TAG_DIFFICULTY.equals(name)) {
+            setDifficultyFromText(in.nextString());
+        } else if (TAG_POINTS.equals(name)) {
+            mPoints = in.nextInt();
+        } else if (TAG_ENCUMBRANCE_PENALTY.equals(name)) {
+            mEncumbrancePenaltyMultiplier = Math.min(Math.max(in.nextInt(), 0), 9);
+        } else if (WeaponStats.KEY_WEAPONS.equals(name)) {
+            WeaponStats.load(in, this, mWeapons);
+        } else {
+            super.loadSubElement(in, name, state);
+        }
+    }
+
+    @Override
+    protected ListRow createChild(String type) {
+        return create(mDataFile, type);
+    }
+
     @Override
     protected void finishedLoading(LoadState state) {
         updateLevel(false);
@@ -370,11 +423,34 @@ public class Skill extends ListRow implements HasSourceReference {
         out.simpleTagNotEmpty(TAG_REFERENCE, mReference);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        out.name(TAG_NAME).value(mName);
+        if (!canHaveChildren()) {
+            out.name(TAG_SPECIALIZATION).value(mSpecialization);
+            // Only characters keep the tech level itself; elsewhere, it is just marked as needed
+            out.name(TAG_TECH_LEVEL).value(mTechLevel != null && getCharacter() == null ? EMPTY : mTechLevel);
+            out.name(TAG_ENCUMBRANCE_PENALTY).value(mEncumbrancePenaltyMultiplier);
+            out.name(TAG_DIFFICULTY).value(getDifficultyAsText(false));
+            out.name(TAG_POINTS).value(mPoints);
+            WeaponStats.save(out, mWeapons);
+        }
+        out.name(TAG_REFERENCE).value(mReference);
+    }
+
     /** @return The weapon list. */
     public List<WeaponStats> getWeapons() {
         return Collections.unmodifiableList(mWeapons);
     }
 
+    @Override
+    public void writeCalculated(JsonWriter out) throws IOException {
+        if (getCharacter() != null && !canHaveChildren()) {
+            out.name("level").value(getLevel()); //$NON-NLS-1$
+            out.name("relative_level").value(getRelativeLevel()); //$NON-NLS-1$
+        }
+    }
+
     /**
      * @param weapons The weapons to set.
      * @return Whether it was modified.
@@ -522,6 +598,21 @@ public class Skill extends ListRow implements HasSourceReference {
      * @return The calculated level.
      */
     public int getLevel(HashSet<String> excludes) {
+        GURPSCharacter character = getCharacter();
+        if (character != null) {
+            SkillLevelResolver resolver = character.getSkillLevelResolver();
+            if (resolver != null && resolver.isActive()) {
+                return resolver.getLevel(this, excludes);
+            }
+        }
+        return calculateLevel(excludes);
+    }
+
+    /**
+     * @param excludes Skills to exclude, other than this one.
+     * @return The calculated level, bypassing any {@link SkillLevelResolver} in use.
+     */
+    int calculateLevel(HashSet<String> excludes) {
         return calculateLevel(getCharacter(), getName(), getSpecialization(), getCategories(), getDefaults(), getAttribute(), getDifficulty(), getPoints(), excludes, getEncumbrancePenaltyMultiplier()).mLevel;
     }
 
@@ -717,9 +808,9 @@ public class Skill extends ListRow implements HasSourceReference {
      * @return The calculated skill level.
      */
     public SkillLevel calculateLevel(GURPSCharacter character, String name, String specialization, Set<String> categories, List<SkillDefault> defaults, SkillAttribute attribute, SkillDifficulty difficulty, int points, HashSet<String> excludes, int encPenaltyMult) {
-        StringBuilder toolTip       = new StringBuilder();
-        int           relativeLevel = difficulty.getBaseRelativeLevel();
-        int           level         = attribute.getBaseSkillLevel(character);
+        BonusToolTip toolTip       = new BonusToolTip();
+        int          relativeLevel = difficulty.getBaseRelativeLevel();
+        int          level         = attribute.getBaseSkillLevel(character);
         if (level != Integer.MIN_VALUE) {
             if (difficulty != SkillDifficulty.W) {
                 if (mDefaultedFrom != null && mDefaultedFrom.getPoints() > 0) {
@@ -755,7 +846,7 @@ public class Skill extends ListRow implements HasSourceReference {
                     bonus          = character.getEncumbranceLevel().getEncumbrancePenalty() * encPenaltyMult;
                     level         += bonus;
                     if (bonus != 0) {
-                        toolTip.append("\n").append(ENCUMBRANCE).append(" [").append(bonus).append("]");  //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+                        toolTip.addLine(ENCUMBRANCE, bonus);
                     }
                 }
             }
@@ -11,6 +11,8 @@
 
 package com.trollworks.gcs.skill;
 
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.widgets.outline.ListRow;
 import com.trollworks.toolkit.annotation.Localize;
 import com.trollworks.toolkit.io.xml.XMLNodeType;
@@ -119,6 +121,36 @@ public class SkillDefault {
         } while (reader.withinMarker(marker));
     }
 
+    /**
+     * Creates a skill default.
+     *
+     * @param in The {@link JsonReader} to use, positioned at an object written by
+     *           {@link #save(JsonWriter)}.
+     */
+    public SkillDefault(JsonReader in) throws IOException {
+        mType           = SkillDefaultType.Skill;
+        mName           = EMPTY;
+        mSpecialization = EMPTY;
+        mModifier       = 0;
+
+        in.startObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (TAG_TYPE.equals(name)) {
+                setType(SkillDefaultType.getByName(in.nextString()));
+            } else if (TAG_NAME.equals(name)) {
+                setName(in.nextString());
+            } else if (TAG_SPECIALIZATION.equals(name)) {
+                setSpecialization(in.nextString());
+            } else if (TAG_MODIFIER.equals(name)) {
+                setModifier(in.nextInt());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+    }
+
     /** @return The current level of this default. Temporary storage only. */
     public int getLevel() {
         return mLevel;
@@ -173,6 +205,22 @@ public class SkillDefault {
         out.endTagEOL(TAG_ROOT, true);
     }
 
+    /**
+     * Saves the skill default.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    public void save(JsonWriter out) throws IOException {
+        out.startObject();
+        out.name(TAG_TYPE).value(mType.name());
+        if (mType.isSkillBased()) {
+            out.name(TAG_NAME).value(mName);
+            out.name(TAG_SPECIALIZATION).value(mSpecialization);
+        }
+        out.name(TAG_MODIFIER).value(mModifier);
+        out.endObject();
+    }
+
     /** @return The type of default. */
     public SkillDefaultType getType() {
         return mType;
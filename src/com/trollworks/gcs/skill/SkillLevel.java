@@ -11,6 +11,7 @@
 
 package com.trollworks.gcs.skill;
 
+import com.trollworks.gcs.feature.BonusToolTip;
 import com.trollworks.toolkit.annotation.Localize;
 import com.trollworks.toolkit.utility.Localization;
 
@@ -32,13 +33,18 @@ public class SkillLevel {
     }
 
     /** The skill level. */
-    public int    mLevel;
+    public int           mLevel;
     /** The relative skill level. */
-    public int    mRelativeLevel;
-    /** The tooltip describing how this level was calculated. */
-    public String mToolTip;
+    public int           mRelativeLevel;
+    private String       mToolTip;
+    private BonusToolTip mBonusToolTip;
 
-    public String getToolTip() {
+    /** @return The tooltip describing how this level was calculated. */
+    public synchronized String getToolTip() {
+        if (mToolTip == null) {
+            mToolTip      = mBonusToolTip == null || mBonusToolTip.isEmpty() ? NO_MODIFIERS : INCLUDES + mBonusToolTip.toString();
+            mBonusToolTip = null;
+        }
         return mToolTip;
     }
 
@@ -70,6 +76,19 @@ public class SkillLevel {
         }
     }
 
+    /**
+     * Creates a new {@link SkillLevel}. The tooltip isn't created until it is first asked for.
+     *
+     * @param level         The skill level.
+     * @param relativeLevel The relative skill level.
+     * @param toolTip       The modifiers that contributed to the level.
+     */
+    public SkillLevel(int level, int relativeLevel, BonusToolTip toolTip) {
+        mLevel         = level;
+        mRelativeLevel = relativeLevel;
+        mBonusToolTip  = toolTip;
+    }
+
     /** @return The level. */
     public int getLevel() {
         return mLevel;
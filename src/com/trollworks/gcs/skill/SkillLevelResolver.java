@@ -0,0 +1,133 @@
+/*
+ * Copyright (c) 1998-2017 by Richard A. Wilkes. All rights reserved.
+ *
+ * This Source Code Form is subject to the terms of the Mozilla Public
+ * License, version 2.0. If a copy of the MPL was not distributed with
+ * this file, You can obtain one at http://mozilla.org/MPL/2.0/.
+ *
+ * This Source Code Form is "Incompatible With Secondary Licenses", as
+ * defined by the Mozilla Public License, version 2.0.
+ */
+
+package com.trollworks.gcs.skill;
+
+import com.trollworks.gcs.character.GURPSCharacter;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Updates the levels of all of a character's {@link Skill}s and {@link Technique}s in a single
+ * pass. The pass is ordered so that the skills a default refers to are updated before the skills
+ * and techniques that default to them, and the levels looked up while choosing defaults are
+ * memoized for the duration of the pass, keyed by skill and exclude set.
+ */
+public class SkillLevelResolver {
+    private static final Integer                          RESOLVING = Integer.valueOf(Integer.MIN_VALUE);
+    private GURPSCharacter                                mCharacter;
+    private Thread                                        mThread;
+    private HashMap<Skill, HashMap<Set<String>, Integer>> mLevels;
+
+    /**
+     * Updates the levels of all of the character's skills and techniques.
+     *
+     * @param character The character to update.
+     * @param notify    Whether or not notifications should be issued for changed levels.
+     */
+    public static void updateAll(GURPSCharacter character, boolean notify) {
+        SkillLevelResolver resolver = new SkillLevelResolver(character);
+        SkillLevelResolver previous = character.getSkillLevelResolver();
+        character.setSkillLevelResolver(resolver);
+        try {
+            for (Skill skill : resolver.getUpdateOrder()) {
+                resolver.mLevels.remove(skill);
+                skill.updateLevel(notify);
+                // The skill's chosen default may have changed, so any level
+                // looked up for it before now is stale.
+                resolver.mLevels.remove(skill);
+            }
+        } finally {
+            character.setSkillLevelResolver(previous);
+        }
+    }
+
+    private SkillLevelResolver(GURPSCharacter character) {
+        mCharacter = character;
+        mThread    = Thread.currentThread();
+        mLevels    = new HashMap<>();
+    }
+
+    /** @return Whether the resolver is in use by the calling thread. */
+    boolean isActive() {
+        return mThread == Thread.currentThread();
+    }
+
+    /**
+     * @param skill    The skill to return the level of.
+     * @param excludes The skills to exclude, other than this one.
+     * @return The level of the skill, calculated at most once per exclude set during the pass. A
+     *         skill whose level is requested while that same level is still being calculated is
+     *         part of a cycle and has no level.
+     */
+    int getLevel(Skill skill, HashSet<String> excludes) {
+        HashMap<Set<String>, Integer> levels = mLevels.get(skill);
+        if (levels == null) {
+            levels = new HashMap<>();
+            mLevels.put(skill, levels);
+        }
+        Integer level = levels.get(excludes);
+        if (level == null) {
+            Set<String> key = excludes != null ? new HashSet<>(excludes) : null;
+            levels.put(key, RESOLVING);
+            try {
+                level = Integer.valueOf(skill.calculateLevel(excludes));
+            } finally {
+                levels.remove(key);
+            }
+            levels.put(key, level);
+        }
+        return level.intValue();
+    }
+
+    /**
+     * @return All of the character's skills and techniques, with each one following those that its
+     *         skill-based defaults refer to. Where defaults form a cycle, the cycle is broken at the
+     *         point it was discovered and the remaining members keep their list order.
+     */
+    private List<Skill> getUpdateOrder() {
+        ArrayList<Skill>        order   = new ArrayList<>();
+        HashMap<Skill, Boolean> visited = new HashMap<>();
+        for (Skill skill : mCharacter.getSkillsIterator()) {
+            visit(skill, visited, order);
+        }
+        return order;
+    }
+
+    private void visit(Skill skill, HashMap<Skill, Boolean> visited, List<Skill> order) {
+        if (!visited.containsKey(skill)) {
+            // FALSE marks a skill whose dependencies are still being visited; reaching it again
+            // means we've found a cycle, which we break by not following that edge.
+            visited.put(skill, Boolean.FALSE);
+            if (skill instanceof Technique) {
+                visitDefault(((Technique) skill).getDefault(), visited, order);
+            } else {
+                for (SkillDefault skillDefault : skill.getDefaults()) {
+                    visitDefault(skillDefault, visited, order);
+                }
+            }
+            visited.put(skill, Boolean.TRUE);
+            order.add(skill);
+        }
+    }
+
+    private void visitDefault(SkillDefault skillDefault, HashMap<Skill, Boolean> visited, List<Skill> order) {
+        if (skillDefault != null && skillDefault.getType().isSkillBased()) {
+            for (Skill one : mCharacter.getSkillNamed(skillDefault.getName(), skillDefault.getSpecialization(), true, null)) {
+                visit(one, visited, order);
+            }
+        }
+    }
+}
@@ -69,4 +69,9 @@ public class SkillList extends ListFile {
             }
         } while (reader.withinMarker(marker));
     }
+
+    @Override
+    protected Skill createRow(String type) {
+        return Skill.create(this, type);
+    }
 }
@@ -129,7 +129,7 @@ public class SkillOutline extends ListOutline implements Incrementable, TechLeve
             if (!skill.canHaveChildren()) {
                 int points = skill.getPoints();
                 if (points > 0) {
-                    RowUndo undo = new RowUndo(skill);
+                    RowUndo undo = new RowUndo(skill, Skill::getPoints, Skill::setPoints);
 
                     skill.setPoints(points - 1);
                     if (undo.finish()) {
@@ -150,7 +150,7 @@ public class SkillOutline extends ListOutline implements Incrementable, TechLeve
         List<RowUndo> undos = new ArrayList<>();
         for (Skill skill : new FilteredIterator<>(getModel().getSelectionAsList(), Skill.class)) {
             if (!skill.canHaveChildren()) {
-                RowUndo undo = new RowUndo(skill);
+                RowUndo undo = new RowUndo(skill, Skill::getPoints, Skill::setPoints);
                 skill.setPoints(skill.getPoints() + 1);
                 if (undo.finish()) {
                     undos.add(undo);
@@ -192,7 +192,7 @@ public class SkillOutline extends ListOutline implements Incrementable, TechLeve
                 int     basePoints = skill.getPoints() + 1;
                 int     maxPoints  = basePoints + (skill.getDifficulty() == SkillDifficulty.W ? 12 : 4);
                 int     oldLevel   = skill.getLevel();
-                RowUndo undo       = new RowUndo(skill);
+                RowUndo undo       = new RowUndo(skill, Skill::getPoints, Skill::setPoints);
                 for (int points = basePoints; points < maxPoints; points++) {
                     skill.setPoints(points);
                     if (skill.getLevel() > oldLevel) {
@@ -221,7 +221,7 @@ public class SkillOutline extends ListOutline implements Incrementable, TechLeve
         List<RowUndo> undos = new ArrayList<>();
         for (Skill skill : new FilteredIterator<>(getModel().getSelectionAsList(), Skill.class)) {
             if (!skill.canHaveChildren()) {
-                RowUndo undo     = new RowUndo(skill);
+                RowUndo undo     = new RowUndo(skill, Skill::getPoints, Skill::setPoints);
                 int     oldLevel = skill.getLevel();
                 int     points   = skill.getPoints() - 1;
                 skill.setPoints(points);
@@ -290,7 +290,7 @@ public class SkillOutline extends ListOutline implements Incrementable, TechLeve
             if (!skill.canHaveChildren()) {
                 int tl = getCurrentTechLevel(skill);
                 if (tl >= 0) {
-                    RowUndo undo = new RowUndo(skill);
+                    RowUndo undo = new RowUndo(skill, Skill::getTechLevel, Skill::setTechLevel);
                     skill.setTechLevel(Integer.toString(tl + 1));
                     if (undo.finish()) {
                         undos.add(undo);
@@ -312,7 +312,7 @@ public class SkillOutline extends ListOutline implements Incrementable, TechLeve
             if (!skill.canHaveChildren()) {
                 int tl = getCurrentTechLevel(skill);
                 if (tl >= 1) {
-                    RowUndo undo = new RowUndo(skill);
+                    RowUndo undo = new RowUndo(skill, Skill::getTechLevel, Skill::setTechLevel);
                     skill.setTechLevel(Integer.toString(tl - 1));
                     if (undo.finish()) {
                         undos.add(undo);
@@ -11,9 +11,15 @@
 
 package com.trollworks.gcs.skill;
 
+import com.trollworks.gcs.character.CharacterSnapshot;
 import com.trollworks.gcs.character.GURPSCharacter;
 import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.common.LoadState;
+import com.trollworks.gcs.feature.BonusToolTip;
+import com.trollworks.gcs.prereq.PrereqDependencyGraph;
+import com.trollworks.gcs.prereq.UnsatisfiedPrereq;
 import com.trollworks.gcs.template.Template;
 import com.trollworks.gcs.widgets.outline.ListRow;
 import com.trollworks.gcs.widgets.outline.RowEditor;
@@ -27,6 +33,7 @@ import java.io.IOException;
 import java.text.MessageFormat;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
 /** A GURPS Technique. */
@@ -73,9 +80,9 @@ public class Technique extends Skill {
      * @return The calculated technique level.
      */
     public static SkillLevel calculateTechniqueLevel(GURPSCharacter character, String name, String specialization, Set<String> categories, SkillDefault def, SkillDifficulty difficulty, int points, boolean limited, int limitModifier) {
-        StringBuilder toolTip       = new StringBuilder();
-        int           relativeLevel = 0;
-        int           level         = Integer.MIN_VALUE;
+        BonusToolTip toolTip       = new BonusToolTip();
+        int          relativeLevel = 0;
+        int          level         = Integer.MIN_VALUE;
         if (character != null) {
             level = getBaseLevel(character, def);
             if (level != Integer.MIN_VALUE) {
@@ -164,9 +171,6 @@ public class Technique extends Skill {
     public Technique(DataFile dataFile, XMLReader reader, LoadState state) throws IOException {
         this(dataFile);
         load(reader, state);
-        if (!(dataFile instanceof GURPSCharacter) && !(dataFile instanceof Template)) {
-            mPoints = getDifficulty() == SkillDifficulty.A ? 1 : 2;
-        }
     }
 
     @Override
@@ -230,12 +234,53 @@ public class Technique extends Skill {
         }
     }
 
+    @Override
+    protected void loadSubElement(JsonReader in, String name, LoadState state) throws IOException {
+        if (ATTRIBUTE_LIMIT.equals(name)) {
+            String value = in.nextString();
+            mLimited = value != null;
+            if (mLimited) {
+                try {
+                    mLimitModifier = Integer.parseInt(value);
+                } catch (Exception exception) {
+                    mLimited       = false;
+                    mLimitModifier = 0;
+                }
+            }
+        } else if (SkillDefault.TAG_ROOT.equals(name)) {
+            mDefault = new SkillDefault(in);
+        } else {
+            super.loadSubElement(in, name, state);
+        }
+    }
+
+    @Override
+    protected void finishedLoading(LoadState state) {
+        if (!(mDataFile instanceof GURPSCharacter) && !(mDataFile instanceof Template)) {
+            mPoints = getDifficulty() == SkillDifficulty.A ? 1 : 2;
+        }
+        super.finishedLoading(state);
+    }
+
     @Override
     public void saveSelf(XMLWriter out, boolean forUndo) {
         super.saveSelf(out, forUndo);
         mDefault.save(out);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        super.saveSelf(out);
+        out.name(ATTRIBUTE_LIMIT);
+        if (mLimited) {
+            out.value(mLimitModifier);
+        } else {
+            out.value((String) null);
+        }
+        out.name(SkillDefault.TAG_ROOT);
+        mDefault.save(out);
+    }
+
     @Override
     protected void saveAttributes(XMLWriter out, boolean forUndo) {
         if (mLimited) {
@@ -244,22 +289,33 @@ public class Technique extends Skill {
     }
 
     /**
-     * @param builder The {@link StringBuilder} to append this technique's satisfied/unsatisfied
-     *                description to. May be <code>null</code>.
-     * @param prefix  The prefix to add to each line appended to the builder.
+     * @param snapshot    The snapshot of the character to check against.
+     * @param unsatisfied The list to add this technique's default to, should it not be satisfied.
+     *                    May be <code>null</code>.
      * @return <code>true</code> if this technique has its default satisfied.
      */
-    public boolean satisfied(StringBuilder builder, String prefix) {
-        if (mDefault.getType().isSkillBased()) {
-            Skill   skill     = getCharacter().getBestSkillNamed(mDefault.getName(), mDefault.getSpecialization(), false, new HashSet<String>());
-            boolean satisfied = skill != null && skill.getPoints() > 0;
-            if (!satisfied && builder != null) {
-                if (skill == null) {
-                    builder.append(MessageFormat.format(REQUIRES_SKILL, prefix, mDefault.getFullName()));
-                } else {
-                    builder.append(MessageFormat.format(REQUIRES_POINTS, prefix, mDefault.getFullName()));
+    public boolean satisfied(CharacterSnapshot snapshot, List<UnsatisfiedPrereq> unsatisfied) {
+        CharacterSnapshot.RowTree<Skill> skills = snapshot.getSkills();
+        SkillDefault                     def    = skills.getState(this).getDefault();
+        if (def.getType().isSkillBased()) {
+            String                     specialization      = def.getSpecialization();
+            boolean                    checkSpecialization = specialization != null && specialization.length() > 0;
+            CharacterSnapshot.RowState best                = null;
+            for (Skill one : skills.getRowsNamed(def.getName())) {
+                CharacterSnapshot.RowState state = skills.getState(one);
+                if (!state.isContainer() && (!checkSpecialization || CharacterSnapshot.fold(specialization).equals(CharacterSnapshot.fold(state.getSpecialization())))) {
+                    PrereqDependencyGraph.recordRead(one);
+                    if (best == null || state.getLevel() > best.getLevel()) {
+                        best = state;
+                    }
                 }
             }
+            boolean satisfied = best != null && best.getPoints() > 0;
+            if (!satisfied && unsatisfied != null) {
+                boolean missing = best == null;
+                String  name    = def.getFullName();
+                unsatisfied.add((builder, prefix) -> builder.append(MessageFormat.format(missing ? REQUIRES_SKILL : REQUIRES_POINTS, prefix, name)));
+            }
             return satisfied;
         }
         return true;
@@ -317,6 +373,7 @@ public class Technique extends Skill {
     public boolean setDefault(SkillDefault def) {
         if (!mDefault.equals(def)) {
             mDefault = new SkillDefault(def);
+            notifySingle(ID_SPECIALIZATION);
             return true;
         }
         return false;
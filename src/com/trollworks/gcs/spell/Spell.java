@@ -15,8 +15,11 @@ import com.trollworks.gcs.app.GCSImages;
 import com.trollworks.gcs.character.GURPSCharacter;
 import com.trollworks.gcs.common.DataFile;
 import com.trollworks.gcs.common.HasSourceReference;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.common.ListFile;
 import com.trollworks.gcs.common.LoadState;
+import com.trollworks.gcs.feature.BonusToolTip;
 import com.trollworks.gcs.library.LibraryFile;
 import com.trollworks.gcs.skill.SkillAttribute;
 import com.trollworks.gcs.skill.SkillDefault;
@@ -235,6 +238,19 @@ public class Spell extends ListRow implements HasSourceReference {
         load(reader, state);
     }
 
+    /**
+     * @param dataFile The data file to associate it with.
+     * @param type     The type of a row being loaded from JSON.
+     * @return A new, empty spell to load the row into, or <code>null</code> if the type isn't that
+     *         of a spell.
+     */
+    public static Spell create(DataFile dataFile, String type) {
+        if (TAG_SPELL.equals(type) || TAG_SPELL_CONTAINER.equals(type)) {
+            return new Spell(dataFile, TAG_SPELL_CONTAINER.equals(type));
+        }
+        return null;
+    }
+
     @Override
     public boolean isEquivalentTo(Object obj) {
         if (obj == this) {
@@ -317,7 +333,7 @@ public class Spell extends ListRow implements HasSourceReference {
                 mIsVeryHard = true;
             }
         } else if (TAG_TECH_LEVEL.equals(name)) {
-            mTechLevel = reader.readText();
+            mTechLevel = state.intern(reader.readText());
             if (mTechLevel != null) {
                 DataFile dataFile = getDataFile();
                 if (dataFile instanceof ListFile || dataFile instanceof LibraryFile) {
@@ -325,24 +341,24 @@ public class Spell extends ListRow implements HasSourceReference {
                 }
             }
         } else if (TAG_REFERENCE.equals(name)) {
-            mReference = reader.readText().replace(NEWLINE, SPACE);
+            mReference = state.intern(reader.readText().replace(NEWLINE, SPACE));
         } else if (!state.mForUndo && (TAG_SPELL.equals(name) || TAG_SPELL_CONTAINER.equals(name))) {
             addChild(new Spell(mDataFile, reader, state));
         } else if (!canHaveChildren()) {
             if (TAG_COLLEGE.equals(name)) {
-                mCollege = reader.readText().replace(NEWLINE, SPACE).replace("/ ", "/"); //$NON-NLS-1$ //$NON-NLS-2$
+                mCollege = state.intern(reader.readText().replace(NEWLINE, SPACE).replace("/ ", "/")); //$NON-NLS-1$ //$NON-NLS-2$
             } else if (TAG_POWER_SOURCE.equals(name)) {
-                mPowerSource = reader.readText().replace(NEWLINE, SPACE);
+                mPowerSource = state.intern(reader.readText().replace(NEWLINE, SPACE));
             } else if (TAG_SPELL_CLASS.equals(name)) {
-                mSpellClass = reader.readText().replace(NEWLINE, SPACE);
+                mSpellClass = state.intern(reader.readText().replace(NEWLINE, SPACE));
             } else if (TAG_CASTING_COST.equals(name)) {
-                mCastingCost = reader.readText().replace(NEWLINE, SPACE);
+                mCastingCost = state.intern(reader.readText().replace(NEWLINE, SPACE));
             } else if (TAG_MAINTENANCE_COST.equals(name)) {
-                mMaintenance = reader.readText().replace(NEWLINE, SPACE);
+                mMaintenance = state.intern(reader.readText().replace(NEWLINE, SPACE));
             } else if (TAG_CASTING_TIME.equals(name)) {
-                mCastingTime = reader.readText().replace(NEWLINE, SPACE);
+                mCastingTime = state.intern(reader.readText().replace(NEWLINE, SPACE));
             } else if (TAG_DURATION.equals(name)) {
-                mDuration = reader.readText().replace(NEWLINE, SPACE);
+                mDuration = state.intern(reader.readText().replace(NEWLINE, SPACE));
             } else if (TAG_POINTS.equals(name)) {
                 mPoints = reader.readInteger(1);
             } else if (MeleeWeaponStats.TAG_ROOT.equals(name)) {
@@ -357,6 +373,50 @@ public class Spell extends ListRow implements HasSourceReference {
         }
     }
 
+    @Override
+    protected void loadSubElement(JsonReader in, String name, LoadState state) throws IOException {
+        if (ATTRIBUTE_VERY_HARD.equals(name)) {
+            mIsVeryHard = in.nextBoolean();
+        } else if (TAG_NAME.equals(name)) {
+            mName = in.nextString();
+        } else if (TAG_REFERENCE.equals(name)) {
+            mReference = state.intern(in.nextString());
+        } else if (canHaveChildren()) {
+            super.loadSubElement(in, name, state);
+        } else if (TAG_TECH_LEVEL.equals(name)) {
+            mTechLevel = in.nextString();
+            if (mTechLevel != null) {
+                DataFile dataFile = getDataFile();
+                mTechLevel = dataFile instanceof ListFile || dataFile instanceof LibraryFile ? EMPTY : state.intern(mTechLevel);
+            }
+        } else if (TAG_COLLEGE.equals(name)) {
+            mCollege = state.intern(in.nextString());
+        } else if (TAG_POWER_SOURCE.equals(name)) {
+            mPowerSource = state.intern(in.nextString());
+        } else if (TAG_SPELL_CLASS.equals(name)) {
+            mSpellClass = state.intern(in.nextString());
+        } else if (TAG_CASTING_COST.equals(name)) {
+            mCastingCost = state.intern(in.nextString());
+        } else if (TAG_MAINTENANCE_COST.equals(name)) {
+            mMaintenance = state.intern(in.nextString());
+        } else if (TAG_CASTING_TIME.equals(name)) {
+            mCastingTime = state.intern(in.nextString());
+        } else if (TAG_DURATION.equals(name)) {
+            mDuration = state.intern(in.nextString());
+        } else if (TAG_POINTS.equals(name)) {
+            mPoints = in.nextInt();
+        } else if (WeaponStats.KEY_WEAPONS.equals(name)) {
+            WeaponStats.load(in, this, mWeapons);
+        } else {
+            super.loadSubElement(in, name, state);
+        }
+    }
+
+    @Override
+    protected ListRow createChild(String type) {
+        return create(mDataFile, type);
+    }
+
     @Override
     protected void finishedLoading(LoadState state) {
         updateLevel(false);
@@ -399,11 +459,39 @@ public class Spell extends ListRow implements HasSourceReference {
         out.simpleTagNotEmpty(TAG_REFERENCE, mReference);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        out.name(ATTRIBUTE_VERY_HARD).value(mIsVeryHard);
+        out.name(TAG_NAME).value(mName);
+        if (!canHaveChildren()) {
+            // Only characters keep the tech level itself; elsewhere, it is just marked as needed
+            out.name(TAG_TECH_LEVEL).value(mTechLevel != null && getCharacter() == null ? EMPTY : mTechLevel);
+            out.name(TAG_COLLEGE).value(mCollege);
+            out.name(TAG_POWER_SOURCE).value(mPowerSource);
+            out.name(TAG_SPELL_CLASS).value(mSpellClass);
+            out.name(TAG_CASTING_COST).value(mCastingCost);
+            out.name(TAG_MAINTENANCE_COST).value(mMaintenance);
+            out.name(TAG_CASTING_TIME).value(mCastingTime);
+            out.name(TAG_DURATION).value(mDuration);
+            out.name(TAG_POINTS).value(mPoints);
+            WeaponStats.save(out, mWeapons);
+        }
+        out.name(TAG_REFERENCE).value(mReference);
+    }
+
     /** @return The weapon list. */
     public List<WeaponStats> getWeapons() {
         return Collections.unmodifiableList(mWeapons);
     }
 
+    @Override
+    public void writeCalculated(JsonWriter out) throws IOException {
+        if (getCharacter() != null && !canHaveChildren()) {
+            out.name("level").value(getLevel()); //$NON-NLS-1$
+            out.name("relative_level").value(getRelativeLevel()); //$NON-NLS-1$
+        }
+    }
+
     /**
      * @param weapons The weapons to set.
      * @return Whether it was modified.
@@ -474,9 +562,9 @@ public class Spell extends ListRow implements HasSourceReference {
      * @return The calculated spell level.
      */
     public static SkillLevel calculateLevel(GURPSCharacter character, int points, SkillAttribute attribute, boolean isVeryHard, String college, String powerSource, String name) {
-        StringBuilder toolTip       = new StringBuilder();
-        int           relativeLevel = isVeryHard ? -3 : -2;
-        int           level;
+        BonusToolTip toolTip       = new BonusToolTip();
+        int          relativeLevel = isVeryHard ? -3 : -2;
+        int          level;
 
         if (character != null) {
             level = attribute.getBaseSkillLevel(character);
@@ -504,7 +592,7 @@ public class Spell extends ListRow implements HasSourceReference {
         return new SkillLevel(level, relativeLevel, toolTip);
     }
 
-    private static int getSpellBonusesFor(GURPSCharacter character, String id, String qualifier, StringBuilder toolTip) {
+    private static int getSpellBonusesFor(GURPSCharacter character, String id, String qualifier, BonusToolTip toolTip) {
         int level = character.getIntegerBonusFor(id, toolTip);
         level += character.getIntegerBonusFor(id + '/' + qualifier.toLowerCase(), toolTip);
         level += character.getSpellComparedIntegerBonusFor(id + '*', qualifier, toolTip);
@@ -66,4 +66,9 @@ public class SpellList extends ListFile {
             }
         } while (reader.withinMarker(marker));
     }
+
+    @Override
+    protected Spell createRow(String type) {
+        return Spell.create(this, type);
+    }
 }
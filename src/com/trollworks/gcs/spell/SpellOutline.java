@@ -129,7 +129,7 @@ public class SpellOutline extends ListOutline implements Incrementable, TechLeve
             if (!spell.canHaveChildren()) {
                 int points = spell.getPoints();
                 if (points > 0) {
-                    RowUndo undo = new RowUndo(spell);
+                    RowUndo undo = new RowUndo(spell, Spell::getPoints, Spell::setPoints);
                     spell.setPoints(points - 1);
                     if (undo.finish()) {
                         undos.add(undo);
@@ -149,7 +149,7 @@ public class SpellOutline extends ListOutline implements Incrementable, TechLeve
         List<RowUndo> undos = new ArrayList<RowUndo>();
         for (Spell spell : new FilteredIterator<Spell>(getModel().getSelectionAsList(), Spell.class)) {
             if (!spell.canHaveChildren()) {
-                RowUndo undo = new RowUndo(spell);
+                RowUndo undo = new RowUndo(spell, Spell::getPoints, Spell::setPoints);
                 spell.setPoints(spell.getPoints() + 1);
                 if (undo.finish()) {
                     undos.add(undo);
@@ -191,7 +191,7 @@ public class SpellOutline extends ListOutline implements Incrementable, TechLeve
                 int     basePoints = spell.getPoints() + 1;
                 int     maxPoints  = basePoints + 4;
                 int     oldLevel   = spell.getLevel();
-                RowUndo undo       = new RowUndo(spell);
+                RowUndo undo       = new RowUndo(spell, Spell::getPoints, Spell::setPoints);
                 for (int points = basePoints; points < maxPoints; points++) {
                     spell.setPoints(points);
                     if (spell.getLevel() > oldLevel) {
@@ -220,7 +220,7 @@ public class SpellOutline extends ListOutline implements Incrementable, TechLeve
         List<RowUndo> undos = new ArrayList<>();
         for (Spell spell : new FilteredIterator<>(getModel().getSelectionAsList(), Spell.class)) {
             if (!spell.canHaveChildren()) {
-                RowUndo undo     = new RowUndo(spell);
+                RowUndo undo     = new RowUndo(spell, Spell::getPoints, Spell::setPoints);
                 int     oldLevel = spell.getLevel();
                 int     points   = spell.getPoints() - 1;
                 spell.setPoints(points);
@@ -289,7 +289,7 @@ public class SpellOutline extends ListOutline implements Incrementable, TechLeve
             if (!spell.canHaveChildren()) {
                 int tl = getCurrentTechLevel(spell);
                 if (tl >= 0) {
-                    RowUndo undo = new RowUndo(spell);
+                    RowUndo undo = new RowUndo(spell, Spell::getTechLevel, Spell::setTechLevel);
                     spell.setTechLevel(Integer.toString(tl + 1));
                     if (undo.finish()) {
                         undos.add(undo);
@@ -311,7 +311,7 @@ public class SpellOutline extends ListOutline implements Incrementable, TechLeve
             if (!spell.canHaveChildren()) {
                 int tl = getCurrentTechLevel(spell);
                 if (tl >= 1) {
-                    RowUndo undo = new RowUndo(spell);
+                    RowUndo undo = new RowUndo(spell, Spell::getTechLevel, Spell::setTechLevel);
                     spell.setTechLevel(Integer.toString(tl - 1));
                     if (undo.finish()) {
                         undos.add(undo);
@@ -15,6 +15,8 @@ import com.trollworks.gcs.advantage.Advantage;
 import com.trollworks.gcs.advantage.AdvantageList;
 import com.trollworks.gcs.app.GCSImages;
 import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.common.LoadState;
 import com.trollworks.gcs.equipment.Equipment;
 import com.trollworks.gcs.equipment.EquipmentList;
@@ -219,11 +221,53 @@ public class Template extends DataFile {
         return CURRENT_VERSION;
     }
 
+    @Override
+    protected boolean canUseSnapshots() {
+        return true;
+    }
+
     @Override
     public String getXMLTagName() {
         return TAG_ROOT;
     }
 
+    @Override
+    protected final void loadSelf(JsonReader in, LoadState state) throws IOException {
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (AdvantageList.TAG_ROOT.equals(name)) {
+                ListRow.loadRows(in, state, type -> Advantage.create(this, type), row -> mAdvantages.addRow(row, true));
+            } else if (SkillList.TAG_ROOT.equals(name)) {
+                ListRow.loadRows(in, state, type -> Skill.create(this, type), row -> mSkills.addRow(row, true));
+            } else if (SpellList.TAG_ROOT.equals(name)) {
+                ListRow.loadRows(in, state, type -> Spell.create(this, type), row -> mSpells.addRow(row, true));
+            } else if (EquipmentList.TAG_ROOT.equals(name)) {
+                ListRow.loadRows(in, state, type -> Equipment.create(this, type), row -> mEquipment.addRow(row, true));
+            } else if (NoteList.TAG_ROOT.equals(name)) {
+                ListRow.loadRows(in, state, type -> Note.create(this, type), row -> mNotes.addRow(row, true));
+            } else {
+                in.skipValue();
+            }
+        }
+        calculateAdvantagePoints();
+        calculateSkillPoints();
+        calculateSpellPoints();
+    }
+
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        out.name(AdvantageList.TAG_ROOT);
+        ListRow.saveRows(out, mAdvantages.getTopLevelRows());
+        out.name(SkillList.TAG_ROOT);
+        ListRow.saveRows(out, mSkills.getTopLevelRows());
+        out.name(SpellList.TAG_ROOT);
+        ListRow.saveRows(out, mSpells.getTopLevelRows());
+        out.name(EquipmentList.TAG_ROOT);
+        ListRow.saveRows(out, mEquipment.getTopLevelRows());
+        out.name(NoteList.TAG_ROOT);
+        ListRow.saveRows(out, mNotes.getTopLevelRows());
+    }
+
     @Override
     protected void saveSelf(XMLWriter out) {
         Iterator<Row> iterator;
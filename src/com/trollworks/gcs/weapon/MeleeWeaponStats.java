@@ -13,6 +13,8 @@ package com.trollworks.gcs.weapon;
 
 import com.trollworks.gcs.character.GURPSCharacter;
 import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.skill.SkillDefault;
 import com.trollworks.gcs.skill.SkillDefaultType;
 import com.trollworks.gcs.widgets.outline.ListRow;
@@ -73,6 +75,16 @@ public class MeleeWeaponStats extends WeaponStats {
         super(owner, reader);
     }
 
+    /**
+     * Creates a {@link MeleeWeaponStats}.
+     * 
+     * @param owner The owning piece of equipment or advantage.
+     * @param in    The {@link JsonReader} to load from.
+     */
+    public MeleeWeaponStats(ListRow owner, JsonReader in) throws IOException {
+        super(owner, in);
+    }
+
     @Override
     public WeaponStats clone(ListRow owner) {
         return new MeleeWeaponStats(owner, this);
@@ -100,6 +112,19 @@ public class MeleeWeaponStats extends WeaponStats {
         }
     }
 
+    @Override
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (TAG_REACH.equals(name)) {
+            mReach = in.nextString();
+        } else if (TAG_PARRY.equals(name)) {
+            mParry = in.nextString();
+        } else if (TAG_BLOCK.equals(name)) {
+            mBlock = in.nextString();
+        } else {
+            super.loadSelf(in, name);
+        }
+    }
+
     @Override
     protected String getRootTag() {
         return TAG_ROOT;
@@ -112,6 +137,20 @@ public class MeleeWeaponStats extends WeaponStats {
         out.simpleTagNotEmpty(TAG_BLOCK, mBlock);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        out.name(TAG_REACH).value(mReach);
+        out.name(TAG_PARRY).value(mParry);
+        out.name(TAG_BLOCK).value(mBlock);
+    }
+
+    @Override
+    protected void writeCalculated(JsonWriter out) throws IOException {
+        super.writeCalculated(out);
+        out.name(TAG_PARRY).value(getResolvedParry());
+        out.name(TAG_BLOCK).value(getResolvedBlock());
+    }
+
     /** @return The parry. */
     public String getParry() {
         return mParry;
@@ -13,6 +13,8 @@ package com.trollworks.gcs.weapon;
 
 import com.trollworks.gcs.character.GURPSCharacter;
 import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.widgets.outline.ListRow;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.io.xml.XMLWriter;
@@ -84,6 +86,16 @@ public class RangedWeaponStats extends WeaponStats {
         super(owner, reader);
     }
 
+    /**
+     * Creates a {@link RangedWeaponStats}.
+     * 
+     * @param owner The owning piece of equipment or advantage.
+     * @param in    The {@link JsonReader} to load from.
+     */
+    public RangedWeaponStats(ListRow owner, JsonReader in) throws IOException {
+        super(owner, in);
+    }
+
     @Override
     public WeaponStats clone(ListRow owner) {
         return new RangedWeaponStats(owner, this);
@@ -120,6 +132,25 @@ public class RangedWeaponStats extends WeaponStats {
         }
     }
 
+    @Override
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (TAG_ACCURACY.equals(name)) {
+            mAccuracy = in.nextString();
+        } else if (TAG_RANGE.equals(name)) {
+            mRange = in.nextString();
+        } else if (TAG_RATE_OF_FIRE.equals(name)) {
+            mRateOfFire = in.nextString();
+        } else if (TAG_SHOTS.equals(name)) {
+            mShots = in.nextString();
+        } else if (TAG_BULK.equals(name)) {
+            mBulk = in.nextString();
+        } else if (TAG_RECOIL.equals(name)) {
+            mRecoil = in.nextString();
+        } else {
+            super.loadSelf(in, name);
+        }
+    }
+
     @Override
     protected String getRootTag() {
         return TAG_ROOT;
@@ -135,6 +166,16 @@ public class RangedWeaponStats extends WeaponStats {
         out.simpleTagNotEmpty(TAG_RECOIL, mRecoil);
     }
 
+    @Override
+    protected void saveSelf(JsonWriter out) throws IOException {
+        out.name(TAG_ACCURACY).value(mAccuracy);
+        out.name(TAG_RANGE).value(mRange);
+        out.name(TAG_RATE_OF_FIRE).value(mRateOfFire);
+        out.name(TAG_SHOTS).value(mShots);
+        out.name(TAG_BULK).value(mBulk);
+        out.name(TAG_RECOIL).value(mRecoil);
+    }
+
     /** @return The accuracy. */
     public String getAccuracy() {
         return mAccuracy;
@@ -14,6 +14,8 @@ package com.trollworks.gcs.weapon;
 import com.trollworks.gcs.advantage.Advantage;
 import com.trollworks.gcs.character.GURPSCharacter;
 import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
 import com.trollworks.gcs.equipment.Equipment;
 import com.trollworks.gcs.feature.LeveledAmount;
 import com.trollworks.gcs.feature.WeaponBonus;
@@ -41,6 +43,9 @@ public abstract class WeaponStats {
     private static final String     TAG_DAMAGE   = "damage"; //$NON-NLS-1$
     private static final String     TAG_STRENGTH = "strength"; //$NON-NLS-1$
     private static final String     TAG_USAGE    = "usage"; //$NON-NLS-1$
+    private static final String     KEY_DEFAULTS = "defaults"; //$NON-NLS-1$
+    /** The name used for a list of weapons in JSON. */
+    public static final String      KEY_WEAPONS  = "weapons"; //$NON-NLS-1$
     /** The prefix used in front of all IDs for weapons. */
     public static final String      PREFIX       = GURPSCharacter.CHARACTER_PREFIX + "weapon."; //$NON-NLS-1$
     /** The field ID for damage changes. */
@@ -121,6 +126,43 @@ public abstract class WeaponStats {
         } while (reader.withinMarker(marker));
     }
 
+    /**
+     * Creates a weapon.
+     *
+     * @param owner The owning piece of equipment or advantage.
+     * @param in    The {@link JsonReader} to use, positioned just after the type of an object
+     *              written by {@link #save(JsonWriter)}.
+     */
+    public WeaponStats(ListRow owner, JsonReader in) throws IOException {
+        this(owner);
+        while (in.hasNext()) {
+            loadSelf(in, in.nextName());
+        }
+        in.endObject();
+    }
+
+    /**
+     * Loads a list of weapons saved by {@link #save(JsonWriter,List)}.
+     *
+     * @param in      The {@link JsonReader} to use, positioned at the array.
+     * @param owner   The owning piece of equipment or advantage.
+     * @param weapons The list to add the weapons to.
+     */
+    public static void load(JsonReader in, ListRow owner, List<WeaponStats> weapons) throws IOException {
+        in.startArray();
+        while (in.hasNext()) {
+            String type = in.startTypedObject();
+            if (MeleeWeaponStats.TAG_ROOT.equals(type)) {
+                weapons.add(new MeleeWeaponStats(owner, in));
+            } else if (RangedWeaponStats.TAG_ROOT.equals(type)) {
+                weapons.add(new RangedWeaponStats(owner, in));
+            } else {
+                in.endObject();
+            }
+        }
+        in.endArray();
+    }
+
     /**
      * Creates a clone of this weapon.
      *
@@ -149,9 +191,41 @@ public abstract class WeaponStats {
         }
     }
 
+    /**
+     * @param in   The {@link JsonReader} to use.
+     * @param name The name of the member to load.
+     */
+    protected void loadSelf(JsonReader in, String name) throws IOException {
+        if (TAG_DAMAGE.equals(name)) {
+            mDamage = in.nextString();
+        } else if (TAG_STRENGTH.equals(name)) {
+            mStrength = in.nextString();
+        } else if (TAG_USAGE.equals(name)) {
+            mUsage = in.nextString();
+        } else if (KEY_DEFAULTS.equals(name)) {
+            in.startArray();
+            while (in.hasNext()) {
+                mDefaults.add(new SkillDefault(in));
+            }
+            in.endArray();
+        } else {
+            in.skipValue();
+        }
+    }
+
     /** @return The root XML tag to use when saving. */
     protected abstract String getRootTag();
 
+    /**
+     * Writes the values calculated for the weapon, which aren't part of what it saves.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    protected void writeCalculated(JsonWriter out) throws IOException {
+        out.name(TAG_DAMAGE).value(getResolvedDamage());
+        out.name("skill_level").value(getSkillLevel()); //$NON-NLS-1$
+    }
+
     /**
      * Saves the weapon.
      *
@@ -176,6 +250,49 @@ public abstract class WeaponStats {
      */
     protected abstract void saveSelf(XMLWriter out);
 
+    /**
+     * Saves the weapon, along with the values calculated for it.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    public void save(JsonWriter out) throws IOException {
+        out.startObject(getRootTag());
+        out.name(TAG_DAMAGE).value(mDamage);
+        out.name(TAG_STRENGTH).value(mStrength);
+        out.name(TAG_USAGE).value(mUsage);
+        saveSelf(out);
+        out.name(KEY_DEFAULTS).startArray();
+        for (SkillDefault skillDefault : mDefaults) {
+            skillDefault.save(out);
+        }
+        out.endArray();
+        out.name(JsonWriter.CALCULATED).startObject();
+        writeCalculated(out);
+        out.endObject();
+        out.endObject();
+    }
+
+    /**
+     * Saves a list of weapons as a JSON member of the row that owns them.
+     *
+     * @param out     The {@link JsonWriter} to use.
+     * @param weapons The weapons.
+     */
+    public static void save(JsonWriter out, List<WeaponStats> weapons) throws IOException {
+        out.name(KEY_WEAPONS).startArray();
+        for (WeaponStats weapon : weapons) {
+            weapon.save(out);
+        }
+        out.endArray();
+    }
+
+    /**
+     * Called so that sub-classes can save their own data.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    protected abstract void saveSelf(JsonWriter out) throws IOException;
+
     /** @return The defaults for this weapon. */
     public List<SkillDefault> getDefaults() {
         return Collections.unmodifiableList(mDefaults);
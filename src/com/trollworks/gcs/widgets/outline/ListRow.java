@@ -13,6 +13,9 @@ package com.trollworks.gcs.widgets.outline;
 
 import com.trollworks.gcs.character.GURPSCharacter;
 import com.trollworks.gcs.common.DataFile;
+import com.trollworks.gcs.common.JsonReader;
+import com.trollworks.gcs.common.JsonWriter;
+import com.trollworks.gcs.common.LazyRows;
 import com.trollworks.gcs.common.LoadState;
 import com.trollworks.gcs.feature.AttributeBonus;
 import com.trollworks.gcs.feature.ContainedWeightReduction;
@@ -23,9 +26,11 @@ import com.trollworks.gcs.feature.SkillBonus;
 import com.trollworks.gcs.feature.SpellBonus;
 import com.trollworks.gcs.feature.WeaponBonus;
 import com.trollworks.gcs.prereq.PrereqList;
+import com.trollworks.gcs.prereq.UnsatisfiedReason;
 import com.trollworks.gcs.skill.SkillDefault;
 import com.trollworks.gcs.skill.Technique;
 import com.trollworks.gcs.template.Template;
+import com.trollworks.toolkit.io.Log;
 import com.trollworks.toolkit.io.xml.XMLNodeType;
 import com.trollworks.toolkit.io.xml.XMLReader;
 import com.trollworks.toolkit.io.xml.XMLWriter;
@@ -35,6 +40,7 @@ import com.trollworks.toolkit.ui.widget.outline.Row;
 import com.trollworks.toolkit.utility.VersionException;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -44,6 +50,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 /** A common row super-class for the model. */
 public abstract class ListRow extends Row {
@@ -51,6 +59,9 @@ public abstract class ListRow extends Row {
     private static final String     TAG_NOTES      = "notes"; //$NON-NLS-1$
     private static final String     TAG_CATEGORIES = "categories"; //$NON-NLS-1$
     private static final String     TAG_CATEGORY   = "category"; //$NON-NLS-1$
+    private static final String     KEY_FEATURES   = "features"; //$NON-NLS-1$
+    private static final String     KEY_DEFAULTS   = "defaults"; //$NON-NLS-1$
+    private static final String     KEY_CHILDREN   = "children"; //$NON-NLS-1$
     private static final String     COMMA          = ","; //$NON-NLS-1$
     private static final String     SPACE          = " "; //$NON-NLS-1$
     /** The data file the row is associated with. */
@@ -59,9 +70,12 @@ public abstract class ListRow extends Row {
     private PrereqList              mPrereqList;
     private ArrayList<SkillDefault> mDefaults;
     private boolean                 mIsSatisfied;
-    private String                  mUnsatisfiedReason;
+    private UnsatisfiedReason       mUnsatisfiedReason;
     private String                  mNotes;
     private TreeSet<String>         mCategories;
+    private LazyRows                mLazyRows;
+    private int                     mLazyRow;
+    private boolean                 mFeaturesDeferred;
 
     /**
      * Extracts any "nameable" portions of the buffer and puts their keys into the provided set.
@@ -158,6 +172,7 @@ public abstract class ListRow extends Row {
      */
     public ListRow(DataFile dataFile, ListRow rowToClone) {
         this(dataFile, rowToClone.canHaveChildren());
+        rowToClone.inflate();
         setOpen(rowToClone.isOpen());
         mNotes = rowToClone.mNotes;
 
@@ -182,6 +197,8 @@ public abstract class ListRow extends Row {
         }
         if (obj instanceof ListRow) {
             ListRow row = (ListRow) obj;
+            inflate();
+            row.inflate();
             if (mNotes.equals(row.mNotes) && mCategories.equals(row.mCategories)) {
                 if (mDefaults.equals(row.mDefaults)) {
                     if (mPrereqList.equals(row.mPrereqList)) {
@@ -246,11 +263,12 @@ public abstract class ListRow extends Row {
 
     /** @return The reason {@link #isSatisfied()} is returning <code>false</code>. */
     public String getReasonForUnsatisfied() {
-        return mUnsatisfiedReason;
+        UnsatisfiedReason reason = mUnsatisfiedReason;
+        return reason != null ? reason.getText() : null;
     }
 
     /** @param reason The reason {@link #isSatisfied()} is returning <code>false</code>. */
-    public void setReasonForUnsatisfied(String reason) {
+    public void setReasonForUnsatisfied(UnsatisfiedReason reason) {
         mUnsatisfiedReason = reason;
     }
 
@@ -267,48 +285,228 @@ public abstract class ListRow extends Row {
             throw VersionException.createTooNew();
         }
         prepareForLoad(state);
+        mLazyRows         = null;
+        mFeaturesDeferred = false;
+        int     lazyRow  = state.mLazyRows != null ? state.mLazyRows.nextRow(reader.getName(), state) : -1;
+        boolean deferred = false;
         loadAttributes(reader, state);
         do {
             if (reader.next() == XMLNodeType.START_TAG) {
                 String name = reader.getName();
-                if (AttributeBonus.TAG_ROOT.equals(name)) {
-                    mFeatures.add(new AttributeBonus(reader));
-                } else if (DRBonus.TAG_ROOT.equals(name)) {
-                    mFeatures.add(new DRBonus(reader));
-                } else if (SkillBonus.TAG_ROOT.equals(name)) {
-                    mFeatures.add(new SkillBonus(reader));
-                } else if (SpellBonus.TAG_ROOT.equals(name)) {
-                    mFeatures.add(new SpellBonus(reader));
-                } else if (WeaponBonus.TAG_ROOT.equals(name)) {
-                    mFeatures.add(new WeaponBonus(reader));
-                } else if (CostReduction.TAG_ROOT.equals(name)) {
-                    mFeatures.add(new CostReduction(reader));
-                } else if (ContainedWeightReduction.TAG_ROOT.equals(name)) {
-                    mFeatures.add(new ContainedWeightReduction(reader));
-                } else if (PrereqList.TAG_ROOT.equals(name)) {
-                    mPrereqList = new PrereqList(null, reader);
-                } else if (!(this instanceof Technique) && SkillDefault.TAG_ROOT.equals(name)) {
-                    mDefaults.add(new SkillDefault(reader));
-                } else if (TAG_NOTES.equals(name)) {
-                    mNotes = reader.readText();
-                } else if (TAG_CATEGORIES.equals(name)) {
-                    String subMarker = reader.getMarker();
+                if (lazyRow != -1 && isDeferrable(name)) {
+                    reader.skipTag(name);
+                    deferred = true;
+                    if (isFeature(name)) {
+                        mFeaturesDeferred = true;
+                    }
+                } else {
+                    loadElement(reader, state, name);
+                }
+            }
+        } while (reader.withinMarker(marker));
+        if (deferred) {
+            mLazyRows = state.mLazyRows;
+            mLazyRow  = lazyRow;
+        }
+        finishedLoading(state);
+    }
+
+    /**
+     * Loads this row's contents.
+     *
+     * @param in    The {@link JsonReader} to load from, positioned just after the type of an object
+     *              written by {@link #save(JsonWriter)}.
+     * @param state The {@link LoadState} to use.
+     */
+    public final void load(JsonReader in, LoadState state) throws IOException {
+        prepareForLoad(state);
+        mLazyRows         = null;
+        mFeaturesDeferred = false;
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (LoadState.ATTRIBUTE_VERSION.equals(name)) {
+                state.mDataItemVersion = in.nextInt();
+                if (state.mDataItemVersion > getXMLTagVersion()) {
+                    throw VersionException.createTooNew();
+                }
+            } else if (ATTRIBUTE_OPEN.equals(name)) {
+                boolean open = in.nextBoolean();
+                if (canHaveChildren()) {
+                    setOpen(open);
+                }
+            } else if (TAG_NOTES.equals(name)) {
+                mNotes = in.nextString();
+            } else if (TAG_CATEGORIES.equals(name)) {
+                in.startArray();
+                while (in.hasNext()) {
+                    mCategories.add(state.intern(in.nextString()));
+                }
+                in.endArray();
+            } else if (KEY_FEATURES.equals(name)) {
+                in.startArray();
+                while (in.hasNext()) {
+                    loadFeature(in, in.startTypedObject());
+                }
+                in.endArray();
+            } else if (PrereqList.TAG_ROOT.equals(name)) {
+                mPrereqList = new PrereqList(null, in);
+            } else if (!(this instanceof Technique) && KEY_DEFAULTS.equals(name)) {
+                in.startArray();
+                while (in.hasNext()) {
+                    mDefaults.add(new SkillDefault(in));
+                }
+                in.endArray();
+            } else if (KEY_CHILDREN.equals(name)) {
+                loadRows(in, state, this::createChild, this::addChild);
+            } else {
+                loadSubElement(in, name, state);
+            }
+        }
+        in.endObject();
+        finishedLoading(state);
+    }
+
+    private void loadFeature(JsonReader in, String type) throws IOException {
+        if (AttributeBonus.TAG_ROOT.equals(type)) {
+            mFeatures.add(new AttributeBonus(in));
+        } else if (DRBonus.TAG_ROOT.equals(type)) {
+            mFeatures.add(new DRBonus(in));
+        } else if (SkillBonus.TAG_ROOT.equals(type)) {
+            mFeatures.add(new SkillBonus(in));
+        } else if (SpellBonus.TAG_ROOT.equals(type)) {
+            mFeatures.add(new SpellBonus(in));
+        } else if (WeaponBonus.TAG_ROOT.equals(type)) {
+            mFeatures.add(new WeaponBonus(in));
+        } else if (CostReduction.TAG_ROOT.equals(type)) {
+            mFeatures.add(new CostReduction(in));
+        } else if (ContainedWeightReduction.TAG_ROOT.equals(type)) {
+            mFeatures.add(new ContainedWeightReduction(in));
+        } else {
+            in.endObject();
+        }
+    }
+
+    /**
+     * Loads an array of rows written by {@link #save(JsonWriter)}.
+     *
+     * @param in      The {@link JsonReader} to load from, positioned at the array.
+     * @param state   The {@link LoadState} to use.
+     * @param factory Creates an empty row for a type, or returns <code>null</code> for a type that
+     *                doesn't belong in the array, which is then skipped.
+     * @param target  Receives each row once it has been loaded.
+     */
+    public static <T extends ListRow> void loadRows(JsonReader in, LoadState state, Function<String, T> factory, Consumer<? super T> target) throws IOException {
+        in.startArray();
+        while (in.hasNext()) {
+            T row = factory.apply(in.startTypedObject());
+            if (row != null) {
+                row.load(in, state);
+                target.accept(row);
+            } else {
+                in.endObject();
+            }
+        }
+        in.endArray();
+    }
+
+    /**
+     * @param type The type of a child row being loaded from JSON.
+     * @return A new, empty row of the type to load the child into, or <code>null</code> if this row
+     *         can't hold children of that type. By default, returns <code>null</code>.
+     */
+    @SuppressWarnings("static-method")
+    protected ListRow createChild(String type) {
+        return null;
+    }
+
+    private void loadElement(XMLReader reader, LoadState state, String name) throws IOException {
+        if (AttributeBonus.TAG_ROOT.equals(name)) {
+            mFeatures.add(new AttributeBonus(reader));
+        } else if (DRBonus.TAG_ROOT.equals(name)) {
+            mFeatures.add(new DRBonus(reader));
+        } else if (SkillBonus.TAG_ROOT.equals(name)) {
+            mFeatures.add(new SkillBonus(reader));
+        } else if (SpellBonus.TAG_ROOT.equals(name)) {
+            mFeatures.add(new SpellBonus(reader));
+        } else if (WeaponBonus.TAG_ROOT.equals(name)) {
+            mFeatures.add(new WeaponBonus(reader));
+        } else if (CostReduction.TAG_ROOT.equals(name)) {
+            mFeatures.add(new CostReduction(reader));
+        } else if (ContainedWeightReduction.TAG_ROOT.equals(name)) {
+            mFeatures.add(new ContainedWeightReduction(reader));
+        } else if (PrereqList.TAG_ROOT.equals(name)) {
+            mPrereqList = new PrereqList(null, reader);
+        } else if (!(this instanceof Technique) && SkillDefault.TAG_ROOT.equals(name)) {
+            mDefaults.add(new SkillDefault(reader));
+        } else if (TAG_NOTES.equals(name)) {
+            mNotes = reader.readText();
+        } else if (TAG_CATEGORIES.equals(name)) {
+            String subMarker = reader.getMarker();
+            do {
+                if (reader.next() == XMLNodeType.START_TAG) {
+                    name = reader.getName();
+                    if (TAG_CATEGORY.equals(name)) {
+                        mCategories.add(state.intern(reader.readText()));
+                    } else {
+                        reader.skipTag(name);
+                    }
+                }
+            } while (reader.withinMarker(subMarker));
+        } else {
+            loadSubElement(reader, state);
+        }
+    }
+
+    /**
+     * When a list is loaded lazily, the elements of its rows for which this returns
+     * <code>true</code> are skipped until something needs them. By default, this is the features
+     * and prerequisites.
+     *
+     * @param name The tag name of an element of this row.
+     * @return Whether the element isn't needed to display the row.
+     */
+    @SuppressWarnings("static-method")
+    protected boolean isDeferrable(String name) {
+        return isFeature(name) || PrereqList.TAG_ROOT.equals(name);
+    }
+
+    /**
+     * @param name The tag name of an element of a row.
+     * @return Whether the element is a {@link Feature}.
+     */
+    protected static boolean isFeature(String name) {
+        return AttributeBonus.TAG_ROOT.equals(name) || DRBonus.TAG_ROOT.equals(name) || SkillBonus.TAG_ROOT.equals(name) || SpellBonus.TAG_ROOT.equals(name) || WeaponBonus.TAG_ROOT.equals(name) || CostReduction.TAG_ROOT.equals(name) || ContainedWeightReduction.TAG_ROOT.equals(name);
+    }
+
+    /**
+     * Reads in the elements that were skipped when this row was loaded lazily. Must be called
+     * before those parts of the row are used. Does nothing if nothing was skipped.
+     */
+    protected final void inflate() {
+        if (mLazyRows != null) {
+            LazyRows source = mLazyRows;
+            mLazyRows         = null;
+            mFeaturesDeferred = false;
+            try (XMLReader reader = new XMLReader(new StringReader(source.getText(mLazyRow)))) {
+                if (reader.next() == XMLNodeType.START_TAG) {
+                    LoadState state  = source.createInflateState();
+                    String    marker = reader.getMarker();
+                    state.mDataItemVersion = reader.getAttributeAsInteger(LoadState.ATTRIBUTE_VERSION, 0);
                     do {
                         if (reader.next() == XMLNodeType.START_TAG) {
-                            name = reader.getName();
-                            if (TAG_CATEGORY.equals(name)) {
-                                mCategories.add(reader.readText());
+                            String name = reader.getName();
+                            if (isDeferrable(name)) {
+                                loadElement(reader, state, name);
                             } else {
                                 reader.skipTag(name);
                             }
                         }
-                    } while (reader.withinMarker(subMarker));
-                } else {
-                    loadSubElement(reader, state);
+                    } while (reader.withinMarker(marker));
                 }
+            } catch (IOException exception) {
+                Log.error(exception);
             }
-        } while (reader.withinMarker(marker));
-        finishedLoading(state);
+        }
     }
 
     /**
@@ -347,6 +545,18 @@ public abstract class ListRow extends Row {
         reader.skipTag(reader.getName());
     }
 
+    /**
+     * Loads this row's custom data from the specified member of its JSON object.
+     *
+     * @param in    The {@link JsonReader} to load from, positioned at the value of the member.
+     * @param name  The name of the member.
+     * @param state The {@link LoadState} to use.
+     */
+    @SuppressWarnings("static-method")
+    protected void loadSubElement(JsonReader in, String name, LoadState state) throws IOException {
+        in.skipValue();
+    }
+
     /**
      * Called when loading of this row is complete. Does nothing by default.
      *
@@ -363,6 +573,7 @@ public abstract class ListRow extends Row {
      * @param forUndo Whether this is being called to save undo state.
      */
     public void save(XMLWriter out, boolean forUndo) {
+        inflate();
         out.startTag(getXMLTagName());
         out.writeAttribute(LoadState.ATTRIBUTE_VERSION, getXMLTagVersion());
         if (canHaveChildren()) {
@@ -411,6 +622,77 @@ public abstract class ListRow extends Row {
      */
     protected abstract void saveSelf(XMLWriter out, boolean forUndo);
 
+    /**
+     * Saves the row, along with its children and the values calculated for each of them.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    public void save(JsonWriter out) throws IOException {
+        inflate();
+        out.startObject(getXMLTagName());
+        out.name(LoadState.ATTRIBUTE_VERSION).value(getXMLTagVersion());
+        if (canHaveChildren()) {
+            out.name(ATTRIBUTE_OPEN).value(isOpen());
+        }
+        saveSelf(out);
+        out.name(TAG_NOTES).value(mNotes);
+
+        out.name(TAG_CATEGORIES).startArray();
+        for (String category : mCategories) {
+            out.value(category);
+        }
+        out.endArray();
+
+        out.name(KEY_FEATURES).startArray();
+        for (Feature feature : mFeatures) {
+            feature.save(out);
+        }
+        out.endArray();
+
+        out.name(PrereqList.TAG_ROOT);
+        mPrereqList.save(out);
+
+        if (!(this instanceof Technique)) {
+            out.name(KEY_DEFAULTS).startArray();
+            for (SkillDefault skillDefault : mDefaults) {
+                skillDefault.save(out);
+            }
+            out.endArray();
+        }
+
+        out.name(JsonWriter.CALCULATED).startObject();
+        writeCalculated(out);
+        out.endObject();
+
+        if (canHaveChildren()) {
+            out.name(KEY_CHILDREN);
+            saveRows(out, getChildren());
+        }
+        out.endObject();
+    }
+
+    /**
+     * Saves an array of rows, to be loaded by
+     * {@link #loadRows(JsonReader, LoadState, Function, Consumer)}.
+     *
+     * @param out  The {@link JsonWriter} to use.
+     * @param rows The rows to save.
+     */
+    public static void saveRows(JsonWriter out, List<Row> rows) throws IOException {
+        out.startArray();
+        for (Row row : rows) {
+            ((ListRow) row).save(out);
+        }
+        out.endArray();
+    }
+
+    /**
+     * Saves the row's own members of its JSON object.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    protected abstract void saveSelf(JsonWriter out) throws IOException;
+
     /**
      * Saves extra attributes of the row, if any.
      *
@@ -421,6 +703,16 @@ public abstract class ListRow extends Row {
         // Does nothing by default.
     }
 
+    /**
+     * Called when the row is saved as JSON to add the values calculated for the row, which aren't
+     * part of what it saves. Does nothing by default.
+     *
+     * @param out The {@link JsonWriter} to use.
+     */
+    public void writeCalculated(JsonWriter out) throws IOException {
+        // Does nothing by default.
+    }
+
     /**
      * Starts the notification process. Should be called before calling
      * {@link #notify(String,Object)}.
@@ -485,6 +777,9 @@ public abstract class ListRow extends Row {
 
     /** @return The features provided by this data row. */
     public List<Feature> getFeatures() {
+        if (mFeaturesDeferred) {
+            inflate();
+        }
         return Collections.unmodifiableList(mFeatures);
     }
 
@@ -493,6 +788,7 @@ public abstract class ListRow extends Row {
      * @return Whether there was a change or not.
      */
     public boolean setFeatures(List<Feature> features) {
+        inflate();
         if (!mFeatures.equals(features)) {
             mFeatures = new ArrayList<>(features);
             return true;
@@ -594,6 +890,7 @@ public abstract class ListRow extends Row {
 
     /** @return The prerequisites needed by this data row. */
     public PrereqList getPrereqs() {
+        inflate();
         return mPrereqList;
     }
 
@@ -602,6 +899,7 @@ public abstract class ListRow extends Row {
      * @return Whether there was a change or not.
      */
     public boolean setPrereqs(PrereqList prereqs) {
+        inflate();
         if (!mPrereqList.equals(prereqs)) {
             mPrereqList = (PrereqList) prereqs.clone(null);
             return true;
@@ -649,6 +947,7 @@ public abstract class ListRow extends Row {
 
     /** @param set The nameable keys. */
     public void fillWithNameableKeys(HashSet<String> set) {
+        inflate();
         extractNameables(set, mNotes);
         for (SkillDefault def : mDefaults) {
             def.fillWithNameableKeys(set);
@@ -661,6 +960,7 @@ public abstract class ListRow extends Row {
 
     /** @param map The map of nameable keys to names to apply. */
     public void applyNameableKeys(HashMap<String, String> map) {
+        inflate();
         mNotes = nameNameables(map, mNotes);
         for (SkillDefault def : mDefaults) {
             def.applyNameableKeys(map);
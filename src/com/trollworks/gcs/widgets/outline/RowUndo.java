@@ -23,6 +23,11 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStreamReader;
 import java.text.MessageFormat;
+import java.util.Objects;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -30,7 +35,11 @@ import javax.swing.undo.AbstractUndoableEdit;
 import javax.swing.undo.CannotRedoException;
 import javax.swing.undo.CannotUndoException;
 
-/** An undo for the entire row, with the exception of its children. */
+/**
+ * An undo for a row. An undo created with just the row captures the entire row, with the exception
+ * of its children. Where only a single property of the row is going to change, an undo created for
+ * that property captures just its value, which is far cheaper.
+ */
 public class RowUndo extends AbstractUndoableEdit {
     @Localize("{0} Changes")
     @Localize(locale = "de", value = "{0} Änderungen")
@@ -42,11 +51,15 @@ public class RowUndo extends AbstractUndoableEdit {
         Localization.initialize();
     }
 
-    private DataFile mDataFile;
-    private ListRow  mRow;
-    private String   mName;
-    private byte[]   mBefore;
-    private byte[]   mAfter;
+    private DataFile         mDataFile;
+    private ListRow          mRow;
+    private String           mName;
+    private byte[]           mBefore;
+    private byte[]           mAfter;
+    private Supplier<Object> mGetter;
+    private Consumer<Object> mSetter;
+    private Object           mBeforeValue;
+    private Object           mAfterValue;
 
     /**
      * Creates a new {@link RowUndo}.
@@ -61,12 +74,36 @@ public class RowUndo extends AbstractUndoableEdit {
         mBefore   = serialize(mRow);
     }
 
+    /**
+     * Creates a new {@link RowUndo} for a single property of a row. Properties that an edit always
+     * changes together should be presented as one composite value, so that the edit makes a single
+     * undo.
+     *
+     * @param row    The row being undone.
+     * @param getter Retrieves the value of the property.
+     * @param setter Sets the value of the property.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends ListRow, V> RowUndo(T row, Function<T, V> getter, BiConsumer<T, V> setter) {
+        super();
+        mRow         = row;
+        mDataFile    = mRow.getDataFile();
+        mName        = MessageFormat.format(UNDO_FORMAT, mRow.getLocalizedName());
+        mGetter      = () -> getter.apply(row);
+        mSetter      = value -> setter.accept(row, (V) value);
+        mBeforeValue = mGetter.get();
+    }
+
     /**
      * Call to finish capturing the undo state.
      *
      * @return <code>true</code> if there is a difference between the before and after state.
      */
     public boolean finish() {
+        if (mGetter != null) {
+            mAfterValue = mGetter.get();
+            return !Objects.equals(mBeforeValue, mAfterValue);
+        }
         mAfter = serialize(mRow);
         if (mBefore.length != mAfter.length) {
             return true;
@@ -114,13 +151,21 @@ public class RowUndo extends AbstractUndoableEdit {
     @Override
     public void undo() throws CannotUndoException {
         super.undo();
-        deserialize(mBefore);
+        if (mSetter != null) {
+            mSetter.accept(mBeforeValue);
+        } else {
+            deserialize(mBefore);
+        }
     }
 
     @Override
     public void redo() throws CannotRedoException {
         super.redo();
-        deserialize(mAfter);
+        if (mSetter != null) {
+            mSetter.accept(mAfterValue);
+        } else {
+            deserialize(mAfter);
+        }
     }
 
     /** @return The {@link DataFile} this undo works on. */